@@ -0,0 +1,35 @@
+// k6 load test for IRP in DIRECT mode: many concurrent clients against one service.
+// Run the same script against the servlet and the reactive IRP (see DEVELOPMENT.md, "Running tests").
+//   k6 run -e IRP_URL=http://localhost:8080 -e SERVICE=REGISTER_USER -e VUS=2000 -e DURATION=2m irp-direct.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const base = __ENV.IRP_URL || 'http://localhost:8080';
+const service = __ENV.SERVICE || 'REGISTER_USER';
+
+export const options = {
+  scenarios: {
+    direct: {
+      executor: 'ramping-vus',
+      startVUs: 0,
+      stages: [
+        { duration: '30s', target: Number(__ENV.VUS || 1000) },
+        { duration: __ENV.DURATION || '2m', target: Number(__ENV.VUS || 1000) },
+        { duration: '15s', target: 0 },
+      ],
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const params = { headers: { 'Content-Type': 'application/json' } };
+if (__ENV.TOKEN) params.headers.Authorization = `Bearer ${__ENV.TOKEN}`;
+
+export default function () {
+  const body = JSON.stringify({ user: `user-${__VU}-${__ITER}`, email: `u${__VU}@example.com` });
+  const res = http.post(`${base}/irp/${service}`, body, params);
+  check(res, {
+    'answered': (r) => r.status === 200 || r.status === 400,
+    'not overloaded': (r) => r.status !== 429,
+  });
+}
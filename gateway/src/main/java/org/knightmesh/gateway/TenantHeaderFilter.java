@@ -0,0 +1,54 @@
+package org.knightmesh.gateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+
+/**
+ * Sets {@value #TENANT_HEADER} on routed requests from the verified token's {@code gateway.tenant.claim}
+ * (default {@code sub}) and removes any value the client sent, so services behind the gateway can trust the
+ * header. Requests without a token, or whose token lacks the claim, are forwarded without it.
+ */
+@Component
+public class TenantHeaderFilter implements GlobalFilter, Ordered {
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+
+    private final String claim;
+
+    public TenantHeaderFilter(@Value("${gateway.tenant.claim:sub}") String claim) {
+        this.claim = claim;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return exchange.getPrincipal()
+                .map(this::tenantOf)
+                .defaultIfEmpty("")
+                .flatMap(tenant -> chain.filter(exchange.mutate()
+                        .request(r -> r.headers(h -> {
+                            h.remove(TENANT_HEADER);
+                            if (!tenant.isEmpty()) h.set(TENANT_HEADER, tenant);
+                        }))
+                        .build()));
+    }
+
+    private String tenantOf(Principal principal) {
+        if (principal instanceof JwtAuthenticationToken token) {
+            String tenant = token.getToken().getClaimAsString(claim);
+            return tenant == null || tenant.isBlank() ? "" : tenant;
+        }
+        return "";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
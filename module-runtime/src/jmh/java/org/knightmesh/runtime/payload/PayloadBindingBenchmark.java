@@ -0,0 +1,93 @@
+package org.knightmesh.runtime.payload;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import org.knightmesh.core.model.ServiceMetrics;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.TypedCKService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A REGISTER_USER-like request from JSON body to the values the service works with, per payload style:
+ * {@code map} reads the payload map with lookups and casts, as untyped services do; {@code typed} binds it to a
+ * record with {@link JacksonPayloadBinder} (with or without Bean Validation) and reads the record.
+ * Both parse the body into a map first, as IRP does.
+ * <p>
+ * Run: {@code ./gradlew :module-runtime:jmh -Pjmh.includes=PayloadBindingBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadBindingBenchmark {
+
+    public record Registration(@NotBlank String username, @NotBlank @Email String email, String password) {}
+
+    /** Validate the typed payload's constraints. */
+    @Param({"false", "true"})
+    public boolean validate;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectReader mapReader = mapper.readerFor(new TypeReference<Map<String, Object>>() {});
+    private final byte[] body = "{\"username\":\"alice\",\"email\":\"alice@example.org\",\"password\":\"secret\",\"source\":\"web\"}"
+            .getBytes(StandardCharsets.UTF_8);
+    private ValidatorFactory validation;
+    private JacksonPayloadBinder binder;
+    private final TypedCKService<Registration> service = new TypedCKService<>() {
+        @Override public String getServiceName() { return "REGISTER_USER"; }
+        @Override public Class<Registration> payloadType() { return Registration.class; }
+        @Override public ServiceResponse execute(ServiceRequest request, Registration payload) { return null; }
+        @Override public ServiceMetrics getMetrics() { return null; }
+    };
+
+    @Setup
+    public void setup() {
+        validation = Validation.buildDefaultValidatorFactory();
+        binder = new JacksonPayloadBinder(mapper, validate ? validation.getValidator() : null, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validation.close();
+    }
+
+    @Benchmark
+    public int map() throws Exception {
+        ServiceRequest request = new ServiceRequest("REGISTER_USER", mapReader.readValue(body), Map.of(), "c1");
+        Map<String, Object> payload = request.getPayload();
+        String username = (String) payload.getOrDefault("username", payload.get("user"));
+        String email = (String) payload.get("email");
+        if (username == null || username.isBlank() || email == null || email.isBlank()) {
+            throw new IllegalStateException("invalid");
+        }
+        String password = (String) payload.getOrDefault("password", "");
+        return username.length() + email.length() + password.length();
+    }
+
+    @Benchmark
+    public int typed() throws Exception {
+        ServiceRequest request = new ServiceRequest("REGISTER_USER", mapReader.readValue(body), Map.of(), "c1");
+        if (binder.bind(service, request) != null) {
+            throw new IllegalStateException("invalid");
+        }
+        Registration r = request.getTypedPayload(Registration.class);
+        return r.username().length() + r.email().length() + r.password().length();
+    }
+}
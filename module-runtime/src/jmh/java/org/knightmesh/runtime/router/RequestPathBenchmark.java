@@ -0,0 +1,84 @@
+package org.knightmesh.runtime.router;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.knightmesh.core.model.ServiceMetrics;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.model.SmallMap;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One direct IRP request through the router to a local service and back, to see what each request allocates:
+ * {@code legacy} builds metadata and the response in {@code HashMap}s with an eagerly formatted timestamp, as
+ * IRP and services did; {@code builder} uses {@link ServiceRequest#builder}, a lazy timestamp and
+ * {@link ServiceResponse#success()}, as they do now. The router's own share (meters, shared failures) shows
+ * when running the same on the parent commit.
+ * <p>
+ * Run: {@code ./gradlew :module-runtime:jmh -Pjmh.includes=RequestPathBenchmark -Pjmh.profilers=gc}
+ * and compare {@code gc.alloc.rate.norm} (bytes per request).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestPathBenchmark {
+
+    @Param({"legacy", "builder"})
+    public String model;
+
+    private final Map<String, Object> payload = Map.of("username", "alice", "email", "alice@example.org");
+    private boolean lean;
+    private ServiceRouter router;
+
+    @Setup
+    public void setup() {
+        lean = "builder".equals(model);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        LocalServiceRegistry registry = new LocalServiceRegistry(meters);
+        registry.register("REGISTER_USER", new CKService() {
+            @Override public String getServiceName() { return "REGISTER_USER"; }
+            @Override public ServiceResponse execute(ServiceRequest request) {
+                if (lean) {
+                    return ServiceResponse.success().data("username", "alice").data("status", "REGISTERED").build();
+                }
+                Map<String, Object> data = new HashMap<>();
+                data.put("username", "alice");
+                data.put("status", "REGISTERED");
+                return ServiceResponse.success(data);
+            }
+            @Override public ServiceMetrics getMetrics() { return null; }
+        }, 64);
+        router = new ServiceRouter(registry, null, (RemoteHttpInvoker) null, meters);
+    }
+
+    @Benchmark
+    public ServiceResponse route() {
+        if (lean) {
+            Instant now = Instant.now();
+            SmallMap<String, String> metadata = SmallMap.<String, String>builder(5)
+                    .putLazy("timestamp", now::toString)
+                    .put("source", "IRP")
+                    .put(ServiceRequest.TENANT_METADATA, "acme")
+                    .build();
+            return router.route(new ServiceRequest("REGISTER_USER", payload, metadata, "c1"));
+        }
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("timestamp", Instant.now().toString());
+        metadata.put("source", "IRP");
+        metadata.put(ServiceRequest.TENANT_METADATA, "acme");
+        return router.route(new ServiceRequest("REGISTER_USER", payload, metadata, "c1"));
+    }
+}
@@ -10,7 +10,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Service
-public class ConfigRepository {
+public class ConfigRepository implements PluginConfigSource {
 
     private final ModuleConfigRepository moduleRepo;
     private final ServiceConfigRepository serviceRepo;
@@ -90,6 +90,11 @@ public class ConfigRepository {
         return serviceRepo.findByModuleNameAndEnabledTrue(moduleName);
     }
 
+    /** Names of all configured services, read from the database rather than the cache. */
+    public List<String> listServiceNames() {
+        return serviceRepo.findAllServiceNames();
+    }
+
     public List<ModuleConfig> listEnabledModules() {
         return moduleRepo.findByEnabledTrue();
     }
@@ -98,6 +103,11 @@ public class ConfigRepository {
         return moduleRepo.findByName(name);
     }
 
+    @Override
+    public Optional<PluginConfig> findPlugin(String name) {
+        return pluginRepo.findByName(name);
+    }
+
     // Existing helpers
     public Optional<ServiceConfig> getService(String name) {
         return Optional.ofNullable(servicesByName.get().get(name));
@@ -0,0 +1,33 @@
+package org.knightmesh.runtime.config;
+
+import org.knightmesh.core.id.IdGenerator;
+import org.knightmesh.core.id.Ids;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects how correlation ids and queue message keys are generated with {@code ids.generator}:
+ * {@code time-ordered} (default; UUIDv7) or {@code random} (UUIDv4). The choice is installed in
+ * {@link Ids} so entities and stores that are not beans use it too.
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public IdGenerator idGenerator(@Value("${ids.generator:time-ordered}") String kind) {
+        IdGenerator generator;
+        switch (kind.toLowerCase()) {
+            case "time-ordered":
+                generator = IdGenerator.timeOrdered();
+                break;
+            case "random":
+                generator = IdGenerator.random();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown ids.generator '" + kind + "' (expected time-ordered or random)");
+        }
+        Ids.use(generator);
+        return generator;
+    }
+}
@@ -0,0 +1,21 @@
+package org.knightmesh.runtime.config;
+
+import org.knightmesh.core.json.Json;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Applies the shared {@link Json} settings to the application's {@code ObjectMapper}: buffers recycled in the
+ * shared bounded pool, {@code ServiceRequest}/{@code ServiceResponse} bound through their constructors and,
+ * unless {@code -Dknightmesh.json.blackbird=false}, Blackbird's generated accessors. MVC, WebFlux, the
+ * {@code RestTemplate} and the payload binder all use that mapper.
+ */
+@Configuration
+public class JsonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer knightmeshJson() {
+        return builder -> builder.factory(Json.newFactory()).postConfigurer(Json::install);
+    }
+}
@@ -0,0 +1,29 @@
+package org.knightmesh.runtime.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.core.service.PayloadBinders;
+import org.knightmesh.runtime.payload.JacksonPayloadBinder;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Binds the payloads of {@link org.knightmesh.core.service.TypedCKService}s with the application's
+ * {@link ObjectMapper} and Bean Validation {@link Validator}. The binder is installed in {@link PayloadBinders}
+ * so typed services bind requests that reach them unbound too.
+ */
+@Configuration
+public class PayloadBinderConfig {
+
+    @Bean
+    public JacksonPayloadBinder payloadBinder(ObjectProvider<ObjectMapper> mapper, ObjectProvider<Validator> validator,
+                                              LocalServiceRegistry registry) {
+        JacksonPayloadBinder binder = new JacksonPayloadBinder(mapper.getIfUnique(Json::mapper),
+                validator.getIfUnique(), registry);
+        PayloadBinders.use(binder);
+        return binder;
+    }
+}
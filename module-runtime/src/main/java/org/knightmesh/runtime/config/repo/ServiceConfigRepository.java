@@ -2,6 +2,7 @@ package org.knightmesh.runtime.config.repo;
 
 import org.knightmesh.core.config.ServiceConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,4 +11,7 @@ import java.util.UUID;
 public interface ServiceConfigRepository extends JpaRepository<ServiceConfig, UUID> {
     Optional<ServiceConfig> findByServiceName(String serviceName);
     List<ServiceConfig> findByModuleNameAndEnabledTrue(String moduleName);
+
+    @Query("select s.serviceName from ServiceConfig s where s.serviceName is not null")
+    List<String> findAllServiceNames();
 }
@@ -0,0 +1,112 @@
+package org.knightmesh.runtime.payload;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.core.service.PayloadBinder;
+import org.knightmesh.core.service.TypedCKService;
+import org.knightmesh.runtime.registry.LocalServiceDescriptor;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link PayloadBinder} that reads the payload map into the service's payload type with an {@link ObjectReader}
+ * prepared once per type, then checks its Bean Validation constraints. Whether a type has constraints at all is
+ * also worked out once, so unconstrained types skip the validator. Unknown payload fields are ignored.
+ */
+public class JacksonPayloadBinder implements PayloadBinder {
+
+    private final ObjectMapper mapper;
+    private final Validator validator;            // optional
+    private final LocalServiceRegistry registry;  // optional, for bindLocal
+    private final Map<Class<?>, Binding> bindings = new ConcurrentHashMap<>();
+
+    public JacksonPayloadBinder(ObjectMapper mapper, Validator validator, LocalServiceRegistry registry) {
+        this.mapper = Objects.requireNonNull(mapper, "mapper");
+        this.validator = validator;
+        this.registry = registry;
+    }
+
+    @Override
+    public ServiceResponse bind(TypedCKService<?> service, ServiceRequest request) {
+        Binding binding = bindings.computeIfAbsent(service.payloadType(), this::prepare);
+        Object payload;
+        try {
+            payload = binding.read(request.getPayload());
+        } catch (IOException | IllegalArgumentException e) {
+            return ServiceResponse.failure("INVALID_PAYLOAD", "Payload of " + request.getServiceName() + " does not match "
+                    + binding.type.getSimpleName() + ": " + String.valueOf(e.getMessage()).lines().findFirst().orElse(""), null);
+        }
+        String violations = binding.validate(payload);
+        if (violations != null) {
+            return ServiceResponse.failure("VALIDATION_ERROR", violations, null);
+        }
+        request.bindTypedPayload(payload);
+        return null;
+    }
+
+    /**
+     * Bind the request for the service registered in this process under its name, if that service is typed.
+     * @return null if there is nothing to bind or the payload was bound, otherwise the failure to answer with
+     */
+    public ServiceResponse bindLocal(ServiceRequest request) {
+        if (registry == null) return null;
+        LocalServiceDescriptor d = registry.get(request.getServiceName());
+        CKService service = d == null ? null : d.getInstance();
+        if (!(service instanceof TypedCKService<?> typed) || request.getTypedPayload(typed.payloadType()) != null) {
+            return null;
+        }
+        return bind(typed, request);
+    }
+
+    private Binding prepare(Class<?> type) {
+        ObjectReader reader = mapper.readerFor(type).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        boolean constrained = validator != null && validator.getConstraintsForClass(type).isBeanConstrained();
+        return new Binding(type, reader, constrained ? validator : null);
+    }
+
+    private final class Binding {
+        final Class<?> type;
+        final ObjectReader reader;
+        final Validator validator; // null when the type has no constraints
+
+        Binding(Class<?> type, ObjectReader reader, Validator validator) {
+            this.type = type;
+            this.reader = reader;
+            this.validator = validator;
+        }
+
+        Object read(Map<String, Object> payload) throws IOException {
+            // replays the map as JSON tokens: no text is written or parsed
+            TokenBuffer buffer = new TokenBuffer(mapper, false);
+            mapper.writeValue(buffer, payload);
+            try (JsonParser parser = buffer.asParser()) {
+                return reader.readValue(parser);
+            }
+        }
+
+        /** @return the violated constraints' messages, or null if there are none */
+        String validate(Object payload) {
+            if (validator == null) return null;
+            Set<ConstraintViolation<Object>> violations = validator.validate(payload);
+            if (violations.isEmpty()) return null;
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.knightmesh.runtime.registry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of the service names that can be routed: every {@code service_config} row plus the services
+ * registered in this process. IRP and {@link org.knightmesh.runtime.router.ServiceRouter} ask it first, so a
+ * name that exists nowhere is turned away with a few hash lookups instead of a discovery round trip.
+ * <p>
+ * Configured names are re-read every {@code router.known-services.refresh.ms}; names the
+ * {@link ConfigRepository} cache already holds count as known straight away. While no service is configured
+ * (or the names could not be read yet) every name is let through, as routing may then rely on discovery alone.
+ */
+@Component
+public class KnownServices implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(KnownServices.class);
+
+    private final ConfigRepository configRepository;
+    private final LocalServiceRegistry registry;
+    private final boolean enabled;
+    private final long refreshMs;
+    private volatile Set<String> configured; // null: nothing configured, or not read yet
+    private ScheduledExecutorService timer;
+    private Counter unknownCounter;
+
+    public KnownServices(ConfigRepository configRepository, LocalServiceRegistry registry,
+                         @Value("${router.known-services.enabled:true}") boolean enabled,
+                         @Value("${router.known-services.refresh.ms:5000}") long refreshMs) {
+        this.configRepository = Objects.requireNonNull(configRepository, "configRepository");
+        this.registry = Objects.requireNonNull(registry, "registry");
+        this.enabled = enabled;
+        this.refreshMs = refreshMs;
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        // not tagged by name: the names come from clients
+        this.unknownCounter = Counter.builder("router_unknown_service_total")
+                .description("Requests turned away because no service of that name is configured or registered")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || timer != null) return;
+        if (refreshMs <= 0) {
+            refresh();
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "known-services");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::refresh, 0, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** True unless the index is in use and neither the configuration nor this process knows the name. */
+    public boolean isKnown(String serviceName) {
+        if (serviceName == null) return false;
+        Set<String> names = configured;
+        if (!enabled || names == null) return true;
+        if (names.contains(serviceName) || registry.get(serviceName) != null
+                || configRepository.getService(serviceName).isPresent()) {
+            return true;
+        }
+        Counter unknown = unknownCounter;
+        if (unknown != null) unknown.increment();
+        return false;
+    }
+
+    /** Re-read the configured names; on failure the previous ones are kept. */
+    public void refresh() {
+        try {
+            List<String> names = configRepository.listServiceNames();
+            Set<String> loaded = names == null || names.isEmpty() ? null : Set.copyOf(names);
+            Set<String> previous = configured;
+            configured = loaded;
+            if (!Objects.equals(previous, loaded)) {
+                log.debug("[KnownServices] {} configured service name(s)", loaded == null ? 0 : loaded.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("[KnownServices] could not read service names, keeping the previous ones: {}", e.toString());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) timer.shutdownNow();
+    }
+}
@@ -4,6 +4,7 @@ import org.knightmesh.core.service.CKService;
 
 import java.time.Instant;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -17,6 +18,8 @@ public class LocalServiceDescriptor {
     private int maxThreads;
     private ServiceStatus status = ServiceStatus.UP;
     private Instant lastHeartbeat;
+    private final ConcurrentHashMap<String, AtomicInteger> tenantActive = new ConcurrentHashMap<>();
+    private volatile long contendedUntilNanos = System.nanoTime();
 
     public LocalServiceDescriptor() {
     }
@@ -107,6 +110,80 @@ public class LocalServiceDescriptor {
         activeThreads.updateAndGet(v -> Math.max(0, v - 1));
     }
 
+    /**
+     * Reserve {@code slots} thread slots at once (e.g. for a batch), returning true on success.
+     */
+    public boolean incrementActive(int slots) {
+        while (true) {
+            int current = activeThreads.get();
+            if (current + slots > maxThreads) {
+                return false;
+            }
+            if (activeThreads.compareAndSet(current, current + slots)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release slots reserved with {@link #incrementActive(int)}.
+     */
+    public void decrementActive(int slots) {
+        activeThreads.updateAndGet(v -> Math.max(0, v - slots));
+    }
+
+    /**
+     * Reserve a slot on behalf of a tenant. While the service is contended (a reservation was refused
+     * for lack of slots within the last {@code contentionWindowNanos}) a tenant holding {@code tenantCap}
+     * slots or more is refused, so freed slots go to other tenants; otherwise any tenant may use every slot.
+     * A null tenant is only subject to the overall limit.
+     */
+    public boolean incrementActive(String tenant, int tenantCap, long contentionWindowNanos) {
+        return incrementActive(tenant, 1, tenantCap, contentionWindowNanos);
+    }
+
+    /**
+     * Reserve {@code slots} slots at once (e.g. for a batch) on behalf of a tenant, with the same rule as
+     * {@link #incrementActive(String, int, long)}: refused while contended if the tenant already holds
+     * {@code tenantCap} slots or more.
+     */
+    public boolean incrementActive(String tenant, int slots, int tenantCap, long contentionWindowNanos) {
+        if (tenant != null && System.nanoTime() - contendedUntilNanos < 0 && activeFor(tenant) >= tenantCap) {
+            return false;
+        }
+        if (!incrementActive(slots)) {
+            contendedUntilNanos = System.nanoTime() + contentionWindowNanos;
+            return false;
+        }
+        if (tenant != null) {
+            tenantActive.compute(tenant, (t, n) -> {
+                AtomicInteger count = n == null ? new AtomicInteger() : n;
+                count.addAndGet(slots);
+                return count;
+            });
+        }
+        return true;
+    }
+
+    /** Release a slot reserved with {@link #incrementActive(String, int, long)}. */
+    public void decrementActive(String tenant) {
+        decrementActive(tenant, 1);
+    }
+
+    /** Release slots reserved with {@link #incrementActive(String, int, int, long)}. */
+    public void decrementActive(String tenant, int slots) {
+        decrementActive(slots);
+        if (tenant != null) {
+            tenantActive.computeIfPresent(tenant, (t, n) -> n.addAndGet(-slots) <= 0 ? null : n);
+        }
+    }
+
+    /** Slots currently held by the tenant. */
+    public int activeFor(String tenant) {
+        AtomicInteger n = tenantActive.get(tenant);
+        return n == null ? 0 : n.get();
+    }
+
     @Override
     public String toString() {
         return "LocalServiceDescriptor{" +
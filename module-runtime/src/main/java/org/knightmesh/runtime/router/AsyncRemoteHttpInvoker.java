@@ -0,0 +1,120 @@
+package org.knightmesh.runtime.router;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import jakarta.annotation.PreDestroy;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Non-blocking counterpart of {@link RemoteHttpInvoker}: posts with the JDK {@link HttpClient}'s async API
+ * and applies the same {@code remoteRouter} retry and circuit breaker programmatically, so no thread waits
+ * on the remote hop; retries are scheduled rather than slept. Used by {@link ServiceRouter#routeAsync}.
+ * Requests and responses go through a reader and writer prepared once, with the {@link Json} modules.
+ */
+@Component
+public class AsyncRemoteHttpInvoker {
+    private static final Logger log = LoggerFactory.getLogger(AsyncRemoteHttpInvoker.class);
+    static final String RESILIENCE_NAME = "remoteRouter";
+
+    private final HttpClient http;
+    private final ObjectWriter requestWriter;
+    private final ObjectReader responseReader;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final Duration timeout;
+    private final ScheduledExecutorService retryScheduler;
+
+    @Autowired
+    public AsyncRemoteHttpInvoker(ObjectMapper objectMapper, CircuitBreakerRegistry circuitBreakers, RetryRegistry retries,
+                                  @Value("${router.async.connect-timeout.ms:2000}") long connectTimeoutMs,
+                                  @Value("${router.async.timeout.ms:10000}") long timeoutMs) {
+        this(HttpClient.newBuilder().connectTimeout(Duration.ofMillis(connectTimeoutMs)).build(), objectMapper,
+                circuitBreakers.circuitBreaker(RESILIENCE_NAME), retries.retry(RESILIENCE_NAME), timeoutMs);
+    }
+
+    AsyncRemoteHttpInvoker(HttpClient http, ObjectMapper objectMapper, CircuitBreaker circuitBreaker, Retry retry, long timeoutMs) {
+        this.http = Objects.requireNonNull(http, "http");
+        ObjectMapper json = Json.derive(Objects.requireNonNull(objectMapper, "objectMapper"));
+        this.requestWriter = json.writerFor(ServiceRequest.class);
+        this.responseReader = json.readerFor(ServiceResponse.class);
+        this.circuitBreaker = Objects.requireNonNull(circuitBreaker, "circuitBreaker");
+        this.retry = Objects.requireNonNull(retry, "retry");
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "router-async-retry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * POST the request to the instance. The future fails like {@link RemoteHttpInvoker#post} throws: with
+     * {@link io.github.resilience4j.circuitbreaker.CallNotPermittedException} while the circuit is open, or
+     * with the last error once retries are exhausted.
+     */
+    public CompletableFuture<ServiceResponse> post(ServiceInstance instance, ServiceRequest request) {
+        return Retry.decorateCompletionStage(retry, retryScheduler,
+                        CircuitBreaker.decorateCompletionStage(circuitBreaker, () -> send(instance, request)))
+                .get()
+                .toCompletableFuture();
+    }
+
+    private CompletionStage<ServiceResponse> send(ServiceInstance instance, ServiceRequest request) {
+        String url = instance.baseUrl() + "/internal/service/" + request.getServiceName();
+        log.debug("Remote async POST {} corrId={}", url, request.getCorrelationId());
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(requestWriter.writeValueAsBytes(request)))
+                    .build();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return http.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).thenApply(resp -> {
+            if (resp.statusCode() / 100 != 2) {
+                throw new IllegalStateException("Remote call to " + url + " failed with HTTP " + resp.statusCode());
+            }
+            if (resp.body() == null || resp.body().length == 0) {
+                throw new IllegalStateException("Remote call returned no body");
+            }
+            try {
+                return responseReader.readValue(resp.body());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+}
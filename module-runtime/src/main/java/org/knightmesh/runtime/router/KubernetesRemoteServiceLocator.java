@@ -1,9 +1,9 @@
 package org.knightmesh.runtime.router;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.knightmesh.core.config.ModuleConfig;
 import org.knightmesh.core.config.ServiceConfig;
+import org.knightmesh.core.json.ConfigJsonCache;
 import org.knightmesh.runtime.config.ConfigRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +26,7 @@ import java.util.stream.Collectors;
  * {
  *   "instances": [ { "host": "127.0.0.1", "port": 8081, "metadata": {"zone":"dev"} } ]
  * }
+ * The instances of each distinct extraJson are parsed once; lookups then only read the module list.
  */
 public class KubernetesRemoteServiceLocator implements RemoteServiceLocator {
     private static final Logger log = LoggerFactory.getLogger(KubernetesRemoteServiceLocator.class);
@@ -33,7 +34,7 @@ public class KubernetesRemoteServiceLocator implements RemoteServiceLocator {
     private final org.springframework.cloud.client.discovery.DiscoveryClient discoveryClient; // optional
     private final ConfigRepository configRepository; // fallback
     private final Environment environment;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConfigJsonCache<List<ServiceInstance>> dbInstances = new ConfigJsonCache<>(64, KubernetesRemoteServiceLocator::parseInstances);
 
     public KubernetesRemoteServiceLocator(org.springframework.cloud.client.discovery.DiscoveryClient discoveryClient,
                                           ConfigRepository configRepository,
@@ -99,32 +100,35 @@ public class KubernetesRemoteServiceLocator implements RemoteServiceLocator {
             String extraJson = mod.getExtraJson();
             if (extraJson == null || extraJson.isBlank()) return List.of();
 
-            JsonNode root = mapper.readTree(extraJson);
-            JsonNode instances = root.get("instances");
-            if (instances == null || !instances.isArray()) return List.of();
-
-            List<ServiceInstance> list = new ArrayList<>();
-            for (JsonNode n : instances) {
-                String host = optText(n, "host");
-                int port = n.has("port") ? n.get("port").asInt() : -1;
-                if (host == null || port <= 0) continue;
-                Map<String, String> md = Collections.emptyMap();
-                JsonNode meta = n.get("metadata");
-                if (meta != null && meta.isObject()) {
-                    java.util.HashMap<String, String> m = new java.util.HashMap<>();
-                    meta.fields().forEachRemaining(e -> m.put(e.getKey(), e.getValue().asText()));
-                    md = m;
-                }
-                list.add(new ServiceInstance(host, port, md));
-            }
-            return list;
+            return dbInstances.get(extraJson);
         } catch (Exception e) {
             log.warn("DB fallback discovery failed for service {}: {}", serviceName, e.getMessage());
             return List.of();
         }
     }
 
-    private String optText(JsonNode n, String field) {
+    private static List<ServiceInstance> parseInstances(JsonNode root) {
+        JsonNode instances = root.get("instances");
+        if (instances == null || !instances.isArray()) return List.of();
+
+        List<ServiceInstance> list = new ArrayList<>();
+        for (JsonNode n : instances) {
+            String host = optText(n, "host");
+            int port = n.has("port") ? n.get("port").asInt() : -1;
+            if (host == null || port <= 0) continue;
+            Map<String, String> md = Collections.emptyMap();
+            JsonNode meta = n.get("metadata");
+            if (meta != null && meta.isObject()) {
+                java.util.HashMap<String, String> m = new java.util.HashMap<>();
+                meta.fields().forEachRemaining(e -> m.put(e.getKey(), e.getValue().asText()));
+                md = m;
+            }
+            list.add(new ServiceInstance(host, port, md));
+        }
+        return List.copyOf(list);
+    }
+
+    private static String optText(JsonNode n, String field) {
         JsonNode v = n.get(field);
         return v == null ? null : v.asText();
     }
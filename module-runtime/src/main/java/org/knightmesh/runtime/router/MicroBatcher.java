@@ -0,0 +1,134 @@
+package org.knightmesh.runtime.router;
+
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Gathers requests of one batch-capable service made concurrently by separate callers into batches.
+ * A caller that can reserve capacity for a batch runs one right away with whatever requests are waiting
+ * (its own included), so a request never waits while capacity is free; requests arriving while every batch
+ * slot is busy wait and go together in the next batch. With a {@code window} the caller running a batch
+ * first waits that long for it to fill up to {@code maxSize}.
+ * <p>
+ * A request waiting while no batch is running (capacity is held elsewhere) is handed back: {@link #submit}
+ * returns null and the caller routes it on its own.
+ */
+final class MicroBatcher {
+    // waiters recheck at least this often, in case a wakeup raced with their park
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int maxSize;
+    private final long windowNanos;
+    private final BooleanSupplier reserve;
+    private final Runnable release;
+    private final Function<List<ServiceRequest>, List<ServiceResponse>> execute;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile Thread filling; // a caller waiting out the window
+
+    /**
+     * @param reserve reserves capacity for one batch; false if there is none
+     * @param release releases what {@code reserve} reserved
+     * @param execute runs a batch, answering each request in order
+     */
+    MicroBatcher(int maxSize, long windowNanos, BooleanSupplier reserve, Runnable release,
+                 Function<List<ServiceRequest>, List<ServiceResponse>> execute) {
+        this.maxSize = Math.max(1, maxSize);
+        this.windowNanos = Math.max(0, windowNanos);
+        this.reserve = reserve;
+        this.release = release;
+        this.execute = execute;
+    }
+
+    /** The response to {@code request}, run as part of a batch; null if the caller should route it itself. */
+    ServiceResponse submit(ServiceRequest request) {
+        Pending p = new Pending(request, Thread.currentThread());
+        pending.add(p);
+        queued.incrementAndGet();
+        Thread f = filling;
+        if (f != null) LockSupport.unpark(f);
+        while (!p.done) {
+            if (reserve.getAsBoolean()) {
+                running.incrementAndGet();
+                List<Pending> batch;
+                try {
+                    batch = fill();
+                    if (!batch.isEmpty()) run(batch);
+                } finally {
+                    release.run();
+                    running.decrementAndGet();
+                    // let the next waiter take the capacity
+                    Pending next = pending.peek();
+                    if (next != null) LockSupport.unpark(next.caller);
+                }
+                if (!batch.isEmpty()) continue;
+            } else if (running.get() == 0 && pending.remove(p)) {
+                queued.decrementAndGet();
+                return null;
+            }
+            if (!p.done) LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        return p.response;
+    }
+
+    private List<Pending> fill() {
+        List<Pending> batch = new ArrayList<>(Math.min(maxSize, Math.max(1, queued.get())));
+        long deadline = System.nanoTime() + windowNanos;
+        while (true) {
+            Pending next;
+            while (batch.size() < maxSize && (next = pending.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(next);
+            }
+            long left = deadline - System.nanoTime();
+            if (batch.size() >= maxSize || left <= 0) return batch;
+            filling = Thread.currentThread();
+            try {
+                if (queued.get() == 0) LockSupport.parkNanos(this, left);
+            } finally {
+                filling = null;
+            }
+        }
+    }
+
+    private void run(List<Pending> batch) {
+        List<ServiceRequest> requests = new ArrayList<>(batch.size());
+        for (Pending p : batch) requests.add(p.request);
+        List<ServiceResponse> responses;
+        try {
+            responses = execute.apply(requests);
+        } catch (RuntimeException ex) {
+            responses = Collections.nCopies(batch.size(), ServiceResponse.failure("EXCEPTION", ex.getMessage(), null));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            p.response = responses.get(i);
+            p.done = true;
+            LockSupport.unpark(p.caller);
+        }
+    }
+
+    private static final class Pending {
+        final ServiceRequest request;
+        final Thread caller;
+        ServiceResponse response; // published by done
+        volatile boolean done;
+
+        Pending(ServiceRequest request, Thread caller) {
+            this.request = request;
+            this.caller = caller;
+        }
+    }
+}
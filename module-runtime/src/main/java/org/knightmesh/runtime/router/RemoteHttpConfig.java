@@ -1,16 +1,25 @@
 package org.knightmesh.runtime.router;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.knightmesh.core.json.Json;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RemoteHttpConfig {
 
+    /** Converts JSON with the application's mapper rather than a default one built per converter. */
     @Bean
     @LoadBalanced
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(ObjectProvider<ObjectMapper> objectMapper) {
+        ObjectMapper mapper = objectMapper.getIfUnique(Json::mapper);
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getMessageConverters().replaceAll(c -> c instanceof MappingJackson2HttpMessageConverter
+                ? new MappingJackson2HttpMessageConverter(mapper) : c);
+        return restTemplate;
     }
 }
@@ -2,19 +2,38 @@ package org.knightmesh.runtime.router;
 
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.knightmesh.core.model.ServiceRequest;
 import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.runtime.registry.KnownServices;
 import org.knightmesh.runtime.registry.LocalServiceDescriptor;
 import org.knightmesh.runtime.registry.LocalServiceRegistry;
+import org.knightmesh.runtime.registry.ServiceStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -22,9 +41,35 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Routes service requests either to a local instance (if available and has capacity)
  * or delegates to a remote instance discovered by {@link RemoteServiceLocator}. If no
  * remote locator is provided, falls back to the {@link KubernetesServiceLocator} stub.
+ * While a local service is contended, each tenant ({@link ServiceRequest#getTenant()}) may hold at most
+ * {@code router.tenant.max-share} of its slots; requests over the share take the remote path.
+ * With {@link KnownServices} present, a name that is neither registered here nor configured fails with
+ * {@code UNKNOWN_SERVICE} before any discovery.
+ * Local services taking batches ({@link CKService#maxBatchSize()} above 1) get concurrent {@link #route}
+ * calls gathered by a {@link MicroBatcher}, and consecutive requests of {@link #routeBatch} as one batch.
+ * A batch only holds requests of one tenant and takes {@code router.batch.slots} slots on that tenant's
+ * behalf, so the tenant share applies to it as well; a batch refused for the share falls back to routing
+ * its requests one by one. {@link #routeAsync} routes one request at a time.
+ * A remote call that fails before the request left this process (no connection, circuit open, discovery
+ * failed) answers {@value #NOT_SENT}; one that fails after it was sent (read timeout, error status, broken
+ * connection) answers {@value #OUTCOME_UNKNOWN}, since the remote may have run it. Only the former is safe
+ * to send again elsewhere.
+ * Failures that repeat verbatim are answered with shared responses, and meters are looked up once per
+ * service, so routing a request allocates little besides the call itself.
  */
 @Component
 public class ServiceRouter {
+    /** Remote call failed before the request was sent; it did not run. */
+    public static final String NOT_SENT = "SERVICE_UNAVAILABLE";
+    /** Remote call failed after the request was sent; it may have run. */
+    public static final String OUTCOME_UNKNOWN = "REMOTE_OUTCOME_UNKNOWN";
+
+    private static final ServiceResponse INVALID_REQUEST = ServiceResponse.failure("INVALID_REQUEST", "Invalid request or service name", null);
+    private static final ServiceResponse EMPTY_RESPONSE = ServiceResponse.failure("EMPTY_RESPONSE", "Remote call returned no body", null);
+    private static final ServiceResponse NO_REMOTE_PATH = ServiceResponse.failure("NO_REMOTE_PATH", "No remote locator or kube locator configured", null);
+    private static final ServiceResponse SHUTTING_DOWN = ServiceResponse.failure("SERVICE_UNAVAILABLE", "Router is shutting down", null);
+    // bounds perService: with KnownServices off or failing open, names come from clients
+    static final int MAX_SERVICES = 1024;
 
     private final LocalServiceRegistry registry;
     private final KubernetesServiceLocator kubeLocator; // optional fallback
@@ -33,6 +78,17 @@ public class ServiceRouter {
     private final RemoteHttpInvoker remoteHttpInvoker;  // preferred invoker with resilience
     private final AtomicInteger rr = new AtomicInteger(0);
     private final ThreadPoolHelper tpHelper = new ThreadPoolHelper();
+    private AsyncRemoteHttpInvoker asyncRemoteInvoker;  // optional non-blocking remote path for routeAsync
+    private KnownServices knownServices;                // optional index rejecting unknown names
+    // blocking work of routeAsync (local executions, discovery, the legacy remote path); slots bound its concurrency
+    private final ExecutorService blockingExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("router-async-", 0).factory());
+    private double tenantMaxShare = 0.5;
+    private long tenantContentionWindowNanos = TimeUnit.SECONDS.toNanos(1);
+    private final Map<String, PerService> perService = new ConcurrentHashMap<>();
+    private int batchMaxSize = 64;
+    private long batchWindowNanos;
+    private int batchSlots = 1;
+    private final Map<BatchKey, Batching> batchers = new ConcurrentHashMap<>(); // batch-capable local services, by tenant
 
     @Nullable
     private final MeterRegistry meterRegistry;
@@ -78,16 +134,64 @@ public class ServiceRouter {
         this.meterRegistry = meterRegistry;
     }
 
+    /**
+     * @param maxShare fraction of a service's slots one tenant may hold while it is contended (1.0 = no cap)
+     * @param contentionWindowMs how long a service counts as contended after a request found it full
+     */
+    @Autowired
+    public void setTenantShare(@Value("${router.tenant.max-share:0.5}") double maxShare,
+                               @Value("${router.tenant.contention-window.ms:1000}") long contentionWindowMs) {
+        this.tenantMaxShare = maxShare;
+        this.tenantContentionWindowNanos = TimeUnit.MILLISECONDS.toNanos(contentionWindowMs);
+    }
+
+    /**
+     * @param maxSize most requests in one batch, below the service's own {@link CKService#maxBatchSize()}
+     * @param windowMs how long a batch waits to fill up before it runs (0 = takes what is waiting and runs)
+     * @param slots capacity slots one batch holds while it runs
+     */
+    @Autowired
+    public void setBatching(@Value("${router.batch.max-size:64}") int maxSize,
+                            @Value("${router.batch.window.ms:0}") long windowMs,
+                            @Value("${router.batch.slots:1}") int slots) {
+        this.batchMaxSize = Math.max(1, maxSize);
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMs));
+        this.batchSlots = Math.max(1, slots);
+        batchers.clear();
+    }
+
+    @Autowired(required = false)
+    public void setAsyncRemoteInvoker(AsyncRemoteHttpInvoker asyncRemoteInvoker) {
+        this.asyncRemoteInvoker = asyncRemoteInvoker;
+    }
+
+    @Autowired(required = false)
+    public void setKnownServices(KnownServices knownServices) {
+        this.knownServices = knownServices;
+    }
+
+    /** Interrupts blocking routeAsync work still running; routeAsync answers SERVICE_UNAVAILABLE afterwards. */
+    @PreDestroy
+    public void close() {
+        blockingExecutor.shutdownNow();
+    }
+
     public ServiceResponse route(ServiceRequest request) {
         if (request == null || request.getServiceName() == null) {
-            return ServiceResponse.failure("INVALID_REQUEST", "Invalid request or service name", null);
+            return INVALID_REQUEST;
         }
         String name = request.getServiceName();
         LocalServiceDescriptor d = registry.get(name);
-        if (d != null && d.hasCapacity()) {
+        if (d != null && d.getStatus() == ServiceStatus.UP) {
+            if (batchSize(d) > 1) {
+                ServiceResponse batched = batcher(d, request.getTenant()).submit(request);
+                if (batched != null) return batched;
+            }
             long start = System.nanoTime();
-            if (!tpHelper.reserveIfAvailable(d)) {
-                // Race: capacity was consumed; delegate to remote
+            String tenant = request.getTenant();
+            if (!tpHelper.reserveIfAvailable(d, tenant, tenantCap(d), tenantContentionWindowNanos)) {
+                // full, or this tenant already holds its share of a contended service: delegate to remote
+                recordThrottled(name, d, tenant);
                 return routeRemote(request);
             }
             try {
@@ -98,15 +202,139 @@ public class ServiceRouter {
                 recordFailure(name, "local");
                 return ServiceResponse.failure("EXCEPTION", ex.getMessage(), null);
             } finally {
-                tpHelper.release(d, start);
+                tpHelper.release(d, tenant, start);
             }
         }
+        if (d == null && knownServices != null && !knownServices.isKnown(name)) {
+            return unknown(name);
+        }
         // local unavailable or full: remote path
         ServiceResponse resp = routeRemote(request);
         // routeRemote will record failure/success inside; if not, record generically
         return resp;
     }
 
+    /**
+     * Route several requests, e.g. messages dequeued together, answering each in order. Consecutive requests
+     * of one tenant to a local batch-capable service run as one {@link CKService#executeBatch} call (up to
+     * {@code router.batch.max-size}) holding {@code router.batch.slots} slots for that tenant; other requests,
+     * and batches finding no free slots or a tenant over its share, are routed one by one with {@link #route}.
+     */
+    public List<ServiceResponse> routeBatch(List<ServiceRequest> requests) {
+        List<ServiceResponse> responses = new ArrayList<>(requests.size());
+        int i = 0;
+        while (i < requests.size()) {
+            ServiceRequest first = requests.get(i);
+            LocalServiceDescriptor d = first == null ? null : registry.get(first.getServiceName());
+            int end = i + 1;
+            String tenant = first == null ? null : first.getTenant();
+            if (d != null && d.getStatus() == ServiceStatus.UP) {
+                int limit = Math.min(requests.size(), i + batchSize(d));
+                while (end < limit && requests.get(end) != null
+                        && first.getServiceName().equals(requests.get(end).getServiceName())
+                        && Objects.equals(tenant, requests.get(end).getTenant())) {
+                    end++;
+                }
+            }
+            List<ServiceRequest> run = requests.subList(i, end);
+            int slots = run.size() > 1 ? batchSlots(d) : 0;
+            if (slots > 0 && tpHelper.reserveSlots(d, tenant, slots, tenantCap(d), tenantContentionWindowNanos)) {
+                try {
+                    responses.addAll(executeBatch(d, run));
+                } finally {
+                    tpHelper.releaseSlots(d, tenant, slots);
+                }
+            } else {
+                for (ServiceRequest r : run) responses.add(route(r));
+            }
+            i = end;
+        }
+        return responses;
+    }
+
+    /** Whether requests of the service are run in batches here, see {@link #routeBatch}. */
+    public boolean isBatchable(String serviceName) {
+        LocalServiceDescriptor d = serviceName == null ? null : registry.get(serviceName);
+        return d != null && d.getStatus() == ServiceStatus.UP && batchSize(d) > 1;
+    }
+
+    /**
+     * Non-blocking variant of {@link #route} with the same local-first decision, metrics and failure codes. The
+     * calling thread (e.g. an event loop) only reserves a local slot: local services, which block by contract,
+     * run on a virtual thread, and remote calls go through {@link AsyncRemoteHttpInvoker} after discovery on a
+     * virtual thread. Without the async invoker the blocking remote path runs on a virtual thread instead.
+     */
+    public CompletableFuture<ServiceResponse> routeAsync(ServiceRequest request) {
+        if (request == null || request.getServiceName() == null) {
+            return CompletableFuture.completedFuture(INVALID_REQUEST);
+        }
+        if (blockingExecutor.isShutdown()) {
+            return CompletableFuture.completedFuture(SHUTTING_DOWN);
+        }
+        String name = request.getServiceName();
+        LocalServiceDescriptor d = registry.get(name);
+        if (d != null && d.getStatus() == ServiceStatus.UP) {
+            long start = System.nanoTime();
+            String tenant = request.getTenant();
+            if (!tpHelper.reserveIfAvailable(d, tenant, tenantCap(d), tenantContentionWindowNanos)) {
+                recordThrottled(name, d, tenant);
+                return routeRemoteAsync(request);
+            }
+            try {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        ServiceResponse resp = d.getInstance().execute(request);
+                        recordMetrics(name, "local", System.nanoTime() - start, resp);
+                        return resp;
+                    } catch (RuntimeException ex) {
+                        recordFailure(name, "local");
+                        return ServiceResponse.failure("EXCEPTION", ex.getMessage(), null);
+                    } finally {
+                        tpHelper.release(d, tenant, start);
+                    }
+                }, blockingExecutor);
+            } catch (RejectedExecutionException closed) {
+                tpHelper.release(d, tenant, start);
+                return CompletableFuture.completedFuture(SHUTTING_DOWN);
+            }
+        }
+        if (d == null && knownServices != null && !knownServices.isKnown(name)) {
+            return CompletableFuture.completedFuture(unknown(name));
+        }
+        return routeRemoteAsync(request);
+    }
+
+    private CompletableFuture<ServiceResponse> routeRemoteAsync(ServiceRequest request) {
+        if (asyncRemoteInvoker == null || remoteLocator == null) {
+            return CompletableFuture.supplyAsync(() -> routeRemote(request), blockingExecutor);
+        }
+        String svc = request.getServiceName();
+        long start = System.nanoTime();
+        // discovery may call out to the cluster API
+        return CompletableFuture.supplyAsync(() -> remoteLocator.findInstances(svc), blockingExecutor)
+                .thenCompose(list -> {
+                    if (list == null || list.isEmpty()) {
+                        recordFailure(svc, "remote");
+                        return CompletableFuture.completedFuture(perService(svc).noInstances);
+                    }
+                    int idx = Math.abs(rr.getAndIncrement());
+                    ServiceInstance chosen = list.get(idx % list.size());
+                    return asyncRemoteInvoker.post(chosen, request).handle((resp, ex) -> {
+                        if (ex != null) {
+                            recordFailure(svc, "remote");
+                            return remoteFailure(svc, ex);
+                        }
+                        recordMetrics(svc, "remote", System.nanoTime() - start, resp);
+                        return resp;
+                    });
+                })
+                .exceptionally(ex -> {
+                    // discovery failed, or post threw before returning a future
+                    recordFailure(svc, "remote");
+                    return remoteFailure(svc, ex);
+                });
+    }
+
     private ServiceResponse routeRemote(ServiceRequest request) {
         String svc = request.getServiceName();
         long start = System.nanoTime();
@@ -116,7 +344,7 @@ public class ServiceRouter {
                 List<ServiceInstance> list = remoteLocator.findInstances(svc);
                 if (list == null || list.isEmpty()) {
                     recordFailure(svc, "remote");
-                    return ServiceResponse.failure("NO_INSTANCES", "No remote instances for service: " + svc, null);
+                    return perService(svc).noInstances;
                 }
                 int idx = Math.abs(rr.getAndIncrement());
                 ServiceInstance chosen = list.get(idx % list.size());
@@ -125,12 +353,9 @@ public class ServiceRouter {
                         ServiceResponse resp = remoteHttpInvoker.post(chosen, request);
                         recordMetrics(svc, "remote", System.nanoTime() - start, resp);
                         return resp;
-                    } catch (CallNotPermittedException cbOpen) {
-                        recordFailure(svc, "remote");
-                        return ServiceResponse.failure("SERVICE_UNAVAILABLE", "Circuit open for remote service: " + svc, null);
                     } catch (Exception ex) {
                         recordFailure(svc, "remote");
-                        return ServiceResponse.failure("SERVICE_UNAVAILABLE", summarize(ex), null);
+                        return remoteFailure(svc, ex);
                     }
                 } else if (http != null) {
                     String url = chosen.baseUrl() + "/internal/service/" + svc;
@@ -138,18 +363,19 @@ public class ServiceRouter {
                         ServiceResponse resp = http.postForObject(url, request, ServiceResponse.class);
                         if (resp == null) {
                             recordFailure(svc, "remote");
-                            return ServiceResponse.failure("EMPTY_RESPONSE", "Remote call returned no body", null);
+                            return EMPTY_RESPONSE;
                         }
                         recordMetrics(svc, "remote", System.nanoTime() - start, resp);
                         return resp;
                     } catch (Exception ex) {
                         recordFailure(svc, "remote");
-                        return ServiceResponse.failure("SERVICE_UNAVAILABLE", summarize(ex), null);
+                        return remoteFailure(svc, ex);
                     }
                 }
             } catch (Exception ex) {
+                // discovery failed: nothing was sent
                 recordFailure(svc, "remote");
-                return ServiceResponse.failure("SERVICE_UNAVAILABLE", summarize(ex), null);
+                return ServiceResponse.failure(NOT_SENT, summarize(ex), null);
             }
         }
         // Fallback: KubernetesServiceLocator stub if present
@@ -159,49 +385,215 @@ public class ServiceRouter {
             return resp;
         }
         recordFailure(svc, "remote");
-        return ServiceResponse.failure("NO_REMOTE_PATH", "No remote locator or kube locator configured", null);
+        return NO_REMOTE_PATH;
+    }
+
+    /** Failure of a remote call: {@value #NOT_SENT} if the request never left, else {@value #OUTCOME_UNKNOWN}. */
+    private ServiceResponse remoteFailure(String svc, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof CallNotPermittedException) {
+            return perService(svc).circuitOpen;
+        }
+        return ServiceResponse.failure(neverSent(cause) ? NOT_SENT : OUTCOME_UNKNOWN, summarize(cause), null);
+    }
+
+    /** True if the failure happened while connecting, before any of the request was written. */
+    static boolean neverSent(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof CallNotPermittedException
+                    || t instanceof ConnectException
+                    || t instanceof UnknownHostException
+                    || t instanceof NoRouteToHostException
+                    || t instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ServiceResponse unknown(String serviceName) {
+        return ServiceResponse.failure("UNKNOWN_SERVICE", "Unknown service: " + serviceName, null);
     }
 
     private void recordMetrics(String serviceName, String route, long nanos, ServiceResponse resp) {
         if (meterRegistry == null) return;
-        String outcome = resp != null && resp.getStatus() == ServiceResponse.Status.SUCCESS ? "success" : "failure";
-        Counter c = Counter.builder("router_requests_total")
-                .tag("service_name", serviceName)
-                .tag("route", route)
-                .tag("outcome", outcome)
-                .register(meterRegistry);
-        c.increment();
-        Timer t = Timer.builder("router_latency")
-                .tag("service_name", serviceName)
-                .tag("route", route)
-                .tag("outcome", outcome)
-                .register(meterRegistry);
-        t.record(nanos, TimeUnit.NANOSECONDS);
+        boolean success = resp != null && resp.getStatus() == ServiceResponse.Status.SUCCESS;
+        PerService p = perService(serviceName);
+        p.requests(route, success).increment();
+        p.latency(route, success).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Requests of one batch of the service; 1 if it does not take batches. */
+    private int batchSize(LocalServiceDescriptor d) {
+        return Math.min(batchMaxSize, Math.max(1, d.getInstance().maxBatchSize()));
+    }
+
+    private int batchSlots(LocalServiceDescriptor d) {
+        return Math.max(1, Math.min(batchSlots, d.getMaxThreads()));
+    }
+
+    /** The batcher gathering one tenant's calls to the service; its batches count against the tenant's share. */
+    private MicroBatcher batcher(LocalServiceDescriptor d, String tenant) {
+        BatchKey key = new BatchKey(d.getName(), tenant);
+        Batching b = batchers.get(key);
+        if (b == null || b.descriptor() != d) {
+            // first use, or the service was registered again
+            int slots = batchSlots(d);
+            b = new Batching(d, new MicroBatcher(batchSize(d), batchWindowNanos,
+                    () -> tpHelper.reserveSlots(d, tenant, slots, tenantCap(d), tenantContentionWindowNanos),
+                    () -> tpHelper.releaseSlots(d, tenant, slots), requests -> executeBatch(d, requests)));
+            // a waiting caller drives its own batcher, so dropping idle ones loses nothing
+            if (batchers.size() >= MAX_SERVICES) batchers.clear();
+            batchers.put(key, b);
+        }
+        return b.batcher();
+    }
+
+    /** Run a batch with its slots reserved; a failure of the call fails every request. */
+    private List<ServiceResponse> executeBatch(LocalServiceDescriptor d, List<ServiceRequest> requests) {
+        String name = d.getName();
+        long start = System.nanoTime();
+        try {
+            List<ServiceResponse> responses = d.getInstance().executeBatch(requests);
+            if (responses == null || responses.size() != requests.size()) {
+                throw new IllegalStateException("executeBatch of " + name + " answered "
+                        + (responses == null ? "null" : responses.size() + " responses") + " to " + requests.size() + " requests");
+            }
+            long nanos = System.nanoTime() - start;
+            for (ServiceResponse resp : responses) {
+                recordMetrics(name, "local", nanos, resp);
+            }
+            if (meterRegistry != null) perService(name).batchSize().record(requests.size());
+            return responses;
+        } catch (RuntimeException ex) {
+            for (int i = 0; i < requests.size(); i++) {
+                recordFailure(name, "local");
+            }
+            return Collections.nCopies(requests.size(), ServiceResponse.failure("EXCEPTION", ex.getMessage(), null));
+        }
+    }
+
+    private record Batching(LocalServiceDescriptor descriptor, MicroBatcher batcher) {}
+
+    private record BatchKey(String serviceName, String tenant) {}
+
+    private int tenantCap(LocalServiceDescriptor d) {
+        if (tenantMaxShare >= 1.0) return Integer.MAX_VALUE;
+        return Math.max(1, (int) (d.getMaxThreads() * tenantMaxShare));
+    }
+
+    private void recordThrottled(String serviceName, LocalServiceDescriptor d, String tenant) {
+        if (meterRegistry == null || tenant == null || d.getActiveThreads().get() >= d.getMaxThreads()) return;
+        perService(serviceName).throttled().increment();
     }
 
     private void recordFailure(String serviceName, String route) {
         if (meterRegistry == null) return;
-        Counter c = Counter.builder("router_requests_total")
-                .tag("service_name", serviceName)
-                .tag("route", route)
-                .tag("outcome", "failure")
-                .register(meterRegistry);
-        c.increment();
+        perService(serviceName).requests(route, false).increment();
+    }
+
+    private PerService perService(String serviceName) {
+        PerService p = perService.get(serviceName);
+        if (p != null) return p;
+        if (perService.size() >= MAX_SERVICES) perService.clear();
+        return perService.computeIfAbsent(serviceName, PerService::new);
+    }
+
+    /** Answers and meters of one service, created on first use; meters of a route and outcome likewise. */
+    private final class PerService {
+        final String name;
+        final ServiceResponse noInstances;
+        final ServiceResponse circuitOpen;
+        // by slot(route, outcome); registering again returns the same meter, so racing creators agree
+        private final Counter[] requests = new Counter[4];
+        private final Timer[] latency = new Timer[4];
+        private DistributionSummary batchSize;
+        private Counter throttled;
+
+        PerService(String name) {
+            this.name = name;
+            this.noInstances = ServiceResponse.failure("NO_INSTANCES", "No remote instances for service: " + name, null);
+            this.circuitOpen = ServiceResponse.failure(NOT_SENT, "Circuit open for remote service: " + name, null);
+        }
+
+        Counter requests(String route, boolean success) {
+            int slot = slot(route, success);
+            Counter c = requests[slot];
+            if (c == null) {
+                c = Counter.builder("router_requests_total")
+                        .tag("service_name", name)
+                        .tag("route", route)
+                        .tag("outcome", success ? "success" : "failure")
+                        .register(meterRegistry);
+                requests[slot] = c;
+            }
+            return c;
+        }
+
+        Timer latency(String route, boolean success) {
+            int slot = slot(route, success);
+            Timer t = latency[slot];
+            if (t == null) {
+                t = Timer.builder("router_latency")
+                        .tag("service_name", name)
+                        .tag("route", route)
+                        .tag("outcome", success ? "success" : "failure")
+                        .register(meterRegistry);
+                latency[slot] = t;
+            }
+            return t;
+        }
+
+        DistributionSummary batchSize() {
+            DistributionSummary s = batchSize;
+            if (s == null) {
+                s = DistributionSummary.builder("router_batch_size")
+                        .tag("service_name", name)
+                        .description("Requests per executeBatch call of a local service")
+                        .register(meterRegistry);
+                batchSize = s;
+            }
+            return s;
+        }
+
+        Counter throttled() {
+            Counter c = throttled;
+            if (c == null) {
+                c = Counter.builder("router_tenant_throttled_total")
+                        .tag("service_name", name)
+                        .description("Local calls diverted because the tenant held its share of a contended service")
+                        .register(meterRegistry);
+                throttled = c;
+            }
+            return c;
+        }
+
+        private int slot(String route, boolean success) {
+            return ("local".equals(route) ? 0 : 2) + (success ? 0 : 1);
+        }
     }
 
     /** Lightweight helper that wraps descriptor counters. */
     static class ThreadPoolHelper {
-        boolean reserveIfAvailable(LocalServiceDescriptor d) {
-            return d != null && d.incrementActive();
+        boolean reserveIfAvailable(LocalServiceDescriptor d, String tenant, int tenantCap, long contentionWindowNanos) {
+            return d != null && d.incrementActive(tenant, tenantCap, contentionWindowNanos);
+        }
+        void release(LocalServiceDescriptor d, String tenant, long startNanos) {
+            if (d != null) {
+                d.decrementActive(tenant);
+            }
+        }
+        boolean reserveSlots(LocalServiceDescriptor d, String tenant, int slots, int tenantCap, long contentionWindowNanos) {
+            return d != null && d.incrementActive(tenant, slots, tenantCap, contentionWindowNanos);
         }
-        void release(LocalServiceDescriptor d, long startNanos) {
+        void releaseSlots(LocalServiceDescriptor d, String tenant, int slots) {
             if (d != null) {
-                d.decrementActive();
+                d.decrementActive(tenant, slots);
             }
         }
     }
 
-    private String summarize(Exception ex) {
+    private String summarize(Throwable ex) {
         String msg = ex.getMessage();
         if (msg == null || msg.isBlank()) {
             msg = ex.getClass().getSimpleName();
@@ -0,0 +1,11 @@
+-- Flyway V10: IRP Idempotency-Key claims and answers shared by all replicas (irp.idempotency.store=jdbc)
+CREATE TABLE IF NOT EXISTS irp_idempotency (
+    idempotency_key VARCHAR(512) PRIMARY KEY,
+    fingerprint VARCHAR(128),
+    status VARCHAR(16) NOT NULL,
+    http_status INTEGER,
+    body TEXT,
+    created_at TIMESTAMPTZ NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_irp_idempotency_expires_at ON irp_idempotency(expires_at);
@@ -0,0 +1,2 @@
+-- Flyway V11: tenant of the request each queued result answers, so IRP serves it to that tenant only
+ALTER TABLE queue_result ADD COLUMN IF NOT EXISTS tenant VARCHAR(64);
@@ -0,0 +1,9 @@
+-- Flyway V4: partition ownership leases for QPM consumers of partitioned queues
+CREATE TABLE IF NOT EXISTS queue_partition_lease (
+    id VARCHAR(260) PRIMARY KEY,
+    queue_name VARCHAR(200) NOT NULL,
+    partition_no INT NOT NULL,
+    owner VARCHAR(200),
+    lease_until TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_queue_partition_lease_queue ON queue_partition_lease(queue_name);
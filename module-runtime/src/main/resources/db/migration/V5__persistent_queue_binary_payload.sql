@@ -0,0 +1,19 @@
+-- Flyway V5: persistent queue table with compact binary payloads.
+-- The table had no migration so far (Hibernate created it), so create it if missing first.
+CREATE TABLE IF NOT EXISTS persistent_queue_message (
+    id UUID PRIMARY KEY,
+    queue_name VARCHAR(200) NOT NULL,
+    payload_json TEXT,
+    status VARCHAR(32) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+-- New rows carry a versioned binary encoding; legacy rows keep payload_json and are still readable
+ALTER TABLE persistent_queue_message ADD COLUMN IF NOT EXISTS payload_bin BYTEA;
+ALTER TABLE persistent_queue_message ALTER COLUMN payload_json DROP NOT NULL;
+
+-- Large payloads are already LZ4-compressed by the application; skip TOAST's pglz pass
+ALTER TABLE persistent_queue_message ALTER COLUMN payload_bin SET STORAGE EXTERNAL;
+
+CREATE INDEX IF NOT EXISTS idx_persistent_queue_message_poll ON persistent_queue_message(queue_name, status, created_at);
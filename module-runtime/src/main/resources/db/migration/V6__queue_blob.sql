@@ -0,0 +1,7 @@
+-- Flyway V6: claim-check blob store for large queue payloads (claimcheck.store=jdbc)
+CREATE TABLE IF NOT EXISTS queue_blob (
+    id VARCHAR(64) PRIMARY KEY,
+    data BYTEA NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_queue_blob_created_at ON queue_blob(created_at);
@@ -0,0 +1,35 @@
+-- Flyway V7: time-partitioned queue storage for PersistentQueuePlugin (queue.persistent.storage=PARTITIONED).
+-- Rows are marked DONE instead of deleted; retention drops whole daily partitions, so there are no
+-- per-row deletes, no dead-tuple churn and consumed messages stay available for replay until dropped.
+CREATE TABLE IF NOT EXISTS persistent_queue_log (
+    id UUID NOT NULL,
+    queue_name VARCHAR(200) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    payload_bin BYTEA,
+    payload_json TEXT,
+    created_at TIMESTAMPTZ NOT NULL,
+    done_at TIMESTAMPTZ,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Head-of-queue lookups only ever touch pending rows; DONE rows drop out of this index
+CREATE INDEX IF NOT EXISTS idx_persistent_queue_log_pending
+    ON persistent_queue_log (queue_name, created_at) WHERE status = 'PENDING';
+
+-- Safety net for rows outside any daily partition (e.g. maintenance not running)
+CREATE TABLE IF NOT EXISTS persistent_queue_log_default PARTITION OF persistent_queue_log DEFAULT;
+
+-- Create the UTC day partition persistent_queue_log_pYYYYMMDD if missing; returns its name
+CREATE OR REPLACE FUNCTION knightmesh_queue_log_partition(day DATE) RETURNS TEXT AS $$
+DECLARE
+    part TEXT := 'persistent_queue_log_p' || to_char(day, 'YYYYMMDD');
+BEGIN
+    IF to_regclass(part) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF persistent_queue_log FOR VALUES FROM (%L) TO (%L)',
+                       part, day::timestamp AT TIME ZONE 'UTC', (day + 1)::timestamp AT TIME ZONE 'UTC');
+    END IF;
+    RETURN part;
+END
+$$ LANGUAGE plpgsql;
+
+SELECT knightmesh_queue_log_partition((now() AT TIME ZONE 'UTC')::date + i) FROM generate_series(0, 2) AS i;
@@ -0,0 +1,17 @@
+-- Flyway V8: delayed delivery for PersistentQueuePlugin. A message becomes visible to consumers at
+-- deliver_at; immediate messages use their creation time, so existing rows stay in FIFO order.
+ALTER TABLE persistent_queue_message ADD COLUMN IF NOT EXISTS deliver_at TIMESTAMPTZ;
+UPDATE persistent_queue_message SET deliver_at = created_at WHERE deliver_at IS NULL;
+ALTER TABLE persistent_queue_message ALTER COLUMN deliver_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_persistent_queue_message_due ON persistent_queue_message(queue_name, status, deliver_at);
+DROP INDEX IF EXISTS idx_persistent_queue_message_poll;
+
+ALTER TABLE persistent_queue_log ADD COLUMN IF NOT EXISTS deliver_at TIMESTAMPTZ;
+UPDATE persistent_queue_log SET deliver_at = created_at WHERE deliver_at IS NULL;
+ALTER TABLE persistent_queue_log ALTER COLUMN deliver_at SET NOT NULL;
+
+-- Consumers look for pending rows that are due; replaces the created_at index from V7
+CREATE INDEX IF NOT EXISTS idx_persistent_queue_log_due
+    ON persistent_queue_log (queue_name, deliver_at) WHERE status = 'PENDING';
+DROP INDEX IF EXISTS idx_persistent_queue_log_pending;
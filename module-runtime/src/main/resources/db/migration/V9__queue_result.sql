@@ -0,0 +1,8 @@
+-- Flyway V9: responses of QUEUE-mode requests for IRP long-poll/SSE delivery (queue.results.store=jdbc)
+CREATE TABLE IF NOT EXISTS queue_result (
+    correlation_id VARCHAR(128) PRIMARY KEY,
+    response TEXT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_queue_result_expires_at ON queue_result(expires_at);
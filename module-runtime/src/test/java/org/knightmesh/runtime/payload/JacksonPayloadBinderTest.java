@@ -0,0 +1,102 @@
+package org.knightmesh.runtime.payload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceMetrics;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.PayloadBinders;
+import org.knightmesh.core.service.TypedCKService;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacksonPayloadBinderTest {
+
+    record Order(@NotBlank(message = "sku is required") String sku, @Min(value = 1, message = "quantity must be at least 1") int quantity) {}
+
+    static class OrderService implements TypedCKService<Order> {
+        final AtomicInteger calls = new AtomicInteger();
+        @Override public String getServiceName() { return "PLACE_ORDER"; }
+        @Override public Class<Order> payloadType() { return Order.class; }
+        @Override public ServiceResponse execute(ServiceRequest request, Order order) {
+            calls.incrementAndGet();
+            return ServiceResponse.success(Map.of("sku", order.sku(), "quantity", order.quantity()));
+        }
+        @Override public ServiceMetrics getMetrics() { return new ServiceMetrics(4, 1.0, 0, 0); }
+    }
+
+    private final ValidatorFactory validation = Validation.buildDefaultValidatorFactory();
+    private final LocalServiceRegistry registry = new LocalServiceRegistry();
+    private final JacksonPayloadBinder binder = new JacksonPayloadBinder(new ObjectMapper(), validation.getValidator(), registry);
+
+    @AfterEach
+    void close() {
+        validation.close();
+    }
+
+    private static ServiceRequest request(Map<String, Object> payload) {
+        return new ServiceRequest("PLACE_ORDER", payload, Map.of(), "c1");
+    }
+
+    @Test
+    void payload_is_bound_once_and_handed_to_the_service() {
+        OrderService service = new OrderService();
+        ServiceRequest request = request(Map.of("sku", "A-1", "quantity", 2, "note", "ignored"));
+
+        assertNull(binder.bind(service, request));
+        Order order = request.getTypedPayload(Order.class);
+        assertEquals(new Order("A-1", 2), order);
+
+        ServiceResponse response = service.execute(request);
+        assertEquals(ServiceResponse.Status.SUCCESS, response.getStatus());
+        assertSame(order, request.getTypedPayload(Order.class));
+    }
+
+    @Test
+    void invalid_payloads_are_answered_without_calling_the_service() {
+        OrderService service = new OrderService();
+
+        ServiceResponse invalid = binder.bind(service, request(Map.of("sku", "", "quantity", 0)));
+        assertEquals("VALIDATION_ERROR", invalid.getErrorCode());
+        assertEquals("quantity must be at least 1; sku is required", invalid.getErrorMessage());
+
+        ServiceResponse unreadable = binder.bind(service, request(Map.of("sku", "A-1", "quantity", "many")));
+        assertEquals("INVALID_PAYLOAD", unreadable.getErrorCode());
+        assertEquals(0, service.calls.get());
+    }
+
+    @Test
+    void bind_local_binds_for_typed_services_registered_here_only() {
+        OrderService service = new OrderService();
+        ServiceRequest unregistered = request(Map.of("sku", "A-1", "quantity", 1));
+        assertNull(binder.bindLocal(unregistered));
+        assertNull(unregistered.getTypedPayload(Order.class));
+
+        registry.register("PLACE_ORDER", service, 4);
+        ServiceRequest registered = request(Map.of("sku", "A-1", "quantity", 1));
+        assertNull(binder.bindLocal(registered));
+        assertEquals(new Order("A-1", 1), registered.getTypedPayload(Order.class));
+        assertEquals("VALIDATION_ERROR", binder.bindLocal(request(Map.of("quantity", 1))).getErrorCode());
+    }
+
+    @Test
+    void unbound_requests_are_bound_by_the_installed_binder_on_execution() {
+        PayloadBinders.use(binder);
+        OrderService service = new OrderService();
+
+        ServiceResponse response = service.execute(request(Map.of("sku", "B-2", "quantity", 3)));
+        assertEquals(ServiceResponse.Status.SUCCESS, response.getStatus());
+        assertEquals(3, response.getData().get("quantity"));
+        assertEquals("VALIDATION_ERROR", service.execute(request(Map.of("quantity", 3))).getErrorCode());
+        assertEquals(1, service.calls.get());
+    }
+}
@@ -0,0 +1,82 @@
+package org.knightmesh.runtime.registry;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ServiceConfig;
+import org.knightmesh.core.model.ServiceMetrics;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.runtime.config.ConfigRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class KnownServicesTest {
+
+    static class LocalOnly implements CKService {
+        @Override public String getServiceName() { return "LOCAL_ONLY"; }
+        @Override public ServiceResponse execute(ServiceRequest request) { return ServiceResponse.success(request.getPayload()); }
+        @Override public ServiceMetrics getMetrics() { return new ServiceMetrics(1, 1.0, 0, 0); }
+    }
+
+    private final ConfigRepository config = mock(ConfigRepository.class);
+    private final LocalServiceRegistry registry = new LocalServiceRegistry();
+
+    @Test
+    void configured_and_registered_names_are_known_others_are_not() {
+        when(config.getService(anyString())).thenReturn(Optional.empty());
+        when(config.listServiceNames()).thenReturn(List.of("REGISTER_USER", "USER_AUTH"));
+        registry.register("LOCAL_ONLY", new LocalOnly(), 1);
+        KnownServices known = new KnownServices(config, registry, true, 0);
+        known.refresh();
+
+        assertTrue(known.isKnown("REGISTER_USER"));
+        assertTrue(known.isKnown("LOCAL_ONLY"));
+        assertFalse(known.isKnown("wp-login.php"));
+        assertFalse(known.isKnown(null));
+
+        // already in the config cache, e.g. after a reload, before the next refresh
+        ServiceConfig added = new ServiceConfig();
+        added.setServiceName("NEW_SERVICE");
+        when(config.getService("NEW_SERVICE")).thenReturn(Optional.of(added));
+        assertTrue(known.isKnown("NEW_SERVICE"));
+
+        when(config.listServiceNames()).thenReturn(List.of("REGISTER_USER", "USER_AUTH", "LATER"));
+        assertFalse(known.isKnown("LATER"));
+        known.refresh();
+        assertTrue(known.isKnown("LATER"));
+    }
+
+    @Test
+    void everything_is_let_through_until_services_are_configured() {
+        when(config.getService(anyString())).thenReturn(Optional.empty());
+        when(config.listServiceNames()).thenReturn(List.of());
+        KnownServices known = new KnownServices(config, registry, true, 0);
+        assertTrue(known.isKnown("ANY"));
+        known.refresh();
+        assertTrue(known.isKnown("ANY"));
+
+        when(config.listServiceNames()).thenReturn(List.of("REGISTER_USER"));
+        known.refresh();
+        assertFalse(known.isKnown("ANY"));
+
+        // a failed read keeps the names already known
+        when(config.listServiceNames()).thenThrow(new IllegalStateException("db down"));
+        known.refresh();
+        assertTrue(known.isKnown("REGISTER_USER"));
+        assertFalse(known.isKnown("ANY"));
+    }
+
+    @Test
+    void disabled_index_knows_every_name() {
+        when(config.listServiceNames()).thenReturn(List.of("REGISTER_USER"));
+        KnownServices known = new KnownServices(config, registry, false, 0);
+        known.start();
+        known.refresh();
+        assertTrue(known.isKnown("ANY"));
+    }
+}
@@ -9,6 +9,7 @@ import org.knightmesh.core.service.CKService;
 
 import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,4 +70,31 @@ class LocalServiceRegistryTest {
         registry.deregister("FAKE_SERVICE");
         assertTrue(registry.lookup("FAKE_SERVICE").isEmpty());
     }
+
+    @Test
+    void tenant_share_is_capped_only_while_contended() {
+        LocalServiceDescriptor d = new LocalServiceDescriptor("FAKE_SERVICE", new FakeService(), 4);
+        long window = TimeUnit.SECONDS.toNanos(10);
+
+        // uncontended: one tenant may use every slot
+        for (int i = 0; i < 4; i++) {
+            assertTrue(d.incrementActive("noisy", 2, window));
+        }
+        assertEquals(4, d.activeFor("noisy"));
+
+        // another tenant finds the service full, which marks it contended
+        assertFalse(d.incrementActive("quiet", 2, window));
+        d.decrementActive("noisy");
+        d.decrementActive("noisy");
+
+        // the freed slots are not taken back by the tenant already holding its share
+        assertFalse(d.incrementActive("noisy", 2, window));
+        assertTrue(d.incrementActive("quiet", 2, window));
+        assertTrue(d.incrementActive(null, 2, window));
+        assertEquals(1, d.activeFor("quiet"));
+
+        d.decrementActive("quiet");
+        assertEquals(0, d.activeFor("quiet"));
+        assertEquals(3, d.getActiveThreads().get());
+    }
 }
@@ -0,0 +1,177 @@
+package org.knightmesh.runtime.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceMetrics;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.runtime.registry.LocalServiceDescriptor;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ServiceRouterAsyncTest {
+
+    // configured like the application's mapper, so ServiceResponse binds through its constructor
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private HttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) server.stop(0);
+    }
+
+    static class BlockingService implements CKService {
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile Thread ranOn;
+        @Override public String getServiceName() { return "SLOW"; }
+        @Override public ServiceResponse execute(ServiceRequest request) {
+            ranOn = Thread.currentThread();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ServiceResponse.success(Map.of("ok", true));
+        }
+        @Override public ServiceMetrics getMetrics() { return new ServiceMetrics(1, 1.0, 0, 0); }
+    }
+
+    /** Remote instance answering the first {@code failures} calls with 503, then echoing the payload. */
+    private ServiceInstance remote(int failures, AtomicInteger calls) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/internal/service/", exchange -> {
+            JsonNode req = mapper.readTree(exchange.getRequestBody());
+            byte[] body = calls.incrementAndGet() <= failures
+                    ? "unavailable".getBytes(StandardCharsets.UTF_8)
+                    : mapper.writeValueAsBytes(ServiceResponse.success(Map.of("echo", req.at("/payload/x").asInt())));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(calls.get() <= failures ? 503 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        return new ServiceInstance("127.0.0.1", server.getAddress().getPort(), Map.of("scheme", "http"));
+    }
+
+    private AsyncRemoteHttpInvoker invoker(CircuitBreaker cb, int attempts) {
+        Retry retry = Retry.of("remoteRouter", RetryConfig.custom().maxAttempts(attempts).waitDuration(Duration.ofMillis(10)).build());
+        return new AsyncRemoteHttpInvoker(HttpClient.newHttpClient(), mapper, cb, retry, 5_000);
+    }
+
+    @Test
+    void local_execution_does_not_run_on_the_calling_thread() throws Exception {
+        LocalServiceRegistry registry = new LocalServiceRegistry();
+        BlockingService svc = new BlockingService();
+        LocalServiceDescriptor d = new LocalServiceDescriptor("SLOW", svc, 1);
+        registry.register(d);
+        ServiceRouter router = new ServiceRouter(registry, mock(KubernetesServiceLocator.class));
+
+        CompletableFuture<ServiceResponse> future = router.routeAsync(new ServiceRequest("SLOW", Map.of(), Map.of(), "c1"));
+        assertFalse(future.isDone());
+        assertEquals(1, d.getActiveThreads().get());
+
+        svc.release.countDown();
+        assertEquals(ServiceResponse.Status.SUCCESS, future.get(5, TimeUnit.SECONDS).getStatus());
+        assertNotSame(Thread.currentThread(), svc.ranOn);
+        assertTrue(svc.ranOn.isVirtual());
+        assertEquals(0, d.getActiveThreads().get());
+    }
+
+    @Test
+    void close_interrupts_running_work_and_later_calls_are_refused() throws Exception {
+        LocalServiceRegistry registry = new LocalServiceRegistry();
+        BlockingService svc = new BlockingService();
+        LocalServiceDescriptor d = new LocalServiceDescriptor("SLOW", svc, 2);
+        registry.register(d);
+        ServiceRouter router = new ServiceRouter(registry, mock(KubernetesServiceLocator.class));
+        CompletableFuture<ServiceResponse> running = router.routeAsync(new ServiceRequest("SLOW", Map.of(), Map.of(), "c1"));
+
+        router.close();
+
+        // the interrupted call returns before the 5 s wait runs out
+        assertEquals(ServiceResponse.Status.SUCCESS, running.get(1, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, d.getActiveThreads().get());
+        ServiceResponse refused = router.routeAsync(new ServiceRequest("SLOW", Map.of(), Map.of(), "c2")).get(1, TimeUnit.SECONDS);
+        assertEquals("SERVICE_UNAVAILABLE", refused.getErrorCode());
+        assertEquals(0, d.getActiveThreads().get());
+    }
+
+    @Test
+    void remote_call_is_retried_without_blocking_and_succeeds() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ServiceInstance inst = remote(2, calls);
+        ServiceRouter router = new ServiceRouter(new LocalServiceRegistry(), name -> List.of(inst), (RemoteHttpInvoker) null);
+        router.setAsyncRemoteInvoker(invoker(CircuitBreaker.ofDefaults("remoteRouter"), 3));
+
+        ServiceResponse resp = router.routeAsync(new ServiceRequest("ECHO", Map.of("x", 7), Map.of(), "c2")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ServiceResponse.Status.SUCCESS, resp.getStatus());
+        assertEquals(7, resp.getData().get("echo"));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void exhausted_retries_leave_the_outcome_unknown_and_an_open_circuit_is_not_sent() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ServiceInstance inst = remote(Integer.MAX_VALUE, calls);
+        CircuitBreaker cb = CircuitBreaker.of("remoteRouter", CircuitBreakerConfig.custom()
+                .slidingWindowSize(2).minimumNumberOfCalls(2).failureRateThreshold(100).build());
+        ServiceRouter router = new ServiceRouter(new LocalServiceRegistry(), name -> List.of(inst), (RemoteHttpInvoker) null);
+        router.setAsyncRemoteInvoker(invoker(cb, 2));
+
+        ServiceResponse failed = router.routeAsync(new ServiceRequest("ECHO", Map.of(), Map.of(), "c3")).get(5, TimeUnit.SECONDS);
+        assertEquals(ServiceRouter.OUTCOME_UNKNOWN, failed.getErrorCode());
+        assertEquals(2, calls.get());
+
+        ServiceResponse open = router.routeAsync(new ServiceRequest("ECHO", Map.of(), Map.of(), "c4")).get(5, TimeUnit.SECONDS);
+        assertEquals("SERVICE_UNAVAILABLE", open.getErrorCode());
+        assertTrue(open.getErrorMessage().startsWith("Circuit open"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void refused_connection_is_reported_as_not_sent() throws Exception {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0)) {
+            port = closed.getLocalPort();
+        }
+        ServiceInstance gone = new ServiceInstance("127.0.0.1", port, Map.of("scheme", "http"));
+        ServiceRouter router = new ServiceRouter(new LocalServiceRegistry(), name -> List.of(gone), (RemoteHttpInvoker) null);
+        router.setAsyncRemoteInvoker(invoker(CircuitBreaker.ofDefaults("remoteRouter"), 1));
+
+        ServiceResponse resp = router.routeAsync(new ServiceRequest("ECHO", Map.of(), Map.of(), "c6")).get(5, TimeUnit.SECONDS);
+        assertEquals(ServiceRouter.NOT_SENT, resp.getErrorCode());
+    }
+
+    @Test
+    void no_instances_is_reported_like_the_blocking_path() throws Exception {
+        ServiceRouter router = new ServiceRouter(new LocalServiceRegistry(), name -> List.of(), (RemoteHttpInvoker) null);
+        router.setAsyncRemoteInvoker(invoker(CircuitBreaker.ofDefaults("remoteRouter"), 1));
+
+        ServiceResponse resp = router.routeAsync(new ServiceRequest("ECHO", Map.of(), Map.of(), "c5")).get(5, TimeUnit.SECONDS);
+        assertEquals("NO_INSTANCES", resp.getErrorCode());
+    }
+}
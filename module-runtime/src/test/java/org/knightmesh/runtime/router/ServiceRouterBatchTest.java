@@ -0,0 +1,190 @@
+package org.knightmesh.runtime.router;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceMetrics;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.runtime.registry.LocalServiceDescriptor;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceRouterBatchTest {
+
+    /** Echoes each request's id; records the size of every batch and how many slots it found taken. */
+    static class BatchEcho implements CKService {
+        final List<Integer> batches = new CopyOnWriteArrayList<>();
+        final List<Integer> activeDuringBatch = new CopyOnWriteArrayList<>();
+        LocalServiceDescriptor descriptor;
+        long delayMs;
+
+        @Override public String getServiceName() { return "BATCH_ECHO"; }
+        @Override public ServiceResponse execute(ServiceRequest request) { return echo(request); }
+        @Override public ServiceMetrics getMetrics() { return new ServiceMetrics(4, 1.0, 0, 0); }
+        @Override public int maxBatchSize() { return 10; }
+
+        @Override
+        public List<ServiceResponse> executeBatch(List<ServiceRequest> requests) {
+            batches.add(requests.size());
+            activeDuringBatch.add(descriptor.getActiveThreads().get());
+            sleep(delayMs);
+            List<ServiceResponse> out = new ArrayList<>();
+            for (ServiceRequest r : requests) out.add(echo(r));
+            return out;
+        }
+
+        private static ServiceResponse echo(ServiceRequest r) {
+            return ServiceResponse.success(Map.of("id", r.getCorrelationId()));
+        }
+    }
+
+    static class PlainEcho implements CKService {
+        @Override public String getServiceName() { return "PLAIN_ECHO"; }
+        @Override public ServiceResponse execute(ServiceRequest r) { return ServiceResponse.success(Map.of("id", r.getCorrelationId())); }
+        @Override public ServiceMetrics getMetrics() { return new ServiceMetrics(4, 1.0, 0, 0); }
+    }
+
+    private static ServiceRequest req(String service, String id) {
+        return new ServiceRequest(service, Map.of(), Map.of(), id);
+    }
+
+    private static ServiceRequest req(String service, String id, String tenant) {
+        return new ServiceRequest(service, Map.of(), Map.of(ServiceRequest.TENANT_METADATA, tenant), id);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ServiceRouter router(BatchEcho batch, int maxThreads) {
+        LocalServiceRegistry registry = new LocalServiceRegistry();
+        batch.descriptor = registry.register(new LocalServiceDescriptor("BATCH_ECHO", batch, maxThreads));
+        registry.register(new LocalServiceDescriptor("PLAIN_ECHO", new PlainEcho(), 4));
+        return new ServiceRouter(registry, (RemoteServiceLocator) null, (RemoteHttpInvoker) null);
+    }
+
+    @Test
+    void routeBatch_runs_consecutive_requests_of_a_batch_service_together_and_keeps_order() {
+        BatchEcho batch = new BatchEcho();
+        ServiceRouter router = router(batch, 4);
+        router.setBatching(4, 0, 2);
+
+        List<ServiceRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 6; i++) requests.add(req("BATCH_ECHO", "b" + i));
+        requests.add(req("PLAIN_ECHO", "p0"));
+        requests.add(req("BATCH_ECHO", "b6"));
+        requests.add(req("BATCH_ECHO", "b7"));
+
+        List<ServiceResponse> responses = router.routeBatch(requests);
+
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).getCorrelationId(), responses.get(i).getData().get("id"));
+        }
+        // limited to router.batch.max-size, broken by the other service
+        assertEquals(List.of(4, 2, 2), batch.batches);
+        assertEquals(List.of(2, 2, 2), batch.activeDuringBatch);
+        assertEquals(0, batch.descriptor.getActiveThreads().get());
+        assertTrue(router.isBatchable("BATCH_ECHO"));
+        assertFalse(router.isBatchable("PLAIN_ECHO"));
+    }
+
+    @Test
+    void a_failing_batch_fails_each_of_its_requests() {
+        LocalServiceRegistry registry = new LocalServiceRegistry();
+        BatchEcho broken = new BatchEcho() {
+            @Override public List<ServiceResponse> executeBatch(List<ServiceRequest> requests) {
+                return List.of(ServiceResponse.success(Map.of()));
+            }
+        };
+        registry.register(new LocalServiceDescriptor("BATCH_ECHO", broken, 4));
+        ServiceRouter router = new ServiceRouter(registry, (RemoteServiceLocator) null, (RemoteHttpInvoker) null);
+
+        List<ServiceResponse> responses = router.routeBatch(List.of(req("BATCH_ECHO", "a"), req("BATCH_ECHO", "b")));
+
+        assertEquals(2, responses.size());
+        assertEquals("EXCEPTION", responses.get(0).getErrorCode());
+        assertEquals("EXCEPTION", responses.get(1).getErrorCode());
+        assertEquals(0, registry.get("BATCH_ECHO").getActiveThreads().get());
+    }
+
+    @Test
+    void a_tenant_over_its_share_of_a_contended_service_gets_no_batch() {
+        BatchEcho batch = new BatchEcho();
+        ServiceRouter router = router(batch, 4);
+        router.setTenantShare(0.5, 60_000);
+        router.setBatching(4, 0, 1);
+        LocalServiceDescriptor d = batch.descriptor;
+        long window = TimeUnit.SECONDS.toNanos(60);
+        assertTrue(d.incrementActive("acme", 2, window));
+        assertTrue(d.incrementActive("acme", 2, window));
+        assertTrue(d.incrementActive("other", 2, window));
+        assertTrue(d.incrementActive("other", 2, window));
+        assertFalse(d.incrementActive("other", 2, window)); // full: the service is now contended
+        d.decrementActive("other");
+
+        List<ServiceResponse> acme = router.routeBatch(List.of(req("BATCH_ECHO", "a0", "acme"), req("BATCH_ECHO", "a1", "acme")));
+        assertEquals(List.of(), batch.batches);
+        assertEquals("NO_REMOTE_PATH", acme.get(0).getErrorCode());
+        assertEquals("NO_REMOTE_PATH", acme.get(1).getErrorCode());
+
+        List<ServiceResponse> beta = router.routeBatch(List.of(req("BATCH_ECHO", "b0", "beta"), req("BATCH_ECHO", "b1", "beta")));
+        assertEquals(List.of(2), batch.batches);
+        assertEquals("b1", beta.get(1).getData().get("id"));
+        assertEquals(0, d.activeFor("beta"));
+        assertEquals(3, d.getActiveThreads().get());
+    }
+
+    @Test
+    void routeBatch_does_not_mix_tenants_in_one_batch() {
+        BatchEcho batch = new BatchEcho();
+        ServiceRouter router = router(batch, 4);
+        router.setBatching(4, 0, 1);
+
+        router.routeBatch(List.of(req("BATCH_ECHO", "a0", "acme"), req("BATCH_ECHO", "a1", "acme"),
+                req("BATCH_ECHO", "b0", "beta"), req("BATCH_ECHO", "b1", "beta")));
+
+        assertEquals(List.of(2, 2), batch.batches);
+    }
+
+    @Test
+    void concurrent_route_calls_arriving_while_slots_are_busy_go_in_one_batch() throws Exception {
+        BatchEcho batch = new BatchEcho();
+        batch.delayMs = 50;
+        ServiceRouter router = router(batch, 1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ServiceResponse>> responses = new ArrayList<>();
+            responses.add(callers.submit(() -> router.route(req("BATCH_ECHO", "c0"))));
+            sleep(20); // c0 holds the only slot
+            for (int i = 1; i < 8; i++) {
+                String id = "c" + i;
+                responses.add(callers.submit(() -> router.route(req("BATCH_ECHO", id))));
+            }
+            for (int i = 0; i < 8; i++) {
+                ServiceResponse resp = responses.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals("c" + i, resp.getData().get("id"));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(8, batch.batches.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batch.batches.size() < 8, "requests waiting for the slot should share batches: " + batch.batches);
+        assertEquals(0, batch.descriptor.getActiveThreads().get());
+    }
+}
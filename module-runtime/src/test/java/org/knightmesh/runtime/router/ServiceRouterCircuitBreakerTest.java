@@ -68,7 +68,8 @@ class ServiceRouterCircuitBreakerTest {
         for (int i = 0; i < 5; i++) {
             ServiceResponse r = router.route(req);
             assertThat(r.getStatus()).isEqualTo(ServiceResponse.Status.FAILURE);
-            assertThat(r.getErrorCode()).isEqualTo("SERVICE_UNAVAILABLE");
+            // the request was handed to the client, so it may have reached the remote
+            assertThat(r.getErrorCode()).isEqualTo(ServiceRouter.OUTCOME_UNKNOWN);
         }
 
         // After CB is open, next call should be short-circuited (no HTTP invocations)
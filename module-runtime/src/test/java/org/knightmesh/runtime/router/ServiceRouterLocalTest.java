@@ -5,12 +5,19 @@ import org.knightmesh.core.model.ServiceMetrics;
 import org.knightmesh.core.model.ServiceRequest;
 import org.knightmesh.core.model.ServiceResponse;
 import org.knightmesh.core.service.CKService;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.registry.KnownServices;
 import org.knightmesh.runtime.registry.LocalServiceDescriptor;
 import org.knightmesh.runtime.registry.LocalServiceRegistry;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class ServiceRouterLocalTest {
 
@@ -41,4 +48,27 @@ class ServiceRouterLocalTest {
         assertEquals(ServiceResponse.Status.SUCCESS, resp.getStatus());
         assertEquals(1, resp.getData().get("x"));
     }
+
+    @Test
+    void route_rejects_unknown_service_before_remote_lookup() {
+        LocalServiceRegistry registry = new LocalServiceRegistry();
+        registry.register(new LocalServiceDescriptor("ECHO", new FakeLocalService(), 3));
+        ConfigRepository config = mock(ConfigRepository.class);
+        when(config.getService(anyString())).thenReturn(Optional.empty());
+        when(config.listServiceNames()).thenReturn(List.of("REGISTER_USER"));
+        KnownServices known = new KnownServices(config, registry, true, 0);
+        known.refresh();
+
+        RemoteServiceLocator locator = name -> {
+            fail("Should not look up instances of an unknown service");
+            return List.of();
+        };
+        ServiceRouter router = new ServiceRouter(registry, locator, (RemoteHttpInvoker) null);
+        router.setKnownServices(known);
+
+        ServiceResponse resp = router.route(new ServiceRequest("NOPE", Map.of(), Map.of(), "c2"));
+        assertEquals("UNKNOWN_SERVICE", resp.getErrorCode());
+        assertEquals("UNKNOWN_SERVICE", router.routeAsync(new ServiceRequest("NOPE", Map.of(), Map.of(), "c3")).join().getErrorCode());
+        assertEquals(ServiceResponse.Status.SUCCESS, router.route(new ServiceRequest("ECHO", Map.of("x", 1), Map.of(), "c4")).getStatus());
+    }
 }
@@ -0,0 +1,288 @@
+package org.knightmesh.irp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.config.ServiceConfig;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.plugins.queue.QueuePartitions;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.knightmesh.plugins.queue.QueueSettings;
+import org.knightmesh.plugins.queue.QueueStats;
+import org.knightmesh.plugins.queue.QueueTenants;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.registry.LocalServiceDescriptor;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+import org.knightmesh.runtime.registry.ServiceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether IRP takes a request before any work is done, so overload is answered with a fast
+ * {@code 429} and a {@code Retry-After} instead of slow calls and an ever-growing queue. A request is
+ * turned away when
+ * <ul>
+ *   <li>DIRECT: the local instance of the service has {@code maxUtilization} of its slots busy, or calls to
+ *   it averaged more than {@code maxLatencyMs} within the last {@code irp.admission.latency-window.ms};</li>
+ *   <li>QUEUE and HYBRID: the target queue, summed over partitions, lanes and tenants, holds {@code maxQueueDepth}
+ *   messages or more (read at most every {@code irp.admission.refresh.ms}).</li>
+ * </ul>
+ * Limits default to {@code irp.admission.*} and can be set per service by an {@code "admission"} object in
+ * the service's config JSON; 0 disables a limit. A latency rejection lasts until the window has passed
+ * without a call, then one call probes the service again while the others are still turned away: a fast
+ * probe reopens the service, a slow one starts another window, and a probe that never reports is replaced
+ * by the next after a window. Decisions are counted in {@code irp_admission_total}.
+ */
+@Component
+public class AdmissionController {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    /** Admission limits of one service; 0 disables a limit. */
+    public record Limits(double maxUtilization, long maxLatencyMs, long maxQueueDepth) {}
+
+    /**
+     * @param reason {@code utilization}, {@code latency} or {@code queue_depth}; null when admitted
+     * @param retryAfterSeconds when the client should try again; 0 when admitted
+     */
+    public record Decision(boolean admitted, String reason, long retryAfterSeconds) {
+        static final Decision ADMITTED = new Decision(true, null, 0);
+    }
+
+    private final LocalServiceRegistry registry;
+    private final ConfigRepository configRepository;
+    private final QueuePlugin queue;
+    private final boolean enabled;
+    private final Limits defaults;
+    private final long latencyWindowMs;
+    private final long refreshMs;
+    private final long maxRetryAfterSeconds;
+    private final LongSupplier clock;
+    private MeterRegistry meterRegistry;
+    private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Depth> depths = new ConcurrentHashMap<>();
+    private final Map<String, ServiceLimits> limits = new ConcurrentHashMap<>();
+    private final Map<MeterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdmissionController(LocalServiceRegistry registry, ConfigRepository configRepository, QueuePlugin queue,
+                               @Value("${irp.admission.enabled:true}") boolean enabled,
+                               @Value("${irp.admission.max-utilization:0}") double maxUtilization,
+                               @Value("${irp.admission.max-latency.ms:0}") long maxLatencyMs,
+                               @Value("${irp.admission.max-queue-depth:100000}") long maxQueueDepth,
+                               @Value("${irp.admission.latency-window.ms:10000}") long latencyWindowMs,
+                               @Value("${irp.admission.refresh.ms:500}") long refreshMs,
+                               @Value("${irp.admission.max-retry-after.s:60}") long maxRetryAfterSeconds) {
+        this(registry, configRepository, queue, enabled, new Limits(maxUtilization, maxLatencyMs, maxQueueDepth),
+                latencyWindowMs, refreshMs, maxRetryAfterSeconds, System::currentTimeMillis);
+    }
+
+    AdmissionController(LocalServiceRegistry registry, ConfigRepository configRepository, QueuePlugin queue,
+                        boolean enabled, Limits defaults, long latencyWindowMs, long refreshMs,
+                        long maxRetryAfterSeconds, LongSupplier clock) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+        this.configRepository = Objects.requireNonNull(configRepository, "configRepository");
+        this.queue = Objects.requireNonNull(queue, "queue");
+        this.enabled = enabled;
+        this.defaults = Objects.requireNonNull(defaults, "defaults");
+        this.latencyWindowMs = latencyWindowMs;
+        this.refreshMs = refreshMs;
+        this.maxRetryAfterSeconds = Math.max(1, maxRetryAfterSeconds);
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param queueName target queue in QUEUE mode, ignored otherwise
+     * @param settings settings of that queue
+     */
+    public Decision admit(String serviceName, RouteMode mode, String queueName, QueueSettings settings) {
+        if (!enabled) return Decision.ADMITTED;
+        Decision decision;
+        try {
+            decision = decide(serviceName, mode, queueName, settings, limitsFor(serviceName), clock.getAsLong());
+        } catch (RuntimeException e) {
+            // admission must never be the reason a request fails
+            log.debug("[IRP] admission check failed for service {}: {}", serviceName, e.toString());
+            decision = Decision.ADMITTED;
+        }
+        record(serviceName, decision);
+        return decision;
+    }
+
+    /** Duration of a DIRECT call, for the latency limit. */
+    public void recordLatency(String serviceName, long nanos) {
+        long now = clock.getAsLong();
+        latencies.computeIfAbsent(serviceName, s -> new Latency()).record(nanos / 1_000_000.0, now, latencyWindowMs);
+    }
+
+    /** Limits of the service: its {@code "admission"} config over the {@code irp.admission.*} defaults. */
+    Limits limitsFor(String serviceName) {
+        String json = configRepository.getService(serviceName).map(ServiceConfig::getConfigJson).orElse(null);
+        if (json == null) return defaults;
+        ServiceLimits cached = limits.get(serviceName);
+        if (cached != null && Objects.equals(cached.configJson, json)) return cached.limits;
+        Limits parsed = parse(json);
+        limits.put(serviceName, new ServiceLimits(json, parsed));
+        return parsed;
+    }
+
+    private Decision decide(String serviceName, RouteMode mode, String queueName, QueueSettings settings, Limits l, long now) {
+        // HYBRID spills instead of waiting on a busy service, so only the queue it spills to can turn it away
+        if (mode == RouteMode.QUEUE || mode == RouteMode.HYBRID) {
+            if (l.maxQueueDepth() <= 0 || queueName == null) return Decision.ADMITTED;
+            Depth d = depth(queueName, settings, now);
+            if (d.depth < l.maxQueueDepth()) return Decision.ADMITTED;
+            long excess = d.depth - l.maxQueueDepth() + 1;
+            // nobody draining it: the longest we advise; rate unknown: soon
+            long seconds = d.dequeueRate > 0 ? (long) Math.ceil(excess / d.dequeueRate)
+                    : d.dequeueRate == 0 ? maxRetryAfterSeconds : 1;
+            return reject("queue_depth", seconds);
+        }
+        Latency latency = latencies.get(serviceName);
+        if (l.maxUtilization() > 0) {
+            LocalServiceDescriptor d = registry.get(serviceName);
+            if (d != null && d.getStatus() == ServiceStatus.UP && d.getMaxThreads() > 0
+                    && (double) d.getActiveThreads().get() / d.getMaxThreads() >= l.maxUtilization()) {
+                // a slot frees up after about one call
+                double callMs = latency == null ? 0 : latency.averageMs(now, latencyWindowMs);
+                return reject("utilization", (long) Math.ceil(callMs / 1000));
+            }
+        }
+        if (l.maxLatencyMs() > 0 && latency != null && !latency.admits(now, latencyWindowMs, l.maxLatencyMs())) {
+            return reject("latency", (long) Math.ceil(latency.remainingMs(now, latencyWindowMs) / 1000.0));
+        }
+        return Decision.ADMITTED;
+    }
+
+    private Decision reject(String reason, long retryAfterSeconds) {
+        return new Decision(false, reason, Math.max(1, Math.min(maxRetryAfterSeconds, retryAfterSeconds)));
+    }
+
+    private Depth depth(String queueName, QueueSettings settings, long now) {
+        Depth cached = depths.get(queueName);
+        if (cached != null && now - cached.at < refreshMs) return cached;
+        Depth fresh;
+        try {
+            fresh = measure(queueName, settings, now);
+        } catch (RuntimeException e) {
+            log.debug("[IRP] could not read depth of queue {}: {}", queueName, e.toString());
+            fresh = cached != null ? new Depth(cached.depth, cached.dequeueRate, now) : new Depth(0, -1, now);
+        }
+        depths.put(queueName, fresh);
+        return fresh;
+    }
+
+    private Depth measure(String queueName, QueueSettings settings, long now) {
+        List<String> partitions = new ArrayList<>();
+        if (!settings.isPartitioned()) {
+            partitions.add(queueName);
+        } else {
+            for (int p = 0; p < settings.getPartitions(); p++) {
+                partitions.add(QueuePartitions.partitionName(queueName, p));
+            }
+        }
+        long depth = 0;
+        double dequeueRate = -1;
+        for (int level = 0; level < settings.getPriorities(); level++) {
+            for (String partition : partitions) {
+                String laneName = settings.laneName(partition, level);
+                List<String> subQueues = new ArrayList<>();
+                subQueues.add(laneName);
+                if (settings.isTenantFair()) {
+                    subQueues.addAll(queue.queueNames(QueueTenants.prefix(laneName)));
+                }
+                for (String name : subQueues) {
+                    QueueStats.Snapshot s = queue.stats(name);
+                    depth += s.depth();
+                    if (s.dequeueRate() >= 0) dequeueRate = Math.max(0, dequeueRate) + s.dequeueRate();
+                }
+            }
+        }
+        return new Depth(depth, dequeueRate, now);
+    }
+
+    private Limits parse(String configJson) {
+        if (configJson == null || configJson.isBlank()) return defaults;
+        try {
+            JsonNode admission = Json.treeReader().readTree(configJson).path("admission");
+            if (!admission.isObject()) return defaults;
+            return new Limits(admission.path("maxUtilization").asDouble(defaults.maxUtilization()),
+                    admission.path("maxLatencyMs").asLong(defaults.maxLatencyMs()),
+                    admission.path("maxQueueDepth").asLong(defaults.maxQueueDepth()));
+        } catch (Exception e) {
+            log.warn("[IRP] ignoring malformed admission config: {}", e.getMessage());
+            return defaults;
+        }
+    }
+
+    private void record(String serviceName, Decision decision) {
+        if (meterRegistry == null) return;
+        String reason = decision.admitted() ? "none" : decision.reason();
+        counters.computeIfAbsent(new MeterKey(serviceName, reason), k -> Counter.builder("irp_admission_total")
+                .tag("service_name", serviceName)
+                .tag("decision", decision.admitted() ? "admitted" : "rejected")
+                .tag("reason", reason)
+                .description("Requests admitted or turned away with 429 by IRP admission control")
+                .register(meterRegistry))
+                .increment();
+    }
+
+    private record MeterKey(String serviceName, String reason) {}
+
+    private record ServiceLimits(String configJson, Limits limits) {}
+
+    private record Depth(long depth, double dequeueRate, long at) {}
+
+    /**
+     * Exponentially weighted average of recent call durations, forgotten once no call ran for a window; over
+     * the limit it is only replaced through a single probe (see {@link #admits}).
+     */
+    private static final class Latency {
+        private double averageMs;
+        private long lastAt = -1;
+        private long probeAt = -1; // when the probe now out was admitted; -1 if none is
+
+        synchronized void record(double ms, long now, long windowMs) {
+            averageMs = lastAt < 0 || now - lastAt >= windowMs ? ms : averageMs + (ms - averageMs) * LATENCY_WEIGHT;
+            lastAt = now;
+            probeAt = -1;
+        }
+
+        synchronized double averageMs(long now, long windowMs) {
+            return lastAt >= 0 && now - lastAt < windowMs ? averageMs : 0;
+        }
+
+        /**
+         * Whether a call may go on under {@code maxMs}: the average is within it, or it was over the limit when
+         * the last call was recorded a window or more ago and no other probe is out, making this call the probe.
+         */
+        synchronized boolean admits(long now, long windowMs, long maxMs) {
+            if (lastAt < 0 || averageMs <= maxMs) return true;
+            if (now - lastAt < windowMs) return false;
+            if (probeAt >= 0 && now - probeAt < windowMs) return false;
+            probeAt = now;
+            return true;
+        }
+
+        /** Until the window of the last call, or that of the probe now out, has passed. */
+        synchronized long remainingMs(long now, long windowMs) {
+            return Math.max(0, Math.max(lastAt, probeAt) + windowMs - now);
+        }
+    }
+}
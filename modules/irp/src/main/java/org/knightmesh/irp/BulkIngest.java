@@ -0,0 +1,254 @@
+package org.knightmesh.irp;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.plugins.queue.EnqueueOptions;
+import org.knightmesh.plugins.queue.QueueFullException;
+import org.knightmesh.plugins.queue.QueuePartitions;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * One NDJSON bulk request: payload objects are read one at a time with Jackson's streaming parser, turned
+ * into requests, then enqueued in batches or routed with bounded concurrency, and a result line is written
+ * for each item as soon as it is known. Memory is bounded by the batch size or the concurrency, not by the
+ * length of the stream.
+ * <p>
+ * Result lines are {@code {"index", "correlationId", "status", "body"}}: the item's position in the stream,
+ * the HTTP status and body a single {@code POST /irp/{serviceName}} would have got. Routed items are answered
+ * in completion order; an item whose answer is replayed for its idempotency key has no correlationId of its
+ * own (a queued item's replayed body names the original one). An item that is not an object, or whose payload {@code bind} rejects, is answered with
+ * 400 and skipped; malformed JSON ends the stream with a 400 line, since the parser cannot find the start of
+ * the next item.
+ */
+final class BulkIngest {
+    private static final Logger log = LoggerFactory.getLogger(BulkIngest.class);
+    private static final TypeReference<Map<String, Object>> PAYLOAD = new TypeReference<>() {};
+
+    /** A parsed item; {@code size} is its length in bytes, -1 if unknown. */
+    record Item(int index, ServiceRequest request, long size) {}
+
+    /** An item ready to be enqueued on {@code queue} with {@code options}. */
+    record Queued(int index, String queue, ServiceRequest request, EnqueueOptions options) {}
+
+    private final ObjectMapper mapper;
+    private final JsonParser parser;
+    private final OutputStream out;
+    private final Function<Map<String, Object>, ServiceRequest> toRequest;
+    private final Function<ServiceRequest, ServiceResponse> bind;
+    private int next;
+    private int written;
+    private boolean flushEachLine;
+    private IOException writeFailure;
+
+    /**
+     * @param bind binds an item's payload, returning null or the failure to answer it with; null to accept
+     *             every object
+     */
+    BulkIngest(ObjectMapper mapper, InputStream in, OutputStream out,
+               Function<Map<String, Object>, ServiceRequest> toRequest,
+               Function<ServiceRequest, ServiceResponse> bind) throws IOException {
+        this.mapper = mapper;
+        this.parser = mapper.getFactory().createParser(in);
+        this.out = out;
+        this.toRequest = toRequest;
+        this.bind = bind;
+    }
+
+    /** Items answered so far. */
+    int written() {
+        return written;
+    }
+
+    /**
+     * Enqueue every item. Items are collected per concrete queue and handed to
+     * {@link QueuePlugin#enqueueBatch} once {@code batchSize} are pending, so per-partition order is kept;
+     * items whose options the batch call cannot carry (durability, delay) are enqueued one by one.
+     * An item is acknowledged only after its batch was stored; the requests of items that were not are
+     * passed to {@code release}, if given, to free what {@code prepare} set aside for them (claim-check blobs).
+     */
+    void enqueue(QueuePlugin queuePlugin, int batchSize, Function<Item, Queued> prepare,
+                 Consumer<ServiceRequest> release) throws IOException {
+        Map<String, List<Queued>> pending = new LinkedHashMap<>();
+        int pendingCount = 0;
+        Item item;
+        while (failure() == null && (item = next()) != null) {
+            if (rejected(item)) continue;
+            Queued queued = prepare.apply(item);
+            EnqueueOptions options = queued.options();
+            if (options != null && (options.getDurability() != null || options.getNotBefore() != null)) {
+                try {
+                    queuePlugin.enqueue(queued.queue(), queued.request(), options);
+                    accepted(queued);
+                } catch (RuntimeException e) {
+                    notEnqueued(List.of(queued), e, release);
+                }
+                continue;
+            }
+            pending.computeIfAbsent(QueuePartitions.target(queued.queue(), options), t -> new ArrayList<>()).add(queued);
+            if (++pendingCount >= batchSize) {
+                flush(queuePlugin, pending, release);
+                pendingCount = 0;
+            }
+        }
+        flush(queuePlugin, pending, release);
+        if (failure() != null) throw failure();
+    }
+
+    /**
+     * Route every item through {@code dispatch} on {@code pool}, at most {@code concurrency} at a time.
+     * Reading pauses while that many are in flight.
+     */
+    void route(Executor pool, int concurrency, Function<Item, ResponseEntity<?>> dispatch) throws IOException {
+        flushEachLine = true;
+        Semaphore slots = new Semaphore(concurrency);
+        try {
+            Item item;
+            while (failure() == null && (item = next()) != null) {
+                if (rejected(item)) continue;
+                slots.acquire();
+                Item it = item;
+                pool.execute(() -> {
+                    try {
+                        ResponseEntity<?> entity = dispatch.apply(it);
+                        String correlationId = entity.getHeaders().containsKey(IdempotencyGuard.REPLAYED_HEADER)
+                                ? null : it.request().getCorrelationId();
+                        line(it.index(), correlationId, entity.getStatusCode().value(), entity.getBody());
+                    } catch (RuntimeException e) {
+                        log.warn("[IRP] bulk item {} failed: {}", it.index(), e.toString());
+                        line(it.index(), it.request().getCorrelationId(), HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                                ServiceResponse.failure("EXCEPTION", e.getMessage(), null));
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            // wait for the items still in flight
+            slots.acquire(concurrency);
+        } catch (InterruptedException e) {
+            // items still in flight finish on the pool; their lines are dropped once the response is gone
+            Thread.currentThread().interrupt();
+        }
+        if (failure() != null) throw failure();
+    }
+
+    private void flush(QueuePlugin queuePlugin, Map<String, List<Queued>> pending, Consumer<ServiceRequest> release) {
+        for (Map.Entry<String, List<Queued>> e : pending.entrySet()) {
+            List<Queued> batch = e.getValue();
+            List<ServiceRequest> requests = new ArrayList<>(batch.size());
+            for (Queued q : batch) requests.add(q.request());
+            try {
+                queuePlugin.enqueueBatch(e.getKey(), requests);
+                log.debug("[IRP] bulk enqueued {} requests on {}", requests.size(), e.getKey());
+                for (Queued q : batch) accepted(q);
+            } catch (RuntimeException ex) {
+                notEnqueued(batch, ex, release);
+            }
+        }
+        pending.clear();
+        flushOut();
+    }
+
+    /** Answers the item with the binding failure a single request would get; true if it did. */
+    private boolean rejected(Item item) {
+        ServiceResponse invalid = bind == null ? null : bind.apply(item.request());
+        if (invalid == null) return false;
+        ResponseEntity<ServiceResponse> entity = IrpResultController.toEntity(invalid);
+        line(item.index(), item.request().getCorrelationId(), entity.getStatusCode().value(), entity.getBody());
+        return true;
+    }
+
+    private void accepted(Queued q) {
+        line(q.index(), q.request().getCorrelationId(), HttpStatus.ACCEPTED.value(), IrpController.ack(q.request().getCorrelationId()));
+    }
+
+    private void notEnqueued(List<Queued> batch, RuntimeException e, Consumer<ServiceRequest> release) {
+        log.warn("[IRP] bulk enqueue of {} requests failed: {}", batch.size(), e.toString());
+        ServiceResponse failure = e instanceof QueueFullException full
+                ? IrpController.queueFullFailure(full)
+                : ServiceResponse.failure("ENQUEUE_FAILED", e.getMessage(), null);
+        for (Queued q : batch) {
+            if (release != null) release.accept(q.request());
+            line(q.index(), q.request().getCorrelationId(), HttpStatus.SERVICE_UNAVAILABLE.value(), failure);
+        }
+    }
+
+    /** Next object of the stream, null at its end or once the JSON is malformed. */
+    private Item next() throws IOException {
+        int index = next;
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                index = next++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    line(index, null, HttpStatus.BAD_REQUEST.value(),
+                            ServiceResponse.failure("INVALID_ITEM", "Bulk items must be JSON objects, got " + token, null));
+                    index = next;
+                    continue;
+                }
+                long start = parser.currentTokenLocation().getByteOffset();
+                Map<String, Object> payload = parser.readValueAs(PAYLOAD);
+                long end = parser.currentLocation().getByteOffset();
+                return new Item(index, toRequest.apply(payload), start >= 0 && end >= start ? end - start : -1);
+            }
+        } catch (JsonProcessingException e) {
+            line(index, null, HttpStatus.BAD_REQUEST.value(),
+                    ServiceResponse.failure("INVALID_JSON", e.getOriginalMessage(), null));
+        }
+        flushOut();
+        return null;
+    }
+
+    private synchronized void line(int index, String correlationId, int status, Object body) {
+        if (writeFailure != null) return;
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        line.put("correlationId", correlationId);
+        line.put("status", status);
+        line.put("body", body);
+        try {
+            out.write(mapper.writeValueAsBytes(line));
+            out.write('\n');
+            // routed items trickle in one by one; enqueued ones are flushed per batch
+            if (flushEachLine) out.flush();
+            written++;
+        } catch (IOException e) {
+            // the client went away: stop reading, let in-flight items finish quietly
+            writeFailure = e;
+        }
+    }
+
+    private synchronized void flushOut() {
+        if (writeFailure != null) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+    }
+
+    private synchronized IOException failure() {
+        return writeFailure;
+    }
+}
@@ -0,0 +1,231 @@
+package org.knightmesh.irp;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.plugins.idempotency.IdempotencyStore;
+import org.knightmesh.plugins.idempotency.IdempotencyStore.Claim;
+import org.knightmesh.plugins.idempotency.IdempotencyStore.StoredResponse;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a request carrying an {@code Idempotency-Key} header at most once per key, service and tenant.
+ * The first request with a key executes; retries get its status and body again with
+ * {@code Idempotent-Replayed: true}, and retries arriving while it still runs wait up to
+ * {@code irp.idempotency.wait.ms} for that answer (then {@code 409} with {@code Retry-After}). A key reused
+ * for a different payload gets {@code 422}. Answers proving the request did not run, i.e. {@code 429} and
+ * failures listed in {@code irp.idempotency.release-error-codes}, are not kept, so a retry executes again.
+ * Every other answer is kept, including {@code 5xx} and {@value ServiceRouter#OUTCOME_UNKNOWN} (a remote call
+ * that timed out after it was sent): the request may have run, so a retry gets that answer rather than
+ * running it again. Items of a bulk request sent with a key are guarded one by one, each under the key and
+ * its index ({@link #executeItem}). Outcomes are counted in {@code irp_idempotency_total}.
+ */
+@Component
+public class IdempotencyGuard {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyGuard.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 255;
+    // claims tried when the execution being waited for is released without an answer
+    static final int MAX_ATTEMPTS = 3;
+
+    // map entries sorted by key, so a retry whose client orders the JSON fields differently still matches
+    private static final ObjectWriter canonicalWriter = Json.mapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    private static final ServiceResponse KEY_REUSED = ServiceResponse.failure("IDEMPOTENCY_KEY_REUSED",
+            HEADER + " was already used with a different request", null);
+    private static final ServiceResponse IN_PROGRESS = ServiceResponse.failure("IDEMPOTENCY_IN_PROGRESS",
+            "A request with this " + HEADER + " is still being processed", null);
+    private static final ServiceResponse INVALID_KEY = ServiceResponse.failure("INVALID_IDEMPOTENCY_KEY",
+            HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters", null);
+
+    private final IdempotencyStore store;
+    private final long waitMs;
+    private final Set<String> releaseErrorCodes;
+    private MeterRegistry meterRegistry;
+    private final Map<MeterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    public IdempotencyGuard(IdempotencyStore store,
+                            @Value("${irp.idempotency.wait.ms:30000}") long waitMs,
+                            @Value("${irp.idempotency.release-error-codes:SERVICE_UNAVAILABLE,NO_INSTANCES,NO_REMOTE_PATH,QUEUE_FULL}") String releaseErrorCodes) {
+        this.store = store;
+        this.waitMs = waitMs;
+        this.releaseErrorCodes = releaseErrorCodes == null ? Set.of() : Arrays.stream(releaseErrorCodes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        if (this.releaseErrorCodes.contains(ServiceRouter.OUTCOME_UNKNOWN)) {
+            log.warn("[Idempotency] irp.idempotency.release-error-codes contains {}: such requests may run twice",
+                    ServiceRouter.OUTCOME_UNKNOWN);
+        }
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Run {@code action} unless the key already has an answer or is being executed; blocks while waiting. */
+    public ResponseEntity<?> execute(String serviceName, String tenant, String key, Map<String, Object> payload,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (!valid(key)) return invalidKey();
+        return run(serviceName, scope(serviceName, tenant, key), payload, action);
+    }
+
+    /**
+     * Like {@link #execute} for item {@code index} of a bulk request sent with {@code key}, which the caller
+     * has checked with {@link #valid}: a retried bulk request replays the items already answered and runs the rest.
+     */
+    public ResponseEntity<?> executeItem(String serviceName, String tenant, String key, int index, Map<String, Object> payload,
+                                         Supplier<ResponseEntity<?>> action) {
+        return run(serviceName, scope(serviceName, tenant, key) + "#" + index, payload, action);
+    }
+
+    private ResponseEntity<?> run(String serviceName, String scoped, Map<String, Object> payload,
+                                  Supplier<ResponseEntity<?>> action) {
+        String fingerprint = fingerprint(payload);
+        for (int attempt = 1; ; attempt++) {
+            Claim claim = store.claim(scoped, fingerprint);
+            if (claim.kind() == IdempotencyStore.Kind.MISMATCH) {
+                record(serviceName, "mismatch");
+                return mismatch();
+            }
+            if (claim.kind() == IdempotencyStore.Kind.NEW) {
+                record(serviceName, "executed");
+                ResponseEntity<?> response;
+                try {
+                    response = action.get();
+                } catch (RuntimeException e) {
+                    store.release(claim);
+                    throw e;
+                }
+                finish(claim, response);
+                return response;
+            }
+            boolean answered = claim.response().isDone();
+            StoredResponse stored;
+            try {
+                stored = claim.response().get(waitMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                claim.response().cancel(false);
+                record(serviceName, "timeout");
+                return inProgress();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return inProgress();
+            } catch (ExecutionException e) {
+                stored = null;
+            }
+            if (stored != null) {
+                record(serviceName, answered ? "replayed" : "waited");
+                return replay(stored);
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                record(serviceName, "timeout");
+                return inProgress();
+            }
+            log.debug("IRP idempotency key released before an answer, claiming again service={}, attempt={}", serviceName, attempt);
+        }
+    }
+
+    /** Keys are scoped by service and tenant, so different clients cannot collide or read each other's answers. */
+    static String scope(String serviceName, String tenant, String key) {
+        return serviceName + "|" + (tenant == null ? "" : tenant) + "|" + key;
+    }
+
+    static boolean valid(String key) {
+        return key != null && !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Digest of the payload, to tell a retry from a different request reusing the key. Object fields are
+     * hashed in key order, not in the order the client sent them.
+     */
+    static String fingerprint(Map<String, Object> payload) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalWriter.writeValueAsBytes(payload == null ? Map.of() : payload));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to fingerprint request payload", e);
+        }
+    }
+
+    Claim claim(String serviceName, String tenant, String key, Map<String, Object> payload) {
+        return store.claim(scope(serviceName, tenant, key), fingerprint(payload));
+    }
+
+    long waitMs() {
+        return waitMs;
+    }
+
+    /** Keep the owner's answer for retries, or release the key if the answer proves the request did not run. */
+    void finish(Claim claim, ResponseEntity<?> response) {
+        if (storable(response)) {
+            store.complete(claim, new StoredResponse(response.getStatusCode().value(), response.getBody()));
+        } else {
+            store.release(claim);
+        }
+    }
+
+    void release(Claim claim) {
+        store.release(claim);
+    }
+
+    boolean storable(ResponseEntity<?> response) {
+        if (response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) return false;
+        return !(response.getBody() instanceof ServiceResponse r) || r.getErrorCode() == null
+                || !releaseErrorCodes.contains(r.getErrorCode());
+    }
+
+    void record(String serviceName, String result) {
+        if (meterRegistry == null) return;
+        counters.computeIfAbsent(new MeterKey(serviceName, result), k -> Counter.builder("irp_idempotency_total")
+                .tag("service_name", serviceName)
+                .tag("result", result)
+                .description("Requests with an Idempotency-Key by outcome: executed, replayed, waited, mismatch, timeout")
+                .register(meterRegistry))
+                .increment();
+    }
+
+    private record MeterKey(String serviceName, String result) {}
+
+    static ResponseEntity<?> replay(StoredResponse stored) {
+        return ResponseEntity.status(stored.status()).header(REPLAYED_HEADER, "true").body(stored.body());
+    }
+
+    static ResponseEntity<?> mismatch() {
+        return ResponseEntity.unprocessableEntity().body(KEY_REUSED);
+    }
+
+    static ResponseEntity<?> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1")
+                .body(IN_PROGRESS);
+    }
+
+    static ResponseEntity<?> invalidKey() {
+        return ResponseEntity.badRequest().body(INVALID_KEY);
+    }
+}
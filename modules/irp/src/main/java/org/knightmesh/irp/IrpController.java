@@ -1,33 +1,72 @@
 package org.knightmesh.irp;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
 import org.knightmesh.core.config.ModuleConfig;
 import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.config.ServiceConfig;
+import org.knightmesh.core.id.Ids;
+import org.knightmesh.core.json.Json;
 import org.knightmesh.core.model.ServiceRequest;
 import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.core.model.SmallMap;
 import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.payload.JacksonPayloadBinder;
+import org.knightmesh.runtime.registry.KnownServices;
 import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.queue.ClaimCheck;
+import org.knightmesh.plugins.queue.EnqueueOptions;
+import org.knightmesh.plugins.queue.QueueFullException;
 import org.knightmesh.plugins.queue.QueuePlugin;
+import org.knightmesh.plugins.queue.QueueSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/irp")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class IrpController {
 
     private static final Logger log = LoggerFactory.getLogger(IrpController.class);
+    private static final ObjectMapper mapper = Json.mapper();
+
+    static final String QUEUE_FULL = "QUEUE_FULL";
+    static final int QUEUE_FULL_RETRY_AFTER_SECONDS = 1;
 
     private final ConfigRepository configRepository;
     private final ServiceRouter serviceRouter;
     private final QueuePlugin queuePlugin;
+    private ClaimCheck claimCheck;
+    private AdmissionController admission;
+    private SpilloverController spillover = new SpilloverController(3, 5000, "SERVICE_UNAVAILABLE,NO_INSTANCES,NO_REMOTE_PATH");
+    private TenantResolver tenantResolver = new TenantResolver();
+    private IdempotencyGuard idempotency;
+    private KnownServices knownServices;
+    private JacksonPayloadBinder payloadBinder;
+    private int bulkBatchSize = 500;
+    private int bulkConcurrency = 16;
+    private int bulkThreads = 64;
+    private ThreadPoolExecutor bulkExecutor; // created on the first routed bulk request
 
     public IrpController(ConfigRepository configRepository, ServiceRouter serviceRouter, QueuePlugin queuePlugin) {
         this.configRepository = configRepository;
@@ -35,18 +74,197 @@ public class IrpController {
         this.queuePlugin = queuePlugin;
     }
 
-    @PostMapping("/{serviceName}")
-    public ResponseEntity<?> post(@PathVariable String serviceName, @RequestBody Map<String, Object> payload) {
-        String correlationId = UUID.randomUUID().toString();
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("timestamp", Instant.now().toString());
-        metadata.put("source", "IRP");
+    @Autowired(required = false)
+    public void setClaimCheck(ClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    @Autowired(required = false)
+    public void setAdmissionController(AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    @Autowired(required = false)
+    public void setSpilloverController(SpilloverController spillover) {
+        this.spillover = spillover;
+    }
+
+    @Autowired(required = false)
+    public void setTenantResolver(TenantResolver tenantResolver) {
+        this.tenantResolver = tenantResolver;
+    }
+
+    @Autowired(required = false)
+    public void setIdempotencyGuard(IdempotencyGuard idempotency) {
+        this.idempotency = idempotency;
+    }
+
+    @Autowired(required = false)
+    public void setKnownServices(KnownServices knownServices) {
+        this.knownServices = knownServices;
+    }
+
+    @Autowired(required = false)
+    public void setPayloadBinder(JacksonPayloadBinder payloadBinder) {
+        this.payloadBinder = payloadBinder;
+    }
+
+    @Autowired
+    public void setBulkLimits(@Value("${irp.bulk.batch-size:500}") int batchSize,
+                              @Value("${irp.bulk.concurrency:16}") int concurrency,
+                              @Value("${irp.bulk.threads:64}") int threads) {
+        this.bulkBatchSize = Math.max(1, batchSize);
+        this.bulkConcurrency = Math.max(1, concurrency);
+        this.bulkThreads = Math.max(1, threads);
+    }
 
+    @PreDestroy
+    public synchronized void close() {
+        if (bulkExecutor != null) bulkExecutor.shutdownNow();
+    }
+
+    @PostMapping("/{serviceName}")
+    public ResponseEntity<?> post(@PathVariable String serviceName, @RequestBody Map<String, Object> payload,
+                                  @RequestHeader(value = "X-Partition-Key", required = false) String partitionKey,
+                                  @RequestHeader(value = "X-Priority", required = false) String priority,
+                                  @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader,
+                                  @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+                                  @RequestHeader(value = "Content-Length", required = false) Long contentLength) {
+        // before anything else: names that exist nowhere would otherwise go all the way to discovery
+        if (knownServices != null && !knownServices.isKnown(serviceName)) {
+            return unknownService(serviceName);
+        }
+        String correlationId = Ids.nextString();
+        Map<String, String> metadata = metadata(partitionKey, priority, tenantResolver.resolve(tenantHeader));
         ServiceRequest request = new ServiceRequest(serviceName, payload == null ? Map.of() : payload, metadata, correlationId);
+        long sizeHint = contentLength == null ? -1 : contentLength;
 
-        // Determine routing mode for IRP module; default DIRECT
+        if (idempotency == null || idempotencyKey == null) {
+            return handle(request, sizeHint);
+        }
+        // checked before admission, so retries of answered requests are replayed even under overload
+        return idempotency.execute(serviceName, request.getTenant(), idempotencyKey, request.getPayload(), () -> handle(request, sizeHint));
+    }
+
+    private ResponseEntity<?> handle(ServiceRequest request, long sizeHint) {
+        String serviceName = request.getServiceName();
+        // typed services in this process get their payload bound (and rejected if invalid) before it is routed or queued
+        ServiceResponse invalid = payloadBinder == null ? null : payloadBinder.bindLocal(request);
+        if (invalid != null) {
+            return IrpResultController.toEntity(invalid);
+        }
+        Target target = target(configRepository);
+        if (admission != null) {
+            AdmissionController.Decision decision = admission.admit(serviceName, target.mode(), target.queue(), target.settings());
+            if (!decision.admitted()) {
+                log.debug("IRP rejecting request service={}, correlationId={}, reason={}", serviceName, request.getCorrelationId(), decision.reason());
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                        .body(overloaded(serviceName, decision));
+            }
+        }
+        return dispatch(request, target, servicePriority(configRepository, serviceName, target), sizeHint);
+    }
+
+    /**
+     * Bulk ingest: the body is newline-delimited JSON, one payload object per line, each handled as a
+     * {@code POST /irp/{serviceName}} with the same headers would be. The response streams one NDJSON line per
+     * item (see {@link BulkIngest}). QUEUE-mode items are enqueued in batches of {@code irp.bulk.batch-size};
+     * other modes route up to {@code irp.bulk.concurrency} items at a time. With an {@code Idempotency-Key},
+     * each item is guarded under the key and its index, so a retried stream replays the items already answered;
+     * such items are then routed (or enqueued) one at a time, since an item's answer is kept as it is known.
+     */
+    @PostMapping(value = "/{serviceName}/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/jsonl"})
+    public void bulk(@PathVariable String serviceName, InputStream body,
+                     @RequestHeader(value = "X-Partition-Key", required = false) String partitionKey,
+                     @RequestHeader(value = "X-Priority", required = false) String priority,
+                     @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader,
+                     @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+                     HttpServletResponse response) throws IOException {
+        if (knownServices != null && !knownServices.isKnown(serviceName)) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            mapper.writeValue(response.getOutputStream(), unknownService(serviceName).getBody());
+            return;
+        }
+        boolean keyed = idempotency != null && idempotencyKey != null;
+        if (keyed && !IdempotencyGuard.valid(idempotencyKey)) {
+            ResponseEntity<?> invalid = IdempotencyGuard.invalidKey();
+            response.setStatus(invalid.getStatusCode().value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            mapper.writeValue(response.getOutputStream(), invalid.getBody());
+            return;
+        }
+        Target target = target(configRepository);
+        if (admission != null) {
+            AdmissionController.Decision decision = admission.admit(serviceName, target.mode(), target.queue(), target.settings());
+            if (!decision.admitted()) {
+                log.debug("IRP rejecting bulk request service={}, reason={}", serviceName, decision.reason());
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                mapper.writeValue(response.getOutputStream(), overloaded(serviceName, decision));
+                return;
+            }
+        }
+        // shared by all items: ServiceRequest keeps an unmodifiable view
+        Map<String, String> metadata = metadata(partitionKey, priority, tenantResolver.resolve(tenantHeader));
+        String servicePriority = servicePriority(configRepository, serviceName, target);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        BulkIngest ingest = new BulkIngest(mapper, body, response.getOutputStream(),
+                payload -> new ServiceRequest(serviceName, payload, metadata, Ids.nextString()),
+                payloadBinder == null ? null : payloadBinder::bindLocal);
+        log.info("IRP bulk ingest service={}, mode={}, idempotent={}", serviceName, target.mode(), keyed);
+        if (keyed) {
+            ingest.route(bulkExecutor(), bulkConcurrency, item -> idempotency.executeItem(serviceName, item.request().getTenant(),
+                    idempotencyKey, item.index(), item.request().getPayload(),
+                    () -> dispatch(item.request(), target, servicePriority, item.size())));
+        } else if (target.mode() == RouteMode.QUEUE) {
+            ingest.enqueue(queuePlugin, bulkBatchSize, item -> {
+                ServiceRequest toEnqueue = claimCheck == null ? item.request() : claimCheck.offload(item.request(), item.size());
+                return new BulkIngest.Queued(item.index(), target.queue(), toEnqueue,
+                        target.settings().enqueueOptions(item.request(), servicePriority));
+            }, claimCheck == null ? null : claimCheck::release);
+        } else {
+            ingest.route(bulkExecutor(), bulkConcurrency, item -> dispatch(item.request(), target, servicePriority, item.size()));
+        }
+        log.info("IRP bulk ingest done service={}, items={}", serviceName, ingest.written());
+    }
+
+    /**
+     * Threads routing bulk items, shared by all bulk requests: at most {@code irp.bulk.threads}, each request
+     * keeping up to {@code irp.bulk.concurrency} items queued or running on it. Idle threads exit.
+     */
+    private synchronized Executor bulkExecutor() {
+        if (bulkExecutor == null) {
+            AtomicInteger threads = new AtomicInteger();
+            bulkExecutor = new ThreadPoolExecutor(bulkThreads, bulkThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "irp-bulk-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            bulkExecutor.allowCoreThreadTimeOut(true);
+        }
+        return bulkExecutor;
+    }
+
+    /** Body of the {@code 202} answer to a queued request. */
+    static Map<String, Object> ack(String correlationId) {
+        return Map.of(
+                "status", "ACCEPTED",
+                "correlationId", correlationId,
+                "result", "/irp/results/" + correlationId
+        );
+    }
+
+    /** Where requests go, from the {@code irp} module config; default DIRECT. */
+    record Target(RouteMode mode, String queue, QueueSettings settings) {}
+
+    static Target target(ConfigRepository configRepository) {
         RouteMode mode = RouteMode.DIRECT;
         String queueName = null;
+        QueueSettings queueSettings = QueueSettings.defaults();
         Optional<ModuleConfig> irpModule = configRepository.getModuleConfig("irp");
         if (irpModule.isPresent()) {
             ModuleConfig mc = irpModule.get();
@@ -55,22 +273,105 @@ public class IrpController {
                 mode = mc.getRouteMode();
             }
             queueName = mc.getQueueName();
+            queueSettings = QueueSettings.fromExtraJson(mc.getExtraJson());
+        }
+        String q = (queueName != null && !queueName.isBlank()) ? queueName : "irp-default";
+        return new Target(mode, q, queueSettings);
+    }
+
+    static Map<String, String> metadata(String partitionKey, String priority, String tenant) {
+        Instant now = Instant.now();
+        SmallMap.Builder<String, String> metadata = SmallMap.builder(5);
+        // formatted only when read: queued requests are written out, direct ones rarely look
+        metadata.putLazy("timestamp", now::toString);
+        metadata.put("source", "IRP");
+        if (partitionKey != null && !partitionKey.isBlank()) {
+            metadata.put(QueueSettings.PARTITION_KEY_METADATA, partitionKey);
+        }
+        if (tenant != null) {
+            metadata.put(ServiceRequest.TENANT_METADATA, tenant);
+        }
+        if (priority != null && !priority.isBlank()) {
+            metadata.put(QueueSettings.PRIORITY_METADATA, priority);
+        }
+        return metadata.build();
+    }
+
+    /** The service's configured priority, needed only when the queue has priority lanes. */
+    static String servicePriority(ConfigRepository configRepository, String serviceName, Target target) {
+        if (target.mode() == RouteMode.DIRECT || !target.settings().hasPriorities()) return null;
+        return configRepository.getService(serviceName).map(ServiceConfig::getConfigJson).map(QueueSettings::servicePriority).orElse(null);
+    }
+
+    /** {@code 404} for a service that is neither configured nor registered (see {@link KnownServices}). */
+    static ResponseEntity<ServiceResponse> unknownService(String serviceName) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ServiceResponse.failure("UNKNOWN_SERVICE", "Unknown service: " + serviceName, null));
+    }
+
+    static ServiceResponse overloaded(String serviceName, AdmissionController.Decision decision) {
+        return ServiceResponse.failure("OVERLOADED", "Service " + serviceName + " is overloaded (" + decision.reason() + ")",
+                Map.of("retryAfterSeconds", decision.retryAfterSeconds()));
+    }
+
+    /** {@code 503} with {@code Retry-After} for a request the queue had no room for; it did not run. */
+    static ResponseEntity<ServiceResponse> queueFull(QueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(QUEUE_FULL_RETRY_AFTER_SECONDS))
+                .body(queueFullFailure(e));
+    }
+
+    static ServiceResponse queueFullFailure(QueueFullException e) {
+        return ServiceResponse.failure(QUEUE_FULL, e.getMessage(), Map.of("retryAfterSeconds", QUEUE_FULL_RETRY_AFTER_SECONDS));
+    }
+
+    private ResponseEntity<?> dispatch(ServiceRequest request, Target target, String servicePriority, long sizeHint) {
+        String serviceName = request.getServiceName();
+        if (target.mode() == RouteMode.QUEUE) {
+            return enqueue(request, target, servicePriority, sizeHint);
+        }
+        if (target.mode() == RouteMode.HYBRID) {
+            // DIRECT while there is capacity, the queue once the router reports saturation
+            if (spillover.shouldSpill(serviceName)) {
+                spillover.recordPath(serviceName, "queue");
+                return enqueue(request, target, servicePriority, sizeHint);
+            }
+            ServiceResponse response = routeDirect(request);
+            if (spillover.onDirect(serviceName, response)) {
+                log.info("IRP spilling saturated request service={}, correlationId={}, error={}", serviceName, request.getCorrelationId(), response.getErrorCode());
+                spillover.recordPath(serviceName, "queue");
+                return enqueue(request, target, servicePriority, sizeHint);
+            }
+            spillover.recordPath(serviceName, "direct");
+            return IrpResultController.toEntity(response);
         }
+        // DIRECT or other
+        return IrpResultController.toEntity(routeDirect(request));
+    }
+
+    private ResponseEntity<?> enqueue(ServiceRequest request, Target target, String servicePriority, long sizeHint) {
+        log.info("IRP enqueuing request service={}, correlationId={}, queue={}", request.getServiceName(), request.getCorrelationId(), target.queue());
+        // partition key first: it may be a payload field that the claim check moves out
+        // priority lane: X-Priority header, else the service's configured priority
+        EnqueueOptions options = target.settings().enqueueOptions(request, servicePriority);
+        ServiceRequest toEnqueue = claimCheck == null ? request : claimCheck.offload(request, sizeHint);
+        try {
+            queuePlugin.enqueue(target.queue(), toEnqueue, options);
+        } catch (QueueFullException e) {
+            log.warn("IRP queue full service={}, correlationId={}, queue={}", request.getServiceName(), request.getCorrelationId(), target.queue());
+            if (toEnqueue != request) claimCheck.release(toEnqueue);
+            return queueFull(e);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ack(request.getCorrelationId()));
+    }
 
-        if (mode == RouteMode.QUEUE) {
-            String q = (queueName != null && !queueName.isBlank()) ? queueName : "irp-default";
-            log.info("IRP enqueuing request service={}, correlationId={}, queue={}", serviceName, correlationId, q);
-            queuePlugin.enqueue(q, request);
-            Map<String, Object> ack = Map.of(
-                    "status", "ACCEPTED",
-                    "correlationId", correlationId
-            );
-            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ack);
-        } else { // DIRECT or other
-            log.info("IRP routing DIRECT service={}, correlationId={}", serviceName, correlationId);
-            ServiceResponse response = serviceRouter.route(request);
-            HttpStatus status = response.getStatus() == ServiceResponse.Status.SUCCESS ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
-            return ResponseEntity.status(status).body(response);
+    private ServiceResponse routeDirect(ServiceRequest request) {
+        log.info("IRP routing DIRECT service={}, correlationId={}", request.getServiceName(), request.getCorrelationId());
+        long start = System.nanoTime();
+        ServiceResponse response = serviceRouter.route(request);
+        if (admission != null) {
+            admission.recordLatency(request.getServiceName(), System.nanoTime() - start);
         }
+        return response;
     }
 }
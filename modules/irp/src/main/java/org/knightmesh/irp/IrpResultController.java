@@ -0,0 +1,132 @@
+package org.knightmesh.irp;
+
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.plugins.result.ResultStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the response of a QUEUE-mode request to the caller holding its correlation id, once QPM has
+ * stored it in the {@link ResultStore}: by long poll, answering {@code 202} with status {@code PENDING}
+ * if nothing arrives within the wait, or as a server-sent {@code result} (or {@code pending}) event.
+ * Neither holds a servlet thread while waiting. A result stored for a tenant is only served to callers
+ * the {@link TenantResolver} puts in that tenant; anyone else gets {@code 404} as if there were none, or
+ * a {@code not-found} event if the stream had already started when it arrived.
+ */
+@RestController
+@RequestMapping("/irp/results")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class IrpResultController {
+
+    // lets the wait time out through the future rather than the container
+    private static final long ASYNC_TIMEOUT_MARGIN_MS = 5_000;
+
+    private final ResultStore results;
+    private final long defaultWaitMs;
+    private final long maxWaitMs;
+    private TenantResolver tenantResolver = new TenantResolver();
+
+    public IrpResultController(ResultStore results,
+                               @Value("${irp.results.wait.ms:30000}") long defaultWaitMs,
+                               @Value("${irp.results.max-wait.ms:60000}") long maxWaitMs) {
+        this.results = results;
+        this.defaultWaitMs = defaultWaitMs;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    @Autowired(required = false)
+    public void setTenantResolver(TenantResolver tenantResolver) {
+        this.tenantResolver = tenantResolver;
+    }
+
+    @GetMapping("/{correlationId}")
+    public DeferredResult<ResponseEntity<?>> result(@PathVariable String correlationId,
+                                                    @RequestParam(value = "waitMs", required = false) Long waitMs,
+                                                    @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader) {
+        String tenant = tenantResolver.resolve(tenantHeader);
+        long wait = waitFor(waitMs);
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(wait + ASYNC_TIMEOUT_MARGIN_MS, pending(correlationId));
+        CompletableFuture<ResultStore.Result> future = results.await(correlationId)
+                .completeOnTimeout(null, wait, TimeUnit.MILLISECONDS);
+        future.whenComplete((r, ex) -> deferred.setResult(r == null ? pending(correlationId) : toEntity(correlationId, r, tenant)));
+        deferred.onCompletion(() -> future.cancel(false));
+        return deferred;
+    }
+
+    @GetMapping(value = "/{correlationId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String correlationId,
+                                             @RequestParam(value = "waitMs", required = false) Long waitMs,
+                                             @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader) {
+        String tenant = tenantResolver.resolve(tenantHeader);
+        long wait = waitFor(waitMs);
+        CompletableFuture<ResultStore.Result> stored = results.await(correlationId);
+        ResultStore.Result known = stored.getNow(null);
+        if (known != null && !known.isVisibleTo(tenant)) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(wait + ASYNC_TIMEOUT_MARGIN_MS);
+        CompletableFuture<ResultStore.Result> future = stored.completeOnTimeout(null, wait, TimeUnit.MILLISECONDS);
+        // off the thread that stored the result, which may be a QPM worker in this process
+        future.whenCompleteAsync((r, ex) -> {
+            try {
+                if (r == null) {
+                    emitter.send(SseEmitter.event().name("pending").id(correlationId)
+                            .data(pendingBody(correlationId), MediaType.APPLICATION_JSON));
+                } else if (!r.isVisibleTo(tenant)) {
+                    emitter.send(SseEmitter.event().name("not-found").id(correlationId)
+                            .data(notFoundBody(correlationId), MediaType.APPLICATION_JSON));
+                } else {
+                    emitter.send(SseEmitter.event().name("result").id(correlationId).data(r.response(), MediaType.APPLICATION_JSON));
+                }
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onCompletion(() -> future.cancel(false));
+        emitter.onTimeout(emitter::complete);
+        return ResponseEntity.ok(emitter);
+    }
+
+    /** The response if {@code tenant} may read the result, otherwise {@code 404} as for an unknown id. */
+    static ResponseEntity<?> toEntity(String correlationId, ResultStore.Result result, String tenant) {
+        if (!result.isVisibleTo(tenant)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(notFoundBody(correlationId));
+        }
+        return toEntity(result.response());
+    }
+
+    /** Same mapping as a DIRECT-mode response: 200 on success, 400 on failure. */
+    static ResponseEntity<ServiceResponse> toEntity(ServiceResponse response) {
+        HttpStatus status = response.getStatus() == ServiceResponse.Status.SUCCESS ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private long waitFor(Long requested) {
+        long wait = requested == null ? defaultWaitMs : requested;
+        return Math.max(0, Math.min(wait, maxWaitMs));
+    }
+
+    static ResponseEntity<?> pending(String correlationId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(pendingBody(correlationId));
+    }
+
+    static Map<String, Object> pendingBody(String correlationId) {
+        return Map.of("status", "PENDING", "correlationId", correlationId);
+    }
+
+    static ServiceResponse notFoundBody(String correlationId) {
+        return ServiceResponse.failure("UNKNOWN_RESULT", "No result for correlation id " + correlationId, null);
+    }
+}
@@ -0,0 +1,263 @@
+package org.knightmesh.irp;
+
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.id.Ids;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.payload.JacksonPayloadBinder;
+import org.knightmesh.runtime.registry.KnownServices;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.idempotency.IdempotencyStore;
+import org.knightmesh.plugins.queue.ClaimCheck;
+import org.knightmesh.plugins.queue.EnqueueOptions;
+import org.knightmesh.plugins.queue.QueueFullException;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * WebFlux variant of {@link IrpController}, active when IRP runs as a reactive web application
+ * ({@code spring.main.web-application-type=reactive}, served by Netty). Same endpoint, headers, routing modes,
+ * admission control and responses, but no request holds a thread while it waits: DIRECT calls go through
+ * {@link ServiceRouter#routeAsync}, and blocking steps (reading the {@code irp} module config, enqueuing,
+ * the claim check, queue-depth admission) run on Reactor's bounded elastic scheduler, never on the event loop.
+ * The module config is re-read at most every {@code irp.reactive.config.refresh.ms}.
+ */
+@RestController
+@RequestMapping("/irp")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveIrpController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveIrpController.class);
+
+    private final ConfigRepository configRepository;
+    private final ServiceRouter serviceRouter;
+    private final QueuePlugin queuePlugin;
+    private final long configRefreshMs;
+    private ClaimCheck claimCheck;
+    private AdmissionController admission;
+    private SpilloverController spillover = new SpilloverController(3, 5000, "SERVICE_UNAVAILABLE,NO_INSTANCES,NO_REMOTE_PATH");
+    private TenantResolver tenantResolver = new TenantResolver();
+    private IdempotencyGuard idempotency;
+    private KnownServices knownServices;
+    private JacksonPayloadBinder payloadBinder;
+    private volatile IrpController.Target cachedTarget;
+    private volatile long targetLoadedAt;
+
+    public ReactiveIrpController(ConfigRepository configRepository, ServiceRouter serviceRouter, QueuePlugin queuePlugin,
+                                 @Value("${irp.reactive.config.refresh.ms:1000}") long configRefreshMs) {
+        this.configRepository = configRepository;
+        this.serviceRouter = serviceRouter;
+        this.queuePlugin = queuePlugin;
+        this.configRefreshMs = configRefreshMs;
+    }
+
+    @Autowired(required = false)
+    public void setClaimCheck(ClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    @Autowired(required = false)
+    public void setAdmissionController(AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    @Autowired(required = false)
+    public void setSpilloverController(SpilloverController spillover) {
+        this.spillover = spillover;
+    }
+
+    @Autowired(required = false)
+    public void setTenantResolver(TenantResolver tenantResolver) {
+        this.tenantResolver = tenantResolver;
+    }
+
+    @Autowired(required = false)
+    public void setIdempotencyGuard(IdempotencyGuard idempotency) {
+        this.idempotency = idempotency;
+    }
+
+    @Autowired(required = false)
+    public void setKnownServices(KnownServices knownServices) {
+        this.knownServices = knownServices;
+    }
+
+    @Autowired(required = false)
+    public void setPayloadBinder(JacksonPayloadBinder payloadBinder) {
+        this.payloadBinder = payloadBinder;
+    }
+
+    @PostMapping("/{serviceName}")
+    public Mono<ResponseEntity<?>> post(@PathVariable String serviceName, @RequestBody Map<String, Object> payload,
+                                        @RequestHeader(value = "X-Partition-Key", required = false) String partitionKey,
+                                        @RequestHeader(value = "X-Priority", required = false) String priority,
+                                        @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader,
+                                        @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+                                        @RequestHeader(value = "Content-Length", required = false) Long contentLength) {
+        if (knownServices != null && !knownServices.isKnown(serviceName)) {
+            return Mono.<ResponseEntity<?>>just(IrpController.unknownService(serviceName));
+        }
+        String correlationId = Ids.nextString();
+        Map<String, String> metadata = IrpController.metadata(partitionKey, priority, tenantResolver.resolve(tenantHeader));
+        ServiceRequest request = new ServiceRequest(serviceName, payload == null ? Map.of() : payload, metadata, correlationId);
+        long sizeHint = contentLength == null ? -1 : contentLength;
+
+        if (idempotency == null || idempotencyKey == null) {
+            return handle(request, sizeHint);
+        }
+        if (!IdempotencyGuard.valid(idempotencyKey)) {
+            return Mono.<ResponseEntity<?>>just(IdempotencyGuard.invalidKey());
+        }
+        return once(request, idempotencyKey, sizeHint, 1);
+    }
+
+    private Mono<ResponseEntity<?>> handle(ServiceRequest request, long sizeHint) {
+        String serviceName = request.getServiceName();
+        ServiceResponse invalid = payloadBinder == null ? null : payloadBinder.bindLocal(request);
+        if (invalid != null) {
+            return Mono.<ResponseEntity<?>>just(IrpResultController.toEntity(invalid));
+        }
+        return target().flatMap(target -> admit(serviceName, target).flatMap(decision -> {
+            if (!decision.admitted()) {
+                log.debug("IRP rejecting request service={}, correlationId={}, reason={}", serviceName, request.getCorrelationId(), decision.reason());
+                return Mono.<ResponseEntity<?>>just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                        .body(IrpController.overloaded(serviceName, decision)));
+            }
+            return dispatch(request, target, sizeHint);
+        }));
+    }
+
+    /** {@link IdempotencyGuard#execute} without blocking: claims on the bounded elastic scheduler, waits on the future. */
+    private Mono<ResponseEntity<?>> once(ServiceRequest request, String key, long sizeHint, int attempt) {
+        String serviceName = request.getServiceName();
+        return Mono.fromCallable(() -> idempotency.claim(serviceName, request.getTenant(), key, request.getPayload()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(claim -> {
+                    if (claim.kind() == IdempotencyStore.Kind.MISMATCH) {
+                        idempotency.record(serviceName, "mismatch");
+                        return Mono.<ResponseEntity<?>>just(IdempotencyGuard.mismatch());
+                    }
+                    if (claim.kind() == IdempotencyStore.Kind.NEW) {
+                        idempotency.record(serviceName, "executed");
+                        return handle(request, sizeHint)
+                                .flatMap(response -> Mono.<ResponseEntity<?>>fromCallable(() -> {
+                                    idempotency.finish(claim, response);
+                                    return response;
+                                }).subscribeOn(Schedulers.boundedElastic()))
+                                .onErrorResume(e -> Mono.fromRunnable(() -> idempotency.release(claim))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .then(Mono.error(e)))
+                                .doOnCancel(() -> Schedulers.boundedElastic().schedule(() -> idempotency.release(claim)));
+                    }
+                    boolean answered = claim.response().isDone();
+                    // a null answer (released) completes the Mono empty
+                    return Mono.fromFuture(claim.response())
+                            .timeout(Duration.ofMillis(idempotency.waitMs()))
+                            .<ResponseEntity<?>>map(stored -> {
+                                idempotency.record(serviceName, answered ? "replayed" : "waited");
+                                return IdempotencyGuard.replay(stored);
+                            })
+                            .switchIfEmpty(Mono.defer(() -> {
+                                if (attempt < IdempotencyGuard.MAX_ATTEMPTS) return once(request, key, sizeHint, attempt + 1);
+                                idempotency.record(serviceName, "timeout");
+                                return Mono.<ResponseEntity<?>>just(IdempotencyGuard.inProgress());
+                            }))
+                            .onErrorResume(TimeoutException.class, e -> {
+                                idempotency.record(serviceName, "timeout");
+                                return Mono.<ResponseEntity<?>>just(IdempotencyGuard.inProgress());
+                            });
+                });
+    }
+
+    /** The {@code irp} module config, cached so the event loop never waits on the database. */
+    private Mono<IrpController.Target> target() {
+        IrpController.Target cached = cachedTarget;
+        if (cached != null && System.currentTimeMillis() - targetLoadedAt < configRefreshMs) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> {
+            IrpController.Target loaded = IrpController.target(configRepository);
+            cachedTarget = loaded;
+            targetLoadedAt = System.currentTimeMillis();
+            return loaded;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<AdmissionController.Decision> admit(String serviceName, IrpController.Target target) {
+        if (admission == null) return Mono.just(AdmissionController.Decision.ADMITTED);
+        Mono<AdmissionController.Decision> decision =
+                Mono.fromCallable(() -> admission.admit(serviceName, target.mode(), target.queue(), target.settings()));
+        // DIRECT limits are in memory; the queue depth may have to be read from the queue's store
+        return target.mode() == RouteMode.DIRECT ? decision : decision.subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ResponseEntity<?>> dispatch(ServiceRequest request, IrpController.Target target, long sizeHint) {
+        String serviceName = request.getServiceName();
+        if (target.mode() == RouteMode.QUEUE) {
+            return enqueue(request, target, sizeHint);
+        }
+        if (target.mode() == RouteMode.HYBRID) {
+            // DIRECT while there is capacity, the queue once the router reports saturation
+            if (spillover.shouldSpill(serviceName)) {
+                spillover.recordPath(serviceName, "queue");
+                return enqueue(request, target, sizeHint);
+            }
+            return routeDirect(request).flatMap(response -> {
+                if (spillover.onDirect(serviceName, response)) {
+                    log.info("IRP spilling saturated request service={}, correlationId={}, error={}", serviceName, request.getCorrelationId(), response.getErrorCode());
+                    spillover.recordPath(serviceName, "queue");
+                    return enqueue(request, target, sizeHint);
+                }
+                spillover.recordPath(serviceName, "direct");
+                return Mono.<ResponseEntity<?>>just(IrpResultController.toEntity(response));
+            });
+        }
+        // DIRECT or other
+        return routeDirect(request).<ResponseEntity<?>>map(IrpResultController::toEntity);
+    }
+
+    private Mono<ResponseEntity<?>> enqueue(ServiceRequest request, IrpController.Target target, long sizeHint) {
+        return Mono.<ResponseEntity<?>>fromCallable(() -> {
+            log.info("IRP enqueuing request service={}, correlationId={}, queue={}", request.getServiceName(), request.getCorrelationId(), target.queue());
+            // partition key first: it may be a payload field that the claim check moves out
+            String servicePriority = IrpController.servicePriority(configRepository, request.getServiceName(), target);
+            EnqueueOptions options = target.settings().enqueueOptions(request, servicePriority);
+            ServiceRequest toEnqueue = claimCheck == null ? request : claimCheck.offload(request, sizeHint);
+            try {
+                queuePlugin.enqueue(target.queue(), toEnqueue, options);
+            } catch (QueueFullException e) {
+                log.warn("IRP queue full service={}, correlationId={}, queue={}", request.getServiceName(), request.getCorrelationId(), target.queue());
+                if (toEnqueue != request) claimCheck.release(toEnqueue);
+                return IrpController.queueFull(e);
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(IrpController.ack(request.getCorrelationId()));
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ServiceResponse> routeDirect(ServiceRequest request) {
+        log.info("IRP routing DIRECT service={}, correlationId={}", request.getServiceName(), request.getCorrelationId());
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.fromFuture(serviceRouter.routeAsync(request)).doOnNext(response -> {
+                if (admission != null) {
+                    admission.recordLatency(request.getServiceName(), System.nanoTime() - start);
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package org.knightmesh.irp;
+
+import org.knightmesh.plugins.result.ResultStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebFlux variant of {@link IrpResultController}: the same long poll and server-sent event, served from the
+ * {@link ResultStore}'s future without holding a thread. Results of another tenant are {@code 404} on both.
+ */
+@RestController
+@RequestMapping("/irp/results")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveIrpResultController {
+
+    private final ResultStore results;
+    private final long defaultWaitMs;
+    private final long maxWaitMs;
+    private TenantResolver tenantResolver = new TenantResolver();
+
+    public ReactiveIrpResultController(ResultStore results,
+                                       @Value("${irp.results.wait.ms:30000}") long defaultWaitMs,
+                                       @Value("${irp.results.max-wait.ms:60000}") long maxWaitMs) {
+        this.results = results;
+        this.defaultWaitMs = defaultWaitMs;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    @Autowired(required = false)
+    public void setTenantResolver(TenantResolver tenantResolver) {
+        this.tenantResolver = tenantResolver;
+    }
+
+    @GetMapping("/{correlationId}")
+    public Mono<ResponseEntity<?>> result(@PathVariable String correlationId,
+                                          @RequestParam(value = "waitMs", required = false) Long waitMs,
+                                          @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader) {
+        String tenant = tenantResolver.resolve(tenantHeader);
+        return await(correlationId, waitMs).<ResponseEntity<?>>map(r -> r.isPresent()
+                ? IrpResultController.toEntity(correlationId, r.get(), tenant)
+                : IrpResultController.pending(correlationId));
+    }
+
+    @GetMapping(value = "/{correlationId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ServerSentEvent<Object>> events(@PathVariable String correlationId,
+                                                @RequestParam(value = "waitMs", required = false) Long waitMs,
+                                                @RequestHeader(value = TenantResolver.TENANT_HEADER, required = false) String tenantHeader) {
+        String tenant = tenantResolver.resolve(tenantHeader);
+        return await(correlationId, waitMs).<ServerSentEvent<Object>>flatMap(r -> {
+            if (r.isPresent() && !r.get().isVisibleTo(tenant)) {
+                // nothing is written before the single event, so this is still a plain 404
+                return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No result for correlation id " + correlationId));
+            }
+            return Mono.just(ServerSentEvent.builder()
+                    .event(r.isPresent() ? "result" : "pending")
+                    .id(correlationId)
+                    .data(r.isPresent() ? r.get().response() : IrpResultController.pendingBody(correlationId))
+                    .build());
+        });
+    }
+
+    /** The stored result, or empty once the wait is over; cancelling the subscription releases the waiter. */
+    private Mono<Optional<ResultStore.Result>> await(String correlationId, Long waitMs) {
+        long wait = Math.max(0, Math.min(waitMs == null ? defaultWaitMs : waitMs, maxWaitMs));
+        return Mono.defer(() -> {
+            CompletableFuture<ResultStore.Result> future = results.await(correlationId)
+                    .completeOnTimeout(null, wait, TimeUnit.MILLISECONDS);
+            return Mono.fromFuture(future).map(Optional::of).defaultIfEmpty(Optional.empty());
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package org.knightmesh.irp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Decides, per service, whether a HYBRID request is routed synchronously or goes straight to the queue.
+ * A DIRECT attempt that fails with one of {@code irp.hybrid.spill-error-codes} means the router found no
+ * capacity, locally or remotely, and never ran the request; that request is enqueued instead. The codes must
+ * only be ones proving the request did not run ({@code SERVICE_UNAVAILABLE}, which the router answers only for
+ * calls it never sent, {@code NO_INSTANCES}, {@code NO_REMOTE_PATH}): a remote call whose outcome is unknown
+ * ({@value ServiceRouter#OUTCOME_UNKNOWN}) may already have run, and enqueuing it would run it twice. After {@code irp.hybrid.enter-after}
+ * such failures in a row the service spills: requests skip the DIRECT attempt for
+ * {@code irp.hybrid.spill.ms}. Then a single request probes the router; while it is in flight everything
+ * else keeps spilling, and only its success switches the service back to DIRECT. A failed probe spills for
+ * another period. Requests are counted by path in {@code irp_hybrid_requests_total}.
+ */
+@Component
+public class SpilloverController {
+    private static final Logger log = LoggerFactory.getLogger(SpilloverController.class);
+
+    private final int enterAfter;
+    private final long spillMs;
+    private final Set<String> spillErrorCodes;
+    private final LongSupplier clock;
+    private MeterRegistry meterRegistry;
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SpilloverController(@Value("${irp.hybrid.enter-after:3}") int enterAfter,
+                               @Value("${irp.hybrid.spill.ms:5000}") long spillMs,
+                               @Value("${irp.hybrid.spill-error-codes:SERVICE_UNAVAILABLE,NO_INSTANCES,NO_REMOTE_PATH}") String spillErrorCodes) {
+        this(enterAfter, spillMs, spillErrorCodes, System::currentTimeMillis);
+    }
+
+    SpilloverController(int enterAfter, long spillMs, String spillErrorCodes, LongSupplier clock) {
+        this.enterAfter = Math.max(1, enterAfter);
+        this.spillMs = spillMs;
+        this.spillErrorCodes = spillErrorCodes == null ? Set.of() : Arrays.stream(spillErrorCodes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.clock = Objects.requireNonNull(clock, "clock");
+        if (this.spillErrorCodes.contains(ServiceRouter.OUTCOME_UNKNOWN)) {
+            log.warn("[Spillover] irp.hybrid.spill-error-codes contains {}: such requests may run twice",
+                    ServiceRouter.OUTCOME_UNKNOWN);
+        }
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return true if the request should be enqueued without a DIRECT attempt; false if it should be
+     * routed, in which case the caller must report the outcome to {@link #onDirect}
+     */
+    public boolean shouldSpill(String serviceName) {
+        return state(serviceName).shouldSpill(clock.getAsLong());
+    }
+
+    /**
+     * Outcome of a DIRECT attempt.
+     *
+     * @return true if the response reports saturation and the request should be enqueued instead
+     */
+    public boolean onDirect(String serviceName, ServiceResponse response) {
+        boolean saturated = isSaturated(response);
+        Boolean changed = state(serviceName).onDirect(saturated, clock.getAsLong());
+        if (changed != null) {
+            if (changed) {
+                log.info("[IRP] service {} is saturated, spilling HYBRID requests to the queue for {} ms", serviceName, spillMs);
+            } else {
+                log.info("[IRP] service {} has capacity again, HYBRID requests run DIRECT", serviceName);
+            }
+        }
+        return saturated;
+    }
+
+    /** Count a HYBRID request by the path it took: {@code direct} or {@code queue}. */
+    public void recordPath(String serviceName, String path) {
+        if (meterRegistry == null) return;
+        Counter.builder("irp_hybrid_requests_total")
+                .tag("service_name", serviceName)
+                .tag("path", path)
+                .description("HYBRID requests answered synchronously or spilled to the queue")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /** Whether the service currently spills, for tests and diagnostics. */
+    public boolean isSpilling(String serviceName) {
+        State s = states.get(serviceName);
+        return s != null && s.spilling();
+    }
+
+    boolean isSaturated(ServiceResponse response) {
+        return response != null && response.getStatus() == ServiceResponse.Status.FAILURE
+                && response.getErrorCode() != null && spillErrorCodes.contains(response.getErrorCode());
+    }
+
+    private State state(String serviceName) {
+        return states.computeIfAbsent(serviceName, s -> {
+            State state = new State();
+            if (meterRegistry != null) {
+                Gauge.builder("irp_hybrid_spilling", state, st -> st.spilling() ? 1 : 0)
+                        .tag("service_name", s)
+                        .description("1 while HYBRID requests of the service skip the DIRECT attempt")
+                        .register(meterRegistry);
+            }
+            return state;
+        });
+    }
+
+    private final class State {
+        private int saturatedInRow;
+        private boolean spilling;
+        private long spillUntil;
+        private boolean probing;
+
+        synchronized boolean spilling() {
+            return spilling;
+        }
+
+        synchronized boolean shouldSpill(long now) {
+            if (!spilling) return false;
+            if (probing) {
+                // a probe that never reported back must not pin the service to the queue
+                if (now < spillUntil + spillMs) return true;
+            } else if (now < spillUntil) {
+                return true;
+            }
+            probing = true;
+            spillUntil = now;
+            return false;
+        }
+
+        /** @return TRUE when spilling starts, FALSE when it ends, null when nothing changed */
+        synchronized Boolean onDirect(boolean saturated, long now) {
+            // while spilling only the probe decides; other outcomes are of calls that started before
+            if (spilling && !probing) return null;
+            if (!saturated) {
+                saturatedInRow = 0;
+                if (!spilling) return null;
+                probing = false;
+                spilling = false;
+                return Boolean.FALSE;
+            }
+            saturatedInRow++;
+            if (spilling) {
+                // failed probe: another period
+                probing = false;
+                spillUntil = now + spillMs;
+                return null;
+            }
+            if (saturatedInRow < enterAfter) return null;
+            spilling = true;
+            spillUntil = now + spillMs;
+            return Boolean.TRUE;
+        }
+    }
+}
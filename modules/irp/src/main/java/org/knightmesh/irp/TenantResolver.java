@@ -0,0 +1,47 @@
+package org.knightmesh.irp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Works out which tenant a request is made for, from the {@value #TENANT_HEADER} header. The gateway sets
+ * that header from the claim of the token it has verified and drops any value sent by the client, so the
+ * header is trusted only because IRP is reachable through the gateway alone; IRP does not read tokens
+ * itself. With {@code irp.tenant.enabled=false} every request is anonymous. Ids that are not short plain
+ * names are ignored.
+ */
+@Component
+public class TenantResolver {
+    private static final Logger log = LoggerFactory.getLogger(TenantResolver.class);
+
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._:@+-]{1,64}");
+
+    private final boolean enabled;
+
+    public TenantResolver() {
+        this(true);
+    }
+
+    @Autowired
+    public TenantResolver(@Value("${irp.tenant.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** @return the tenant, or null for anonymous requests */
+    public String resolve(String tenantHeader) {
+        if (!enabled || tenantHeader == null) return null;
+        String tenant = tenantHeader.trim();
+        if (tenant.isEmpty()) return null;
+        if (!VALID.matcher(tenant).matches()) {
+            log.debug("[IRP] ignoring malformed tenant id of length {}", tenant.length());
+            return null;
+        }
+        return tenant;
+    }
+}
@@ -0,0 +1,141 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.config.ServiceConfig;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.service.CKService;
+import org.knightmesh.plugins.queue.InMemoryQueuePlugin;
+import org.knightmesh.plugins.queue.QueueSettings;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.registry.LocalServiceDescriptor;
+import org.knightmesh.runtime.registry.LocalServiceRegistry;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControllerTest {
+
+    private final LocalServiceRegistry registry = new LocalServiceRegistry();
+    private final ConfigRepository configRepository = mock(ConfigRepository.class);
+    private final InMemoryQueuePlugin queue = new InMemoryQueuePlugin();
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    @AfterEach
+    void tearDown() {
+        queue.close();
+    }
+
+    private AdmissionController admission(AdmissionController.Limits limits) {
+        return new AdmissionController(registry, configRepository, queue, true, limits, 10_000, 500, 60, clock::get);
+    }
+
+    @Test
+    void deep_queue_is_rejected_until_it_drains() {
+        AdmissionController admission = admission(new AdmissionController.Limits(0, 0, 3));
+        QueueSettings settings = QueueSettings.of(2, null);
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue("orders#p" + (i % 2), new ServiceRequest("SVC", Map.of(), Map.of(), "c" + i));
+        }
+
+        AdmissionController.Decision rejected = admission.admit("SVC", RouteMode.QUEUE, "orders", settings);
+        assertThat(rejected.admitted()).isFalse();
+        assertThat(rejected.reason()).isEqualTo("queue_depth");
+        assertThat(rejected.retryAfterSeconds()).isBetween(1L, 60L);
+
+        queue.dequeue("orders#p0");
+        // depth is cached for the refresh interval
+        assertThat(admission.admit("SVC", RouteMode.QUEUE, "orders", settings).admitted()).isFalse();
+        clock.addAndGet(500);
+        assertThat(admission.admit("SVC", RouteMode.QUEUE, "orders", settings).admitted()).isTrue();
+        // the depth limit does not apply to DIRECT requests
+        assertThat(admission.admit("SVC", RouteMode.DIRECT, "orders", settings).admitted()).isTrue();
+    }
+
+    @Test
+    void busy_local_service_is_rejected_with_retry_after_of_about_one_call() {
+        AdmissionController admission = admission(new AdmissionController.Limits(1.0, 0, 0));
+        LocalServiceDescriptor d = registry.register("SVC", mock(CKService.class), 2);
+        admission.recordLatency("SVC", TimeUnit.MILLISECONDS.toNanos(2_500));
+        d.incrementActive();
+        assertThat(admission.admit("SVC", RouteMode.DIRECT, null, QueueSettings.defaults()).admitted()).isTrue();
+
+        d.incrementActive();
+        AdmissionController.Decision rejected = admission.admit("SVC", RouteMode.DIRECT, null, QueueSettings.defaults());
+        assertThat(rejected.reason()).isEqualTo("utilization");
+        assertThat(rejected.retryAfterSeconds()).isEqualTo(3);
+    }
+
+    @Test
+    void slow_service_is_rejected_until_the_latency_window_passes() {
+        AdmissionController admission = admission(new AdmissionController.Limits(0, 200, 0));
+        admission.recordLatency("SVC", TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(admission.admit("SVC", RouteMode.DIRECT, null, QueueSettings.defaults()).admitted()).isTrue();
+
+        for (int i = 0; i < 10; i++) {
+            admission.recordLatency("SVC", TimeUnit.MILLISECONDS.toNanos(1_000));
+        }
+        AdmissionController.Decision rejected = admission.admit("SVC", RouteMode.DIRECT, null, QueueSettings.defaults());
+        assertThat(rejected.reason()).isEqualTo("latency");
+        assertThat(rejected.retryAfterSeconds()).isEqualTo(10);
+
+        clock.addAndGet(10_000);
+        assertThat(admission.admit("SVC", RouteMode.DIRECT, null, QueueSettings.defaults()).admitted()).isTrue();
+    }
+
+    @Test
+    void after_a_latency_rejection_one_probe_decides_whether_the_service_reopens() {
+        AdmissionController admission = admission(new AdmissionController.Limits(0, 200, 0));
+        admission.recordLatency("SVC", TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertThat(admit(admission).admitted()).isFalse();
+
+        clock.addAndGet(10_000);
+        assertThat(admit(admission).admitted()).isTrue();
+        AdmissionController.Decision waiting = admit(admission);
+        assertThat(waiting.reason()).isEqualTo("latency");
+        assertThat(waiting.retryAfterSeconds()).isEqualTo(10);
+
+        // a slow probe starts another window
+        admission.recordLatency("SVC", TimeUnit.MILLISECONDS.toNanos(900));
+        assertThat(admit(admission).admitted()).isFalse();
+        clock.addAndGet(10_000);
+        assertThat(admit(admission).admitted()).isTrue();
+        assertThat(admit(admission).admitted()).isFalse();
+
+        // a probe that never reports is replaced after a window
+        clock.addAndGet(10_000);
+        assertThat(admit(admission).admitted()).isTrue();
+        assertThat(admit(admission).admitted()).isFalse();
+
+        // a fast probe reopens the service
+        admission.recordLatency("SVC", TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(admit(admission).admitted()).isTrue();
+        assertThat(admit(admission).admitted()).isTrue();
+    }
+
+    private static AdmissionController.Decision admit(AdmissionController admission) {
+        return admission.admit("SVC", RouteMode.DIRECT, null, QueueSettings.defaults());
+    }
+
+    @Test
+    void service_config_overrides_the_defaults() {
+        ServiceConfig sc = new ServiceConfig();
+        sc.setConfigJson("{\"admission\": {\"maxQueueDepth\": 1}}");
+        when(configRepository.getService("SVC")).thenReturn(Optional.of(sc));
+        AdmissionController admission = admission(new AdmissionController.Limits(0.9, 0, 100));
+
+        assertThat(admission.limitsFor("SVC")).isEqualTo(new AdmissionController.Limits(0.9, 0, 1));
+        assertThat(admission.limitsFor("OTHER")).isEqualTo(new AdmissionController.Limits(0.9, 0, 100));
+
+        queue.enqueue("q", new ServiceRequest("SVC", Map.of(), Map.of(), "c1"));
+        assertThat(admission.admit("SVC", RouteMode.QUEUE, "q", QueueSettings.defaults()).admitted()).isFalse();
+        assertThat(admission.admit("OTHER", RouteMode.QUEUE, "q", QueueSettings.defaults()).admitted()).isTrue();
+    }
+}
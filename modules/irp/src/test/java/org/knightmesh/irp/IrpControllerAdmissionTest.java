@@ -0,0 +1,76 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.queue.QueueFullException;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = IrpController.class)
+class IrpControllerAdmissionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ConfigRepository configRepository;
+
+    @MockBean
+    private ServiceRouter serviceRouter;
+
+    @MockBean
+    private QueuePlugin queuePlugin;
+
+    @MockBean
+    private AdmissionController admission;
+
+    @Test
+    void rejected_request_gets_429_with_retry_after_and_is_not_routed() throws Exception {
+        when(admission.admit(eq("REGISTER_USER"), eq(RouteMode.DIRECT), any(), any()))
+                .thenReturn(new AdmissionController.Decision(false, "utilization", 3));
+
+        mockMvc.perform(post("/irp/REGISTER_USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"user\":\"alice\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.errorCode", is("OVERLOADED")))
+                .andExpect(jsonPath("$.data.retryAfterSeconds", is(3)));
+
+        verifyNoInteractions(serviceRouter, queuePlugin);
+    }
+
+    @Test
+    void full_queue_gets_503_with_retry_after() throws Exception {
+        ModuleConfig mc = new ModuleConfig();
+        mc.setRouteMode(RouteMode.QUEUE);
+        mc.setQueueName("irp-default");
+        when(configRepository.getModuleConfig("irp")).thenReturn(Optional.of(mc));
+        when(admission.admit(any(), any(), any(), any())).thenReturn(AdmissionController.Decision.ADMITTED);
+        doThrow(new QueueFullException("irp-default", "Queue full: irp-default"))
+                .when(queuePlugin).enqueue(eq("irp-default"), any(ServiceRequest.class), any());
+
+        mockMvc.perform(post("/irp/REGISTER_USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"user\":\"alice\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.errorCode", is("QUEUE_FULL")));
+    }
+}
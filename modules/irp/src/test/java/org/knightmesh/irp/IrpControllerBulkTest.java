@@ -0,0 +1,187 @@
+package org.knightmesh.irp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.payload.JacksonPayloadBinder;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.queue.ClaimCheck;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = IrpController.class)
+class IrpControllerBulkTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ConfigRepository configRepository;
+
+    @MockBean
+    private ServiceRouter serviceRouter;
+
+    @MockBean
+    private QueuePlugin queuePlugin;
+
+    @MockBean
+    private JacksonPayloadBinder payloadBinder;
+
+    @MockBean
+    private ClaimCheck claimCheck;
+
+    @BeforeEach
+    void keepPayloadsInline() {
+        when(claimCheck.offload(any(), anyLong())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private void mode(RouteMode mode) {
+        ModuleConfig mc = new ModuleConfig();
+        mc.setRouteMode(mode);
+        mc.setQueueName("irp-bulk");
+        when(configRepository.getModuleConfig("irp")).thenReturn(Optional.of(mc));
+    }
+
+    private List<JsonNode> bulk(String ndjson) throws Exception {
+        String body = mockMvc.perform(post("/irp/REGISTER_USER/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isBlank()) lines.add(mapper.readTree(line));
+        }
+        lines.sort(Comparator.comparingInt(n -> n.get("index").asInt()));
+        return lines;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void queue_mode_enqueues_items_in_one_batch_and_acknowledges_each() throws Exception {
+        mode(RouteMode.QUEUE);
+
+        List<JsonNode> lines = bulk("{\"user\":\"alice\"}\n{\"user\":\"bob\"}\n\n{\"user\":\"carol\"}\n");
+
+        ArgumentCaptor<List<ServiceRequest>> batch = ArgumentCaptor.forClass(List.class);
+        verify(queuePlugin, times(1)).enqueueBatch(eq("irp-bulk"), batch.capture());
+        assertThat(batch.getValue()).extracting(r -> r.getPayload().get("user")).containsExactly("alice", "bob", "carol");
+        assertThat(batch.getValue()).allSatisfy(r -> assertThat(r.getMetadata()).containsEntry("source", "IRP"));
+        verifyNoInteractions(serviceRouter);
+
+        assertThat(lines).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            JsonNode line = lines.get(i);
+            assertThat(line.get("index").asInt()).isEqualTo(i);
+            assertThat(line.get("status").asInt()).isEqualTo(202);
+            assertThat(line.get("correlationId").asText()).isEqualTo(batch.getValue().get(i).getCorrelationId());
+            assertThat(line.at("/body/result").asText()).startsWith("/irp/results/");
+        }
+    }
+
+    @Test
+    void direct_mode_routes_every_item_and_reports_each_outcome() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any())).thenAnswer(inv -> {
+            ServiceRequest r = inv.getArgument(0);
+            return "bob".equals(r.getPayload().get("user"))
+                    ? ServiceResponse.failure("VALIDATION", "bad user", null)
+                    : ServiceResponse.success(Map.of("user", r.getPayload().get("user")));
+        });
+
+        List<JsonNode> lines = bulk("{\"user\":\"alice\"}\n[1,2]\n{\"user\":\"bob\"}\n");
+
+        verify(serviceRouter, times(2)).route(any());
+        verify(queuePlugin, never()).enqueue(any(), any(), any());
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(lines.get(0).at("/body/data/user").asText()).isEqualTo("alice");
+        assertThat(lines.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(lines.get(1).at("/body/errorCode").asText()).isEqualTo("INVALID_ITEM");
+        assertThat(lines.get(2).get("status").asInt()).isEqualTo(400);
+        assertThat(lines.get(2).at("/body/errorCode").asText()).isEqualTo("VALIDATION");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void items_failing_validation_get_400_and_are_not_enqueued() throws Exception {
+        mode(RouteMode.QUEUE);
+        when(payloadBinder.bindLocal(any())).thenAnswer(inv -> {
+            ServiceRequest r = inv.getArgument(0);
+            return "bob".equals(r.getPayload().get("user"))
+                    ? ServiceResponse.failure("VALIDATION_ERROR", "email: must not be blank", null)
+                    : null;
+        });
+
+        List<JsonNode> lines = bulk("{\"user\":\"alice\"}\n{\"user\":\"bob\"}\n{\"user\":\"carol\"}\n");
+
+        ArgumentCaptor<List<ServiceRequest>> batch = ArgumentCaptor.forClass(List.class);
+        verify(queuePlugin, times(1)).enqueueBatch(eq("irp-bulk"), batch.capture());
+        assertThat(batch.getValue()).extracting(r -> r.getPayload().get("user")).containsExactly("alice", "carol");
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0).get("status").asInt()).isEqualTo(202);
+        assertThat(lines.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(lines.get(1).at("/body/errorCode").asText()).isEqualTo("VALIDATION_ERROR");
+        assertThat(lines.get(2).get("status").asInt()).isEqualTo(202);
+    }
+
+    @Test
+    void items_whose_batch_is_not_stored_get_503_and_release_their_claim_check_blobs() throws Exception {
+        mode(RouteMode.QUEUE);
+        doThrow(new IllegalStateException("disk full")).when(queuePlugin).enqueueBatch(anyString(), anyList());
+
+        List<JsonNode> lines = bulk("{\"user\":\"alice\"}\n{\"user\":\"bob\"}\n");
+
+        ArgumentCaptor<ServiceRequest> released = ArgumentCaptor.forClass(ServiceRequest.class);
+        verify(claimCheck, times(2)).release(released.capture());
+        assertThat(released.getAllValues()).extracting(r -> r.getPayload().get("user")).containsExactly("alice", "bob");
+        assertThat(lines).hasSize(2);
+        assertThat(lines).allSatisfy(line -> {
+            assertThat(line.get("status").asInt()).isEqualTo(503);
+            assertThat(line.at("/body/errorCode").asText()).isEqualTo("ENQUEUE_FAILED");
+        });
+    }
+
+    @Test
+    void malformed_json_ends_the_stream_after_the_items_before_it() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any())).thenReturn(ServiceResponse.success(Map.of()));
+
+        List<JsonNode> lines = bulk("{\"user\":\"alice\"}\n{\"user\": \n{\"user\":\"carol\"}\n");
+
+        verify(serviceRouter, times(1)).route(any());
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(1).get("index").asInt()).isEqualTo(1);
+        assertThat(lines.get(1).at("/body/errorCode").asText()).isEqualTo("INVALID_JSON");
+    }
+}
@@ -18,6 +18,8 @@ import java.util.Optional;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -60,4 +62,30 @@ class IrpControllerDirectTest {
         verify(serviceRouter, times(1)).route(any());
         verify(queuePlugin, never()).enqueue(anyString(), any());
     }
+
+    @Test
+    void post_hybrid_enqueues_when_router_reports_saturation() throws Exception {
+        ModuleConfig mc = new ModuleConfig();
+        mc.setRouteMode(RouteMode.HYBRID);
+        mc.setQueueName("irp-hybrid");
+        when(configRepository.getModuleConfig("irp")).thenReturn(Optional.of(mc));
+        when(serviceRouter.route(any()))
+                .thenReturn(ServiceResponse.success(Map.of("user", "alice")))
+                .thenReturn(ServiceResponse.failure("NO_INSTANCES", "No remote instances for service: SPILL_USER", null));
+
+        mockMvc.perform(post("/irp/SPILL_USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"user\":\"alice\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.user", is("alice")));
+        verify(queuePlugin, never()).enqueue(anyString(), any(), any());
+
+        mockMvc.perform(post("/irp/SPILL_USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"user\":\"bob\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.correlationId", notNullValue()))
+                .andExpect(jsonPath("$.result", startsWith("/irp/results/")));
+        verify(queuePlugin, times(1)).enqueue(eq("irp-hybrid"), argThat(r -> "bob".equals(r.getPayload().get("user"))), any());
+    }
 }
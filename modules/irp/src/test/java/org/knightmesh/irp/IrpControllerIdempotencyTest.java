@@ -0,0 +1,211 @@
+package org.knightmesh.irp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.idempotency.IdempotencyStore;
+import org.knightmesh.plugins.idempotency.InMemoryIdempotencyStore;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = IrpController.class)
+@Import({IdempotencyGuard.class, IrpControllerIdempotencyTest.Store.class})
+class IrpControllerIdempotencyTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @TestConfiguration
+    static class Store {
+        @Bean
+        IdempotencyStore idempotencyStore() {
+            return new InMemoryIdempotencyStore(100, 60_000, 5_000, null, 0);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ConfigRepository configRepository;
+
+    @MockBean
+    private ServiceRouter serviceRouter;
+
+    @MockBean
+    private QueuePlugin queuePlugin;
+
+    private void mode(RouteMode mode) {
+        ModuleConfig mc = new ModuleConfig();
+        mc.setRouteMode(mode);
+        mc.setQueueName("irp-idem");
+        when(configRepository.getModuleConfig("irp")).thenReturn(Optional.of(mc));
+    }
+
+    private ResultActions send(String service, String key, String json) throws Exception {
+        return mockMvc.perform(post("/irp/" + service)
+                .header(IdempotencyGuard.HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json));
+    }
+
+    private List<JsonNode> bulk(String key, String ndjson) throws Exception {
+        String body = mockMvc.perform(post("/irp/REGISTER_USER/bulk")
+                        .header(IdempotencyGuard.HEADER, key)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isBlank()) lines.add(mapper.readTree(line));
+        }
+        lines.sort(Comparator.comparingInt(n -> n.get("index").asInt()));
+        return lines;
+    }
+
+    @Test
+    void direct_retry_replays_the_first_answer_without_routing_again() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any())).thenReturn(ServiceResponse.success(Map.of("user", "alice")));
+
+        send("REGISTER_USER", "key-1", "{\"user\":\"alice\"}")
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        send("REGISTER_USER", "key-1", "{\"user\":\"alice\"}")
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.data.user", is("alice")));
+
+        verify(serviceRouter, times(1)).route(any());
+    }
+
+    @Test
+    void queue_retry_is_acknowledged_with_the_original_correlation_id_and_enqueued_once() throws Exception {
+        mode(RouteMode.QUEUE);
+
+        String first = send("REGISTER_USER", "key-2", "{\"user\":\"bob\"}")
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        String correlationId = first.replaceAll(".*\"correlationId\":\"([^\"]+)\".*", "$1");
+
+        send("REGISTER_USER", "key-2", "{\"user\":\"bob\"}")
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.correlationId", is(correlationId)));
+
+        verify(queuePlugin, times(1)).enqueue(eq("irp-idem"), any(), any());
+    }
+
+    @Test
+    void retry_with_the_payload_fields_in_another_order_is_replayed() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any())).thenReturn(ServiceResponse.success(Map.of("user", "gina")));
+
+        send("REGISTER_USER", "key-6", "{\"user\":\"gina\",\"profile\":{\"age\":30,\"city\":\"Oslo\"}}")
+                .andExpect(status().isOk());
+        send("REGISTER_USER", "key-6", "{\"profile\":{\"city\":\"Oslo\",\"age\":30},\"user\":\"gina\"}")
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        verify(serviceRouter, times(1)).route(any());
+    }
+
+    @Test
+    void retried_bulk_request_replays_answered_items_and_runs_the_rest() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any())).thenAnswer(inv -> ServiceResponse.success(
+                Map.of("user", ((ServiceRequest) inv.getArgument(0)).getPayload().get("user"))));
+
+        List<JsonNode> first = bulk("bulk-1", "{\"user\":\"alice\"}\n{\"user\":\"bob\"}\n");
+        assertThat(first).extracting(n -> n.get("status").asInt()).containsExactly(200, 200);
+
+        // the client lost the answer after two items and sends the whole stream again, with a third item
+        List<JsonNode> retry = bulk("bulk-1", "{\"user\":\"alice\"}\n{\"user\":\"bob\"}\n{\"user\":\"carol\"}\n");
+        assertThat(retry).extracting(n -> n.at("/body/data/user").asText()).containsExactly("alice", "bob", "carol");
+        assertThat(retry.get(0).get("correlationId").isNull()).isTrue();
+        assertThat(retry.get(1).get("correlationId").isNull()).isTrue();
+        assertThat(retry.get(2).get("correlationId").asText()).isNotEmpty();
+        verify(serviceRouter, times(3)).route(any());
+
+        // an item changed under the same key is refused like a single request
+        List<JsonNode> changed = bulk("bulk-1", "{\"user\":\"alice\"}\n{\"user\":\"mallory\"}\n");
+        assertThat(changed).extracting(n -> n.get("status").asInt()).containsExactly(200, 422);
+        verify(serviceRouter, times(3)).route(any());
+    }
+
+    @Test
+    void key_reused_with_another_payload_is_rejected() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any())).thenReturn(ServiceResponse.success(Map.of()));
+
+        send("REGISTER_USER", "key-3", "{\"user\":\"carol\"}").andExpect(status().isOk());
+        send("REGISTER_USER", "key-3", "{\"user\":\"dave\"}")
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.errorCode", is("IDEMPOTENCY_KEY_REUSED")));
+
+        // keys are per service: the same key elsewhere is a new request
+        send("USER_AUTH", "key-3", "{\"user\":\"dave\"}").andExpect(status().isOk());
+        verify(serviceRouter, times(2)).route(any());
+    }
+
+    @Test
+    void answers_saying_the_request_did_not_run_are_not_kept() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any()))
+                .thenReturn(ServiceResponse.failure("SERVICE_UNAVAILABLE", "Circuit open for remote service: REGISTER_USER", null))
+                .thenReturn(ServiceResponse.success(Map.of("user", "erin")));
+
+        send("REGISTER_USER", "key-4", "{\"user\":\"erin\"}")
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode", is("SERVICE_UNAVAILABLE")));
+        send("REGISTER_USER", "key-4", "{\"user\":\"erin\"}")
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        verify(serviceRouter, times(2)).route(any());
+    }
+
+    @Test
+    void answers_leaving_the_outcome_unknown_are_kept() throws Exception {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.route(any()))
+                .thenReturn(ServiceResponse.failure("REMOTE_OUTCOME_UNKNOWN", "Read timed out", null))
+                .thenReturn(ServiceResponse.success(Map.of("user", "frank")));
+
+        send("REGISTER_USER", "key-5", "{\"user\":\"frank\"}")
+                .andExpect(jsonPath("$.errorCode", is("REMOTE_OUTCOME_UNKNOWN")));
+        // the first call may have run remotely: the retry gets its answer instead of running again
+        send("REGISTER_USER", "key-5", "{\"user\":\"frank\"}")
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.errorCode", is("REMOTE_OUTCOME_UNKNOWN")));
+
+        verify(serviceRouter, times(1)).route(any());
+    }
+}
@@ -0,0 +1,71 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.registry.KnownServices;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = IrpController.class)
+class IrpControllerUnknownServiceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ConfigRepository configRepository;
+
+    @MockBean
+    private ServiceRouter serviceRouter;
+
+    @MockBean
+    private QueuePlugin queuePlugin;
+
+    @MockBean
+    private KnownServices knownServices;
+
+    @Test
+    void unknown_service_gets_404_without_routing_or_enqueuing() throws Exception {
+        when(knownServices.isKnown("REGISTER_USER")).thenReturn(true);
+
+        mockMvc.perform(post("/irp/NO_SUCH_SERVICE")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"user\":\"alice\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorCode", is("UNKNOWN_SERVICE")));
+        mockMvc.perform(post("/irp/NO_SUCH_SERVICE/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"user\":\"alice\"}\n"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorCode", is("UNKNOWN_SERVICE")));
+
+        verifyNoInteractions(serviceRouter, queuePlugin);
+        verify(configRepository, never()).getModuleConfig(any());
+
+        ModuleConfig mc = new ModuleConfig();
+        mc.setRouteMode(RouteMode.DIRECT);
+        when(configRepository.getModuleConfig("irp")).thenReturn(Optional.of(mc));
+        when(serviceRouter.route(any())).thenReturn(ServiceResponse.success(Map.of("user", "alice")));
+        mockMvc.perform(post("/irp/REGISTER_USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"user\":\"alice\"}"))
+                .andExpect(status().isOk());
+    }
+}
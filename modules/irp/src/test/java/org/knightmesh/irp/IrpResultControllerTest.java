@@ -0,0 +1,124 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.plugins.result.ResultStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = IrpResultController.class)
+class IrpResultControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ResultStore resultStore;
+
+    @Test
+    void long_poll_returns_the_stored_response() throws Exception {
+        when(resultStore.await("c1")).thenReturn(CompletableFuture.completedFuture(new ResultStore.Result(ServiceResponse.success(Map.of("user", "alice")), null)));
+
+        MvcResult started = mockMvc.perform(get("/irp/results/c1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("SUCCESS")))
+                .andExpect(jsonPath("$.data.user", is("alice")));
+    }
+
+    @Test
+    void long_poll_maps_failures_like_direct_mode() throws Exception {
+        when(resultStore.await("c1")).thenReturn(CompletableFuture.completedFuture(new ResultStore.Result(ServiceResponse.failure("NOT_FOUND", "no user", null), null)));
+
+        MvcResult started = mockMvc.perform(get("/irp/results/c1")).andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode", is("NOT_FOUND")));
+    }
+
+    @Test
+    void long_poll_answers_pending_when_nothing_arrives_in_time() throws Exception {
+        CompletableFuture<ResultStore.Result> never = new CompletableFuture<>();
+        when(resultStore.await("c1")).thenReturn(never);
+
+        MvcResult started = mockMvc.perform(get("/irp/results/c1").param("waitMs", "50")).andReturn();
+        started.getAsyncResult(5_000);
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status", is("PENDING")))
+                .andExpect(jsonPath("$.correlationId", is("c1")));
+    }
+
+    @Test
+    void events_stream_sends_the_result_and_completes() throws Exception {
+        CompletableFuture<ResultStore.Result> arriving = new CompletableFuture<>();
+        when(resultStore.await("c1")).thenReturn(arriving);
+
+        MvcResult started = mockMvc.perform(get("/irp/results/c1/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        arriving.complete(new ResultStore.Result(ServiceResponse.success(Map.of("user", "alice")), null));
+        started.getAsyncResult(5_000);
+
+        String body = started.getResponse().getContentAsString();
+        assertThat(body)
+                .contains("event:result")
+                .contains("id:c1")
+                .contains("\"user\":\"alice\"");
+    }
+
+    @Test
+    void a_result_is_served_to_its_tenant_only() throws Exception {
+        when(resultStore.await("c1")).thenAnswer(inv -> CompletableFuture.completedFuture(
+                new ResultStore.Result(ServiceResponse.success(Map.of("user", "alice")), "acme")));
+
+        MvcResult owner = mockMvc.perform(get("/irp/results/c1").header(TenantResolver.TENANT_HEADER, "acme")).andReturn();
+        mockMvc.perform(asyncDispatch(owner))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.user", is("alice")));
+
+        MvcResult other = mockMvc.perform(get("/irp/results/c1").header(TenantResolver.TENANT_HEADER, "globex")).andReturn();
+        mockMvc.perform(asyncDispatch(other))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorCode", is("UNKNOWN_RESULT")))
+                .andExpect(content().string(not(containsString("alice"))));
+
+        MvcResult anonymous = mockMvc.perform(get("/irp/results/c1")).andReturn();
+        mockMvc.perform(asyncDispatch(anonymous))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/irp/results/c1/events").header(TenantResolver.TENANT_HEADER, "globex"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void events_stream_does_not_send_a_result_of_another_tenant_that_arrives_later() throws Exception {
+        CompletableFuture<ResultStore.Result> arriving = new CompletableFuture<>();
+        when(resultStore.await("c1")).thenReturn(arriving);
+
+        MvcResult started = mockMvc.perform(get("/irp/results/c1/events").header(TenantResolver.TENANT_HEADER, "globex"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        arriving.complete(new ResultStore.Result(ServiceResponse.success(Map.of("user", "alice")), "acme"));
+        started.getAsyncResult(5_000);
+
+        assertThat(started.getResponse().getContentAsString())
+                .contains("event:not-found")
+                .doesNotContain("alice");
+    }
+}
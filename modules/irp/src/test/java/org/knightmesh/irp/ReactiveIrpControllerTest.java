@@ -0,0 +1,102 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.router.ServiceRouter;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.knightmesh.plugins.queue.QueueSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(controllers = ReactiveIrpController.class)
+class ReactiveIrpControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private ConfigRepository configRepository;
+
+    @MockBean
+    private ServiceRouter serviceRouter;
+
+    @MockBean
+    private QueuePlugin queuePlugin;
+
+    private void mode(RouteMode mode) {
+        ModuleConfig mc = new ModuleConfig();
+        mc.setRouteMode(mode);
+        mc.setQueueName("irp-reactive");
+        when(configRepository.getModuleConfig("irp")).thenReturn(Optional.of(mc));
+    }
+
+    @Test
+    void post_direct_routes_asynchronously_and_returns_response() {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.routeAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(ServiceResponse.success(Map.of("user", "alice"))));
+
+        client.post().uri("/irp/REGISTER_USER")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"user\":\"alice\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("SUCCESS")
+                .jsonPath("$.data.user").isEqualTo("alice");
+
+        verify(serviceRouter, times(1)).routeAsync(argThat(r -> "alice".equals(r.getPayload().get("user"))));
+        verify(serviceRouter, never()).route(any());
+        verifyNoInteractions(queuePlugin);
+    }
+
+    @Test
+    void post_direct_failure_maps_to_bad_request() {
+        mode(RouteMode.DIRECT);
+        when(serviceRouter.routeAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(ServiceResponse.failure("VALIDATION", "bad user", null)));
+
+        client.post().uri("/irp/REGISTER_USER")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"user\":\"\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorCode").isEqualTo("VALIDATION");
+    }
+
+    @Test
+    void post_queue_enqueues_and_acknowledges() {
+        mode(RouteMode.QUEUE);
+
+        client.post().uri("/irp/REGISTER_USER")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Partition-Key", "acct-7")
+                .bodyValue("{\"user\":\"alice\"}")
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("ACCEPTED")
+                .jsonPath("$.result").value(startsWith("/irp/results/"));
+
+        verify(queuePlugin, times(1)).enqueue(eq("irp-reactive"),
+                argThat(r -> "acct-7".equals(r.getMetadata().get(QueueSettings.PARTITION_KEY_METADATA))), any());
+        verifyNoInteractions(serviceRouter);
+    }
+}
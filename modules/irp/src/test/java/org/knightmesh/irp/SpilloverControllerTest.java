@@ -0,0 +1,77 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpilloverControllerTest {
+
+    private static final ServiceResponse OK = ServiceResponse.success(Map.of());
+    private static final ServiceResponse SATURATED = ServiceResponse.failure("SERVICE_UNAVAILABLE", "Circuit open", null);
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final SpilloverController spillover =
+            new SpilloverController(2, 5_000, "SERVICE_UNAVAILABLE,NO_INSTANCES", clock::get);
+
+    @Test
+    void only_saturation_codes_spill() {
+        assertThat(spillover.onDirect("SVC", SATURATED)).isTrue();
+        assertThat(spillover.onDirect("SVC", ServiceResponse.failure("NO_INSTANCES", "none", null))).isTrue();
+        assertThat(spillover.onDirect("OTHER", ServiceResponse.failure("EXCEPTION", "boom", null))).isFalse();
+        // sent but unanswered: the remote may have run it
+        assertThat(spillover.onDirect("OTHER", ServiceResponse.failure("REMOTE_OUTCOME_UNKNOWN", "read timed out", null))).isFalse();
+        assertThat(spillover.onDirect("OTHER", OK)).isFalse();
+    }
+
+    @Test
+    void spilling_starts_after_consecutive_saturation_and_lasts_the_period() {
+        spillover.onDirect("SVC", SATURATED);
+        spillover.onDirect("SVC", OK);
+        spillover.onDirect("SVC", SATURATED);
+        assertThat(spillover.shouldSpill("SVC")).isFalse();
+
+        spillover.onDirect("SVC", SATURATED);
+        assertThat(spillover.isSpilling("SVC")).isTrue();
+        assertThat(spillover.shouldSpill("SVC")).isTrue();
+        // calls that started before spilling do not end it
+        spillover.onDirect("SVC", OK);
+        assertThat(spillover.shouldSpill("SVC")).isTrue();
+        assertThat(spillover.shouldSpill("OTHER")).isFalse();
+    }
+
+    @Test
+    void one_probe_after_the_period_decides_whether_to_go_back_to_direct() {
+        spillover.onDirect("SVC", SATURATED);
+        spillover.onDirect("SVC", SATURATED);
+
+        clock.addAndGet(5_000);
+        assertThat(spillover.shouldSpill("SVC")).isFalse();
+        // the probe is in flight: everyone else keeps spilling
+        assertThat(spillover.shouldSpill("SVC")).isTrue();
+        spillover.onDirect("SVC", SATURATED);
+        assertThat(spillover.shouldSpill("SVC")).isTrue();
+
+        clock.addAndGet(5_000);
+        assertThat(spillover.shouldSpill("SVC")).isFalse();
+        spillover.onDirect("SVC", OK);
+        assertThat(spillover.isSpilling("SVC")).isFalse();
+        assertThat(spillover.shouldSpill("SVC")).isFalse();
+    }
+
+    @Test
+    void a_probe_that_never_reports_back_is_replaced() {
+        spillover.onDirect("SVC", SATURATED);
+        spillover.onDirect("SVC", SATURATED);
+        clock.addAndGet(5_000);
+        assertThat(spillover.shouldSpill("SVC")).isFalse();
+
+        clock.addAndGet(4_999);
+        assertThat(spillover.shouldSpill("SVC")).isTrue();
+        clock.addAndGet(1);
+        assertThat(spillover.shouldSpill("SVC")).isFalse();
+    }
+}
@@ -0,0 +1,29 @@
+package org.knightmesh.irp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantResolverTest {
+
+    private final TenantResolver resolver = new TenantResolver();
+
+    @Test
+    void takes_the_tenant_from_the_gateway_header() {
+        assertThat(resolver.resolve(" globex ")).isEqualTo("globex");
+        assertThat(resolver.resolve("user@acme.example")).isEqualTo("user@acme.example");
+    }
+
+    @Test
+    void missing_or_malformed_ids_are_anonymous() {
+        assertThat(resolver.resolve(null)).isNull();
+        assertThat(resolver.resolve("")).isNull();
+        assertThat(resolver.resolve("a/b")).isNull();
+        assertThat(resolver.resolve("x".repeat(65))).isNull();
+    }
+
+    @Test
+    void can_be_turned_off() {
+        assertThat(new TenantResolver(false).resolve("globex")).isNull();
+    }
+}
@@ -0,0 +1,44 @@
+package org.knightmesh.qpm;
+
+/**
+ * Computes the delay before the next queue poll. The delay shrinks while messages keep arriving
+ * and backs off exponentially while queues stay empty. Not thread-safe; owned by the dispatcher thread.
+ */
+class AdaptivePollInterval {
+
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private long currentMs;
+
+    AdaptivePollInterval(long initialDelayMs, long minDelayMs, long maxDelayMs) {
+        if (minDelayMs < 0 || maxDelayMs < minDelayMs) {
+            throw new IllegalArgumentException("Require 0 <= minDelayMs <= maxDelayMs");
+        }
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.currentMs = Math.max(minDelayMs, Math.min(initialDelayMs, maxDelayMs));
+    }
+
+    /**
+     * Update the interval after a poll pass.
+     * @param processed number of messages processed during the pass
+     * @param batchSize per-queue batch limit; a full batch means more work is likely waiting
+     * @return delay in milliseconds before the next pass (0 = poll again immediately)
+     */
+    long next(int processed, int batchSize) {
+        if (processed >= batchSize) {
+            currentMs = minDelayMs;
+            return 0;
+        }
+        if (processed > 0) {
+            currentMs = Math.max(minDelayMs, currentMs / 2);
+        } else {
+            currentMs = Math.min(maxDelayMs, Math.max(1, currentMs * 2));
+        }
+        return currentMs;
+    }
+
+    long current() {
+        return currentMs;
+    }
+}
@@ -0,0 +1,82 @@
+package org.knightmesh.qpm;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Deficit round robin over the flows (tenant sub-queues) of one queue. Each time a flow reaches the head
+ * of the round its deficit grows by its quantum (weight), and it may send as many messages as its deficit
+ * allows, so under load every tenant gets throughput in proportion to its weight no matter how deep its
+ * backlog is. Flows that run dry leave the round and lose their deficit until they are activated again.
+ * <p>
+ * State persists across {@link #drain} calls, so fairness holds even when each call has a small budget.
+ * {@link #activate} may be called from any thread; {@link #drain} must not be called concurrently.
+ */
+final class DeficitRoundRobin {
+
+    /** Drains up to {@code max} messages from one flow and returns how many it processed. */
+    @FunctionalInterface
+    interface FlowDrainer {
+        int drain(String flow, int max);
+    }
+
+    private final ToIntFunction<String> quantum;
+    private final Queue<String> arrivals = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<String> round = new ArrayDeque<>();
+    private final Map<String, Integer> deficits = new HashMap<>(); // active flows only
+    private boolean headCharged; // head of round already received its quantum
+
+    DeficitRoundRobin(ToIntFunction<String> quantum) {
+        this.quantum = quantum;
+    }
+
+    /** Mark a flow as having work; no-op if it is already in the round. */
+    void activate(String flow) {
+        arrivals.add(flow);
+    }
+
+    /** @return number of messages processed, at most {@code budget} */
+    int drain(int budget, FlowDrainer drainer) {
+        String arrived;
+        while ((arrived = arrivals.poll()) != null) {
+            if (deficits.putIfAbsent(arrived, 0) == null) {
+                round.addLast(arrived);
+            }
+        }
+        int processed = 0;
+        while (processed < budget && !round.isEmpty()) {
+            String flow = round.peekFirst();
+            int deficit = deficits.get(flow);
+            if (!headCharged) {
+                deficit += Math.max(1, quantum.applyAsInt(flow));
+                headCharged = true;
+            }
+            int want = Math.min(deficit, budget - processed);
+            int got = drainer.drain(flow, want);
+            processed += got;
+            deficit -= got;
+            if (got < want) {
+                // ran dry: leave the round until new work is announced
+                round.pollFirst();
+                deficits.remove(flow);
+                headCharged = false;
+            } else if (deficit == 0) {
+                round.addLast(round.pollFirst());
+                deficits.put(flow, 0);
+                headCharged = false;
+            } else {
+                // budget exhausted mid-turn: the flow keeps the head and its remaining deficit
+                deficits.put(flow, deficit);
+            }
+        }
+        return processed;
+    }
+
+    int activeFlows() {
+        return round.size() + arrivals.size();
+    }
+}
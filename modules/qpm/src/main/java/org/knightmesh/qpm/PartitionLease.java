@@ -0,0 +1,82 @@
+package org.knightmesh.qpm;
+
+import jakarta.persistence.*;
+import org.knightmesh.plugins.queue.QueuePartitions;
+import org.springframework.data.domain.Persistable;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Ownership of one queue partition by a QPM instance. A lease is held until {@code leaseUntil};
+ * an expired or released lease may be taken by any instance. Rows with a negative partition number
+ * are membership heartbeats used to compute each instance's fair share of partitions.
+ */
+@Entity
+@Table(name = "queue_partition_lease")
+public class PartitionLease implements Persistable<String> {
+
+    public PartitionLease() {}
+
+    public PartitionLease(String queueName, int partitionNo) {
+        this.id = QueuePartitions.partitionName(queueName, partitionNo);
+        this.queueName = queueName;
+        this.partitionNo = partitionNo;
+    }
+
+    static PartitionLease member(String queueName, String owner) {
+        PartitionLease l = new PartitionLease();
+        l.id = queueName + "#member:" + owner;
+        l.queueName = queueName;
+        l.partitionNo = -1;
+        l.owner = owner;
+        return l;
+    }
+
+    // <queue>#p<partition>, i.e. the partition's sub-queue name
+    @Id
+    @Column(name = "id", nullable = false, updatable = false, length = 260)
+    private String id;
+
+    @Column(name = "queue_name", nullable = false, length = 200)
+    private String queueName;
+
+    @Column(name = "partition_no", nullable = false)
+    private int partitionNo;
+
+    @Column(name = "owner", length = 200)
+    private String owner;
+
+    @Column(name = "lease_until", nullable = false)
+    private OffsetDateTime leaseUntil = OffsetDateTime.now().minusSeconds(1);
+
+    // rows are only ever inserted with persist so a concurrent insert fails instead of overwriting
+    @Transient
+    private boolean isNew = true;
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @Override
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getQueueName() { return queueName; }
+    public void setQueueName(String queueName) { this.queueName = queueName; }
+
+    public int getPartitionNo() { return partitionNo; }
+    public void setPartitionNo(int partitionNo) { this.partitionNo = partitionNo; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public OffsetDateTime getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(OffsetDateTime leaseUntil) { this.leaseUntil = leaseUntil; }
+}
@@ -0,0 +1,160 @@
+package org.knightmesh.qpm;
+
+import jakarta.annotation.PreDestroy;
+import org.knightmesh.plugins.queue.QueuePartitions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spreads the partitions of partitioned queues across QPM instances using leases in the
+ * {@code queue_partition_lease} table. Every instance heartbeats a membership row per queue and
+ * claims at most its fair share ({@code ceil(partitions / liveInstances)}) of free or expired
+ * partitions, shedding any excess, so partitions rebalance as instances join and leave. A partition
+ * is owned by at most one live instance, which keeps per-key ordering across pods.
+ */
+@Component
+public class PartitionLeaseManager {
+    private static final Logger log = LoggerFactory.getLogger(PartitionLeaseManager.class);
+
+    private final PartitionLeaseRepository repo;
+    private final long leaseMs;
+    private final long refreshMs;
+    private final String owner;
+
+    private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+
+    public PartitionLeaseManager(PartitionLeaseRepository repo,
+                                 @Value("${qpm.partitions.lease.ms:15000}") long leaseMs,
+                                 @Value("${qpm.partitions.refresh.ms:5000}") long refreshMs,
+                                 @Value("${observability.instance_id:qpm}") String instanceId) {
+        if (refreshMs <= 0 || refreshMs >= leaseMs) {
+            throw new IllegalArgumentException("Require 0 < qpm.partitions.refresh.ms < qpm.partitions.lease.ms");
+        }
+        this.repo = Objects.requireNonNull(repo);
+        this.leaseMs = leaseMs;
+        this.refreshMs = refreshMs;
+        // unique per process so two instances on one host never share leases
+        this.owner = instanceId + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Partitions of the queue this instance currently owns. Leases are renewed and rebalanced at
+     * most every {@code qpm.partitions.refresh.ms}; in between the last result is returned.
+     */
+    public Set<Integer> ownedPartitions(String queueName, int partitions) {
+        long now = System.currentTimeMillis();
+        Claim c = claims.get(queueName);
+        if (c != null && c.partitions == partitions && now - c.at < refreshMs) {
+            return c.owned;
+        }
+        Set<Integer> owned;
+        try {
+            owned = Collections.unmodifiableSet(claim(queueName, partitions));
+        } catch (RuntimeException ex) {
+            log.warn("[QPM] lease refresh failed for queue {}: {}", queueName, ex.toString());
+            // keep consuming what we hold only while those leases are still valid
+            if (c != null && c.partitions == partitions && now - c.at < leaseMs) {
+                return c.owned;
+            }
+            owned = Set.of();
+        }
+        claims.put(queueName, new Claim(partitions, owned, now));
+        return owned;
+    }
+
+    /** Give up all leases so other instances take over without waiting for expiry. */
+    @PreDestroy
+    public void releaseAll() {
+        OffsetDateTime now = OffsetDateTime.now();
+        claims.forEach((queueName, c) -> {
+            try {
+                for (int p : c.owned) {
+                    repo.release(QueuePartitions.partitionName(queueName, p), owner, now);
+                }
+                repo.release(PartitionLease.member(queueName, owner).getId(), owner, now);
+            } catch (RuntimeException ex) {
+                log.debug("[QPM] lease release failed for queue {}: {}", queueName, ex.toString());
+            }
+        });
+        claims.clear();
+    }
+
+    Set<Integer> claim(String queueName, int partitions) {
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime until = now.plusNanos(leaseMs * 1_000_000);
+
+        List<PartitionLease> rows = repo.findByQueueName(queueName);
+        Set<String> existing = new HashSet<>();
+        for (PartitionLease l : rows) existing.add(l.getId());
+        PartitionLease me = PartitionLease.member(queueName, owner);
+        insertIfMissing(existing, me);
+        for (int p = 0; p < partitions; p++) {
+            insertIfMissing(existing, new PartitionLease(queueName, p));
+        }
+        repo.tryAcquire(me.getId(), owner, now, until);
+        repo.deleteExpiredMembers(queueName, now);
+
+        rows = repo.findByQueueName(queueName);
+        Set<String> live = new HashSet<>();
+        live.add(owner);
+        for (PartitionLease l : rows) {
+            if (l.getPartitionNo() < 0 && l.getOwner() != null && l.getLeaseUntil().isAfter(now)) {
+                live.add(l.getOwner());
+            }
+        }
+        int share = (partitions + live.size() - 1) / live.size();
+
+        Set<Integer> owned = new TreeSet<>();
+        rows.sort((a, b) -> Integer.compare(a.getPartitionNo(), b.getPartitionNo()));
+        // renew what we hold first, shedding anything beyond our share
+        for (PartitionLease l : rows) {
+            if (l.getPartitionNo() < 0 || !owner.equals(l.getOwner())) continue;
+            if (l.getPartitionNo() < partitions && owned.size() < share
+                    && repo.tryAcquire(l.getId(), owner, now, until) == 1) {
+                owned.add(l.getPartitionNo());
+            } else {
+                repo.release(l.getId(), owner, now);
+            }
+        }
+        for (PartitionLease l : rows) {
+            if (owned.size() >= share) break;
+            int p = l.getPartitionNo();
+            if (p < 0 || p >= partitions || owned.contains(p)) continue;
+            boolean free = l.getOwner() == null || !l.getLeaseUntil().isAfter(now);
+            if (free && repo.tryAcquire(l.getId(), owner, now, until) == 1) {
+                owned.add(p);
+            }
+        }
+        log.debug("[QPM] queue={} owner={} liveInstances={} share={} owned={}", queueName, owner, live.size(), share, owned);
+        return owned;
+    }
+
+    private void insertIfMissing(Set<String> existing, PartitionLease lease) {
+        if (existing.contains(lease.getId())) return;
+        try {
+            repo.saveAndFlush(lease);
+        } catch (DataIntegrityViolationException ignored) {
+            // another instance inserted it first
+        }
+    }
+
+    private record Claim(int partitions, Set<Integer> owned, long at) {}
+}
@@ -0,0 +1,33 @@
+package org.knightmesh.qpm;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface PartitionLeaseRepository extends JpaRepository<PartitionLease, String> {
+
+    List<PartitionLease> findByQueueName(String queueName);
+
+    /** Take or renew a lease; succeeds only if it is free, expired, or already ours. */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update PartitionLease l set l.owner = :owner, l.leaseUntil = :until " +
+            "where l.id = :id and (l.owner = :owner or l.owner is null or l.leaseUntil < :now)")
+    int tryAcquire(@Param("id") String id, @Param("owner") String owner,
+                   @Param("now") OffsetDateTime now, @Param("until") OffsetDateTime until);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from PartitionLease l where l.queueName = :queueName and l.partitionNo < 0 and l.leaseUntil < :now")
+    int deleteExpiredMembers(@Param("queueName") String queueName, @Param("now") OffsetDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update PartitionLease l set l.owner = null, l.leaseUntil = :now where l.id = :id and l.owner = :owner")
+    int release(@Param("id") String id, @Param("owner") String owner, @Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,38 @@
+package org.knightmesh.qpm;
+
+/**
+ * Weighted round robin over a queue's priority lanes. Each round visits the lanes from highest to
+ * lowest priority and takes up to {@code weight} messages from each, so under load lane {@code i}
+ * gets {@code weight[i] / sum(weights)} of the throughput: higher lanes go first, lower ones are never
+ * starved. A lane that returns fewer messages than asked is treated as empty for the rest of the pass.
+ */
+final class PriorityLanes {
+
+    /** Drains up to {@code max} messages from one lane and returns how many it processed. */
+    @FunctionalInterface
+    interface LaneDrainer {
+        int drain(int level, int max);
+    }
+
+    private PriorityLanes() {}
+
+    /** @return number of messages processed, at most {@code budget} */
+    static int drain(int[] weights, int budget, LaneDrainer drainer) {
+        int processed = 0;
+        boolean[] empty = new boolean[weights.length];
+        int active = weights.length;
+        while (processed < budget && active > 0) {
+            for (int level = 0; level < weights.length && processed < budget; level++) {
+                if (empty[level]) continue;
+                int quota = Math.min(weights[level], budget - processed);
+                int got = drainer.drain(level, quota);
+                processed += got;
+                if (got < quota) {
+                    empty[level] = true;
+                    active--;
+                }
+            }
+        }
+        return processed;
+    }
+}
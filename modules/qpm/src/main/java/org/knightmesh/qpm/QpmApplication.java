@@ -3,11 +3,13 @@ package org.knightmesh.qpm;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = {"org.knightmesh"})
 @EnableScheduling
-@EntityScan(basePackages = {"org.knightmesh.core.config", "org.knightmesh.plugins.queue"})
+@EntityScan(basePackages = {"org.knightmesh.core.config", "org.knightmesh.plugins.queue", "org.knightmesh.qpm"})
+@EnableJpaRepositories(basePackages = {"org.knightmesh.runtime.config.repo", "org.knightmesh.plugins.queue", "org.knightmesh.qpm"})
 public class QpmApplication {
     public static void main(String[] args) {
         SpringApplication.run(QpmApplication.class, args);
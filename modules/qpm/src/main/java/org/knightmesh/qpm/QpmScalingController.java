@@ -0,0 +1,40 @@
+package org.knightmesh.qpm;
+
+import org.knightmesh.qpm.QueueLagMonitor.QueueLag;
+import org.knightmesh.qpm.QueueLagMonitor.ScalingSignal;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Scaling signal for external autoscalers (e.g. a KEDA {@code metrics-api} trigger on {@code lag} or
+ * {@code desiredReplicas}), so QPM replicas scale on queue lag rather than CPU.
+ */
+@RestController
+public class QpmScalingController {
+
+    private final QueueLagMonitor monitor;
+
+    public QpmScalingController(QueueLagMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    // All QUEUE-mode queues
+    @GetMapping("/qpm/scaling")
+    public ScalingSignal scaling() {
+        return monitor.scalingSignal(monitor.lag().values());
+    }
+
+    // One logical queue
+    @GetMapping("/qpm/scaling/{queueName}")
+    public ResponseEntity<ScalingSignal> scaling(@PathVariable String queueName) {
+        QueueLag lag = monitor.lag().get(queueName);
+        if (lag == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(monitor.scalingSignal(List.of(lag)));
+    }
+}
@@ -1,65 +1,604 @@
 package org.knightmesh.qpm;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.knightmesh.core.config.ModuleConfig;
 import org.knightmesh.core.config.RouteMode;
 import org.knightmesh.core.model.ServiceRequest;
 import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.plugins.queue.ClaimCheck;
+import org.knightmesh.plugins.queue.EnqueueOptions;
+import org.knightmesh.plugins.queue.QueuePartitions;
 import org.knightmesh.plugins.queue.QueuePlugin;
+import org.knightmesh.plugins.queue.QueuePriorities;
+import org.knightmesh.plugins.queue.QueueSettings;
+import org.knightmesh.plugins.queue.QueueTenants;
+import org.knightmesh.plugins.result.ResultStore;
 import org.knightmesh.runtime.config.ConfigRepository;
 import org.knightmesh.runtime.router.ServiceRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+/**
+ * Drains the queues of QUEUE- and HYBRID-mode modules and routes each message through the {@link ServiceRouter}.
+ * A single dispatcher thread polls with an adaptive interval and is woken immediately when
+ * the {@link QueuePlugin} reports an enqueue, so idle queues cost few lookups and busy ones
+ * see millisecond pickup latency.
+ * <p>
+ * Partitioned queues (see {@link QueueSettings}) are drained in parallel: partition {@code p} is always
+ * handled by worker thread {@code p % qpm.workers}, so each partition is consumed in order by exactly
+ * one thread, and across QPM instances by the one holding its lease ({@link PartitionLeaseManager}).
+ * <p>
+ * Queues with priority lanes are drained by weighted round robin ({@link PriorityLanes}), and the time
+ * from acceptance to pickup ({@code qpm_queue_wait}) is exported per queue and priority; depth and lag
+ * are reported by {@link QueueLagMonitor}. Within a lane, queues with {@code "tenantFair": true} keep
+ * one sub-queue per tenant, drained by {@link DeficitRoundRobin} so a tenant with a deep backlog cannot starve the others.
+ * Tenant sub-queues are found through enqueue notifications and by listing them every
+ * {@code qpm.tenants.refresh.ms}.
+ * <p>
+ * A message that throws, or fails with a retryable error code, is put back on its queue with a
+ * not-before time from {@link RetryBackoff}, so the queue plugin holds it until it is due instead of
+ * the poll loop skipping over it. On partitioned queues that would let later messages with the same key
+ * overtake it, so with {@code qpm.retry.ordered} (default true) the worker instead keeps the message, and
+ * the rest of its dequeued batch, and drains nothing else from that partition lane until the retry is due.
+ * Held messages live in this process. On stop, while the partition leases are still held, QPM waits up to
+ * {@code qpm.retry.stop-drain.ms} for them to come due and routes them in place; only what is left after
+ * that, or what is held when a lease moves elsewhere, goes back on the queue behind newer messages. The final response, or a {@value #PROCESSING_FAILED} failure once a
+ * message that throws is given up, goes to the {@link ResultStore} for callers collecting it from IRP.
+ */
 @Component
 public class QpmWorker {
     private static final Logger log = LoggerFactory.getLogger(QpmWorker.class);
 
+    static final String PROCESSING_FAILED = "QUEUE_PROCESSING_FAILED";
+
     private final ConfigRepository configRepository;
     private final QueuePlugin queue;
     private final ServiceRouter router;
 
     // Tuneables
     private final int batchSize = 50;
+    private final AdaptivePollInterval interval;
+    private final long queuesRefreshMs;
+    private final int workerCount;
+    private final RetryBackoff retryBackoff;
+    private final long tenantsRefreshMs;
+    private final Map<String, DeficitRoundRobin> tenantRounds = new ConcurrentHashMap<>(); // by lane
+    private final Map<String, Long> tenantsListedAt = new ConcurrentHashMap<>();
+    private final Map<String, HeldRetry> heldRetries = new ConcurrentHashMap<>(); // by partition lane
+    private boolean orderedRetries = true;
+    private long stopDrainMs = 10_000;
+    private PartitionLeaseManager leaseManager;
+    private ClaimCheck claimCheck;
+    private ResultStore resultStore;
+    private MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>(); // by logical queue
+    private final Map<WaitKey, Timer> waitTimers = new ConcurrentHashMap<>();
+
+    private final Object signal = new Object();
+    private boolean signalled; // guarded by signal
+    private volatile boolean running;
+    private Thread dispatcher;
+    private ExecutorService[] workers;
 
-    public QpmWorker(ConfigRepository configRepository, QueuePlugin queue, ServiceRouter router) {
+    private volatile Map<String, QueueSettings> queues = Map.of();
+    private volatile long queueNamesLoadedAt;
+
+    public QpmWorker(ConfigRepository configRepository, QueuePlugin queue, ServiceRouter router,
+                     @Value("${qpm.poll.delay.ms:250}") long initialDelayMs,
+                     @Value("${qpm.poll.min-delay.ms:5}") long minDelayMs,
+                     @Value("${qpm.poll.max-delay.ms:2000}") long maxDelayMs,
+                     @Value("${qpm.queues.refresh.ms:5000}") long queuesRefreshMs,
+                     @Value("${qpm.workers:4}") int workerCount,
+                     @Value("${qpm.retry.max-attempts:3}") int retryMaxAttempts,
+                     @Value("${qpm.retry.backoff.ms:1000}") long retryBackoffMs,
+                     @Value("${qpm.retry.backoff.max-ms:60000}") long retryBackoffMaxMs,
+                     @Value("${qpm.retry.error-codes:SERVICE_UNAVAILABLE,NO_INSTANCES}") String retryErrorCodes,
+                     @Value("${qpm.tenants.refresh.ms:1000}") long tenantsRefreshMs) {
         this.configRepository = Objects.requireNonNull(configRepository);
         this.queue = Objects.requireNonNull(queue);
         this.router = Objects.requireNonNull(router);
+        this.interval = new AdaptivePollInterval(initialDelayMs, minDelayMs, maxDelayMs);
+        this.queuesRefreshMs = queuesRefreshMs;
+        this.workerCount = Math.max(1, workerCount);
+        this.retryBackoff = new RetryBackoff(retryMaxAttempts, retryBackoffMs, retryBackoffMaxMs, retryErrorCodes);
+        this.tenantsRefreshMs = tenantsRefreshMs;
+    }
+
+    /** Without a lease manager this instance consumes every partition (single-instance deployments). */
+    @Autowired(required = false)
+    public void setPartitionLeaseManager(PartitionLeaseManager leaseManager) {
+        this.leaseManager = leaseManager;
+    }
+
+    /** Resolves claim-checked payloads before routing and frees their blobs afterwards. */
+    @Autowired(required = false)
+    public void setClaimCheck(ClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
     }
 
-    @Scheduled(fixedDelayString = "${qpm.poll.delay.ms:250}")
-    public void pollQueuesAndProcess() {
-        List<ModuleConfig> enabled = configRepository.listEnabledModules();
-        if (enabled == null || enabled.isEmpty()) {
-            return;
+    /** Whether retries on partitioned queues hold their partition lane instead of going to the back of it. */
+    @Autowired
+    public void setOrderedRetries(@Value("${qpm.retry.ordered:true}") boolean orderedRetries) {
+        this.orderedRetries = orderedRetries;
+    }
+
+    /** How long {@link #stop()} waits for held retries to come due so they run in order before the leases go. */
+    @Autowired
+    public void setStopDrainMs(@Value("${qpm.retry.stop-drain.ms:10000}") long stopDrainMs) {
+        this.stopDrainMs = Math.max(0, stopDrainMs);
+    }
+
+    @Autowired(required = false)
+    public void setResultStore(ResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        workers = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String name = "qpm-worker-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
         }
-        enabled.stream()
-                .filter(m -> m.getRouteMode() == RouteMode.QUEUE)
-                .filter(m -> m.getQueueName() != null && !m.getQueueName().isBlank())
-                .map(ModuleConfig::getQueueName)
-                .distinct()
-                .forEach(this::drainQueue);
+        queue.addListener(this::wakeUp);
+        dispatcher = new Thread(this::dispatchLoop, "qpm-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("[QPM] dispatcher started (batchSize={}, workers={}, initialDelayMs={})", batchSize, workerCount, interval.current());
     }
 
-    private void drainQueue(String queueName) {
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            try {
+                dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            dispatcher = null;
+        }
+        if (workers != null) {
+            for (ExecutorService w : workers) {
+                w.shutdownNow();
+            }
+            // held retries are only touched by these threads; wait until they are done with them
+            for (ExecutorService w : workers) {
+                try {
+                    if (!w.awaitTermination(5, TimeUnit.SECONDS)) {
+                        log.warn("[QPM] a worker did not stop within 5 s");
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            workers = null;
+        }
+        drainHeldRetries();
+        releaseHeldRetries(lane -> true);
+    }
+
+    /**
+     * Run one pass over all QUEUE-mode queues.
+     * @return total number of messages processed in this pass
+     */
+    public int pollQueuesAndProcess() {
         int processed = 0;
-        ServiceRequest req;
-        while (processed < batchSize && (req = queue.dequeue(queueName)) != null) {
+        List<Future<Integer>> partitionDrains = new ArrayList<>();
+        Set<String> owned = new HashSet<>();
+        for (Map.Entry<String, QueueSettings> e : currentQueues().entrySet()) {
+            String queueName = e.getKey();
+            QueueSettings settings = e.getValue();
+            if (!settings.isPartitioned()) {
+                processed += drainQueue(queueName, settings);
+                continue;
+            }
+            for (int p : ownedPartitions(queueName, settings.getPartitions())) {
+                String partition = QueuePartitions.partitionName(queueName, p);
+                owned.add(partition);
+                ExecutorService[] w = workers;
+                if (w == null) {
+                    processed += drainQueue(partition, settings);
+                } else {
+                    partitionDrains.add(w[p % w.length].submit(() -> drainQueue(partition, settings)));
+                }
+            }
+        }
+        // wait for the pass so a partition is never drained by two passes at once
+        for (Future<Integer> f : partitionDrains) {
             try {
-                ServiceResponse resp = router.route(req);
-                log.debug("[QPM] processed queue={} corrId={} status={}", queueName, req.getCorrelationId(), resp.getStatus());
-            } catch (Exception ex) {
-                log.warn("[QPM] error processing queue={} corrId={}: {}", queueName, req.getCorrelationId(), ex.toString());
+                processed += f.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ex) {
+                log.warn("[QPM] partition drain failed: {}", ex.getCause().toString());
+            }
+        }
+        if (!heldRetries.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            releaseHeldRetries(lane -> !owned.contains(QueuePriorities.stripLane(QueueTenants.stripTenant(lane))));
+        }
+        return processed;
+    }
+
+    /** Wake the dispatcher after an enqueue on the given queue; safe to call from any thread. */
+    void wakeUp(String queueName) {
+        if (queueName != null && !queues.containsKey(QueuePartitions.baseName(queueName))) {
+            // unknown queue: it may have just been configured, reload names on the next pass
+            queueNamesLoadedAt = 0;
+        }
+        if (queueName != null) {
+            DeficitRoundRobin round = tenantRounds.get(QueueTenants.stripTenant(queueName));
+            if (round != null) {
+                round.activate(queueName);
+            }
+        }
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            int processed = 0;
+            try {
+                processed = pollQueuesAndProcess();
+            } catch (RuntimeException ex) {
+                log.warn("[QPM] poll pass failed: {}", ex.toString());
+            }
+            awaitSignal(interval.next(processed, batchSize));
+        }
+    }
+
+    private void awaitSignal(long delayMs) {
+        synchronized (signal) {
+            if (!signalled && delayMs > 0) {
+                try {
+                    signal.wait(delayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+            signalled = false;
+        }
+    }
+
+    private Map<String, QueueSettings> currentQueues() {
+        long now = System.currentTimeMillis();
+        if (queueNamesLoadedAt == 0 || now - queueNamesLoadedAt >= queuesRefreshMs) {
+            List<ModuleConfig> enabled = configRepository.listEnabledModules();
+            Map<String, QueueSettings> loaded = new LinkedHashMap<>();
+            if (enabled != null) {
+                for (ModuleConfig m : enabled) {
+                    if (m.getRouteMode() != RouteMode.QUEUE && m.getRouteMode() != RouteMode.HYBRID) continue;
+                    if (m.getQueueName() == null || m.getQueueName().isBlank()) continue;
+                    loaded.putIfAbsent(m.getQueueName(), QueueSettings.fromExtraJson(m.getExtraJson()));
+                }
+            }
+            queues = loaded;
+            // keep asking while nothing is configured so new QUEUE modules are picked up promptly
+            queueNamesLoadedAt = loaded.isEmpty() ? 0 : now;
+        }
+        return queues;
+    }
+
+    /** QUEUE- and HYBRID-mode queues by logical name, as last read from config. */
+    Map<String, QueueSettings> configuredQueues() {
+        return currentQueues();
+    }
+
+    /** Messages of a logical queue dequeued by this instance and not yet routed. */
+    int inFlight(String queueName) {
+        AtomicInteger n = inFlight.get(queueName);
+        return n == null ? 0 : n.get();
+    }
+
+    private Set<Integer> ownedPartitions(String queueName, int partitions) {
+        if (leaseManager == null) {
+            Set<Integer> all = new TreeSet<>();
+            for (int p = 0; p < partitions; p++) all.add(p);
+            return all;
+        }
+        return leaseManager.ownedPartitions(queueName, partitions);
+    }
+
+    /** Drain one concrete (possibly partitioned) queue, across its priority lanes if it has any. */
+    private int drainQueue(String queueName, QueueSettings settings) {
+        String baseName = QueuePartitions.baseName(queueName);
+        int processed;
+        if (!settings.hasPriorities()) {
+            processed = drainTenants(queueName, baseName, settings.getDefaultPriority(), batchSize, settings);
+        } else {
+            int[] weights = new int[settings.getPriorities()];
+            for (int level = 0; level < weights.length; level++) {
+                weights[level] = settings.priorityWeight(level);
             }
-            processed++;
+            processed = PriorityLanes.drain(weights, batchSize,
+                    (level, max) -> drainTenants(settings.laneName(queueName, level), baseName, level, max, settings));
         }
         if (processed > 0) {
             log.info("[QPM] processed {} message(s) from queue {}", processed, queueName);
         }
+        return processed;
+    }
+
+    /** Drain a lane, sharing the budget between its tenant sub-queues if the queue is tenant-fair. */
+    private int drainTenants(String laneName, String baseName, int level, int max, QueueSettings settings) {
+        boolean ordered = orderedRetries && settings.isPartitioned();
+        if (!settings.isTenantFair()) {
+            return drainLane(laneName, baseName, level, max, ordered);
+        }
+        DeficitRoundRobin round = tenantRounds.computeIfAbsent(laneName, l -> new DeficitRoundRobin(
+                flow -> queues.getOrDefault(baseName, settings).tenantWeightOf(flow)));
+        long now = System.currentTimeMillis();
+        Long listedAt = tenantsListedAt.get(laneName);
+        if (listedAt == null || now - listedAt >= tenantsRefreshMs) {
+            tenantsListedAt.put(laneName, now);
+            round.activate(laneName); // messages without a tenant
+            for (String flow : queue.queueNames(QueueTenants.prefix(laneName))) {
+                round.activate(flow);
+            }
+            // a held flow may have no queue left to list
+            for (String flow : heldRetries.keySet()) {
+                if (flow.startsWith(QueueTenants.prefix(laneName))) round.activate(flow);
+            }
+        }
+        return round.drain(max, (flow, n) -> drainLane(flow, baseName, level, n, ordered));
+    }
+
+    /**
+     * Process up to {@code max} messages from one lane queue; failed ones are retried on the same lane.
+     * Consecutive messages of a service the router runs in batches are routed together, in queue order.
+     * With {@code ordered} a retry holds the lane: it and the rest of the batch are kept, and nothing more is
+     * dequeued, until the retry is due.
+     */
+    private int drainLane(String queueName, String baseName, int level, int max, boolean ordered) {
+        List<ServiceRequest> batch;
+        HeldRetry held = ordered ? heldRetries.get(queueName) : null;
+        if (held != null) {
+            if (System.currentTimeMillis() < held.dueAtMs) return 0;
+            heldRetries.remove(queueName);
+            batch = held.requests;
+        } else {
+            batch = queue.dequeueBatch(queueName, max);
+        }
+        if (batch.isEmpty()) return 0;
+        AtomicInteger leased = inFlight.computeIfAbsent(baseName, q -> new AtomicInteger());
+        leased.addAndGet(batch.size());
+        int i = 0;
+        while (i < batch.size()) {
+            String serviceName = batch.get(i).getServiceName();
+            int end = i + 1;
+            if (router.isBatchable(serviceName)) {
+                while (end < batch.size() && serviceName.equals(batch.get(end).getServiceName())) end++;
+            }
+            List<ServiceRequest> run = batch.subList(i, end);
+            for (ServiceRequest req : run) recordWait(baseName, level, req);
+            List<ServiceResponse> responses = null;
+            Exception failure = null;
+            try {
+                responses = run.size() == 1
+                        ? List.of(router.route(resolve(run.get(0))))
+                        : router.routeBatch(resolveAll(run));
+            } catch (Exception ex) {
+                failure = ex;
+            }
+            for (int j = 0; j < run.size(); j++) {
+                try {
+                    complete(queueName, run.get(j), responses == null ? null : responses.get(j), failure, ordered);
+                } finally {
+                    leased.decrementAndGet();
+                }
+            }
+            i = end;
+            HeldRetry retry = ordered ? heldRetries.get(queueName) : null;
+            if (retry != null) {
+                retry.baseName = baseName;
+                retry.level = level;
+            }
+            if (retry != null && i < batch.size()) {
+                // later messages wait behind the retry
+                List<ServiceRequest> rest = batch.subList(i, batch.size());
+                retry.requests.addAll(rest);
+                leased.addAndGet(-rest.size());
+                return i;
+            }
+        }
+        return batch.size();
+    }
+
+    private ServiceRequest resolve(ServiceRequest req) {
+        return claimCheck == null ? req : claimCheck.resolve(req);
+    }
+
+    private List<ServiceRequest> resolveAll(List<ServiceRequest> run) {
+        if (claimCheck == null) return run;
+        List<ServiceRequest> resolved = new ArrayList<>(run.size());
+        for (ServiceRequest req : run) resolved.add(claimCheck.resolve(req));
+        return resolved;
+    }
+
+    /** Store the response of a routed message, or put it back for a retry; {@code failure} if routing threw. */
+    private void complete(String queueName, ServiceRequest req, ServiceResponse resp, Exception failure, boolean hold) {
+        boolean retrying = false;
+        try {
+            if (failure != null) throw failure;
+            log.debug("[QPM] processed queue={} corrId={} status={}", queueName, req.getCorrelationId(), resp.getStatus());
+            if (retryBackoff.isRetryable(resp)) {
+                retrying = scheduleRetry(queueName, req, resp.getErrorCode(), hold);
+            }
+            if (!retrying) storeResult(req, resp);
+        } catch (Exception ex) {
+            log.warn("[QPM] error processing queue={} corrId={}: {}", queueName, req.getCorrelationId(), ex.toString());
+            retrying = scheduleRetry(queueName, req, ex.toString(), hold);
+            if (!retrying) storeResult(req, ServiceResponse.failure(PROCESSING_FAILED, ex.toString(), null));
+        } finally {
+            // unless the message went back on the queue its blob is no longer referenced
+            if (claimCheck != null && !retrying) {
+                claimCheck.release(req);
+            }
+        }
+    }
+
+    /** Final response for callers collecting it from IRP; failures to store never fail the message. */
+    private void storeResult(ServiceRequest req, ServiceResponse resp) {
+        if (resultStore == null || req.getCorrelationId() == null) return;
+        try {
+            resultStore.put(req.getCorrelationId(), req.getTenant(), resp);
+        } catch (RuntimeException ex) {
+            log.warn("[QPM] could not store result corrId={}: {}", req.getCorrelationId(), ex.toString());
+        }
+    }
+
+    /** Time since IRP accepted the message (its {@code timestamp} metadata), per queue and priority. */
+    private void recordWait(String baseName, int level, ServiceRequest req) {
+        if (meterRegistry == null) return;
+        String accepted = req.getMetadata().get("timestamp");
+        if (accepted == null) return;
+        try {
+            Duration wait = Duration.between(Instant.parse(accepted), Instant.now());
+            waitTimers.computeIfAbsent(new WaitKey(baseName, level), k -> Timer.builder("qpm_queue_wait")
+                    .tag("queue", baseName)
+                    .tag("priority", String.valueOf(level))
+                    .description("Time from acceptance to pickup by QPM")
+                    .register(meterRegistry))
+                    .record(wait.isNegative() ? Duration.ZERO : wait);
+        } catch (DateTimeParseException ignored) {
+            // not an IRP timestamp; nothing to measure
+        }
+    }
+
+    /**
+     * Re-enqueue a failed message on the same (partition) queue after a backoff delay, or with {@code hold}
+     * keep it to be retried in place once due; false if it is dropped.
+     */
+    private boolean scheduleRetry(String queueName, ServiceRequest req, String reason, boolean hold) {
+        int attempt = RetryBackoff.attemptOf(req);
+        if (!retryBackoff.hasAttemptsLeft(attempt)) {
+            log.warn("[QPM] giving up on queue={} corrId={} after {} attempt(s): {}", queueName, req.getCorrelationId(), attempt, reason);
+            return false;
+        }
+        long delayMs = retryBackoff.delayMs(attempt);
+        ServiceRequest retry = req.toBuilder().metadata(RetryBackoff.ATTEMPT_METADATA, String.valueOf(attempt + 1)).build();
+        if (hold) {
+            // several failures from one batch keep their order and wait for the latest backoff
+            HeldRetry held = heldRetries.computeIfAbsent(queueName, q -> new HeldRetry());
+            held.requests.add(retry);
+            held.dueAtMs = Math.max(held.dueAtMs, System.currentTimeMillis() + delayMs);
+            log.info("[QPM] retry {} of corrId={} on queue {} in {} ms, holding the queue: {}", attempt, req.getCorrelationId(), queueName, delayMs, reason);
+            return true;
+        }
+        try {
+            queue.enqueue(queueName, retry, EnqueueOptions.notBefore(Instant.now().plusMillis(delayMs)));
+        } catch (RuntimeException ex) {
+            // includes UnsupportedOperationException from plugins without delayed delivery
+            log.warn("[QPM] could not schedule retry for queue={} corrId={}: {}", queueName, req.getCorrelationId(), ex.toString());
+            return false;
+        }
+        log.info("[QPM] retry {} of corrId={} on queue {} in {} ms: {}", attempt, req.getCorrelationId(), queueName, delayMs, reason);
+        return true;
     }
+
+    /**
+     * Route held retries in place as they come due, for up to {@code qpm.retry.stop-drain.ms}, so per-key order
+     * survives a stop; the caller still holds the partition leases. Runs after the workers have stopped.
+     */
+    private void drainHeldRetries() {
+        long deadline = System.currentTimeMillis() + stopDrainMs;
+        while (!heldRetries.isEmpty()) {
+            long nextDue = Long.MAX_VALUE;
+            for (HeldRetry held : heldRetries.values()) nextDue = Math.min(nextDue, held.dueAtMs);
+            if (nextDue > deadline) break;
+            long wait = nextDue - System.currentTimeMillis();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            for (Map.Entry<String, HeldRetry> e : List.copyOf(heldRetries.entrySet())) {
+                HeldRetry held = e.getValue();
+                if (held.dueAtMs <= System.currentTimeMillis()) {
+                    drainLane(e.getKey(), held.baseName, held.level, held.requests.size(), true);
+                }
+            }
+        }
+        if (!heldRetries.isEmpty()) {
+            log.warn("[QPM] {} partition lane(s) still wait for a retry on stop; their messages go back behind newer ones", heldRetries.size());
+        }
+    }
+
+    /** Put held retries back on their queues, due at their retry time; used when this instance stops draining them. */
+    private void releaseHeldRetries(Predicate<String> lanes) {
+        for (String lane : List.copyOf(heldRetries.keySet())) {
+            if (!lanes.test(lane)) continue;
+            HeldRetry held = heldRetries.remove(lane);
+            if (held == null) continue;
+            EnqueueOptions due = EnqueueOptions.notBefore(Instant.ofEpochMilli(held.dueAtMs));
+            for (ServiceRequest req : held.requests) {
+                try {
+                    queue.enqueue(lane, req, due);
+                } catch (UnsupportedOperationException ex) {
+                    queue.enqueue(lane, req);
+                } catch (RuntimeException ex) {
+                    log.warn("[QPM] could not put back held message queue={} corrId={}: {}", lane, req.getCorrelationId(), ex.toString());
+                }
+            }
+            log.info("[QPM] put back {} held message(s) on queue {}", held.requests.size(), lane);
+        }
+    }
+
+    /** Messages of a partition lane waiting for a retry, in queue order; touched only by the lane's worker. */
+    private static final class HeldRetry {
+        final List<ServiceRequest> requests = new ArrayList<>();
+        long dueAtMs;
+        String baseName; // logical queue and priority of the lane, to drain it again on stop
+        int level;
+    }
+
+    private record WaitKey(String queue, int priority) {}
 }
@@ -0,0 +1,211 @@
+package org.knightmesh.qpm;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.knightmesh.plugins.queue.QueuePartitions;
+import org.knightmesh.plugins.queue.QueuePlugin;
+import org.knightmesh.plugins.queue.QueueSettings;
+import org.knightmesh.plugins.queue.QueueStats;
+import org.knightmesh.plugins.queue.QueueTenants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Lag of every QUEUE-mode queue, for metrics and autoscaling: depth, age of the oldest due message and
+ * enqueue/dequeue rates from {@link QueuePlugin#stats(String)}, summed over the queue's partitions,
+ * priority lanes and tenant sub-queues, plus the messages this instance is still routing. The view is
+ * rebuilt every {@code qpm.lag.refresh.ms}, so metric scrapes and autoscaler polls never reach the store.
+ * <p>
+ * Exported per queue as {@code qpm_queue_depth} (also tagged with {@code priority}),
+ * {@code qpm_queue_oldest_age_seconds}, {@code qpm_queue_enqueue_rate}, {@code qpm_queue_dequeue_rate}
+ * and {@code qpm_queue_in_flight}; figures the queue plugin does not track are reported as NaN.
+ */
+@Component
+public class QueueLagMonitor {
+    private static final Logger log = LoggerFactory.getLogger(QueueLagMonitor.class);
+
+    /**
+     * Lag of one logical queue. Negative age or rates mean the queue plugin does not track them.
+     *
+     * @param depthByPriority due messages per priority lane, highest priority first
+     * @param inFlight messages dequeued by this instance and not yet routed
+     */
+    public record QueueLag(String queue, long depth, List<Long> depthByPriority, long oldestAgeMs,
+                           double enqueueRate, double dequeueRate, int inFlight) {}
+
+    /**
+     * What an external autoscaler polls: totals over the selected queues and the replica count that
+     * keeps each replica's backlog ({@code lag + inFlight}) under {@code qpm.scaling.target-lag}.
+     */
+    public record ScalingSignal(long lag, long oldestAgeMs, double enqueueRate, double dequeueRate,
+                                int inFlight, int desiredReplicas, List<QueueLag> queues) {}
+
+    private final QueuePlugin queue;
+    private final QpmWorker worker;
+    private final long targetLag;
+    private final int minReplicas;
+    private final int maxReplicas;
+    private MeterRegistry meterRegistry;
+    private final Set<String> gauges = ConcurrentHashMap.newKeySet();
+    private volatile Map<String, QueueLag> lag = Map.of();
+
+    public QueueLagMonitor(QueuePlugin queue, QpmWorker worker,
+                           @Value("${qpm.scaling.target-lag:1000}") long targetLag,
+                           @Value("${qpm.scaling.min-replicas:1}") int minReplicas,
+                           @Value("${qpm.scaling.max-replicas:20}") int maxReplicas) {
+        if (targetLag <= 0 || minReplicas < 0 || maxReplicas < minReplicas) {
+            throw new IllegalArgumentException("Require qpm.scaling.target-lag > 0 and 0 <= min-replicas <= max-replicas");
+        }
+        this.queue = Objects.requireNonNull(queue);
+        this.worker = Objects.requireNonNull(worker);
+        this.targetLag = targetLag;
+        this.minReplicas = minReplicas;
+        this.maxReplicas = maxReplicas;
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${qpm.lag.refresh.ms:5000}")
+    public void refresh() {
+        Map<String, QueueLag> previous = lag;
+        Map<String, QueueLag> current = new LinkedHashMap<>();
+        for (Map.Entry<String, QueueSettings> e : worker.configuredQueues().entrySet()) {
+            String queueName = e.getKey();
+            try {
+                current.put(queueName, measure(queueName, e.getValue()));
+            } catch (RuntimeException ex) {
+                log.debug("[QPM] could not measure lag of queue {}: {}", queueName, ex.toString());
+                QueueLag last = previous.get(queueName);
+                if (last != null) current.put(queueName, last);
+            }
+            registerGauges(queueName, e.getValue());
+        }
+        lag = current;
+    }
+
+    /** Latest lag by logical queue name. */
+    public Map<String, QueueLag> lag() {
+        return lag;
+    }
+
+    public ScalingSignal scalingSignal(Collection<QueueLag> queues) {
+        long depth = 0;
+        long oldest = -1;
+        double enqueueRate = -1;
+        double dequeueRate = -1;
+        int inFlight = 0;
+        for (QueueLag q : queues) {
+            depth += q.depth();
+            oldest = Math.max(oldest, q.oldestAgeMs());
+            enqueueRate = addKnown(enqueueRate, q.enqueueRate());
+            dequeueRate = addKnown(dequeueRate, q.dequeueRate());
+            inFlight += q.inFlight();
+        }
+        return new ScalingSignal(depth, oldest, enqueueRate, dequeueRate, inFlight,
+                desiredReplicas(depth + inFlight, targetLag, minReplicas, maxReplicas), List.copyOf(queues));
+    }
+
+    static int desiredReplicas(long backlog, long targetLag, int minReplicas, int maxReplicas) {
+        long needed = (backlog + targetLag - 1) / targetLag;
+        return (int) Math.max(minReplicas, Math.min(maxReplicas, needed));
+    }
+
+    private QueueLag measure(String queueName, QueueSettings settings) {
+        List<String> partitions = new ArrayList<>();
+        if (!settings.isPartitioned()) {
+            partitions.add(queueName);
+        } else {
+            for (int p = 0; p < settings.getPartitions(); p++) {
+                partitions.add(QueuePartitions.partitionName(queueName, p));
+            }
+        }
+        List<Long> depthByPriority = new ArrayList<>(settings.getPriorities());
+        long depth = 0;
+        long oldest = -1;
+        double enqueueRate = -1;
+        double dequeueRate = -1;
+        for (int level = 0; level < settings.getPriorities(); level++) {
+            long laneDepth = 0;
+            for (String partition : partitions) {
+                String laneName = settings.laneName(partition, level);
+                List<String> subQueues = new ArrayList<>();
+                subQueues.add(laneName);
+                if (settings.isTenantFair()) {
+                    subQueues.addAll(queue.queueNames(QueueTenants.prefix(laneName)));
+                }
+                for (String name : subQueues) {
+                    QueueStats.Snapshot s = queue.stats(name);
+                    laneDepth += s.depth();
+                    oldest = Math.max(oldest, s.oldestAgeMs());
+                    enqueueRate = addKnown(enqueueRate, s.enqueueRate());
+                    dequeueRate = addKnown(dequeueRate, s.dequeueRate());
+                }
+            }
+            depthByPriority.add(laneDepth);
+            depth += laneDepth;
+        }
+        return new QueueLag(queueName, depth, List.copyOf(depthByPriority), oldest, enqueueRate, dequeueRate,
+                worker.inFlight(queueName));
+    }
+
+    private static double addKnown(double total, double value) {
+        if (value < 0) return total;
+        return total < 0 ? value : total + value;
+    }
+
+    private void registerGauges(String queueName, QueueSettings settings) {
+        if (meterRegistry == null) return;
+        for (int level = 0; level < settings.getPriorities(); level++) {
+            if (!gauges.add(queueName + '|' + level)) continue;
+            int lvl = level;
+            Gauge.builder("qpm_queue_depth", this, m -> m.known(queueName,
+                            l -> lvl < l.depthByPriority().size() ? l.depthByPriority().get(lvl) : 0))
+                    .tag("queue", queueName)
+                    .tag("priority", String.valueOf(level))
+                    .description("Messages waiting in this priority lane, across partitions and tenants")
+                    .register(meterRegistry);
+        }
+        if (!gauges.add(queueName)) return;
+        Gauge.builder("qpm_queue_oldest_age_seconds", this, m -> m.known(queueName, l -> l.oldestAgeMs() / 1000.0))
+                .tag("queue", queueName)
+                .description("Time the oldest due message has been waiting")
+                .register(meterRegistry);
+        Gauge.builder("qpm_queue_enqueue_rate", this, m -> m.known(queueName, QueueLag::enqueueRate))
+                .tag("queue", queueName)
+                .description("Messages enqueued per second, one-minute average")
+                .register(meterRegistry);
+        Gauge.builder("qpm_queue_dequeue_rate", this, m -> m.known(queueName, QueueLag::dequeueRate))
+                .tag("queue", queueName)
+                .description("Messages dequeued per second, one-minute average")
+                .register(meterRegistry);
+        Gauge.builder("qpm_queue_in_flight", worker, w -> w.inFlight(queueName))
+                .tag("queue", queueName)
+                .description("Messages dequeued by this instance and not yet routed")
+                .register(meterRegistry);
+    }
+
+    /** A figure of the latest lag of the queue; NaN if unknown, 0 once the queue is no longer configured. */
+    private double known(String queueName, ToDoubleFunction<QueueLag> figure) {
+        QueueLag l = lag.get(queueName);
+        if (l == null) return 0;
+        double v = figure.applyAsDouble(l);
+        return v < 0 ? Double.NaN : v;
+    }
+}
@@ -0,0 +1,66 @@
+package org.knightmesh.qpm;
+
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Decides whether a failed queue message is retried and how long it waits first. Delays grow
+ * exponentially from {@code baseDelayMs} up to {@code maxDelayMs}, with jitter in the upper half so
+ * messages that failed together do not all come back at once. The attempt count travels with the
+ * message in its {@value #ATTEMPT_METADATA} metadata entry.
+ */
+class RetryBackoff {
+    static final String ATTEMPT_METADATA = "attempt";
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Set<String> retryableCodes;
+
+    RetryBackoff(int maxAttempts, long baseDelayMs, long maxDelayMs, String retryableCodes) {
+        if (baseDelayMs < 1 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Require 1 <= baseDelayMs <= maxDelayMs");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.retryableCodes = retryableCodes == null ? Set.of() : Arrays.stream(retryableCodes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /** A failure response is retryable only for the configured error codes (exceptions are always retried). */
+    boolean isRetryable(ServiceResponse response) {
+        return response.getStatus() == ServiceResponse.Status.FAILURE && retryableCodes.contains(response.getErrorCode());
+    }
+
+    /** @param attempt attempts made so far, including the one that just failed */
+    boolean hasAttemptsLeft(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /** Delay before the attempt following {@code attempt}: base * 2^(attempt-1), capped, jittered to [d/2, d]. */
+    long delayMs(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 62);
+        long d = baseDelayMs > (maxDelayMs >> shift) ? maxDelayMs : Math.min(maxDelayMs, baseDelayMs << shift);
+        long half = d / 2;
+        return half + ThreadLocalRandom.current().nextLong(d - half + 1);
+    }
+
+    /** Attempts already made for this message; 1 for a message that has not been retried. */
+    static int attemptOf(ServiceRequest request) {
+        String v = request.getMetadata().get(ATTEMPT_METADATA);
+        if (v == null) return 1;
+        try {
+            return Math.max(1, Integer.parseInt(v.trim()));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+}
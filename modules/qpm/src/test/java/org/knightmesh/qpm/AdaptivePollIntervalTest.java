@@ -0,0 +1,35 @@
+package org.knightmesh.qpm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptivePollIntervalTest {
+
+    @Test
+    void backs_off_while_idle_and_shrinks_while_busy() {
+        AdaptivePollInterval interval = new AdaptivePollInterval(250, 5, 2000);
+
+        // idle passes double the delay up to the ceiling
+        assertThat(interval.next(0, 50)).isEqualTo(500);
+        assertThat(interval.next(0, 50)).isEqualTo(1000);
+        assertThat(interval.next(0, 50)).isEqualTo(2000);
+        assertThat(interval.next(0, 50)).isEqualTo(2000);
+
+        // partial batches halve the delay
+        assertThat(interval.next(3, 50)).isEqualTo(1000);
+        assertThat(interval.next(3, 50)).isEqualTo(500);
+
+        // a full batch means more work is waiting: poll again immediately and reset to the floor
+        assertThat(interval.next(50, 50)).isZero();
+        assertThat(interval.current()).isEqualTo(5);
+        assertThat(interval.next(1, 50)).isEqualTo(5);
+    }
+
+    @Test
+    void rejects_inverted_bounds() {
+        assertThatThrownBy(() -> new AdaptivePollInterval(100, 500, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
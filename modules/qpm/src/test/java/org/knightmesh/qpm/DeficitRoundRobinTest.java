@@ -0,0 +1,63 @@
+package org.knightmesh.qpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeficitRoundRobinTest {
+
+    @Test
+    void noisy_tenant_gets_no_more_than_its_share() {
+        Map<String, Integer> backlog = new HashMap<>(Map.of("noisy", 100_000, "a", 1_000, "b", 1_000));
+        Map<String, Integer> served = new HashMap<>();
+        DeficitRoundRobin drr = new DeficitRoundRobin(flow -> 1);
+        backlog.keySet().forEach(drr::activate);
+
+        // many small budgets, as handed out by the priority lanes
+        for (int i = 0; i < 300; i++) {
+            drr.drain(4, (flow, max) -> take(backlog, served, flow, max));
+        }
+        assertThat(served.get("noisy")).isEqualTo(400);
+        assertThat(served.get("a")).isEqualTo(400);
+        assertThat(served.get("b")).isEqualTo(400);
+    }
+
+    @Test
+    void weights_set_the_share() {
+        Map<String, Integer> backlog = new HashMap<>(Map.of("gold", 10_000, "free", 10_000));
+        Map<String, Integer> served = new HashMap<>();
+        DeficitRoundRobin drr = new DeficitRoundRobin(flow -> flow.equals("gold") ? 3 : 1);
+        backlog.keySet().forEach(drr::activate);
+        drr.drain(400, (flow, max) -> take(backlog, served, flow, max));
+        assertThat(served.get("gold")).isEqualTo(300);
+        assertThat(served.get("free")).isEqualTo(100);
+    }
+
+    @Test
+    void dry_flows_leave_the_round_until_activated_again() {
+        Map<String, Integer> backlog = new HashMap<>(Map.of("a", 2, "b", 100));
+        Map<String, Integer> served = new HashMap<>();
+        DeficitRoundRobin drr = new DeficitRoundRobin(flow -> 5);
+        drr.activate("a");
+        drr.activate("b");
+        drr.activate("a"); // duplicate announcements are ignored
+        assertThat(drr.drain(50, (flow, max) -> take(backlog, served, flow, max))).isEqualTo(50);
+        assertThat(served).containsEntry("a", 2).containsEntry("b", 48);
+        assertThat(drr.activeFlows()).isEqualTo(1);
+
+        backlog.put("a", 10);
+        drr.activate("a");
+        drr.drain(10, (flow, max) -> take(backlog, served, flow, max));
+        assertThat(served.get("a")).isGreaterThan(2);
+    }
+
+    private static int take(Map<String, Integer> backlog, Map<String, Integer> served, String flow, int max) {
+        int n = Math.min(max, backlog.getOrDefault(flow, 0));
+        backlog.merge(flow, -n, Integer::sum);
+        served.merge(flow, n, Integer::sum);
+        return n;
+    }
+}
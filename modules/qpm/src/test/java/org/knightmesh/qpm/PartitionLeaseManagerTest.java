@@ -0,0 +1,64 @@
+package org.knightmesh.qpm;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // leases are taken in their own transactions, as in production
+class PartitionLeaseManagerTest {
+
+    @Autowired
+    private PartitionLeaseRepository repo;
+
+    @BeforeEach
+    void clean() {
+        repo.deleteAll();
+    }
+
+    @Test
+    void single_instance_owns_all_partitions() {
+        PartitionLeaseManager a = new PartitionLeaseManager(repo, 15_000, 5_000, "qpm-a");
+        assertThat(a.claim("orders", 4)).containsExactly(0, 1, 2, 3);
+        // renewing keeps the same set
+        assertThat(a.claim("orders", 4)).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    void partitions_rebalance_when_an_instance_joins_and_never_overlap() {
+        PartitionLeaseManager a = new PartitionLeaseManager(repo, 15_000, 5_000, "qpm-a");
+        PartitionLeaseManager b = new PartitionLeaseManager(repo, 15_000, 5_000, "qpm-b");
+        assertThat(a.claim("orders", 4)).hasSize(4);
+
+        // b announces itself but everything is still leased to a
+        assertThat(b.claim("orders", 4)).isEmpty();
+        // a sees two live instances and sheds down to its fair share
+        Set<Integer> ofA = a.claim("orders", 4);
+        assertThat(ofA).hasSize(2);
+        Set<Integer> ofB = b.claim("orders", 4);
+        assertThat(ofB).hasSize(2).doesNotContainAnyElementsOf(ofA);
+
+        Set<Integer> all = new HashSet<>(ofA);
+        all.addAll(ofB);
+        assertThat(all).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void released_partitions_are_taken_over() {
+        PartitionLeaseManager a = new PartitionLeaseManager(repo, 15_000, 5_000, "qpm-a");
+        PartitionLeaseManager b = new PartitionLeaseManager(repo, 15_000, 5_000, "qpm-b");
+        assertThat(a.ownedPartitions("orders", 4)).hasSize(4);
+        b.claim("orders", 4);
+
+        a.releaseAll();
+        assertThat(b.claim("orders", 4)).containsExactly(0, 1, 2, 3);
+    }
+}
@@ -0,0 +1,45 @@
+package org.knightmesh.qpm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriorityLanesTest {
+
+    @Test
+    void busy_lanes_share_the_batch_by_weight() {
+        int[] backlog = {1000, 1000, 1000};
+        int[] taken = new int[3];
+        int processed = PriorityLanes.drain(new int[]{4, 2, 1}, 70, (level, max) -> take(backlog, taken, level, max));
+        assertThat(processed).isEqualTo(70);
+        assertThat(taken).containsExactly(40, 20, 10);
+    }
+
+    @Test
+    void low_priority_is_served_even_while_high_is_flooded() {
+        int[] backlog = {1_000_000, 0, 5};
+        int[] taken = new int[3];
+        PriorityLanes.drain(new int[]{4, 2, 1}, 50, (level, max) -> take(backlog, taken, level, max));
+        assertThat(taken[2]).isGreaterThan(0);
+        assertThat(taken[0]).isGreaterThan(taken[2]);
+    }
+
+    @Test
+    void idle_lanes_leave_the_budget_to_others() {
+        int[] backlog = {3, 0, 1000};
+        int[] taken = new int[3];
+        int processed = PriorityLanes.drain(new int[]{4, 2, 1}, 50, (level, max) -> take(backlog, taken, level, max));
+        assertThat(processed).isEqualTo(50);
+        assertThat(taken).containsExactly(3, 0, 47);
+
+        int[] empty = {0, 0, 0};
+        assertThat(PriorityLanes.drain(new int[]{4, 2, 1}, 50, (level, max) -> take(empty, new int[3], level, max))).isZero();
+    }
+
+    private static int take(int[] backlog, int[] taken, int level, int max) {
+        int n = Math.min(max, backlog[level]);
+        backlog[level] -= n;
+        taken[level] += n;
+        return n;
+    }
+}
@@ -0,0 +1,104 @@
+package org.knightmesh.qpm;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.knightmesh.plugins.queue.InMemoryQueuePlugin;
+import org.knightmesh.plugins.queue.QueuePartitions;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.router.ServiceRouter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QpmWorkerRetryOrderTest {
+
+    @Test
+    void retry_on_a_partitioned_queue_keeps_later_messages_behind_it() throws Exception {
+        ModuleConfig orders = new ModuleConfig();
+        orders.setName("orders");
+        orders.setRouteMode(RouteMode.QUEUE);
+        orders.setQueueName("orders");
+        orders.setExtraJson("{\"queue\": {\"partitions\": 2}}");
+        ConfigRepository config = mock(ConfigRepository.class);
+        when(config.listEnabledModules()).thenReturn(List.of(orders));
+
+        List<String> routed = new CopyOnWriteArrayList<>();
+        ServiceRouter router = mock(ServiceRouter.class);
+        when(router.route(any(ServiceRequest.class))).thenAnswer(inv -> {
+            ServiceRequest req = inv.getArgument(0);
+            routed.add(req.getCorrelationId());
+            boolean firstTry = req.getMetadata().get(RetryBackoff.ATTEMPT_METADATA) == null;
+            return "a1".equals(req.getCorrelationId()) && firstTry
+                    ? ServiceResponse.failure("SERVICE_UNAVAILABLE", "down", Map.of())
+                    : ServiceResponse.success(Map.of());
+        });
+
+        InMemoryQueuePlugin queue = new InMemoryQueuePlugin();
+        QpmWorker worker = new QpmWorker(config, queue, router, 10, 5, 50, 60_000, 2,
+                3, 50, 50, "SERVICE_UNAVAILABLE", 1000);
+        String partition = QueuePartitions.partitionName("orders", 0);
+        queue.enqueue(partition, new ServiceRequest("SVC", Map.of(), Map.of(), "a1"));
+        queue.enqueue(partition, new ServiceRequest("SVC", Map.of(), Map.of(), "a2"));
+
+        worker.pollQueuesAndProcess();
+        queue.enqueue(partition, new ServiceRequest("SVC", Map.of(), Map.of(), "a3"));
+        worker.pollQueuesAndProcess(); // a1's retry is not due yet: the partition waits
+        assertThat(routed).containsExactly("a1");
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (routed.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            worker.pollQueuesAndProcess();
+        }
+        assertThat(routed).containsExactly("a1", "a1", "a2", "a3");
+        queue.close();
+    }
+
+    @Test
+    void stop_runs_a_held_retry_before_newer_messages_of_its_partition() {
+        ModuleConfig orders = new ModuleConfig();
+        orders.setName("orders");
+        orders.setRouteMode(RouteMode.QUEUE);
+        orders.setQueueName("orders");
+        orders.setExtraJson("{\"queue\": {\"partitions\": 2}}");
+        ConfigRepository config = mock(ConfigRepository.class);
+        when(config.listEnabledModules()).thenReturn(List.of(orders));
+
+        List<String> routed = new CopyOnWriteArrayList<>();
+        ServiceRouter router = mock(ServiceRouter.class);
+        when(router.route(any(ServiceRequest.class))).thenAnswer(inv -> {
+            ServiceRequest req = inv.getArgument(0);
+            routed.add(req.getCorrelationId());
+            boolean firstTry = req.getMetadata().get(RetryBackoff.ATTEMPT_METADATA) == null;
+            return "a1".equals(req.getCorrelationId()) && firstTry
+                    ? ServiceResponse.failure("SERVICE_UNAVAILABLE", "down", Map.of())
+                    : ServiceResponse.success(Map.of());
+        });
+
+        InMemoryQueuePlugin queue = new InMemoryQueuePlugin();
+        QpmWorker worker = new QpmWorker(config, queue, router, 10, 5, 50, 60_000, 2,
+                3, 100, 100, "SERVICE_UNAVAILABLE", 1000);
+        String partition = QueuePartitions.partitionName("orders", 0);
+        queue.enqueue(partition, new ServiceRequest("SVC", Map.of(), Map.of(), "a1"));
+        queue.enqueue(partition, new ServiceRequest("SVC", Map.of(), Map.of(), "a2"));
+        worker.pollQueuesAndProcess();
+        queue.enqueue(partition, new ServiceRequest("SVC", Map.of(), Map.of(), "a3"));
+        assertThat(routed).containsExactly("a1");
+
+        worker.stop(); // a1's retry is due well within qpm.retry.stop-drain.ms
+
+        assertThat(routed).containsExactly("a1", "a1", "a2");
+        assertThat(queue.dequeue(partition).getCorrelationId()).isEqualTo("a3");
+        assertThat(queue.dequeue(partition)).isNull();
+        queue.close();
+    }
+}
@@ -0,0 +1,67 @@
+package org.knightmesh.qpm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.ModuleConfig;
+import org.knightmesh.core.config.RouteMode;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.plugins.queue.InMemoryQueuePlugin;
+import org.knightmesh.runtime.config.ConfigRepository;
+import org.knightmesh.runtime.router.ServiceRouter;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueueLagMonitorTest {
+
+    @Test
+    void sums_lanes_and_derives_desired_replicas() {
+        ModuleConfig jobs = new ModuleConfig();
+        jobs.setName("jobs");
+        jobs.setRouteMode(RouteMode.QUEUE);
+        jobs.setQueueName("jobs");
+        jobs.setExtraJson("{\"queue\": {\"priorities\": 2}}");
+        ConfigRepository config = mock(ConfigRepository.class);
+        when(config.listEnabledModules()).thenReturn(List.of(jobs));
+
+        InMemoryQueuePlugin queue = new InMemoryQueuePlugin();
+        for (int i = 0; i < 2; i++) queue.enqueue("jobs", req("hi" + i));    // default lane 0
+        for (int i = 0; i < 3; i++) queue.enqueue("jobs#q1", req("lo" + i));
+
+        QpmWorker worker = new QpmWorker(config, queue, mock(ServiceRouter.class),
+                250, 5, 2000, 5000, 1, 3, 1000, 60000, "SERVICE_UNAVAILABLE", 1000);
+        QueueLagMonitor monitor = new QueueLagMonitor(queue, worker, 2, 1, 10);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        monitor.setMeterRegistry(registry);
+        monitor.refresh();
+
+        QueueLagMonitor.QueueLag lag = monitor.lag().get("jobs");
+        assertThat(lag.depth()).isEqualTo(5);
+        assertThat(lag.depthByPriority()).containsExactly(2L, 3L);
+        assertThat(lag.oldestAgeMs()).isNotNegative();
+        assertThat(lag.inFlight()).isZero();
+        assertThat(monitor.scalingSignal(monitor.lag().values()).desiredReplicas()).isEqualTo(3);
+        assertThat(registry.get("qpm_queue_depth").tag("queue", "jobs").tag("priority", "1").gauge().value())
+                .isEqualTo(3.0);
+
+        queue.dequeueBatch("jobs#q1", 3);
+        monitor.refresh();
+        assertThat(registry.get("qpm_queue_depth").tag("priority", "1").gauge().value()).isZero();
+    }
+
+    @Test
+    void desired_replicas_are_clamped() {
+        assertThat(QueueLagMonitor.desiredReplicas(0, 100, 1, 5)).isEqualTo(1);
+        assertThat(QueueLagMonitor.desiredReplicas(101, 100, 1, 5)).isEqualTo(2);
+        assertThat(QueueLagMonitor.desiredReplicas(10_000, 100, 1, 5)).isEqualTo(5);
+        assertThat(QueueLagMonitor.desiredReplicas(0, 100, 0, 5)).isZero();
+    }
+
+    private static ServiceRequest req(String corrId) {
+        return new ServiceRequest("SVC", Map.of(), Map.of(), corrId);
+    }
+}
@@ -0,0 +1,44 @@
+package org.knightmesh.qpm;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBackoffTest {
+
+    @Test
+    void only_configured_error_codes_are_retryable() {
+        RetryBackoff backoff = new RetryBackoff(3, 100, 1000, "SERVICE_UNAVAILABLE, NO_INSTANCES");
+        assertThat(backoff.isRetryable(ServiceResponse.failure("SERVICE_UNAVAILABLE", "down", Map.of()))).isTrue();
+        assertThat(backoff.isRetryable(ServiceResponse.failure("NO_INSTANCES", "none", Map.of()))).isTrue();
+        assertThat(backoff.isRetryable(ServiceResponse.failure("VALIDATION_ERROR", "bad", Map.of()))).isFalse();
+        assertThat(backoff.isRetryable(ServiceResponse.success(Map.of()))).isFalse();
+    }
+
+    @Test
+    void delay_doubles_per_attempt_up_to_the_cap() {
+        RetryBackoff backoff = new RetryBackoff(10, 100, 1000, "");
+        for (int i = 0; i < 100; i++) {
+            assertThat(backoff.delayMs(1)).isBetween(50L, 100L);
+            assertThat(backoff.delayMs(2)).isBetween(100L, 200L);
+            assertThat(backoff.delayMs(3)).isBetween(200L, 400L);
+            assertThat(backoff.delayMs(5)).isBetween(500L, 1000L);
+            assertThat(backoff.delayMs(80)).isBetween(500L, 1000L);
+        }
+    }
+
+    @Test
+    void attempts_are_counted_in_metadata() {
+        RetryBackoff backoff = new RetryBackoff(3, 100, 1000, "");
+        ServiceRequest first = new ServiceRequest("SVC", Map.of(), Map.of(), "c1");
+        ServiceRequest third = new ServiceRequest("SVC", Map.of(), Map.of(RetryBackoff.ATTEMPT_METADATA, "3"), "c1");
+        assertThat(RetryBackoff.attemptOf(first)).isEqualTo(1);
+        assertThat(RetryBackoff.attemptOf(third)).isEqualTo(3);
+        assertThat(backoff.hasAttemptsLeft(RetryBackoff.attemptOf(first))).isTrue();
+        assertThat(backoff.hasAttemptsLeft(RetryBackoff.attemptOf(third))).isFalse();
+    }
+}
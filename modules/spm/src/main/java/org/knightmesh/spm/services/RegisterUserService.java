@@ -1,23 +1,33 @@
 package org.knightmesh.spm.services;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+import jakarta.validation.constraints.NotBlank;
 import org.knightmesh.core.annotations.CKServiceRegistration;
 import org.knightmesh.core.model.ServiceMetrics;
 import org.knightmesh.core.model.ServiceRequest;
 import org.knightmesh.core.model.ServiceResponse;
-import org.knightmesh.core.service.CKService;
 import org.knightmesh.core.service.ServiceInvoker;
+import org.knightmesh.core.service.TypedCKService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @Component
 @CKServiceRegistration(name = "REGISTER_USER")
-public class RegisterUserService implements CKService {
+public class RegisterUserService implements TypedCKService<RegisterUserService.Registration> {
+
+    /** REGISTER_USER payload; {@code user} is accepted in place of {@code username}. */
+    public record Registration(
+            @JsonAlias("user") @NotBlank(message = "Missing required field: username") String username,
+            @NotBlank(message = "Missing required field: email") String email,
+            String password) {
+    }
 
     private static final Logger log = LoggerFactory.getLogger(RegisterUserService.class);
+    private static final ServiceResponse AUTH_FAILED =
+            ServiceResponse.failure("AUTH_FAILED", "Authentication failed during registration", null);
 
     private final ServiceInvoker invoker;
     private final ServiceMetrics metrics = new ServiceMetrics(8, 3.0, 0, 0);
@@ -32,41 +42,38 @@ public class RegisterUserService implements CKService {
     }
 
     @Override
-    public ServiceResponse execute(ServiceRequest request) {
-        // Validate input
-        String username = (String) request.getPayload().getOrDefault("username", request.getPayload().get("user"));
-        String email = (String) request.getPayload().get("email");
-        if (username == null || username.isBlank()) {
-            return ServiceResponse.failure("VALIDATION_ERROR", "Missing required field: username", null);
-        }
-        if (email == null || email.isBlank()) {
-            return ServiceResponse.failure("VALIDATION_ERROR", "Missing required field: email", null);
-        }
+    public Class<Registration> payloadType() {
+        return Registration.class;
+    }
+
+    @Override
+    public ServiceResponse execute(ServiceRequest request, Registration registration) {
+        // validated when the payload was bound
+        String username = registration.username();
+        String email = registration.email();
         log.info("[REGISTER_USER] creating user username={}, email={}", username, email);
 
         // mock: "persist" user and assign ID
         int userId = Math.abs((username + email).hashCode());
 
         // Call USER_AUTH via ServiceInvoker
-        ServiceRequest authReq = new ServiceRequest(
-                "USER_AUTH",
-                Map.of("user", username, "password", request.getPayload().getOrDefault("password", "")),
-                request.getMetadata(),
-                request.getCorrelationId()
-        );
+        ServiceRequest authReq = ServiceRequest.builder("USER_AUTH")
+                .payload(Map.of("user", username, "password", registration.password() == null ? "" : registration.password()))
+                .metadata(request.getMetadata())
+                .correlationId(request.getCorrelationId())
+                .build();
         ServiceResponse authResp = invoker.invoke(authReq);
         if (authResp.getStatus() != ServiceResponse.Status.SUCCESS) {
-            return ServiceResponse.failure("AUTH_FAILED", "Authentication failed during registration", null);
+            return AUTH_FAILED;
         }
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("userId", userId);
-        data.put("user", username);
-        data.put("email", email);
-        // include token from auth service
-        Object token = authResp.getData().get("token");
-        data.put("token", token);
-        return ServiceResponse.success(data);
+        return ServiceResponse.success()
+                .data("userId", userId)
+                .data("user", username)
+                .data("email", email)
+                // include token from auth service
+                .data("token", authResp.getData().get("token"))
+                .build();
     }
 
     @Override
@@ -0,0 +1,14 @@
+package org.knightmesh.core.config;
+
+import java.util.Optional;
+
+/**
+ * Read access to {@link PluginConfig} rows for code that cannot depend on the module runtime,
+ * such as plugins that reconfigure themselves while running.
+ */
+public interface PluginConfigSource {
+    /**
+     * The plugin configuration with the given name as currently stored, not a cached copy.
+     */
+    Optional<PluginConfig> findPlugin(String name);
+}
@@ -5,5 +5,6 @@ public enum RouteMode {
     REMOTE_ONLY,
     LOCAL_ONLY,
     DIRECT,
-    QUEUE
+    QUEUE,
+    HYBRID
 }
@@ -0,0 +1,27 @@
+package org.knightmesh.core.id;
+
+import java.util.UUID;
+
+/**
+ * Source of unique ids for correlation ids and queue message keys. Use {@link Ids} to get the
+ * process-wide generator; implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    UUID next();
+
+    default String nextString() {
+        return next().toString();
+    }
+
+    /** Time-ordered UUIDv7 ids (default); see {@link TimeOrderedIdGenerator}. */
+    static IdGenerator timeOrdered() {
+        return TimeOrderedIdGenerator.INSTANCE;
+    }
+
+    /** Random UUIDv4 ids, as used before ids were time-ordered. */
+    static IdGenerator random() {
+        return UUID::randomUUID;
+    }
+}
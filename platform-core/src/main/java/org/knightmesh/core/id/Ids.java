@@ -0,0 +1,30 @@
+package org.knightmesh.core.id;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Process-wide {@link IdGenerator}, for code that is not a Spring bean (JPA entities, stores).
+ * Time-ordered unless replaced with {@link #use}; module-runtime selects it with {@code ids.generator}.
+ */
+public final class Ids {
+    private static volatile IdGenerator generator = IdGenerator.timeOrdered();
+
+    private Ids() {}
+
+    public static UUID next() {
+        return generator.next();
+    }
+
+    public static String nextString() {
+        return generator.nextString();
+    }
+
+    public static IdGenerator generator() {
+        return generator;
+    }
+
+    public static void use(IdGenerator generator) {
+        Ids.generator = Objects.requireNonNull(generator, "generator");
+    }
+}
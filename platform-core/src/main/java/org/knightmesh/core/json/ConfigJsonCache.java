@@ -0,0 +1,42 @@
+package org.knightmesh.core.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Values parsed from config JSON blobs ({@code extraJson}, {@code configJson}, plugin settings), kept per
+ * distinct blob, so code reading a blob on every request parses it once. Config changes rarely, so when
+ * {@code capacity} blobs are held the cache simply starts over. Malformed blobs are not kept.
+ */
+public final class ConfigJsonCache<T> {
+    private final int capacity;
+    private final Function<JsonNode, T> parser;
+    private final Map<String, T> parsed = new ConcurrentHashMap<>();
+
+    /** @param parser turns the parsed tree into the value; must not return null */
+    public ConfigJsonCache(int capacity, Function<JsonNode, T> parser) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        this.capacity = capacity;
+        this.parser = Objects.requireNonNull(parser, "parser");
+    }
+
+    /** The value of {@code json}; throws if it is malformed or the parser fails. */
+    public T get(String json) throws IOException {
+        T value = parsed.get(json);
+        if (value != null) return value;
+        value = Objects.requireNonNull(parser.apply(Json.treeReader().readTree(json)), "parsed config value");
+        if (parsed.size() >= capacity) parsed.clear();
+        parsed.put(json, value);
+        return value;
+    }
+
+    /** Number of blobs held. */
+    public int size() {
+        return parsed.size();
+    }
+}
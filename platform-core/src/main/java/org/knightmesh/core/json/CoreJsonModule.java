@@ -0,0 +1,43 @@
+package org.knightmesh.core.json;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.Map;
+
+/**
+ * Binds {@link ServiceRequest} and {@link ServiceResponse} through their constructors, so both can be read
+ * as themselves instead of via a {@code Map}. The derived {@code tenant} property is not written; it travels
+ * in the metadata.
+ */
+public class CoreJsonModule extends SimpleModule {
+
+    public CoreJsonModule() {
+        super("knightmesh-core");
+        setMixInAnnotation(ServiceRequest.class, RequestMixin.class);
+        setMixInAnnotation(ServiceResponse.class, ResponseMixin.class);
+    }
+
+    abstract static class RequestMixin {
+        @JsonCreator
+        RequestMixin(@JsonProperty("serviceName") String serviceName,
+                     @JsonProperty("payload") Map<String, Object> payload,
+                     @JsonProperty("metadata") Map<String, String> metadata,
+                     @JsonProperty("correlationId") String correlationId) {}
+
+        @JsonIgnore
+        abstract String getTenant();
+    }
+
+    abstract static class ResponseMixin {
+        @JsonCreator
+        ResponseMixin(@JsonProperty("status") ServiceResponse.Status status,
+                      @JsonProperty("data") Map<String, Object> data,
+                      @JsonProperty("errorCode") String errorCode,
+                      @JsonProperty("errorMessage") String errorMessage) {}
+    }
+}
@@ -0,0 +1,118 @@
+package org.knightmesh.core.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.Map;
+
+/**
+ * Process-wide JSON settings, for code that is not handed Spring's {@link ObjectMapper} (static helpers,
+ * stores, config parsing). Mappers built or {@link #install installed} here
+ * <ul>
+ *   <li>recycle their parser and generator buffers in a bounded pool shared by all threads, which unlike
+ *       Jackson's default per-thread pool also works for virtual threads;</li>
+ *   <li>read {@link ServiceRequest} and {@link ServiceResponse} directly ({@link CoreJsonModule});</li>
+ *   <li>use Blackbird's generated accessors when {@code jackson-module-blackbird} is on the classpath,
+ *       unless {@code -D}{@value #BLACKBIRD_PROPERTY}{@code =false}.</li>
+ * </ul>
+ * Readers and writers are immutable and cache their (de)serializers, so the ones here are meant to be shared.
+ */
+public final class Json {
+    public static final String BLACKBIRD_PROPERTY = "knightmesh.json.blackbird";
+    static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+
+    private static final ObjectMapper MAPPER = newMapper(blackbirdEnabled());
+    private static final ObjectReader REQUEST_READER = MAPPER.readerFor(ServiceRequest.class);
+    private static final ObjectWriter REQUEST_WRITER = MAPPER.writerFor(ServiceRequest.class);
+    private static final ObjectReader RESPONSE_READER = MAPPER.readerFor(ServiceResponse.class);
+    private static final ObjectWriter RESPONSE_WRITER = MAPPER.writerFor(ServiceResponse.class);
+    private static final ObjectReader MAP_READER = MAPPER.readerFor(MAP);
+    private static final ObjectReader TREE_READER = MAPPER.readerFor(JsonNode.class);
+
+    private Json() {}
+
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    public static ObjectReader requestReader() {
+        return REQUEST_READER;
+    }
+
+    public static ObjectWriter requestWriter() {
+        return REQUEST_WRITER;
+    }
+
+    public static ObjectReader responseReader() {
+        return RESPONSE_READER;
+    }
+
+    public static ObjectWriter responseWriter() {
+        return RESPONSE_WRITER;
+    }
+
+    /** Reads a JSON object as {@code Map<String, Object>}. */
+    public static ObjectReader mapReader() {
+        return MAP_READER;
+    }
+
+    /** Reads any JSON as a {@link JsonNode} tree. */
+    public static ObjectReader treeReader() {
+        return TREE_READER;
+    }
+
+    /** A factory recycling its buffers in the shared bounded pool. */
+    public static JsonFactory newFactory() {
+        return JsonFactory.builder().recyclerPool(JsonRecyclerPools.sharedBoundedPool()).build();
+    }
+
+    /** A mapper with these settings, tolerant of unknown properties; {@code blackbird} if available. */
+    public static ObjectMapper newMapper(boolean blackbird) {
+        ObjectMapper mapper = JsonMapper.builder(newFactory())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        return install(mapper, blackbird);
+    }
+
+    /** Register the modules of these settings on a mapper built elsewhere (e.g. Spring Boot's). */
+    public static ObjectMapper install(ObjectMapper mapper) {
+        return install(mapper, blackbirdEnabled());
+    }
+
+    /** A copy of {@code mapper} with the modules of these settings, keeping the rest of its configuration. */
+    public static ObjectMapper derive(ObjectMapper mapper) {
+        return install(mapper.copy());
+    }
+
+    static ObjectMapper install(ObjectMapper mapper, boolean blackbird) {
+        mapper.registerModule(new CoreJsonModule());
+        Module accessors = blackbird ? blackbird() : null;
+        if (accessors != null) mapper.registerModule(accessors);
+        return mapper;
+    }
+
+    static boolean blackbirdEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(BLACKBIRD_PROPERTY));
+    }
+
+    /** Blackbird if it is on the classpath, else null. */
+    static Module blackbird() {
+        try {
+            return (Module) Class.forName(BLACKBIRD_MODULE).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.knightmesh.core.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Read-only views for the maps of requests and responses, wrapping only maps that are not read-only already. */
+final class ReadOnlyMaps {
+    // Map.of() with zero, one and several entries, and the JDK's own read-only maps
+    private static final Set<Class<?>> READ_ONLY = Set.copyOf(List.of(
+            Map.of().getClass(),
+            Map.of("k", "v").getClass(),
+            Map.of("k", "v", "k2", "v").getClass(),
+            Collections.emptyMap().getClass(),
+            Collections.unmodifiableMap(new HashMap<>()).getClass()));
+
+    private ReadOnlyMaps() {}
+
+    static <K, V> Map<K, V> of(Map<K, V> map) {
+        if (map == null) return SmallMap.of();
+        if (map instanceof SmallMap || READ_ONLY.contains(map.getClass())) return map;
+        return Collections.unmodifiableMap(map);
+    }
+}
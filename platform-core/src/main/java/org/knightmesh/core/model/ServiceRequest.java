@@ -1,28 +1,44 @@
 package org.knightmesh.core.model;
 
-import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
- * Represents an invocation request for a CK service.
+ * Represents an invocation request for a CK service. Payload and metadata are read-only; maps that already
+ * are (e.g. {@code Map.of}, {@link SmallMap}) are kept as given, others are wrapped once.
+ * {@link #builder(String)} collects metadata straight into a {@link SmallMap}.
  */
 public class ServiceRequest {
+    /** Metadata entry identifying the tenant (calling client) a request is made on behalf of. */
+    public static final String TENANT_METADATA = "tenant";
+
     private final String serviceName;
     private final Map<String, Object> payload;
     private final Map<String, String> metadata;
     private final String correlationId;
+    // the payload bound to a service's payload type (see TypedCKService); not part of what is queued or sent
+    private volatile Object typedPayload;
 
     public ServiceRequest(String serviceName,
                           Map<String, Object> payload,
                           Map<String, String> metadata,
                           String correlationId) {
         this.serviceName = Objects.requireNonNull(serviceName, "serviceName");
-        this.payload = payload == null ? Collections.emptyMap() : Collections.unmodifiableMap(payload);
-        this.metadata = metadata == null ? Collections.emptyMap() : Collections.unmodifiableMap(metadata);
+        this.payload = ReadOnlyMaps.of(payload);
+        this.metadata = ReadOnlyMaps.of(metadata);
         this.correlationId = correlationId;
     }
 
+    public static Builder builder(String serviceName) {
+        return new Builder(serviceName);
+    }
+
+    /** A builder starting from this request's fields; the payload is shared, not copied. */
+    public Builder toBuilder() {
+        return new Builder(serviceName).payload(payload).metadata(metadata).correlationId(correlationId);
+    }
+
     public String getServiceName() {
         return serviceName;
     }
@@ -39,6 +55,22 @@ public class ServiceRequest {
         return correlationId;
     }
 
+    /** The payload bound to {@code type}, or null if it has not been bound to that type. */
+    public <T> T getTypedPayload(Class<T> type) {
+        Object bound = typedPayload;
+        return type.isInstance(bound) ? type.cast(bound) : null;
+    }
+
+    /** Attach the typed form of the payload, so it is bound once however often the request is executed. */
+    public void bindTypedPayload(Object typedPayload) {
+        this.typedPayload = typedPayload;
+    }
+
+    /** Tenant from {@link #TENANT_METADATA}, or null for anonymous requests. */
+    public String getTenant() {
+        return metadata.get(TENANT_METADATA);
+    }
+
     @Override
     public String toString() {
         return "ServiceRequest{" +
@@ -48,4 +80,52 @@ public class ServiceRequest {
                 ", metadataKeys=" + metadata.keySet() +
                 '}';
     }
+
+    /** Builds a {@link ServiceRequest}; metadata entries go straight into a {@link SmallMap}. */
+    public static final class Builder {
+        private final String serviceName;
+        private Map<String, Object> payload;
+        private final SmallMap.Builder<String, String> metadata = SmallMap.builder(6);
+        private String correlationId;
+
+        private Builder(String serviceName) {
+            this.serviceName = Objects.requireNonNull(serviceName, "serviceName");
+        }
+
+        /** Hand the payload over: it is not copied, so the caller must not change it afterwards. */
+        public Builder payload(Map<String, Object> payload) {
+            this.payload = payload;
+            return this;
+        }
+
+        public Builder metadata(String key, String value) {
+            metadata.put(key, value);
+            return this;
+        }
+
+        public Builder metadata(Map<String, String> entries) {
+            metadata.putAll(entries);
+            return this;
+        }
+
+        /** Metadata entry computed when first read, for values that are often not read at all. */
+        public Builder lazyMetadata(String key, Supplier<String> value) {
+            metadata.putLazy(key, value);
+            return this;
+        }
+
+        public Builder removeMetadata(String key) {
+            metadata.remove(key);
+            return this;
+        }
+
+        public Builder correlationId(String correlationId) {
+            this.correlationId = correlationId;
+            return this;
+        }
+
+        public ServiceRequest build() {
+            return new ServiceRequest(serviceName, payload, metadata.build(), correlationId);
+        }
+    }
 }
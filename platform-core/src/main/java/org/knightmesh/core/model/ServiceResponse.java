@@ -1,11 +1,11 @@
 package org.knightmesh.core.model;
 
-import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 
 /**
- * Represents the outcome of executing a CK service.
+ * Represents the outcome of executing a CK service. Responses are immutable, so outcomes that repeat
+ * verbatim (e.g. a constant failure) can be answered with one shared instance.
  */
 public class ServiceResponse {
     public enum Status { SUCCESS, FAILURE }
@@ -17,7 +17,7 @@ public class ServiceResponse {
 
     public ServiceResponse(Status status, Map<String, Object> data, String errorCode, String errorMessage) {
         this.status = Objects.requireNonNull(status, "status");
-        this.data = data == null ? Collections.emptyMap() : Collections.unmodifiableMap(data);
+        this.data = ReadOnlyMaps.of(data);
         this.errorCode = errorCode;
         this.errorMessage = errorMessage;
     }
@@ -30,6 +30,11 @@ public class ServiceResponse {
         return new ServiceResponse(Status.FAILURE, data, errorCode, errorMessage);
     }
 
+    /** A builder for a successful response, collecting data into a {@link SmallMap}. */
+    public static Builder success() {
+        return new Builder(Status.SUCCESS);
+    }
+
     public Status getStatus() {
         return status;
     }
@@ -55,4 +60,38 @@ public class ServiceResponse {
                 ", errorMessage='" + errorMessage + '\'' +
                 '}';
     }
+
+    /** Builds a {@link ServiceResponse}; data entries go straight into a {@link SmallMap}. */
+    public static final class Builder {
+        private Status status;
+        private final SmallMap.Builder<String, Object> data = SmallMap.builder(4);
+        private String errorCode;
+        private String errorMessage;
+
+        private Builder(Status status) {
+            this.status = status;
+        }
+
+        public Builder data(String key, Object value) {
+            data.put(key, value);
+            return this;
+        }
+
+        public Builder data(Map<String, Object> entries) {
+            data.putAll(entries);
+            return this;
+        }
+
+        /** Turn the response into a failure. */
+        public Builder failure(String errorCode, String errorMessage) {
+            this.status = Status.FAILURE;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+            return this;
+        }
+
+        public ServiceResponse build() {
+            return new ServiceResponse(status, data.build(), errorCode, errorMessage);
+        }
+    }
 }
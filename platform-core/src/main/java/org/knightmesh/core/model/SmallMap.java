@@ -0,0 +1,215 @@
+package org.knightmesh.core.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Read-only map of a few entries (request metadata, response data) kept in one array, in insertion order.
+ * Lookups scan the keys, which for the handful of entries these maps hold beats hashing and allocates
+ * nothing. Values may be given as a {@link Supplier}, computed on first read, so values that are rarely read
+ * (e.g. a formatted timestamp) cost nothing until they are. Null values are allowed, null keys are not.
+ */
+public final class SmallMap<K, V> extends AbstractMap<K, V> {
+    private static final SmallMap<?, ?> EMPTY = new SmallMap<>(new Object[0], 0);
+
+    // key at 2i, value (or Lazy) at 2i + 1
+    private final Object[] table;
+    private final int size;
+    private Set<Entry<K, V>> entrySet;
+
+    private SmallMap(Object[] table, int size) {
+        this.table = table;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> SmallMap<K, V> of() {
+        return (SmallMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(4);
+    }
+
+    public static <K, V> Builder<K, V> builder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(table, size, key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int i = indexOf(table, size, key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        int i = indexOf(table, size, key);
+        return i < 0 ? defaultValue : valueAt(i);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept((K) table[2 * i], valueAt(i));
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> es = entrySet;
+        if (es == null) {
+            es = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            if (next >= size) throw new NoSuchElementException();
+                            int i = next++;
+                            return new SimpleImmutableEntry<>((K) table[2 * i], valueAt(i));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = es;
+        }
+        return es;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int i) {
+        Object v = table[2 * i + 1];
+        if (v instanceof Lazy lazy) {
+            // racing readers may both compute it; suppliers must be cheap to call twice
+            v = lazy.supplier.get();
+            table[2 * i + 1] = v;
+        }
+        return (V) v;
+    }
+
+    private static int indexOf(Object[] table, int size, Object key) {
+        if (key == null) return -1;
+        for (int i = 0; i < size; i++) {
+            Object k = table[2 * i];
+            if (k == key || k.equals(key)) return i;
+        }
+        return -1;
+    }
+
+    private record Lazy(Supplier<?> supplier) {}
+
+    /**
+     * Collects entries for one {@link SmallMap}; a later {@code put} of the same key replaces the value.
+     * {@link #build()} hands the collected array to the map without copying; the builder copies it again
+     * only if it is used after that.
+     */
+    public static final class Builder<K, V> {
+        private Object[] table;
+        private int size;
+        private boolean built;
+
+        private Builder(int expectedSize) {
+            this.table = new Object[2 * Math.max(1, expectedSize)];
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            return set(key, value);
+        }
+
+        /** Entry whose value is computed on first read. */
+        public Builder<K, V> putLazy(K key, Supplier<? extends V> value) {
+            return set(key, new Lazy(Objects.requireNonNull(value, "value")));
+        }
+
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+            if (map == null || map.isEmpty()) return this;
+            if (map instanceof SmallMap<? extends K, ? extends V> small) {
+                // keeps lazy values unread
+                for (int i = 0; i < small.size; i++) {
+                    set(small.table[2 * i], small.table[2 * i + 1]);
+                }
+                return this;
+            }
+            map.forEach(this::put);
+            return this;
+        }
+
+        public Builder<K, V> remove(Object key) {
+            int i = indexOf(table, size, key);
+            if (i < 0) return this;
+            writable();
+            System.arraycopy(table, 2 * i + 2, table, 2 * i, 2 * (size - i - 1));
+            size--;
+            table[2 * size] = null;
+            table[2 * size + 1] = null;
+            return this;
+        }
+
+        public SmallMap<K, V> build() {
+            if (size == 0) return of();
+            built = true;
+            return new SmallMap<>(table, size);
+        }
+
+        private Builder<K, V> set(Object key, Object value) {
+            Objects.requireNonNull(key, "key");
+            writable();
+            int i = indexOf(table, size, key);
+            if (i >= 0) {
+                table[2 * i + 1] = value;
+                return this;
+            }
+            if (2 * size == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            table[2 * size] = key;
+            table[2 * size + 1] = value;
+            size++;
+            return this;
+        }
+
+        private void writable() {
+            if (built) {
+                table = Arrays.copyOf(table, table.length);
+                built = false;
+            }
+        }
+    }
+}
@@ -4,11 +4,35 @@ import org.knightmesh.core.model.ServiceMetrics;
 import org.knightmesh.core.model.ServiceRequest;
 import org.knightmesh.core.model.ServiceResponse;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Contract for a CK runtime service (e.g., REGISTER_USER, USER_AUTH, etc.).
+ * A service that can handle several requests more cheaply than one at a time (one database round trip,
+ * one call to an external system) overrides {@link #maxBatchSize()} and {@link #executeBatch}; the router
+ * and QPM then hand it requests that arrive together as one batch.
  */
 public interface CKService {
     String getServiceName();
     ServiceResponse execute(ServiceRequest request);
     ServiceMetrics getMetrics();
+
+    /** Most requests one {@link #executeBatch} call is given; 1 (the default) means requests go one at a time. */
+    default int maxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Execute several requests of this service together. A request that fails on its own should get a failure
+     * response; an exception fails every request of the batch.
+     * @return one response per request, in the order of {@code requests}
+     */
+    default List<ServiceResponse> executeBatch(List<ServiceRequest> requests) {
+        List<ServiceResponse> responses = new ArrayList<>(requests.size());
+        for (ServiceRequest request : requests) {
+            responses.add(execute(request));
+        }
+        return responses;
+    }
 }
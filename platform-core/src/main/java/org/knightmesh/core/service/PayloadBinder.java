@@ -0,0 +1,17 @@
+package org.knightmesh.core.service;
+
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+/**
+ * Binds a request's payload map to the payload type of a {@link TypedCKService}.
+ */
+@FunctionalInterface
+public interface PayloadBinder {
+
+    /**
+     * Bind and validate the payload, attaching the result with {@link ServiceRequest#bindTypedPayload}.
+     * @return null if the payload was bound, otherwise the failure to answer the request with
+     */
+    ServiceResponse bind(TypedCKService<?> service, ServiceRequest request);
+}
@@ -0,0 +1,24 @@
+package org.knightmesh.core.service;
+
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.Objects;
+
+/**
+ * Process-wide {@link PayloadBinder}, for {@link TypedCKService}s executed with an unbound request.
+ * module-runtime installs one backed by Jackson; until then typed payloads cannot be bound.
+ */
+public final class PayloadBinders {
+    private static volatile PayloadBinder binder = (service, request) -> ServiceResponse.failure("INVALID_PAYLOAD",
+            "No payload binder installed for " + service.payloadType().getSimpleName(), null);
+
+    private PayloadBinders() {}
+
+    public static PayloadBinder binder() {
+        return binder;
+    }
+
+    public static void use(PayloadBinder binder) {
+        PayloadBinders.binder = Objects.requireNonNull(binder, "binder");
+    }
+}
@@ -0,0 +1,31 @@
+package org.knightmesh.core.service;
+
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+/**
+ * A {@link CKService} that takes its payload as an object of {@link #payloadType()}, typically a record,
+ * instead of reading the payload map. The payload is bound and validated once per request by the installed
+ * {@link PayloadBinder}: IRP binds it when the request comes in if the service runs in its process, anything
+ * else (queued requests, calls through a {@link ServiceInvoker}) is bound on execution. A payload that does
+ * not bind is answered with {@code INVALID_PAYLOAD} or {@code VALIDATION_ERROR} without calling the service.
+ *
+ * @param <P> payload type
+ */
+public interface TypedCKService<P> extends CKService {
+
+    Class<P> payloadType();
+
+    ServiceResponse execute(ServiceRequest request, P payload);
+
+    @Override
+    default ServiceResponse execute(ServiceRequest request) {
+        P payload = request.getTypedPayload(payloadType());
+        if (payload == null) {
+            ServiceResponse invalid = PayloadBinders.binder().bind(this, request);
+            if (invalid != null) return invalid;
+            payload = request.getTypedPayload(payloadType());
+        }
+        return execute(request, payload);
+    }
+}
@@ -0,0 +1,96 @@
+package org.knightmesh.core.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdGeneratorTest {
+
+    /** Ids compared as unsigned 128-bit numbers, the way PostgreSQL orders the uuid type. */
+    private static int compareUnsigned(UUID a, UUID b) {
+        int c = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return c != 0 ? c : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    @Test
+    void ids_are_version_7_and_carry_the_creation_time() {
+        TimeOrderedIdGenerator gen = new TimeOrderedIdGenerator(() -> 1_700_000_000_123L);
+
+        UUID id = gen.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(1_700_000_000_123L, TimeOrderedIdGenerator.timestampMillis(id));
+        assertEquals(id, UUID.fromString(id.toString()));
+    }
+
+    @Test
+    void ids_from_one_thread_increase_within_a_millisecond_across_counter_overflow_and_clock_steps_back() {
+        AtomicLong now = new AtomicLong(1_000);
+        TimeOrderedIdGenerator gen = new TimeOrderedIdGenerator(now::get);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) ids.add(gen.next()); // more than the 4096 the counter holds
+        now.set(500);                                        // clock steps back
+        for (int i = 0; i < 10; i++) ids.add(gen.next());
+        now.set(10_000);
+        ids.add(gen.next());
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(compareUnsigned(ids.get(i - 1), ids.get(i)) < 0, "id " + i + " not after its predecessor");
+        }
+        assertEquals(10_000, TimeOrderedIdGenerator.timestampMillis(ids.get(ids.size() - 1)));
+    }
+
+    @Test
+    void concurrent_generation_gives_unique_ids_ordered_per_thread() throws Exception {
+        TimeOrderedIdGenerator gen = new TimeOrderedIdGenerator(System::currentTimeMillis);
+        Set<UUID> all = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> ordered = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                ordered.add(pool.submit(() -> {
+                    UUID prev = null;
+                    boolean increasing = true;
+                    for (int i = 0; i < 20_000; i++) {
+                        UUID id = gen.next();
+                        all.add(id);
+                        if (prev != null && compareUnsigned(prev, id) >= 0) increasing = false;
+                        prev = id;
+                    }
+                    return increasing;
+                }));
+            }
+            for (Future<Boolean> f : ordered) assertTrue(f.get(30, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(8 * 20_000, all.size());
+    }
+
+    @Test
+    void random_bits_differ_between_ids_of_the_same_millisecond() {
+        TimeOrderedIdGenerator gen = new TimeOrderedIdGenerator(() -> 42L);
+        Set<Long> tails = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) tails.add(gen.next().getLeastSignificantBits());
+        assertEquals(1_000, tails.size());
+    }
+
+    @Test
+    void timestamp_of_a_random_uuid_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedIdGenerator.timestampMillis(UUID.randomUUID()));
+    }
+}
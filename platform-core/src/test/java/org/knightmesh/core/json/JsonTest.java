@@ -0,0 +1,78 @@
+package org.knightmesh.core.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTest {
+
+    @Test
+    void requests_and_responses_round_trip_as_themselves() throws Exception {
+        ServiceRequest req = new ServiceRequest("REGISTER_USER", Map.of("user", "alice", "age", 34),
+                Map.of(ServiceRequest.TENANT_METADATA, "acme"), "c1");
+
+        String json = Json.requestWriter().writeValueAsString(req);
+        ServiceRequest back = Json.requestReader().readValue(json);
+
+        assertFalse(json.contains("\"tenant\":"), json);
+        assertEquals("REGISTER_USER", back.getServiceName());
+        assertEquals(Map.of("user", "alice", "age", 34), back.getPayload());
+        assertEquals("acme", back.getTenant());
+        assertEquals("c1", back.getCorrelationId());
+
+        ServiceResponse resp = ServiceResponse.failure("VALIDATION_ERROR", "Missing field", Map.of("field", "email"));
+        ServiceResponse read = Json.responseReader().readValue(Json.responseWriter().writeValueAsBytes(resp));
+        assertEquals(ServiceResponse.Status.FAILURE, read.getStatus());
+        assertEquals("VALIDATION_ERROR", read.getErrorCode());
+        assertEquals("Missing field", read.getErrorMessage());
+        assertEquals(Map.of("field", "email"), read.getData());
+    }
+
+    @Test
+    void requests_written_as_the_old_map_wrapper_are_read_and_unknown_fields_ignored() throws Exception {
+        ServiceRequest req = Json.requestReader().readValue(
+                "{\"correlationId\":\"c2\",\"metadata\":{},\"serviceName\":\"USER_AUTH\",\"extra\":1}");
+
+        assertEquals("USER_AUTH", req.getServiceName());
+        assertTrue(req.getPayload().isEmpty());
+        assertEquals("c2", req.getCorrelationId());
+    }
+
+    @Test
+    void derived_mappers_keep_their_settings_and_leave_the_original_alone() throws Exception {
+        ObjectMapper original = new ObjectMapper();
+        ObjectMapper derived = Json.derive(original);
+
+        ServiceResponse resp = derived.readValue("{\"status\":\"SUCCESS\",\"data\":{\"n\":1}}", ServiceResponse.class);
+        assertEquals(Map.of("n", 1), resp.getData());
+        assertNotSame(original, derived);
+        assertFalse(original.getRegisteredModuleIds().contains(new CoreJsonModule().getTypeId()));
+    }
+
+    @Test
+    void config_blobs_are_parsed_once_and_malformed_ones_not_kept() throws Exception {
+        AtomicInteger parses = new AtomicInteger();
+        ConfigJsonCache<List<String>> cache = new ConfigJsonCache<>(2, root -> {
+            parses.incrementAndGet();
+            return List.of(root.path("queue").asText());
+        });
+
+        assertEquals(List.of("a"), cache.get("{\"queue\":\"a\"}"));
+        assertEquals(List.of("a"), cache.get(new String("{\"queue\":\"a\"}")));
+        assertEquals(1, parses.get());
+
+        assertThrows(Exception.class, () -> cache.get("{not json"));
+        assertEquals(1, cache.size());
+
+        cache.get("{\"queue\":\"b\"}");
+        cache.get("{\"queue\":\"c\"}");
+        assertTrue(cache.size() <= 2);
+    }
+}
@@ -0,0 +1,92 @@
+package org.knightmesh.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmallMapTest {
+
+    @Test
+    void behaves_like_a_read_only_map_in_insertion_order() {
+        SmallMap<String, String> map = SmallMap.<String, String>builder(2)
+                .put("source", "IRP")
+                .put("tenant", "acme")
+                .put("priority", "1")
+                .put("tenant", "globex")
+                .build();
+
+        assertEquals(3, map.size());
+        assertEquals("globex", map.get("tenant"));
+        assertNull(map.get("missing"));
+        assertEquals(List.of("source", "tenant", "priority"), List.copyOf(map.keySet()));
+        assertEquals(Map.of("source", "IRP", "tenant", "globex", "priority", "1"), map);
+        assertEquals(new HashMap<>(map).hashCode(), map.hashCode());
+        assertThrows(UnsupportedOperationException.class, () -> map.put("x", "y"));
+        assertThrows(UnsupportedOperationException.class, map::clear);
+    }
+
+    @Test
+    void lazy_values_are_computed_once_when_first_read() {
+        AtomicInteger calls = new AtomicInteger();
+        SmallMap<String, String> map = SmallMap.<String, String>builder()
+                .putLazy("timestamp", () -> "t" + calls.incrementAndGet())
+                .build();
+
+        assertEquals(0, calls.get());
+        assertEquals("t1", map.get("timestamp"));
+        assertEquals("t1", map.get("timestamp"));
+        assertEquals(1, calls.get());
+
+        // copied unread, then read through the copy
+        SmallMap<String, String> unread = SmallMap.<String, String>builder()
+                .putLazy("timestamp", () -> "t" + calls.incrementAndGet())
+                .build();
+        SmallMap<String, String> copy = SmallMap.<String, String>builder().putAll(unread).put("source", "QPM").build();
+        assertEquals(1, calls.get());
+        assertEquals("t2", copy.get("timestamp"));
+    }
+
+    @Test
+    void builder_used_after_build_does_not_change_the_built_map() {
+        SmallMap.Builder<String, Object> builder = SmallMap.<String, Object>builder().put("a", 1).put("b", 2);
+        SmallMap<String, Object> first = builder.build();
+        SmallMap<String, Object> second = builder.remove("a").put("c", 3).build();
+
+        assertEquals(Map.of("a", 1, "b", 2), first);
+        assertEquals(Map.of("b", 2, "c", 3), second);
+        assertSame(SmallMap.of(), SmallMap.builder().build());
+    }
+
+    @Test
+    void requests_and_responses_keep_read_only_maps_and_wrap_the_rest() {
+        Map<String, Object> payload = new LinkedHashMap<>(Map.of("user", "alice"));
+        ServiceRequest req = ServiceRequest.builder("REGISTER_USER")
+                .payload(payload)
+                .metadata("source", "IRP")
+                .lazyMetadata("timestamp", () -> "2024-05-01T10:15:30Z")
+                .correlationId("c1")
+                .build();
+
+        assertInstanceOf(SmallMap.class, req.getMetadata());
+        assertThrows(UnsupportedOperationException.class, () -> req.getPayload().put("x", 1));
+        assertEquals("2024-05-01T10:15:30Z", req.getMetadata().get("timestamp"));
+
+        ServiceRequest retry = req.toBuilder().metadata("attempt", "2").removeMetadata("source").build();
+        assertSame(req.getPayload(), retry.getPayload());
+        assertEquals(Map.of("timestamp", "2024-05-01T10:15:30Z", "attempt", "2"), retry.getMetadata());
+        assertEquals("c1", retry.getCorrelationId());
+
+        Map<String, Object> data = Map.of("id", 42);
+        assertSame(data, ServiceResponse.success(data).getData());
+        ServiceResponse built = ServiceResponse.success().data("id", 42).data("token", null).build();
+        assertEquals(ServiceResponse.Status.SUCCESS, built.getStatus());
+        assertTrue(built.getData().containsKey("token"));
+        assertEquals(42, built.getData().get("id"));
+    }
+}
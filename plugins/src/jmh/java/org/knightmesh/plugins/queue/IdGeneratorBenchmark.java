@@ -0,0 +1,106 @@
+package org.knightmesh.plugins.queue;
+
+import org.knightmesh.core.id.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-ordered (UUIDv7) against random (UUIDv4) ids: generation cost on one thread and on eight, and
+ * the time to insert {@value #INSERT_ROWS} rows keyed by them into a table with a uuid primary key that
+ * keeps growing across iterations. Inserts run against in-memory H2 unless {@code jdbcUrl} points at a
+ * real database, e.g. PostgreSQL, where the index pages touched by random keys matter most:
+ * <p>
+ * Run: {@code ./gradlew :plugins:jmh -Pjmh.includes=IdGeneratorBenchmark}
+ * <br>
+ * {@code -Pjmh.includes=IdGeneratorBenchmark.insert -Pjmh.benchmarkParameters=jdbcUrl=jdbc:postgresql://localhost:5432/km?user=km&password=km}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdGeneratorBenchmark {
+
+    static final int INSERT_ROWS = 100_000;
+    private static final int JDBC_BATCH = 1_000;
+
+    @Param({"time-ordered", "random"})
+    public String generator;
+
+    @Param({"jdbc:h2:mem:ids;DB_CLOSE_DELAY=-1"})
+    public String jdbcUrl;
+
+    private IdGenerator ids;
+    private Connection connection;
+    private String table;
+
+    @Setup
+    public void setup() throws Exception {
+        ids = "random".equals(generator) ? IdGenerator.random() : IdGenerator.timeOrdered();
+        table = "id_bench_" + generator.replace('-', '_');
+        connection = DriverManager.getConnection(jdbcUrl);
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + table);
+            // same key and row shape as persistent_queue_message, minus the columns that do not touch the index
+            st.execute("CREATE TABLE " + table + " (id UUID PRIMARY KEY, queue_name VARCHAR(200) NOT NULL, payload_bin BYTEA)");
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + table);
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    public UUID generate() {
+        return ids.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UUID generateContended() {
+        return ids.next();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void insert() throws Exception {
+        byte[] payload = new byte[256];
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, queue_name, payload_bin) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= INSERT_ROWS; i++) {
+                ps.setObject(1, ids.next());
+                ps.setString(2, "bench");
+                ps.setBytes(3, payload);
+                ps.addBatch();
+                if (i % JDBC_BATCH == 0) {
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+    }
+}
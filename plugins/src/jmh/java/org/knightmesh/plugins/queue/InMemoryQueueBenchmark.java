@@ -0,0 +1,108 @@
+package org.knightmesh.plugins.queue;
+
+import org.knightmesh.core.model.ServiceRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ring-buffer {@link InMemoryQueuePlugin} against the previous ConcurrentLinkedQueue
+ * implementation with 1, 4 and 16 producers, each group paired with the same number of consumers. The
+ * {@code size} group adds a thread calling {@link QueuePlugin#size} to 4 producers and 4 consumers.
+ * <p>
+ * Run: {@code ./gradlew :plugins:jmh -Pjmh.includes=InMemoryQueueBenchmark}
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InMemoryQueueBenchmark {
+
+    private static final String QUEUE = "bench";
+    private static final ServiceRequest REQUEST = new ServiceRequest("SVC", Map.of("k", 1), Map.of(), "c");
+
+    @Param({"ring", "clq"})
+    public String impl;
+
+    private QueuePlugin plugin;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        // REJECT keeps producers from parking so the numbers reflect queue cost, not backpressure waits
+        plugin = "ring".equals(impl)
+                ? new InMemoryQueuePlugin(InMemoryQueuePlugin.DEFAULT_CAPACITY, OverflowPolicy.REJECT, 0)
+                : new ConcurrentLinkedQueuePlugin();
+    }
+
+    @Benchmark @Group("p1") @GroupThreads(1)
+    public void p1_enqueue(Blackhole bh) { enqueue(bh); }
+
+    @Benchmark @Group("p1") @GroupThreads(1)
+    public ServiceRequest p1_dequeue() { return plugin.dequeue(QUEUE); }
+
+    @Benchmark @Group("p4") @GroupThreads(4)
+    public void p4_enqueue(Blackhole bh) { enqueue(bh); }
+
+    @Benchmark @Group("p4") @GroupThreads(4)
+    public ServiceRequest p4_dequeue() { return plugin.dequeue(QUEUE); }
+
+    @Benchmark @Group("p16") @GroupThreads(16)
+    public void p16_enqueue(Blackhole bh) { enqueue(bh); }
+
+    @Benchmark @Group("p16") @GroupThreads(16)
+    public ServiceRequest p16_dequeue() { return plugin.dequeue(QUEUE); }
+
+    @Benchmark @Group("size") @GroupThreads(4)
+    public void size_enqueue(Blackhole bh) { enqueue(bh); }
+
+    // consumers keep the depth steady, as in p4: otherwise the ring fills and rejects while the CLQ grows without bound
+    @Benchmark @Group("size") @GroupThreads(4)
+    public ServiceRequest size_dequeue() { return plugin.dequeue(QUEUE); }
+
+    @Benchmark @Group("size") @GroupThreads(1)
+    public int size_probe() { return plugin.size(QUEUE); }
+
+    private void enqueue(Blackhole bh) {
+        try {
+            plugin.enqueue(QUEUE, REQUEST);
+        } catch (QueueFullException full) {
+            bh.consume(full);
+        }
+    }
+
+    /** The pre-ring-buffer implementation, kept here as the baseline. */
+    static final class ConcurrentLinkedQueuePlugin implements QueuePlugin {
+        private final Map<String, Queue<ServiceRequest>> queues = new ConcurrentHashMap<>();
+
+        @Override
+        public void enqueue(String queueName, ServiceRequest request) {
+            queues.computeIfAbsent(queueName, q -> new ConcurrentLinkedQueue<>()).add(request);
+        }
+
+        @Override
+        public ServiceRequest dequeue(String queueName) {
+            Queue<ServiceRequest> q = queues.get(queueName);
+            return q == null ? null : q.poll();
+        }
+
+        @Override
+        public int size(String queueName) {
+            Queue<ServiceRequest> q = queues.get(queueName);
+            return q == null ? 0 : q.size();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.ServiceResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON on the hot paths: {@code default} is how they worked before the shared settings (a fresh
+ * {@code ObjectMapper}, requests written as a map wrapper and everything read back as {@code Map}),
+ * {@code shared} reads and writes {@link ServiceRequest}/{@link ServiceResponse} with the cached
+ * {@link Json} readers and writers, and {@code blackbird} adds Blackbird's generated accessors.
+ * {@code configParse}/{@code configCached} compare parsing a module's extra JSON per request with
+ * {@link QueueSettings#fromExtraJson}'s cache. Run with 8 threads, as the router and IRP serve many
+ * requests at once and buffer recycling matters most then.
+ * <p>
+ * Run: {@code ./gradlew :plugins:jmh -Pjmh.includes=SerializationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class SerializationBenchmark {
+
+    @Param({"default", "shared", "blackbird"})
+    public String mapper;
+
+    private static final String EXTRA_JSON = "{\"queue\": {\"partitions\": 8, \"partitionKey\": \"accountId\", "
+            + "\"priorities\": 3, \"tenantFair\": true, \"tenantWeights\": {\"gold\": 4}}, "
+            + "\"instances\": [{\"host\": \"10.0.0.5\", \"port\": 8080, \"metadata\": {\"zone\": \"a\"}}]}";
+
+    private final ObjectMapper plain = new ObjectMapper();
+    private ObjectWriter requestWriter;
+    private ObjectReader requestReader;
+    private ObjectWriter responseWriter;
+    private ObjectReader responseReader;
+    private ServiceRequest request;
+    private ServiceResponse response;
+    private byte[] requestJson;
+    private byte[] responseJson;
+
+    @Setup
+    public void setup() throws Exception {
+        if (!"default".equals(mapper)) {
+            ObjectMapper tuned = Json.newMapper("blackbird".equals(mapper));
+            requestWriter = tuned.writerFor(ServiceRequest.class);
+            requestReader = tuned.readerFor(ServiceRequest.class);
+            responseWriter = tuned.writerFor(ServiceResponse.class);
+            responseReader = tuned.readerFor(ServiceResponse.class);
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("user", "alice");
+        payload.put("email", "alice@example.com");
+        payload.put("age", 34);
+        payload.put("active", true);
+        request = new ServiceRequest("REGISTER_USER", payload,
+                Map.of("timestamp", "2024-05-01T10:15:30.123Z", "source", "IRP"), "5f0c7a52-8e3b-4a51-9a7e-3f1f8f7c1d2e");
+        response = ServiceResponse.success(Map.of("userId", "u-1001", "status", "CREATED"));
+        requestJson = writeRequest();
+        responseJson = writeResponse();
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws Exception {
+        if (requestWriter == null) {
+            Map<String, Object> wrapper = new HashMap<>();
+            wrapper.put("serviceName", request.getServiceName());
+            wrapper.put("payload", request.getPayload());
+            wrapper.put("metadata", request.getMetadata());
+            wrapper.put("correlationId", request.getCorrelationId());
+            return plain.writeValueAsBytes(wrapper);
+        }
+        return requestWriter.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public Object readRequest() throws Exception {
+        return requestReader == null ? plain.readValue(requestJson, Map.class) : requestReader.readValue(requestJson);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws Exception {
+        return responseWriter == null ? plain.writeValueAsBytes(response) : responseWriter.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public Object readResponse() throws Exception {
+        return responseReader == null ? plain.readValue(responseJson, Map.class) : responseReader.readValue(responseJson);
+    }
+
+    @Benchmark
+    public Object configParse() throws Exception {
+        return plain.readTree(EXTRA_JSON).path("queue").path("partitions").asInt(1);
+    }
+
+    @Benchmark
+    public Object configCached() {
+        return QueueSettings.fromExtraJson(EXTRA_JSON).getPartitions();
+    }
+}
@@ -0,0 +1,125 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.knightmesh.core.model.ServiceRequest;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent queue payload encodings: the legacy JSON wrapper against {@link ServiceRequestCodec},
+ * for small and large payloads. {@code million} encodes one million messages per shot and reports the
+ * total stored bytes as the {@code storedBytes} counter.
+ * <p>
+ * Run: {@code ./gradlew :plugins:jmh -Pjmh.includes=ServiceRequestCodecBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceRequestCodecBenchmark {
+
+    @Param({"binary", "json"})
+    public String format;
+
+    /** Approximate payload size: a few fields, or an order with many line items. */
+    @Param({"small", "large"})
+    public String payload;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ServiceRequestCodec codec;
+    private ServiceRequest request;
+    private byte[] encoded;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Stored {
+        public long storedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            storedBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        codec = new ServiceRequestCodec(mapper, 1024);
+        request = "small".equals(payload) ? smallRequest() : largeRequest();
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return "binary".equals(format) ? codec.encode(request) : mapper.writeValueAsBytes(jsonWrapper(request));
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        return "binary".equals(format) ? codec.decode(encoded) : mapper.readValue(encoded, Map.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = 1_000_000)
+    @Measurement(iterations = 3, batchSize = 1_000_000)
+    public void million(Stored stored) throws Exception {
+        stored.storedBytes += encode().length;
+    }
+
+    // same shape PersistentQueuePlugin writes in JSON mode
+    private static Map<String, Object> jsonWrapper(ServiceRequest req) {
+        Map<String, Object> wrapper = new HashMap<>();
+        wrapper.put("serviceName", req.getServiceName());
+        wrapper.put("payload", req.getPayload());
+        wrapper.put("metadata", req.getMetadata());
+        wrapper.put("correlationId", req.getCorrelationId());
+        return wrapper;
+    }
+
+    private static Map<String, String> metadata() {
+        return Map.of("timestamp", "2024-05-01T10:15:30.123Z", "source", "IRP");
+    }
+
+    private static ServiceRequest smallRequest() {
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("user", "alice");
+        p.put("email", "alice@example.com");
+        p.put("age", 34);
+        p.put("active", true);
+        return new ServiceRequest("REGISTER_USER", p, metadata(), "5f0c7a52-8e3b-4a51-9a7e-3f1f8f7c1d2e");
+    }
+
+    private static ServiceRequest largeRequest() {
+        List<Object> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("sku", "SKU-" + (100000 + i));
+            line.put("description", "Replacement part for assembly line " + (i % 7));
+            line.put("quantity", i % 5 + 1);
+            line.put("unitPrice", 19.99 + i);
+            lines.add(line);
+        }
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("orderId", "ORD-20240501-000042");
+        p.put("customerId", 1_234_567_890_123L);
+        p.put("lines", lines);
+        return new ServiceRequest("PLACE_ORDER", p, metadata(), "5f0c7a52-8e3b-4a51-9a7e-3f1f8f7c1d2e");
+    }
+}
@@ -0,0 +1,25 @@
+package org.knightmesh.plugins.blob;
+
+import java.time.Instant;
+
+/**
+ * Storage for large opaque payloads referenced by id, e.g. claim-checked queue messages.
+ */
+public interface BlobStore {
+
+    /** Store the bytes and return a new id. */
+    String put(byte[] data);
+
+    /** Bytes stored under the id, or null if there are none. */
+    byte[] get(String id);
+
+    /** Delete the blob; unknown ids are ignored. */
+    void delete(String id);
+
+    /**
+     * Delete blobs created before the cutoff, for references that were lost (e.g. a message dropped
+     * before it was consumed).
+     * @return number of blobs deleted
+     */
+    int deleteOlderThan(Instant cutoff);
+}
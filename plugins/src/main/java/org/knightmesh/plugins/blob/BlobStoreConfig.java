@@ -0,0 +1,41 @@
+package org.knightmesh.plugins.blob;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+
+/**
+ * Selects the {@link BlobStore} with {@code claimcheck.store}: {@code jdbc} (default, the {@code queue_blob}
+ * table) or {@code file} (directory {@code claimcheck.file.dir}). IRP writes blobs and QPM reads them, so the
+ * store must be shared by both; there is no default directory, and startup fails if the chosen store is
+ * not configured.
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    @Bean
+    public BlobStore blobStore(@Value("${claimcheck.store:jdbc}") String store,
+                               @Value("${claimcheck.file.dir:}") String dir,
+                               ObjectProvider<JdbcTemplate> jdbcTemplate) {
+        switch (store.toLowerCase()) {
+            case "file":
+                if (dir.isBlank()) {
+                    throw new IllegalStateException(
+                            "claimcheck.store=file needs claimcheck.file.dir on a volume shared by IRP and QPM");
+                }
+                return new FileBlobStore(Path.of(dir));
+            case "jdbc":
+                JdbcTemplate jdbc = jdbcTemplate.getIfAvailable();
+                if (jdbc == null) {
+                    throw new IllegalStateException("claimcheck.store=jdbc needs a DataSource shared by IRP and QPM");
+                }
+                return new JdbcBlobStore(jdbc);
+            default:
+                throw new IllegalArgumentException("Unknown claimcheck.store '" + store + "' (expected jdbc or file)");
+        }
+    }
+}
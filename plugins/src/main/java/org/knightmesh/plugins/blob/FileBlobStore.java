@@ -0,0 +1,104 @@
+package org.knightmesh.plugins.blob;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Blobs as files in a directory, one file per blob. Files are written to a temporary name and moved
+ * into place so readers never see a partial blob. Instances share blobs only through a shared volume.
+ */
+public class FileBlobStore implements BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(FileBlobStore.class);
+    private static final String SUFFIX = ".blob";
+
+    private final Path dir;
+
+    public FileBlobStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create blob directory " + dir, e);
+        }
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String id = UUID.randomUUID().toString();
+        Path tmp = dir.resolve(id + ".tmp");
+        try {
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, file(id), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file(id));
+            }
+            return id;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // best effort; the sweep removes leftovers
+            }
+            throw new UncheckedIOException("Failed to store blob", e);
+        }
+    }
+
+    @Override
+    public byte[] get(String id) {
+        try {
+            return Files.readAllBytes(file(id));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read blob " + id, e);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        try {
+            Files.deleteIfExists(file(id));
+        } catch (IOException e) {
+            log.warn("[FileBlobStore] failed to delete blob {}: {}", id, e.toString());
+        }
+    }
+
+    @Override
+    public int deleteOlderThan(Instant cutoff) {
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                Path p = it.next();
+                try {
+                    if (Files.getLastModifiedTime(p).toInstant().isBefore(cutoff) && Files.deleteIfExists(p)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.debug("[FileBlobStore] skipping {}: {}", p, e.toString());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sweep blob directory " + dir, e);
+        }
+        return deleted;
+    }
+
+    private Path file(String id) {
+        // ids are UUIDs we generated; anything else must not escape the directory
+        UUID.fromString(id);
+        return dir.resolve(id + SUFFIX);
+    }
+}
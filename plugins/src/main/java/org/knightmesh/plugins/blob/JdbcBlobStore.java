@@ -0,0 +1,45 @@
+package org.knightmesh.plugins.blob;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Blobs in the dedicated {@code queue_blob} table, kept apart from queue tables so their scans stay
+ * small. Shared by every instance using the same database.
+ */
+public class JdbcBlobStore implements BlobStore {
+
+    private final JdbcTemplate jdbc;
+
+    public JdbcBlobStore(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String id = UUID.randomUUID().toString();
+        jdbc.update("INSERT INTO queue_blob (id, data, created_at) VALUES (?, ?, ?)",
+                id, data, Timestamp.from(Instant.now()));
+        return id;
+    }
+
+    @Override
+    public byte[] get(String id) {
+        List<byte[]> rows = jdbc.query("SELECT data FROM queue_blob WHERE id = ?", (rs, i) -> rs.getBytes(1), id);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public void delete(String id) {
+        jdbc.update("DELETE FROM queue_blob WHERE id = ?", id);
+    }
+
+    @Override
+    public int deleteOlderThan(Instant cutoff) {
+        return jdbc.update("DELETE FROM queue_blob WHERE created_at < ?", Timestamp.from(cutoff));
+    }
+}
@@ -0,0 +1,39 @@
+package org.knightmesh.plugins.idempotency;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Responses remembered by idempotency key, so a client retrying a request gets the first answer
+ * instead of running it again. The first caller of a key {@link #claim claims} it, executes, and
+ * {@link #complete completes} the claim; callers arriving meanwhile wait for that answer. Keys expire
+ * after a TTL.
+ */
+public interface IdempotencyStore {
+
+    enum Kind {
+        /** The caller owns the key: execute, then {@link #complete} or {@link #release} the claim. */
+        NEW,
+        /** The key is known: {@link Claim#response()} completes with its answer, or with null if it is released. */
+        DUPLICATE,
+        /** The key was used with a different request; nothing is executed or replayed. */
+        MISMATCH
+    }
+
+    /** Answer remembered for a key: the HTTP status and the body that went with it. */
+    record StoredResponse(int status, Object body) {}
+
+    /**
+     * Outcome of {@link #claim}. For a duplicate the future is the caller's own, so cancelling it (e.g. on
+     * timeout) does not affect other waiters.
+     */
+    record Claim(String key, Kind kind, CompletableFuture<StoredResponse> response) {}
+
+    /** @param fingerprint digest of the request, to tell a retry from a different request reusing the key */
+    Claim claim(String key, String fingerprint);
+
+    /** Remember the owner's answer for the TTL and hand it to everyone waiting. */
+    void complete(Claim claim, StoredResponse response);
+
+    /** Forget a claim whose request produced no answer worth replaying; waiters get null and may claim again. */
+    void release(Claim claim);
+}
@@ -0,0 +1,36 @@
+package org.knightmesh.plugins.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Selects where the {@link IdempotencyStore} keeps idempotency keys with {@code irp.idempotency.store}:
+ * {@code memory} (default; retries reaching another IRP replica are not recognised) or {@code jdbc}
+ * (memory plus the {@code irp_idempotency} table, shared by all replicas).
+ */
+@Configuration
+public class IdempotencyStoreConfig {
+
+    @Bean
+    public IdempotencyStore idempotencyStore(@Value("${irp.idempotency.store:memory}") String store,
+                                             @Value("${irp.idempotency.capacity:100000}") int capacity,
+                                             @Value("${irp.idempotency.ttl.ms:3600000}") long ttlMs,
+                                             @Value("${irp.idempotency.pending.ms:60000}") long pendingMs,
+                                             @Value("${irp.idempotency.poll.ms:200}") long pollMs,
+                                             ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                             ObjectProvider<ObjectMapper> objectMapper) {
+        switch (store.toLowerCase()) {
+            case "memory":
+                return new InMemoryIdempotencyStore(capacity, ttlMs, pendingMs, null, pollMs);
+            case "jdbc":
+                IdempotencyTable table = new IdempotencyTable(jdbcTemplate.getObject(), objectMapper.getIfAvailable(ObjectMapper::new));
+                return new InMemoryIdempotencyStore(capacity, ttlMs, pendingMs, table, pollMs);
+            default:
+                throw new IllegalArgumentException("Unknown irp.idempotency.store '" + store + "' (expected memory or jdbc)");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.knightmesh.plugins.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Idempotency keys in the {@code irp_idempotency} table (V10), shared by every IRP instance using the
+ * same database. A key is inserted as {@code PENDING} by the instance that executes it, with
+ * {@code expires_at} as a lease so a crashed owner does not block the key for good, and becomes
+ * {@code DONE} with the answer as JSON. Rows past {@code expires_at} are ignored and may be taken over.
+ */
+public class IdempotencyTable {
+    static final int MAX_KEYS_PER_QUERY = 500;
+
+    /** A key's row: its fingerprint, and the answer once it is DONE (null while PENDING). */
+    public record Row(String fingerprint, IdempotencyStore.StoredResponse response, Instant expiresAt) {}
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyTable(JdbcTemplate jdbc, ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Claim the key for this instance: insert it as PENDING, or take over a row that has expired.
+     * @return false if another live row holds the key
+     */
+    public boolean claim(String key, String fingerprint, Instant now, Instant leaseUntil) {
+        try {
+            jdbc.update("INSERT INTO irp_idempotency (idempotency_key, fingerprint, status, created_at, expires_at) VALUES (?, ?, 'PENDING', ?, ?)",
+                    key, fingerprint, Timestamp.from(now), Timestamp.from(leaseUntil));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return jdbc.update("UPDATE irp_idempotency SET fingerprint = ?, status = 'PENDING', http_status = NULL, body = NULL, " +
+                            "created_at = ?, expires_at = ? WHERE idempotency_key = ? AND expires_at <= ?",
+                    fingerprint, Timestamp.from(now), Timestamp.from(leaseUntil), key, Timestamp.from(now)) > 0;
+        }
+    }
+
+    public void complete(String key, IdempotencyStore.StoredResponse response, Instant expiresAt) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(response.body());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize response body", e);
+        }
+        jdbc.update("UPDATE irp_idempotency SET status = 'DONE', http_status = ?, body = ?, expires_at = ? WHERE idempotency_key = ?",
+                response.status(), body, Timestamp.from(expiresAt), key);
+    }
+
+    /** Drop a PENDING claim so the key can be claimed again. */
+    public void release(String key) {
+        jdbc.update("DELETE FROM irp_idempotency WHERE idempotency_key = ? AND status = 'PENDING'", key);
+    }
+
+    /** The key's live row, or null if there is none. */
+    public Row get(String key, Instant now) {
+        Map<String, Row> rows = getAll(List.of(key), now);
+        return rows.get(key);
+    }
+
+    /** Live rows among the given keys; keys without one are absent from the map. */
+    public Map<String, Row> getAll(Collection<String> keys, Instant now) {
+        Map<String, Row> found = new HashMap<>();
+        List<String> all = new ArrayList<>(keys);
+        for (int from = 0; from < all.size(); from += MAX_KEYS_PER_QUERY) {
+            List<String> chunk = all.subList(from, Math.min(all.size(), from + MAX_KEYS_PER_QUERY));
+            Object[] args = new Object[chunk.size() + 1];
+            for (int i = 0; i < chunk.size(); i++) args[i] = chunk.get(i);
+            args[chunk.size()] = Timestamp.from(now);
+            String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbc.query("SELECT idempotency_key, fingerprint, status, http_status, body, expires_at FROM irp_idempotency " +
+                            "WHERE idempotency_key IN (" + in + ") AND expires_at > ?",
+                    rs -> {
+                        IdempotencyStore.StoredResponse response = "DONE".equals(rs.getString(3))
+                                ? new IdempotencyStore.StoredResponse(rs.getInt(4), decode(rs.getString(5)))
+                                : null;
+                        found.put(rs.getString(1), new Row(rs.getString(2), response, rs.getTimestamp(6).toInstant()));
+                    }, args);
+        }
+        return found;
+    }
+
+    /** @return number of rows deleted */
+    public int deleteExpired(Instant now) {
+        return jdbc.update("DELETE FROM irp_idempotency WHERE expires_at <= ?", Timestamp.from(now));
+    }
+
+    private Object decode(String json) {
+        if (json == null) return null;
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to deserialize stored response body", e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.knightmesh.plugins.idempotency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Idempotency keys held in memory, at most {@code capacity} of them (oldest dropped first). A claimed key
+ * is held for {@code pendingMs} while its owner executes, then its answer for {@code ttlMs}. Concurrent
+ * callers of a key share one future, so a duplicate arriving mid-execution waits for the owner's answer.
+ * <p>
+ * With an {@link IdempotencyTable} keys are also claimed in the database, so duplicates hitting another
+ * instance are caught too: a key claimed elsewhere is waited on by polling the table every {@code pollMs},
+ * one query per poll for all such keys, and answers stay replayable after they leave memory.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryIdempotencyStore.class);
+
+    static final long TABLE_CLEANUP_MS = 60_000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // creation and completion order; holds a slot per expiry an entry had, stale ones are skipped
+    private final Queue<Slot> order = new ConcurrentLinkedQueue<>();
+    private final int capacity;
+    private final long ttlMs;
+    private final long pendingMs;
+    private final IdempotencyTable table;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService timer;
+    private long tableCleanedAt;
+
+    /**
+     * @param table shared copy of the keys, or null to deduplicate within this process only
+     * @param pollMs how often keys claimed elsewhere are looked up; 0 leaves it to {@link #tick()}
+     */
+    public InMemoryIdempotencyStore(int capacity, long ttlMs, long pendingMs, IdempotencyTable table, long pollMs) {
+        this(capacity, ttlMs, pendingMs, table, pollMs, System::currentTimeMillis);
+    }
+
+    InMemoryIdempotencyStore(int capacity, long ttlMs, long pendingMs, IdempotencyTable table, long pollMs, LongSupplier clock) {
+        if (capacity <= 0 || ttlMs <= 0 || pendingMs <= 0) {
+            throw new IllegalArgumentException("Require irp.idempotency.capacity, irp.idempotency.ttl.ms and irp.idempotency.pending.ms > 0");
+        }
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+        this.pendingMs = pendingMs;
+        this.table = table;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.tableCleanedAt = clock.getAsLong();
+        if (table != null && pollMs > 0) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "idempotency-store");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(this::tick, pollMs, pollMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.timer = null;
+        }
+    }
+
+    @Override
+    public Claim claim(String key, String fingerprint) {
+        Objects.requireNonNull(key, "key");
+        long now = clock.getAsLong();
+        evict(now);
+        Entry[] created = new Entry[1];
+        Entry[] expired = new Entry[1];
+        Entry entry = entries.compute(key, (k, current) -> {
+            if (current != null && current.expiresAt > now) return current;
+            expired[0] = current;
+            created[0] = new Entry(k, fingerprint, now + pendingMs);
+            return created[0];
+        });
+        if (expired[0] != null && expired[0].remote) {
+            // no longer polled: its waiters retry and find the key in the table again
+            expired[0].result.complete(null);
+        }
+        if (entry != created[0]) {
+            return joined(entry, fingerprint);
+        }
+        order.add(new Slot(entry, entry.expiresAt));
+        if (table == null || claimInTable(entry, now)) {
+            return new Claim(key, Kind.NEW, entry.result);
+        }
+        return joined(entry, fingerprint);
+    }
+
+    @Override
+    public void complete(Claim claim, StoredResponse response) {
+        Objects.requireNonNull(response, "response");
+        if (claim.kind() != Kind.NEW) return;
+        long now = clock.getAsLong();
+        Entry entry = entries.get(claim.key());
+        if (entry != null && entry.result == claim.response()) {
+            entry.expiresAt = now + ttlMs;
+            order.add(new Slot(entry, entry.expiresAt));
+        }
+        // completed even if the entry was dropped meanwhile: its waiters hold copies of this future
+        claim.response().complete(response);
+        if (table != null) {
+            try {
+                table.complete(claim.key(), response, Instant.ofEpochMilli(now + ttlMs));
+            } catch (RuntimeException e) {
+                log.warn("[IdempotencyStore] could not store the answer for key={}: {}", claim.key(), e.toString());
+            }
+        }
+    }
+
+    @Override
+    public void release(Claim claim) {
+        if (claim.kind() != Kind.NEW) return;
+        entries.computeIfPresent(claim.key(), (k, entry) -> entry.result == claim.response() ? null : entry);
+        claim.response().complete(null);
+        if (table != null) {
+            try {
+                table.release(claim.key());
+            } catch (RuntimeException e) {
+                log.warn("[IdempotencyStore] could not release key={}; it frees up when its lease expires: {}", claim.key(), e.toString());
+            }
+        }
+    }
+
+    /** Number of keys held in memory. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Drop expired keys and look up the answers of keys being executed elsewhere. */
+    void tick() {
+        long now = clock.getAsLong();
+        evict(now);
+        if (table == null) return;
+        try {
+            List<String> remote = new ArrayList<>();
+            entries.forEach((key, entry) -> {
+                if (entry.remote && !entry.result.isDone()) remote.add(key);
+            });
+            if (!remote.isEmpty()) {
+                Map<String, IdempotencyTable.Row> rows = table.getAll(remote, Instant.ofEpochMilli(now));
+                for (String key : remote) {
+                    Entry entry = entries.get(key);
+                    if (entry == null || !entry.remote) continue;
+                    IdempotencyTable.Row row = rows.get(key);
+                    if (row == null) {
+                        // released, or its owner died and the lease ran out: waiters may claim it themselves
+                        entries.remove(key, entry);
+                        entry.result.complete(null);
+                    } else if (row.response() != null) {
+                        entry.expiresAt = row.expiresAt().toEpochMilli();
+                        order.add(new Slot(entry, entry.expiresAt));
+                        entry.result.complete(row.response());
+                    }
+                }
+            }
+            if (now - tableCleanedAt >= TABLE_CLEANUP_MS) {
+                tableCleanedAt = now;
+                int deleted = table.deleteExpired(Instant.ofEpochMilli(now));
+                if (deleted > 0) log.debug("[IdempotencyStore] deleted {} expired key(s)", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("[IdempotencyStore] polling keys failed: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /**
+     * Claim a key new to this process in the table too. If another instance holds it, the entry turns into
+     * a local stand-in for that execution, which later local callers join as well.
+     * @return true if this caller owns the key
+     */
+    private boolean claimInTable(Entry entry, long now) {
+        try {
+            if (table.claim(entry.key, entry.fingerprint, Instant.ofEpochMilli(now), Instant.ofEpochMilli(entry.expiresAt))) {
+                return true;
+            }
+            IdempotencyTable.Row row = table.get(entry.key, Instant.ofEpochMilli(now));
+            entry.remote = true;
+            if (row == null) {
+                // the other claim went away in between; let the callers retry rather than race for it again
+                entries.remove(entry.key, entry);
+                entry.result.complete(null);
+                return false;
+            }
+            entry.fingerprint = row.fingerprint();
+            entry.expiresAt = row.expiresAt().toEpochMilli();
+            order.add(new Slot(entry, entry.expiresAt));
+            if (row.response() != null) {
+                entry.result.complete(row.response());
+            }
+            return false;
+        } catch (RuntimeException e) {
+            // deduplicate within this process rather than fail the request
+            log.warn("[IdempotencyStore] could not claim key={} in the database: {}", entry.key, e.toString());
+            return true;
+        }
+    }
+
+    private Claim joined(Entry entry, String fingerprint) {
+        if (!Objects.equals(entry.fingerprint, fingerprint)) {
+            return new Claim(entry.key, Kind.MISMATCH, CompletableFuture.completedFuture(null));
+        }
+        return new Claim(entry.key, Kind.DUPLICATE, entry.result.copy());
+    }
+
+    private void evict(long now) {
+        Slot head;
+        while ((head = order.peek()) != null && (head.expiresAt <= now || entries.size() > capacity)) {
+            Slot s = order.poll();
+            if (s != null && s.entry.expiresAt == s.expiresAt && entries.remove(s.entry.key, s.entry) && s.entry.remote) {
+                // nobody polls for it any more; a local owner still completes its own waiters
+                s.entry.result.complete(null);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+        volatile String fingerprint;
+        volatile long expiresAt;
+        volatile boolean remote;  // executed by another instance; completed from the table
+
+        Entry(String key, String fingerprint, long expiresAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private record Slot(Entry entry, long expiresAt) {}
+}
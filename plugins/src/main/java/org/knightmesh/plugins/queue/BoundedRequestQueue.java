@@ -0,0 +1,145 @@
+package org.knightmesh.plugins.queue;
+
+import org.knightmesh.core.model.ServiceRequest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single named queue of {@link InMemoryQueuePlugin}: a lock-free {@link MpmcRingBuffer} fast path
+ * with a lock/condition slow path that is only taken when a producer or consumer has to wait.
+ */
+final class BoundedRequestQueue {
+
+    private final MpmcRingBuffer<ServiceRequest> ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile boolean retired;
+
+    BoundedRequestQueue(int capacity) {
+        this.ring = new MpmcRingBuffer<>(capacity);
+    }
+
+    /** Non-blocking insert; false if full. */
+    boolean offer(ServiceRequest request) {
+        if (ring.offer(request)) {
+            lastUsedNanos = System.nanoTime();
+            signalNotEmpty();
+            return true;
+        }
+        return false;
+    }
+
+    /** Insert, waiting up to the timeout for space; false if still full. */
+    boolean offer(ServiceRequest request, long timeout, TimeUnit unit) throws InterruptedException {
+        if (offer(request)) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        waitingProducers.incrementAndGet();
+        try {
+            while (!ring.offer(request)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+        lastUsedNanos = System.nanoTime();
+        signalNotEmpty();
+        return true;
+    }
+
+    /** Non-blocking removal; null if empty. */
+    ServiceRequest poll() {
+        ServiceRequest r = ring.poll();
+        if (r != null) {
+            signalNotFull();
+        }
+        return r;
+    }
+
+    /** Removal waiting up to the timeout for a message; null if none arrived. */
+    ServiceRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        ServiceRequest r = poll();
+        if (r != null) {
+            return r;
+        }
+        long nanos = unit.toNanos(timeout);
+        if (nanos <= 0) {
+            return null;
+        }
+        lock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((r = ring.poll()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+        signalNotFull();
+        return r;
+    }
+
+    int size() {
+        return ring.size();
+    }
+
+    int capacity() {
+        return ring.capacity();
+    }
+
+    /** When a message was last added. */
+    long lastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * Mark the queue as removed from its plugin. A producer that added a message to it concurrently sees
+     * the mark afterwards and moves its messages on, as does the remover, so none is left behind.
+     */
+    void retire() {
+        retired = true;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    private void signalNotEmpty() {
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalNotFull() {
+        if (waitingProducers.get() > 0) {
+            lock.lock();
+            try {
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
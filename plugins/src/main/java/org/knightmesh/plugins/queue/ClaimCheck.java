@@ -0,0 +1,134 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.plugins.blob.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim-check for large queue messages: producers move payloads at or above
+ * {@code claimcheck.threshold-bytes} into the {@link BlobStore} and enqueue only a reference in the
+ * {@value #METADATA_KEY} metadata entry; consumers {@link #resolve} the payload right before processing
+ * and {@link #release} the blob once the message is done. Queue memory and scans then scale with the
+ * number of messages rather than their size.
+ * <p>
+ * Blobs whose message never completes are swept once older than {@code claimcheck.orphan-ttl.ms}. The
+ * sweep cannot see queue contents, so a blob still referenced by a queued, delayed or retried message
+ * would be deleted with it; the TTL is therefore never shorter than the queue retention
+ * ({@code queue.persistent.retention-days}), the longest a message is expected to wait, and defaults to it.
+ */
+@Component
+public class ClaimCheck {
+    private static final Logger log = LoggerFactory.getLogger(ClaimCheck.class);
+
+    public static final String METADATA_KEY = "claimCheck";
+
+    private final BlobStore store;
+    private final ObjectReader payloadReader;
+    private final ObjectWriter payloadWriter;
+    private final long thresholdBytes;
+    private final long orphanTtlMs;
+
+    public ClaimCheck(BlobStore store, ObjectMapper objectMapper,
+                      @Value("${claimcheck.threshold-bytes:65536}") long thresholdBytes,
+                      @Value("${claimcheck.orphan-ttl.ms:0}") long orphanTtlMs,
+                      @Value("${queue.persistent.retention-days:7}") int retentionDays) {
+        this.store = store;
+        this.payloadReader = objectMapper.readerFor(new TypeReference<Map<String, Object>>() {});
+        this.payloadWriter = objectMapper.writerFor(Map.class);
+        this.thresholdBytes = thresholdBytes;
+        long retentionMs = TimeUnit.DAYS.toMillis(Math.max(0, retentionDays));
+        if (orphanTtlMs > 0 && orphanTtlMs < retentionMs) {
+            log.warn("[ClaimCheck] claimcheck.orphan-ttl.ms={} is shorter than the queue retention of {} day(s); using {} ms",
+                    orphanTtlMs, retentionDays, retentionMs);
+        }
+        this.orphanTtlMs = Math.max(orphanTtlMs, retentionMs);
+    }
+
+    public static boolean isClaimChecked(ServiceRequest request) {
+        return request.getMetadata().containsKey(METADATA_KEY);
+    }
+
+    /**
+     * Offload the payload if it is large.
+     * @param sizeHint payload size in bytes if already known (e.g. the HTTP Content-Length), negative if not
+     * @return the request to enqueue: the original, or a copy carrying only a reference
+     */
+    public ServiceRequest offload(ServiceRequest request, long sizeHint) {
+        if (thresholdBytes <= 0 || request.getPayload().isEmpty() || isClaimChecked(request)) {
+            return request;
+        }
+        if (sizeHint >= 0 && sizeHint < thresholdBytes) {
+            return request;
+        }
+        byte[] bytes;
+        try {
+            bytes = payloadWriter.writeValueAsBytes(request.getPayload());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize payload for claim check", e);
+        }
+        if (bytes.length < thresholdBytes) {
+            return request;
+        }
+        String id = store.put(bytes);
+        log.debug("[ClaimCheck] offloaded {} bytes corrId={} blob={}", bytes.length, request.getCorrelationId(), id);
+        return request.toBuilder().payload(Map.of()).metadata(METADATA_KEY, id).build();
+    }
+
+    /** The request with its payload restored from the blob store; requests without a reference are returned as is. */
+    public ServiceRequest resolve(ServiceRequest request) {
+        String id = request.getMetadata().get(METADATA_KEY);
+        if (id == null) return request;
+        byte[] bytes = store.get(id);
+        if (bytes == null) {
+            throw new IllegalStateException("Claim-checked payload " + id + " not found for corrId=" + request.getCorrelationId());
+        }
+        Map<String, Object> payload;
+        try {
+            payload = payloadReader.readValue(bytes);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to read claim-checked payload " + id, e);
+        }
+        return request.toBuilder().payload(payload).removeMetadata(METADATA_KEY).build();
+    }
+
+    /** Delete the blob referenced by a dequeued request once it has been processed. */
+    public void release(ServiceRequest request) {
+        String id = request.getMetadata().get(METADATA_KEY);
+        if (id == null) return;
+        try {
+            store.delete(id);
+        } catch (RuntimeException e) {
+            // the orphan sweep removes it later
+            log.warn("[ClaimCheck] failed to delete blob {}: {}", id, e.toString());
+        }
+    }
+
+    /** Age after which an unreleased blob counts as orphaned. */
+    long orphanTtlMs() {
+        return orphanTtlMs;
+    }
+
+    @Scheduled(fixedDelayString = "${claimcheck.sweep.ms:3600000}", initialDelayString = "${claimcheck.sweep.ms:3600000}")
+    public void sweepOrphans() {
+        try {
+            int deleted = store.deleteOlderThan(Instant.now().minusMillis(orphanTtlMs));
+            if (deleted > 0) {
+                log.info("[ClaimCheck] deleted {} orphaned blob(s)", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("[ClaimCheck] orphan sweep failed: {}", e.toString());
+        }
+    }
+}
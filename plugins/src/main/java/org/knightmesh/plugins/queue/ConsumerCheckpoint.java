@@ -0,0 +1,80 @@
+package org.knightmesh.plugins.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped consumer position of a queue log. Two checksummed slots are written alternately,
+ * so a torn checkpoint write always leaves the previous position intact.
+ * Slot layout: {@code [long sequence][long segmentBase][int position][int crc32c]}.
+ */
+final class ConsumerCheckpoint implements Closeable {
+    private static final int SLOT_BYTES = 32;
+    private static final int PAYLOAD_BYTES = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long sequence;
+    private long segmentBase;
+    private int position;
+
+    ConsumerCheckpoint(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * SLOT_BYTES);
+        load();
+    }
+
+    long segmentBase() { return segmentBase; }
+    int position() { return position; }
+
+    /** True if a valid checkpoint was found on disk. */
+    boolean exists() {
+        return sequence > 0;
+    }
+
+    void save(long segmentBase, int position) {
+        this.sequence++;
+        this.segmentBase = segmentBase;
+        this.position = position;
+        int off = (int) (sequence & 1) * SLOT_BYTES;
+        buffer.putLong(off, sequence);
+        buffer.putLong(off + 8, segmentBase);
+        buffer.putInt(off + 16, position);
+        buffer.putInt(off + PAYLOAD_BYTES, crc(off));
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void load() {
+        for (int slot = 0; slot < 2; slot++) {
+            int off = slot * SLOT_BYTES;
+            long seq = buffer.getLong(off);
+            if (seq <= sequence || buffer.getInt(off + PAYLOAD_BYTES) != crc(off)) {
+                continue;
+            }
+            sequence = seq;
+            segmentBase = buffer.getLong(off + 8);
+            position = buffer.getInt(off + 16);
+        }
+    }
+
+    private int crc(int off) {
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < PAYLOAD_BYTES; i++) {
+            crc.update(buffer.get(off + i));
+        }
+        return (int) crc.getValue();
+    }
+}
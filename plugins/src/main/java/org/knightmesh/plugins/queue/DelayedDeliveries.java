@@ -0,0 +1,114 @@
+package org.knightmesh.plugins.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Holds delayed items in a {@link TimingWheel} and hands each to {@code onDue} once its time has come,
+ * from a daemon thread that sleeps until the next bucket is due. The thread starts with the first
+ * scheduled item.
+ */
+final class DelayedDeliveries<T> implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DelayedDeliveries.class);
+
+    private final String threadName;
+    private final Consumer<T> onDue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TimingWheel<T> wheel;
+    private Thread timer; // guarded by lock
+    private boolean closed; // guarded by lock
+
+    DelayedDeliveries(String threadName, long tickMs, int wheelSize, Consumer<T> onDue) {
+        this.threadName = threadName;
+        this.onDue = onDue;
+        this.wheel = new TimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    /** Schedule the item; if it is already due it is handed to {@code onDue} on the calling thread. */
+    void schedule(T item, Instant notBefore) {
+        boolean stored;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Delayed delivery is shut down");
+            }
+            stored = wheel.add(item, notBefore.toEpochMilli());
+            if (stored) {
+                if (timer == null) {
+                    timer = new Thread(this::run, threadName);
+                    timer.setDaemon(true);
+                    timer.start();
+                }
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!stored) {
+            onDue.accept(item);
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        List<T> due = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed) {
+                    long now = System.currentTimeMillis();
+                    wheel.advanceTo(now, due::add);
+                    if (!due.isEmpty()) break;
+                    long next = wheel.nextExpiration();
+                    if (next == Long.MAX_VALUE) {
+                        changed.await();
+                    } else {
+                        changed.await(next - now, TimeUnit.MILLISECONDS);
+                    }
+                }
+                if (closed) return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            for (T item : due) {
+                try {
+                    onDue.accept(item);
+                } catch (RuntimeException ex) {
+                    log.warn("[DelayedDelivery] failed to deliver due item: {}", ex.toString());
+                }
+            }
+            due.clear();
+        }
+    }
+}
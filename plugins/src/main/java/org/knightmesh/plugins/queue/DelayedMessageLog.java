@@ -0,0 +1,110 @@
+package org.knightmesh.plugins.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable record of the delayed messages of a {@link SegmentedLogQueuePlugin}, kept in a
+ * {@link SegmentedQueueLog} of its own. Scheduling appends the message with its target queue and
+ * delivery time; delivering it appends a tombstone. The log is consumed from the head as far as every
+ * message there has been delivered, so it holds at most the span of the longest pending delay.
+ * {@link #recover()} returns the messages scheduled but not delivered, for the caller to schedule again.
+ * <pre>
+ * SCHEDULED = [byte 1][long id][long deliverAtMillis][int queueNameLength][queueName][request]
+ * DELIVERED = [byte 2][long id]
+ * </pre>
+ */
+final class DelayedMessageLog implements Closeable {
+    private static final byte SCHEDULED = 1;
+    private static final byte DELIVERED = 2;
+
+    private final SegmentedQueueLog log;
+    // delivered ids whose SCHEDULED record is still in the log, behind one that is not
+    private final Set<Long> delivered = new HashSet<>();
+    private long nextId;
+
+    DelayedMessageLog(Path dir, int segmentBytes, FsyncPolicy fsyncPolicy) throws IOException {
+        this.log = new SegmentedQueueLog(dir, segmentBytes, fsyncPolicy);
+    }
+
+    record Entry(long id, String queueName, Instant deliverAt, byte[] request) {
+    }
+
+    /** Messages scheduled and not yet delivered, in the order they were scheduled. */
+    synchronized List<Entry> recover() throws IOException {
+        Map<Long, Entry> pending = new LinkedHashMap<>();
+        for (byte[] record : log.pending()) {
+            ByteBuffer buf = ByteBuffer.wrap(record);
+            byte type = buf.get();
+            long id = buf.getLong();
+            nextId = Math.max(nextId, id + 1);
+            if (type == SCHEDULED) {
+                Instant deliverAt = Instant.ofEpochMilli(buf.getLong());
+                byte[] name = new byte[buf.getInt()];
+                buf.get(name);
+                byte[] request = new byte[buf.remaining()];
+                buf.get(request);
+                pending.put(id, new Entry(id, new String(name, StandardCharsets.UTF_8), deliverAt, request));
+            } else if (pending.remove(id) != null) {
+                delivered.add(id);
+            }
+        }
+        compact();
+        return new ArrayList<>(pending.values());
+    }
+
+    /** Record a message to be delivered at {@code deliverAt}; the id is passed to {@link #delivered}. */
+    synchronized long schedule(String queueName, Instant deliverAt, byte[] request) throws IOException {
+        long id = nextId++;
+        byte[] name = queueName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(1 + 8 + 8 + 4 + name.length + request.length);
+        buf.put(SCHEDULED).putLong(id).putLong(deliverAt.toEpochMilli()).putInt(name.length).put(name).put(request);
+        log.append(buf.array());
+        return id;
+    }
+
+    /** Record that the message has been appended to its queue, so a restart does not deliver it again. */
+    synchronized void delivered(long id) throws IOException {
+        log.append(ByteBuffer.allocate(1 + 8).put(DELIVERED).putLong(id).array());
+        delivered.add(id);
+        compact();
+    }
+
+    /** Number of records in the log, delivered ones behind a pending one included. */
+    synchronized long size() {
+        return log.size();
+    }
+
+    synchronized void flush() {
+        log.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    /** Consume tombstones and delivered messages at the head, letting the log delete spent segments. */
+    private void compact() throws IOException {
+        byte[] head;
+        while ((head = log.peek()) != null) {
+            ByteBuffer buf = ByteBuffer.wrap(head);
+            byte type = buf.get();
+            long id = buf.getLong();
+            if (type == SCHEDULED && !delivered.remove(id)) {
+                return;
+            }
+            log.poll();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.knightmesh.plugins.queue;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Per-message options for {@link QueuePlugin#enqueue(String, ServiceRequest, EnqueueOptions)}.
+ * Immutable; derive variants with the {@code with*} methods.
+ */
+public final class EnqueueOptions {
+    private static final EnqueueOptions NONE = new EnqueueOptions(null, 1, null, null, null, null);
+
+    private final String partitionKey;
+    private final int partitions;
+    private final Instant notBefore;
+    private final Integer priority;
+    private final String tenant;
+    private final QueueDurability durability;
+
+    private EnqueueOptions(String partitionKey, int partitions, Instant notBefore, Integer priority, String tenant,
+                           QueueDurability durability) {
+        this.partitionKey = partitionKey;
+        this.partitions = partitions;
+        this.notBefore = notBefore;
+        this.priority = priority;
+        this.tenant = tenant;
+        this.durability = durability;
+    }
+
+    public static EnqueueOptions none() {
+        return NONE;
+    }
+
+    /**
+     * Route the message to one of {@code partitions} sub-queues chosen by hashing the key, so all
+     * messages with the same key stay in order. A null key picks any partition.
+     */
+    public static EnqueueOptions partitioned(String partitionKey, int partitions) {
+        return NONE.withPartitioning(partitionKey, partitions);
+    }
+
+    public EnqueueOptions withPartitioning(String partitionKey, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be >= 1");
+        }
+        return new EnqueueOptions(partitionKey, partitions, notBefore, priority, tenant, durability);
+    }
+
+    /** Deliver no earlier than the given time (null = immediately). */
+    public static EnqueueOptions notBefore(Instant notBefore) {
+        return NONE.withNotBefore(notBefore);
+    }
+
+    public EnqueueOptions withNotBefore(Instant notBefore) {
+        return new EnqueueOptions(partitionKey, partitions, notBefore, priority, tenant, durability);
+    }
+
+    /**
+     * Put the message on the lane of the given priority level (see {@link QueuePriorities});
+     * null = the queue's default lane.
+     */
+    public EnqueueOptions withPriority(Integer priority) {
+        if (priority != null && priority < 0) {
+            throw new IllegalArgumentException("priority must be >= 0");
+        }
+        return new EnqueueOptions(partitionKey, partitions, notBefore, priority, tenant, durability);
+    }
+
+    /** Put the message on the tenant's own sub-queue (see {@link QueueTenants}); null = the shared queue. */
+    public EnqueueOptions withTenant(String tenant) {
+        return new EnqueueOptions(partitionKey, partitions, notBefore, priority, tenant, durability);
+    }
+
+    /** Durability of the message's queue in plugins that offer a choice ({@link TieredQueuePlugin}); null = plugin default. */
+    public EnqueueOptions withDurability(QueueDurability durability) {
+        return new EnqueueOptions(partitionKey, partitions, notBefore, priority, tenant, durability);
+    }
+
+    public String getPartitionKey() { return partitionKey; }
+    public int getPartitions() { return partitions; }
+    public Instant getNotBefore() { return notBefore; }
+    public Integer getPriority() { return priority; }
+    public String getTenant() { return tenant; }
+    public QueueDurability getDurability() { return durability; }
+
+    public boolean isPartitioned() {
+        return partitions > 1;
+    }
+
+    /** True if delivery must wait past {@code now}. */
+    public boolean isDelayed(Instant now) {
+        return notBefore != null && notBefore.isAfter(now);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EnqueueOptions other)) return false;
+        return partitions == other.partitions && Objects.equals(partitionKey, other.partitionKey)
+                && Objects.equals(notBefore, other.notBefore) && Objects.equals(priority, other.priority)
+                && Objects.equals(tenant, other.tenant) && durability == other.durability;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(partitionKey, partitions, notBefore, priority, tenant, durability);
+    }
+
+    @Override
+    public String toString() {
+        return "EnqueueOptions{partitionKey='" + partitionKey + "', partitions=" + partitions + ", notBefore=" + notBefore
+                + ", priority=" + priority + ", tenant='" + tenant + "', durability=" + durability + "}";
+    }
+}
@@ -0,0 +1,15 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * When {@link SegmentedLogQueuePlugin} forces written data to the storage device.
+ * Memory-mapped writes survive a process crash regardless; the policy only matters for
+ * power loss or kernel failure.
+ */
+public enum FsyncPolicy {
+    /** Force every appended record and every consumer checkpoint before returning. */
+    ALWAYS,
+    /** Force dirty segments and checkpoints from a background thread at a fixed interval. */
+    INTERVAL,
+    /** Leave flushing to the operating system. */
+    NEVER
+}
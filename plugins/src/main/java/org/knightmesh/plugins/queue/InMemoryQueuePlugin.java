@@ -1,40 +1,144 @@
 package org.knightmesh.plugins.queue;
 
+import jakarta.annotation.PreDestroy;
 import org.knightmesh.core.model.ServiceRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Simple in-memory queue plugin backed by a ConcurrentLinkedQueue per queue name.
- * Not suitable for production but useful for tests and demos.
+ * In-memory queue plugin backed by a preallocated bounded MPMC ring buffer per queue name.
+ * Enqueue/dequeue are lock-free on the fast path, size is O(1), and consumers may block with a timeout.
+ * When a queue is full the configured {@link OverflowPolicy} applies, so memory stays bounded when
+ * consumers fall behind. Delayed messages wait in a hierarchical timing wheel and are moved onto their
+ * queue by a single timer thread once due (within one 10 ms tick). Per-queue {@link QueueStats} are kept
+ * on every enqueue and dequeue. Messages are lost on restart.
+ * <p>
+ * Tenant sub-queues ({@link QueueTenants}) are created per tenant id seen, so they are smaller
+ * ({@code queue.inmemory.tenant-capacity}), at most {@code queue.inmemory.max-tenant-queues} exist at once
+ * (messages of further tenants go to the shared queue), and empty ones are dropped after
+ * {@code queue.inmemory.tenant-idle.ms}.
  */
-@org.springframework.context.annotation.Primary
 @Component
 public class InMemoryQueuePlugin implements QueuePlugin {
     private static final Logger log = LoggerFactory.getLogger(InMemoryQueuePlugin.class);
 
-    private final Map<String, Queue<ServiceRequest>> queues = new ConcurrentHashMap<>();
+    static final int DEFAULT_CAPACITY = 65_536;
+    static final long DEFAULT_BLOCK_TIMEOUT_MS = 5_000;
+    static final long TIMER_TICK_MS = 10;
+    static final int TIMER_WHEEL_SIZE = 512;
+    static final long REDELIVERY_MS = 50;
+    static final int DEFAULT_TENANT_CAPACITY = 4_096;
+
+    private final Map<String, BoundedRequestQueue> queues = new ConcurrentHashMap<>();
+    private final QueueListeners listeners = new QueueListeners();
+    private final QueueStats stats = new QueueStats();
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMs;
+    private int tenantCapacity = DEFAULT_TENANT_CAPACITY;
+    private int maxTenantQueues = 1_024;
+    private long tenantIdleNanos = TimeUnit.MINUTES.toNanos(1);
+    private final AtomicInteger tenantQueues = new AtomicInteger();
+    private final AtomicBoolean tenantCapReported = new AtomicBoolean();
+    private final DelayedDeliveries<Delayed> delayed =
+            new DelayedDeliveries<>("inmemory-queue-timer", TIMER_TICK_MS, TIMER_WHEEL_SIZE, this::deliverDue);
+
+    public InMemoryQueuePlugin() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.BLOCK, DEFAULT_BLOCK_TIMEOUT_MS);
+    }
+
+    @Autowired
+    public InMemoryQueuePlugin(@Value("${queue.inmemory.capacity:65536}") int capacity,
+                               @Value("${queue.inmemory.overflow:BLOCK}") OverflowPolicy overflowPolicy,
+                               @Value("${queue.inmemory.block-timeout.ms:5000}") long blockTimeoutMs) {
+        this.capacity = capacity;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+        this.blockTimeoutMs = blockTimeoutMs;
+    }
+
+    /**
+     * @param capacity capacity of each tenant sub-queue, at most the queue capacity
+     * @param maxQueues most tenant sub-queues held at once
+     * @param idleMs how long an empty tenant sub-queue is kept after its last message
+     */
+    @Autowired
+    public void setTenantQueueLimits(@Value("${queue.inmemory.tenant-capacity:4096}") int capacity,
+                                     @Value("${queue.inmemory.max-tenant-queues:1024}") int maxQueues,
+                                     @Value("${queue.inmemory.tenant-idle.ms:60000}") long idleMs) {
+        this.tenantCapacity = Math.max(2, capacity);
+        this.maxTenantQueues = Math.max(0, maxQueues);
+        this.tenantIdleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleMs));
+    }
 
     @Override
     public void enqueue(String queueName, ServiceRequest request) {
         Objects.requireNonNull(queueName, "queueName");
         Objects.requireNonNull(request, "request");
-        queues.computeIfAbsent(queueName, q -> new ConcurrentLinkedQueue<>()).add(request);
-        log.debug("[InMemoryQueue] enqueue queue={} corrId={} service={}", queueName, request.getCorrelationId(), request.getServiceName());
+        put(queueName, request, true);
+    }
+
+    /** Store the message; with {@code mayBlock} false a full queue under BLOCK fails at once instead of waiting. */
+    private void put(String queueName, ServiceRequest request, boolean mayBlock) {
+        String target = queueName;
+        BoundedRequestQueue q = queues.get(target);
+        if (q == null) {
+            target = admit(queueName);
+            q = queueFor(target);
+        }
+        if (!q.offer(request)) {
+            handleOverflow(target, q, request, mayBlock);
+        }
+        if (q.isRetired()) {
+            // dropped as idle while this message went in
+            moveOn(target, q);
+        }
+        stats.enqueued(target);
+        log.debug("[InMemoryQueue] enqueue queue={} corrId={} service={}", target, request.getCorrelationId(), request.getServiceName());
+        listeners.fire(target);
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request, EnqueueOptions options) {
+        Objects.requireNonNull(request, "request");
+        String target = QueuePartitions.target(queueName, options);
+        if (options != null && options.isDelayed(Instant.now())) {
+            delayed.schedule(new Delayed(target, request, 0), options.getNotBefore());
+            log.debug("[InMemoryQueue] scheduled queue={} corrId={} notBefore={}", target, request.getCorrelationId(), options.getNotBefore());
+            return;
+        }
+        enqueue(target, request);
     }
 
     @Override
     public ServiceRequest dequeue(String queueName) {
-        Queue<ServiceRequest> q = queues.get(queueName);
+        BoundedRequestQueue q = queues.get(queueName);
         ServiceRequest r = (q == null ? null : q.poll());
         if (r != null) {
+            stats.dequeued(queueName, 1);
+            log.debug("[InMemoryQueue] dequeue queue={} corrId={} service={}", queueName, r.getCorrelationId(), r.getServiceName());
+        }
+        return r;
+    }
+
+    @Override
+    public ServiceRequest dequeue(String queueName, long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(queueName, "queueName");
+        ServiceRequest r = queueFor(queueName).poll(timeout, unit);
+        if (r != null) {
+            stats.dequeued(queueName, 1);
             log.debug("[InMemoryQueue] dequeue queue={} corrId={} service={}", queueName, r.getCorrelationId(), r.getServiceName());
         }
         return r;
@@ -42,7 +146,158 @@ public class InMemoryQueuePlugin implements QueuePlugin {
 
     @Override
     public int size(String queueName) {
-        Queue<ServiceRequest> q = queues.get(queueName);
+        BoundedRequestQueue q = queues.get(queueName);
         return q == null ? 0 : q.size();
     }
+
+    @Override
+    public QueueStats.Snapshot stats(String queueName) {
+        return stats.snapshot(queueName);
+    }
+
+    @Override
+    public Set<String> queueNames(String prefix) {
+        evictIdleTenantQueues();
+        Set<String> names = new HashSet<>();
+        for (String name : queues.keySet()) {
+            if (name.startsWith(prefix)) names.add(name);
+        }
+        return names;
+    }
+
+    @Override
+    public void addListener(QueueListener listener) {
+        listeners.add(listener);
+    }
+
+    /** Number of messages waiting for their delivery time, across all queues. */
+    public int delayedSize() {
+        return delayed.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        delayed.close();
+    }
+
+    /** Effective per-queue capacity (requested capacity rounded up to a power of two). */
+    public int capacity(String queueName) {
+        return queueFor(queueName).capacity();
+    }
+
+    /** Number of tenant sub-queues currently held. */
+    int tenantQueueCount() {
+        return tenantQueues.get();
+    }
+
+    private BoundedRequestQueue queueFor(String queueName) {
+        BoundedRequestQueue q = queues.get(queueName);
+        return q != null ? q : queues.computeIfAbsent(queueName, this::newQueue);
+    }
+
+    private BoundedRequestQueue newQueue(String queueName) {
+        if (QueueTenants.encodedTenantOf(queueName) == null) {
+            return new BoundedRequestQueue(capacity);
+        }
+        tenantQueues.incrementAndGet();
+        return new BoundedRequestQueue(Math.min(capacity, tenantCapacity));
+    }
+
+    /** The queue a message for a queue that does not exist yet goes to: the shared one if there are too many tenants. */
+    private String admit(String queueName) {
+        if (QueueTenants.encodedTenantOf(queueName) == null || tenantQueues.get() < maxTenantQueues) {
+            return queueName;
+        }
+        evictIdleTenantQueues();
+        if (tenantQueues.get() < maxTenantQueues) {
+            return queueName;
+        }
+        if (tenantCapReported.compareAndSet(false, true)) {
+            log.warn("[InMemoryQueue] {} tenant sub-queues held; messages of further tenants go to their shared queue", maxTenantQueues);
+        }
+        return QueueTenants.stripTenant(queueName);
+    }
+
+    /** Drop tenant sub-queues that are empty and have had no message for the idle time. */
+    private void evictIdleTenantQueues() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, BoundedRequestQueue> e : queues.entrySet()) {
+            String name = e.getKey();
+            BoundedRequestQueue q = e.getValue();
+            if (QueueTenants.encodedTenantOf(name) == null || q.size() > 0 || now - q.lastUsedNanos() < tenantIdleNanos) {
+                continue;
+            }
+            if (queues.remove(name, q)) {
+                tenantQueues.decrementAndGet();
+                q.retire();
+                stats.remove(name);
+                moveOn(name, q);
+            }
+        }
+    }
+
+    /** Move messages that reached a dropped queue to the one now holding its name. */
+    private void moveOn(String queueName, BoundedRequestQueue retired) {
+        ServiceRequest r;
+        while ((r = retired.poll()) != null) {
+            BoundedRequestQueue q = queueFor(queueName);
+            if (!q.offer(r)) {
+                handleOverflow(queueName, q, r, true);
+            }
+            if (q.isRetired()) {
+                moveOn(queueName, q);
+            }
+        }
+    }
+
+    /**
+     * Runs on the shared timer thread, so it never waits for space: under BLOCK a full queue is tried again
+     * every {@value #REDELIVERY_MS} ms until {@code queue.inmemory.block-timeout.ms} has passed.
+     */
+    private void deliverDue(Delayed d) {
+        try {
+            put(d.queueName(), d.request(), false);
+        } catch (QueueFullException ex) {
+            long now = System.currentTimeMillis();
+            long giveUpAtMs = d.giveUpAtMs() == 0 ? now + blockTimeoutMs : d.giveUpAtMs();
+            if (overflowPolicy == OverflowPolicy.BLOCK && now < giveUpAtMs) {
+                delayed.schedule(new Delayed(d.queueName(), d.request(), giveUpAtMs), Instant.ofEpochMilli(now + REDELIVERY_MS));
+                return;
+            }
+            log.warn("[InMemoryQueue] dropped delayed message corrId={}: {}", d.request().getCorrelationId(), ex.getMessage());
+        }
+    }
+
+    /** @param giveUpAtMs when a due message that keeps finding the queue full is dropped; 0 until it first does */
+    private record Delayed(String queueName, ServiceRequest request, long giveUpAtMs) {}
+
+    private void handleOverflow(String queueName, BoundedRequestQueue q, ServiceRequest request, boolean mayBlock) {
+        switch (overflowPolicy) {
+            case REJECT -> throw new QueueFullException(queueName, "Queue full: " + queueName);
+            case DROP_OLDEST -> {
+                while (!q.offer(request)) {
+                    ServiceRequest dropped = q.poll();
+                    if (dropped != null) {
+                        stats.dequeued(queueName, 1);
+                        log.warn("[InMemoryQueue] queue {} full, dropped oldest corrId={}", queueName, dropped.getCorrelationId());
+                    }
+                }
+            }
+            case BLOCK -> {
+                if (!mayBlock) {
+                    throw new QueueFullException(queueName, "Queue full: " + queueName);
+                }
+                boolean accepted;
+                try {
+                    accepted = q.offer(request, blockTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new QueueFullException(queueName, "Interrupted while waiting for space in queue: " + queueName);
+                }
+                if (!accepted) {
+                    throw new QueueFullException(queueName, "Queue full after waiting " + blockTimeoutMs + " ms: " + queueName);
+                }
+            }
+        }
+    }
 }
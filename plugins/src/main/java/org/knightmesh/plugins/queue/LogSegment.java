@@ -0,0 +1,171 @@
+package org.knightmesh.plugins.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One preallocated, memory-mapped segment file of a queue log. Records are laid out as
+ * {@code [int length][int crc32c][payload]}; the length is written last so a torn append
+ * reads back as "end of segment". Not thread-safe; guarded by the owning {@link SegmentedQueueLog}.
+ */
+final class LogSegment implements Closeable {
+    static final int HEADER_BYTES = 8;
+    private static final int ZERO_CHUNK = 64 * 1024;
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final boolean fresh;
+    private int writePosition;
+    private int flushedPosition;
+    private long recordCount;
+
+    private LogSegment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer, int capacity,
+                       boolean fresh) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.fresh = fresh;
+    }
+
+    static LogSegment open(Path path, long baseOffset, int segmentBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existing = channel.size();
+        int capacity = (int) Math.max(segmentBytes, Math.min(Integer.MAX_VALUE, existing));
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new LogSegment(baseOffset, path, channel, buffer, capacity, existing == 0);
+    }
+
+    static String fileName(long baseOffset) {
+        return String.format("%020d.log", baseOffset);
+    }
+
+    /**
+     * Scan the segment from the start, validating each record, and position the writer after the
+     * last valid one. When {@code truncateTail} is set the remainder is zeroed so bytes of a torn
+     * append can never be mistaken for a record later. Only chunks holding non-zero bytes are
+     * written, and a segment file created by this open is skipped entirely, so recovering a
+     * mostly empty segment does not dirty (and allocate) every page of it.
+     */
+    void recover(boolean truncateTail) {
+        int pos = 0;
+        long count = 0;
+        byte[] record;
+        while ((record = recordAt(pos)) != null) {
+            pos += HEADER_BYTES + record.length;
+            count++;
+        }
+        writePosition = pos;
+        flushedPosition = pos;
+        recordCount = count;
+        if (truncateTail && !fresh) {
+            byte[] zeros = new byte[ZERO_CHUNK];
+            for (int p = pos; p < capacity; p += ZERO_CHUNK) {
+                int len = Math.min(ZERO_CHUNK, capacity - p);
+                if (!isZero(p, len)) {
+                    buffer.put(p, zeros, 0, len);
+                }
+            }
+        }
+    }
+
+    private boolean isZero(int from, int len) {
+        int end = from + len;
+        int p = from;
+        for (; p + Long.BYTES <= end; p += Long.BYTES) {
+            if (buffer.getLong(p) != 0) {
+                return false;
+            }
+        }
+        for (; p < end; p++) {
+            if (buffer.get(p) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Append a record; false if it does not fit in the remaining space. */
+    boolean append(byte[] payload) {
+        int needed = HEADER_BYTES + payload.length;
+        if (writePosition + needed > capacity) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        buffer.put(writePosition + HEADER_BYTES, payload);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.putInt(writePosition, payload.length);
+        writePosition += needed;
+        recordCount++;
+        return true;
+    }
+
+    /** Read the record at the position, or null if there is no valid record there. */
+    byte[] read(int position) {
+        return position < writePosition ? recordAt(position) : null;
+    }
+
+    /** Force bytes written since the last flush to the device. */
+    void flush() {
+        if (flushedPosition < writePosition) {
+            buffer.force(flushedPosition, writePosition - flushedPosition);
+            flushedPosition = writePosition;
+        }
+    }
+
+    boolean fits(int payloadBytes) {
+        return HEADER_BYTES + payloadBytes <= capacity;
+    }
+
+    long baseOffset() { return baseOffset; }
+    int writePosition() { return writePosition; }
+    long recordCount() { return recordCount; }
+
+    /** Number of records stored before the given byte position. */
+    long recordsBefore(int position) {
+        int pos = 0;
+        long count = 0;
+        byte[] record;
+        while (pos < position && (record = recordAt(pos)) != null) {
+            pos += HEADER_BYTES + record.length;
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    private byte[] recordAt(int position) {
+        if (position + HEADER_BYTES > capacity) {
+            return null;
+        }
+        int len = buffer.getInt(position);
+        if (len <= 0 || len > capacity - position - HEADER_BYTES) {
+            return null;
+        }
+        byte[] data = new byte[len];
+        buffer.get(position + HEADER_BYTES, data);
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? data : null;
+    }
+}
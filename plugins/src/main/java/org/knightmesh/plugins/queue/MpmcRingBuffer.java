@@ -0,0 +1,97 @@
+package org.knightmesh.plugins.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free multi-producer/multi-consumer ring buffer (sequence-per-slot design).
+ * All slots are preallocated, so offer/poll do not allocate and {@link #size()} is O(1).
+ * Callers needing to block on empty/full layer waiting on top (see {@link BoundedRequestQueue}).
+ */
+final class MpmcRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(); // next position to write
+    private final AtomicLong head = new AtomicLong(); // next position to read
+
+    MpmcRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("capacity must be >= 2");
+        }
+        if (requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be <= 2^30");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Insert the element if a slot is free.
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[idx] = element;
+                    // volatile publish: blocked consumers re-check after registering as waiters
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Remove and return the oldest element, or null if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long pos = head.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E element = (E) slots[idx];
+                    slots[idx] = null;
+                    sequences.set(idx, pos + capacity);
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /** Approximate number of elements; exact when quiescent. */
+    int size() {
+        long h = head.get();
+        long t = tail.get();
+        long n = t - h;
+        return (int) Math.max(0, Math.min(capacity, n));
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,13 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * What a bounded queue does when a producer finds it full.
+ */
+public enum OverflowPolicy {
+    /** Wait for space up to the configured timeout, then fail with {@link QueueFullException}. */
+    BLOCK,
+    /** Fail immediately with {@link QueueFullException}. */
+    REJECT,
+    /** Evict the oldest message to make room for the new one. */
+    DROP_OLDEST
+}
@@ -0,0 +1,141 @@
+package org.knightmesh.plugins.queue;
+
+import org.knightmesh.core.id.Ids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * JDBC access to the daily-partitioned {@code persistent_queue_log} table (PostgreSQL, see migration V7).
+ * Consumers claim the oldest due pending rows in one statement with {@code FOR UPDATE SKIP LOCKED}, so
+ * concurrent consumers never block on each other, and claimed rows are marked DONE rather than deleted.
+ * Retention drops whole day partitions.
+ */
+class PartitionedQueueStore {
+    private static final Logger log = LoggerFactory.getLogger(PartitionedQueueStore.class);
+
+    static final String TABLE = "persistent_queue_log";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String CLAIM_SQL =
+            "UPDATE " + TABLE + " l SET status = 'DONE', done_at = ? " +
+            "FROM (SELECT id, created_at FROM " + TABLE + " WHERE queue_name = ? AND status = 'PENDING' AND deliver_at <= ? " +
+            "      ORDER BY deliver_at LIMIT ? FOR UPDATE SKIP LOCKED) c " +
+            "WHERE l.id = c.id AND l.created_at = c.created_at " +
+            "RETURNING l.deliver_at, l.payload_bin, l.payload_json";
+
+    /** Stored form of one message: exactly one of the payload columns is set. */
+    record Row(Timestamp deliverAt, byte[] payloadBin, String payloadJson) {}
+
+    /** Due depth of a queue and the delivery time of its oldest due message (null when empty). */
+    record Pending(long depth, Timestamp oldest) {}
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+
+    PartitionedQueueStore(JdbcTemplate jdbc, Clock clock) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+    }
+
+    void insert(String queueName, byte[] payloadBin, String payloadJson) {
+        insert(queueName, payloadBin, payloadJson, null);
+    }
+
+    /** Insert a message that becomes visible at {@code deliverAt} (null = now). */
+    void insert(String queueName, byte[] payloadBin, String payloadJson, Instant deliverAt) {
+        Timestamp now = Timestamp.from(clock.instant());
+        jdbc.update("INSERT INTO " + TABLE + " (id, queue_name, status, payload_bin, payload_json, created_at, deliver_at) " +
+                        "VALUES (?, ?, 'PENDING', ?, ?, ?, ?)",
+                Ids.next(), queueName, payloadBin, payloadJson, now,
+                deliverAt == null ? now : Timestamp.from(deliverAt));
+    }
+
+    /** Claim up to {@code max} of the oldest due pending rows, marking them DONE; returned oldest first. */
+    List<Row> claim(String queueName, int max) {
+        Timestamp now = Timestamp.from(clock.instant());
+        List<Row> rows = jdbc.query(CLAIM_SQL,
+                (rs, i) -> new Row(rs.getTimestamp(1), rs.getBytes(2), rs.getString(3)),
+                now, queueName, now, max);
+        // RETURNING does not preserve the subquery order
+        if (rows.size() > 1) {
+            rows = new ArrayList<>(rows);
+            rows.sort(Comparator.comparing(Row::deliverAt));
+        }
+        return rows;
+    }
+
+    /** Pending rows that are already due; scheduled ones are not counted until their time comes. */
+    long countPending(String queueName) {
+        Long n = jdbc.queryForObject("SELECT count(*) FROM " + TABLE + " WHERE queue_name = ? AND status = 'PENDING' AND deliver_at <= ?",
+                Long.class, queueName, Timestamp.from(clock.instant()));
+        return n == null ? 0 : n;
+    }
+
+    /** Due depth and oldest delivery time in one scan; see {@link #countPending(String)}. */
+    Pending pending(String queueName) {
+        return jdbc.queryForObject("SELECT count(*), min(deliver_at) FROM " + TABLE +
+                        " WHERE queue_name = ? AND status = 'PENDING' AND deliver_at <= ?",
+                (rs, i) -> new Pending(rs.getLong(1), rs.getTimestamp(2)), queueName, Timestamp.from(clock.instant()));
+    }
+
+    /** Queue names with pending rows matching a LIKE pattern (escape character {@code \}). */
+    List<String> pendingQueueNames(String pattern) {
+        return jdbc.queryForList("SELECT DISTINCT queue_name FROM " + TABLE + " WHERE status = 'PENDING' AND queue_name LIKE ? ESCAPE '\\'",
+                String.class, pattern);
+    }
+
+    /** Make sure day partitions exist from today (UTC) through {@code daysAhead} days ahead. */
+    void ensurePartitions(int daysAhead) {
+        LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+        for (int i = 0; i <= daysAhead; i++) {
+            jdbc.queryForObject("SELECT knightmesh_queue_log_partition(?)", String.class, Date.valueOf(today.plusDays(i)));
+        }
+    }
+
+    /**
+     * Drop day partitions older than {@code retentionDays}. A partition that still holds pending
+     * messages is kept (and logged) rather than losing them.
+     * @return names of the dropped partitions
+     */
+    List<String> dropExpiredPartitions(int retentionDays) {
+        LocalDate cutoff = LocalDate.now(clock.withZone(ZoneOffset.UTC)).minusDays(retentionDays);
+        List<String> dropped = new ArrayList<>();
+        for (String partition : listDayPartitions()) {
+            LocalDate day = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), DAY);
+            if (!day.isBefore(cutoff)) continue;
+            Boolean pending = jdbc.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE status = 'PENDING')", Boolean.class);
+            if (Boolean.TRUE.equals(pending)) {
+                log.warn("[PersistentQueue] keeping expired partition {}: it still has pending messages", partition);
+                continue;
+            }
+            jdbc.execute("DROP TABLE IF EXISTS " + partition);
+            dropped.add(partition);
+        }
+        if (!dropped.isEmpty()) {
+            log.info("[PersistentQueue] dropped expired queue partitions {}", dropped);
+        }
+        return dropped;
+    }
+
+    List<String> listDayPartitions() {
+        List<String> names = jdbc.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", String.class, TABLE);
+        // day partitions only; names come from pg_class and match the fixed pattern, so are safe to inline
+        return names.stream().filter(n -> n.matches(PARTITION_PREFIX + "\\d{8}")).toList();
+    }
+}
@@ -0,0 +1,13 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * Storage encoding for new {@link PersistentQueuePlugin} messages. Both formats are always readable,
+ * so switching is safe in either direction; JSON is kept for rolling upgrades where older consumers
+ * still run.
+ */
+public enum PayloadFormat {
+    /** Versioned {@link ServiceRequestCodec} encoding in {@code payload_bin}, LZ4-compressed when large. */
+    BINARY,
+    /** Legacy JSON text in {@code payload_json}. */
+    JSON
+}
@@ -1,6 +1,7 @@
 package org.knightmesh.plugins.queue;
 
 import jakarta.persistence.*;
+import org.knightmesh.core.id.Ids;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
@@ -10,7 +11,7 @@ public class PersistentQueueMessage {
 
     @Id
     @Column(name = "id", nullable = false, updatable = false)
-    private UUID id = UUID.randomUUID();
+    private UUID id = Ids.next(); // time-ordered, so inserts append to the primary key index
 
     @Column(name = "queue_name", nullable = false, length = 200)
     private String queueName;
@@ -19,12 +20,20 @@ public class PersistentQueueMessage {
     @Column(name = "payload_json", columnDefinition = "text")
     private String payloadJson;
 
+    // ServiceRequestCodec encoding; null for rows written in the legacy JSON format. Unbounded as in V5,
+    // rather than the 255 bytes JPA gives a byte[] column by default
+    @Column(name = "payload_bin", columnDefinition = "bytea")
+    private byte[] payloadBin;
+
     @Column(name = "status", nullable = false, length = 32)
     private String status = "PENDING"; // PENDING, PROCESSING, DONE
 
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt = OffsetDateTime.now();
 
+    @Column(name = "deliver_at", nullable = false)
+    private OffsetDateTime deliverAt = createdAt;
+
     @Version
     private long version;
 
@@ -37,12 +46,18 @@ public class PersistentQueueMessage {
     public String getPayloadJson() { return payloadJson; }
     public void setPayloadJson(String payloadJson) { this.payloadJson = payloadJson; }
 
+    public byte[] getPayloadBin() { return payloadBin; }
+    public void setPayloadBin(byte[] payloadBin) { this.payloadBin = payloadBin; }
+
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
     public OffsetDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
 
+    public OffsetDateTime getDeliverAt() { return deliverAt; }
+    public void setDeliverAt(OffsetDateTime deliverAt) { this.deliverAt = deliverAt; }
+
     public long getVersion() { return version; }
     public void setVersion(long version) { this.version = version; }
 }
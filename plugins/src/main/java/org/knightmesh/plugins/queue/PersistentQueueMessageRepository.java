@@ -1,12 +1,28 @@
 package org.knightmesh.plugins.queue;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface PersistentQueueMessageRepository extends JpaRepository<PersistentQueueMessage, UUID> {
-    Optional<PersistentQueueMessage> findTopByQueueNameAndStatusOrderByCreatedAtAsc(String queueName, String status);
+    Optional<PersistentQueueMessage> findTopByQueueNameAndStatusAndDeliverAtLessThanEqualOrderByDeliverAtAsc(
+            String queueName, String status, OffsetDateTime now);
 
-    long countByQueueNameAndStatus(String queueName, String status);
+    long countByQueueNameAndStatusAndDeliverAtLessThanEqual(String queueName, String status, OffsetDateTime now);
+
+    /** Delivery time of the oldest due message, or null if there is none. */
+    @Query("select min(m.deliverAt) from PersistentQueueMessage m " +
+            "where m.queueName = :queueName and m.status = :status and m.deliverAt <= :now")
+    OffsetDateTime findOldestDeliverAt(@Param("queueName") String queueName, @Param("status") String status,
+                                       @Param("now") OffsetDateTime now);
+
+    /** Queue names with pending messages matching a LIKE pattern (escape character {@code \}). */
+    @Query("select distinct m.queueName from PersistentQueueMessage m " +
+            "where m.status = 'PENDING' and m.queueName like :pattern escape '\\'")
+    List<String> findPendingQueueNamesLike(@Param("pattern") String pattern);
 }
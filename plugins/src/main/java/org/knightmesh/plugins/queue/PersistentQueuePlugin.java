@@ -2,86 +2,302 @@ package org.knightmesh.plugins.queue;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.knightmesh.core.json.Json;
 import org.knightmesh.core.model.ServiceRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.HashMap;
+import jakarta.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * JPA-backed persistent queue implementation. Stores messages in a table and dequeues in FIFO order.
+ * Messages may be scheduled for later delivery ({@link EnqueueOptions#getNotBefore()}); they stay
+ * invisible to consumers until their {@code deliver_at} time.
+ * Payloads are written in the configured {@link PayloadFormat} (compact binary by default); rows in
+ * either format are read back, so messages written before a format change are still delivered.
+ * With {@link QueueStorageMode#PARTITIONED} messages go to a daily-partitioned table instead, are claimed
+ * in batches and marked DONE, and expire by dropping whole partitions.
+ * Enqueues of due messages wake listeners in this process after commit and, on PostgreSQL, in other processes
+ * via NOTIFY; delayed messages wake no one, consumers find them by polling once they are due.
+ * {@link #stats(String)} serves depth and lag from local {@link QueueStats}, re-read from the table periodically.
  */
 @Component
 public class PersistentQueuePlugin implements QueuePlugin {
     private static final Logger log = LoggerFactory.getLogger(PersistentQueuePlugin.class);
 
     private final PersistentQueueMessageRepository repo;
-    private final ObjectMapper objectMapper;
+    private final ObjectReader requestReader;
+    private final ObjectWriter requestWriter;
+    private final ServiceRequestCodec codec;
+    private final PayloadFormat format;
+    private final QueueStorageMode storageMode;
+    private final int retentionDays;
+    private final int premakeDays;
+    private PartitionedQueueStore partitionedStore;
+    private final QueueListeners listeners = new QueueListeners();
+    private PostgresQueueNotifier notifier;
+    private final QueueStats stats = new QueueStats();
+    private long statsRefreshMs = 5_000;
 
-    public PersistentQueuePlugin(PersistentQueueMessageRepository repo, ObjectMapper objectMapper) {
+    public PersistentQueuePlugin(PersistentQueueMessageRepository repo, ObjectMapper objectMapper,
+                                 @Value("${queue.persistent.format:BINARY}") PayloadFormat format,
+                                 @Value("${queue.persistent.compress-threshold-bytes:1024}") int compressThresholdBytes,
+                                 @Value("${queue.persistent.storage:DELETE}") QueueStorageMode storageMode,
+                                 @Value("${queue.persistent.retention-days:7}") int retentionDays,
+                                 @Value("${queue.persistent.premake-days:3}") int premakeDays) {
         this.repo = repo;
-        this.objectMapper = objectMapper;
+        ObjectMapper json = Json.derive(objectMapper);
+        this.requestReader = json.readerFor(ServiceRequest.class);
+        this.requestWriter = json.writerFor(ServiceRequest.class);
+        this.format = Objects.requireNonNull(format, "format");
+        this.codec = new ServiceRequestCodec(objectMapper, compressThresholdBytes);
+        this.storageMode = Objects.requireNonNull(storageMode, "storageMode");
+        this.retentionDays = retentionDays;
+        this.premakeDays = premakeDays;
+    }
+
+    @Autowired(required = false)
+    public void setDataSource(DataSource dataSource) {
+        this.notifier = new PostgresQueueNotifier(dataSource, listeners);
+        if (storageMode == QueueStorageMode.PARTITIONED) {
+            this.partitionedStore = new PartitionedQueueStore(new JdbcTemplate(dataSource), Clock.systemUTC());
+        }
+    }
+
+    /** How long {@link #stats(String)} trusts its local counts before re-reading depth and age from the table. */
+    @Autowired
+    public void setStatsRefreshMs(@Value("${queue.persistent.stats.refresh.ms:5000}") long statsRefreshMs) {
+        this.statsRefreshMs = statsRefreshMs;
     }
 
     @Override
     @Transactional
     public void enqueue(String queueName, ServiceRequest request) {
+        store(queueName, request, null);
+        signalEnqueued(queueName, 1);
+    }
+
+    @Override
+    @Transactional
+    public void enqueue(String queueName, ServiceRequest request, EnqueueOptions options) {
+        String target = QueuePartitions.target(queueName, options);
+        Instant notBefore = options == null ? null : options.getNotBefore();
+        store(target, request, notBefore);
+        if (notBefore == null || !notBefore.isAfter(Instant.now())) {
+            signalEnqueued(target, 1);
+        }
+    }
+
+    /** All requests are stored in one transaction: either all of them are enqueued or none is. */
+    @Override
+    @Transactional
+    public void enqueueBatch(String queueName, List<ServiceRequest> requests) {
+        for (ServiceRequest r : requests) {
+            store(queueName, r, null);
+        }
+        if (!requests.isEmpty()) {
+            signalEnqueued(queueName, requests.size());
+        }
+    }
+
+    private void store(String queueName, ServiceRequest request, Instant notBefore) {
         Objects.requireNonNull(queueName, "queueName");
         Objects.requireNonNull(request, "request");
-        PersistentQueueMessage m = new PersistentQueueMessage();
-        m.setQueueName(queueName);
-        m.setStatus("PENDING");
-        m.setPayloadJson(serialize(request));
-        repo.save(m);
-        log.debug("[PersistentQueue] enqueue queue={} corrId={}", queueName, request.getCorrelationId());
+        byte[] payloadBin = format == PayloadFormat.BINARY ? codec.encode(request) : null;
+        String payloadJson = format == PayloadFormat.JSON ? serialize(request) : null;
+        if (storageMode == QueueStorageMode.PARTITIONED) {
+            partitioned().insert(queueName, payloadBin, payloadJson, notBefore);
+        } else {
+            PersistentQueueMessage m = new PersistentQueueMessage();
+            m.setQueueName(queueName);
+            m.setStatus("PENDING");
+            m.setPayloadBin(payloadBin);
+            m.setPayloadJson(payloadJson);
+            if (notBefore != null) {
+                m.setDeliverAt(notBefore.atOffset(ZoneOffset.UTC));
+            }
+            repo.save(m);
+        }
+        log.debug("[PersistentQueue] enqueue queue={} corrId={} notBefore={}", queueName, request.getCorrelationId(), notBefore);
     }
 
     @Override
     @Transactional
     public ServiceRequest dequeue(String queueName) {
-        // FIFO: oldest PENDING
-        return repo.findTopByQueueNameAndStatusOrderByCreatedAtAsc(queueName, "PENDING")
+        if (storageMode == QueueStorageMode.PARTITIONED) {
+            List<ServiceRequest> one = dequeueBatch(queueName, 1);
+            return one.isEmpty() ? null : one.get(0);
+        }
+        // FIFO by delivery time: oldest due PENDING
+        return repo.findTopByQueueNameAndStatusAndDeliverAtLessThanEqualOrderByDeliverAtAsc(queueName, "PENDING", OffsetDateTime.now())
                 .map(m -> {
-                    ServiceRequest req = deserialize(m.getPayloadJson());
+                    ServiceRequest req = decode(m.getPayloadBin(), m.getPayloadJson());
                     // remove the message to ensure exactly-once for this simple implementation
                     repo.delete(m);
+                    stats.dequeued(queueName, 1);
                     log.debug("[PersistentQueue] dequeue queue={} corrId={}", queueName, req.getCorrelationId());
                     return req;
                 })
                 .orElse(null);
     }
 
+    /** In PARTITIONED mode the batch is claimed and marked DONE with a single statement. */
+    @Override
+    @Transactional
+    public List<ServiceRequest> dequeueBatch(String queueName, int max) {
+        if (storageMode != QueueStorageMode.PARTITIONED) {
+            return QueuePlugin.super.dequeueBatch(queueName, max);
+        }
+        List<PartitionedQueueStore.Row> rows = partitioned().claim(queueName, max);
+        List<ServiceRequest> out = new ArrayList<>(rows.size());
+        for (PartitionedQueueStore.Row row : rows) {
+            out.add(decode(row.payloadBin(), row.payloadJson()));
+        }
+        stats.dequeued(queueName, out.size());
+        if (!out.isEmpty()) {
+            log.debug("[PersistentQueue] dequeued {} message(s) queue={}", out.size(), queueName);
+        }
+        return out;
+    }
+
     @Override
     public int size(String queueName) {
-        return (int) repo.countByQueueNameAndStatus(queueName, "PENDING");
+        if (storageMode == QueueStorageMode.PARTITIONED) {
+            return (int) partitioned().countPending(queueName);
+        }
+        return (int) repo.countByQueueNameAndStatusAndDeliverAtLessThanEqual(queueName, "PENDING", OffsetDateTime.now());
+    }
+
+    /**
+     * Local counts, corrected every {@code queue.persistent.stats.refresh.ms} with the table's due depth
+     * and oldest delivery time, so producers and consumers in other processes show up within that interval.
+     */
+    @Override
+    public QueueStats.Snapshot stats(String queueName) {
+        if (!stats.reconciledWithin(queueName, statsRefreshMs)) {
+            if (storageMode == QueueStorageMode.PARTITIONED) {
+                PartitionedQueueStore.Pending p = partitioned().pending(queueName);
+                stats.reconcile(queueName, p.depth(), p.oldest() == null ? null : p.oldest().toInstant());
+            } else {
+                OffsetDateTime now = OffsetDateTime.now();
+                long depth = repo.countByQueueNameAndStatusAndDeliverAtLessThanEqual(queueName, "PENDING", now);
+                OffsetDateTime oldest = depth == 0 ? null : repo.findOldestDeliverAt(queueName, "PENDING", now);
+                stats.reconcile(queueName, depth, oldest == null ? null : oldest.toInstant());
+            }
+        }
+        return stats.snapshot(queueName);
+    }
+
+    /** Queues with pending messages, due or scheduled. */
+    @Override
+    public Set<String> queueNames(String prefix) {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        List<String> names = storageMode == QueueStorageMode.PARTITIONED
+                ? partitioned().pendingQueueNames(pattern)
+                : repo.findPendingQueueNamesLike(pattern);
+        return new HashSet<>(names);
+    }
+
+    /**
+     * PARTITIONED mode: create upcoming day partitions and drop those past retention.
+     * Runs at startup and then every {@code queue.persistent.maintenance.ms} where scheduling is enabled (QPM).
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${queue.persistent.maintenance.ms:3600000}")
+    public void maintainPartitions() {
+        if (storageMode != QueueStorageMode.PARTITIONED || partitionedStore == null) return;
+        try {
+            partitionedStore.ensurePartitions(premakeDays);
+            partitionedStore.dropExpiredPartitions(retentionDays);
+        } catch (RuntimeException ex) {
+            log.warn("[PersistentQueue] partition maintenance failed: {}", ex.toString());
+        }
+    }
+
+    @Override
+    public void addListener(QueueListener listener) {
+        listeners.add(listener);
+        if (notifier != null) {
+            notifier.start();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (notifier != null) {
+            notifier.close();
+        }
+    }
+
+    /**
+     * Counts {@code count} due messages and wakes listeners once the enqueue has committed; one NOTIFY
+     * tells other processes.
+     */
+    private void signalEnqueued(String queueName, int count) {
+        if (notifier != null) {
+            notifier.publish(queueName);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed(queueName, count);
+                }
+            });
+        } else {
+            committed(queueName, count);
+        }
+    }
+
+    private void committed(String queueName, int count) {
+        for (int i = 0; i < count; i++) {
+            stats.enqueued(queueName);
+        }
+        listeners.fire(queueName);
+    }
+
+    private PartitionedQueueStore partitioned() {
+        if (partitionedStore == null) {
+            throw new IllegalStateException("queue.persistent.storage=PARTITIONED requires a DataSource");
+        }
+        return partitionedStore;
+    }
+
+    private ServiceRequest decode(byte[] payloadBin, String payloadJson) {
+        return payloadBin != null ? codec.decode(payloadBin) : deserialize(payloadJson);
     }
 
     private String serialize(ServiceRequest req) {
-        Map<String, Object> wrapper = new HashMap<>();
-        wrapper.put("serviceName", req.getServiceName());
-        wrapper.put("payload", req.getPayload());
-        wrapper.put("metadata", req.getMetadata());
-        wrapper.put("correlationId", req.getCorrelationId());
         try {
-            return objectMapper.writeValueAsString(wrapper);
+            return requestWriter.writeValueAsString(req);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("Failed to serialize ServiceRequest", e);
         }
     }
 
-    @SuppressWarnings("unchecked")
     private ServiceRequest deserialize(String json) {
         try {
-            Map<String, Object> wrapper = objectMapper.readValue(json, Map.class);
-            String serviceName = (String) wrapper.get("serviceName");
-            Map<String, Object> payload = (Map<String, Object>) wrapper.getOrDefault("payload", Map.of());
-            Map<String, String> metadata = (Map<String, String>) wrapper.getOrDefault("metadata", Map.of());
-            String correlationId = (String) wrapper.get("correlationId");
-            return new ServiceRequest(serviceName, payload, metadata, correlationId);
+            return requestReader.readValue(json);
         } catch (Exception e) {
             throw new IllegalStateException("Failed to deserialize ServiceRequest", e);
         }
@@ -0,0 +1,130 @@
+package org.knightmesh.plugins.queue;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Bridges PostgreSQL LISTEN/NOTIFY to {@link QueueListener}s so that consumers in other processes
+ * wake up as soon as a producer's transaction commits. On any other database this is inert and
+ * consumers rely on adaptive polling instead.
+ * <p>
+ * Each notification carries the publishing instance's id ahead of the queue name, so an instance ignores
+ * its own: its local listeners were already woken after commit.
+ */
+class PostgresQueueNotifier implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(PostgresQueueNotifier.class);
+
+    static final String CHANNEL = "knightmesh_queue";
+    // unit separator: never part of a queue name, so payloads of a bare queue name still parse
+    static final char SEPARATOR = '\u001f';
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final QueueListeners listeners;
+    private final boolean supported;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    PostgresQueueNotifier(DataSource dataSource, QueueListeners listeners) {
+        this.dataSource = Objects.requireNonNull(dataSource, "dataSource");
+        this.listeners = Objects.requireNonNull(listeners, "listeners");
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.supported = isPostgres(dataSource);
+    }
+
+    boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Publish a notification for the queue. PostgreSQL only delivers it once the surrounding
+     * transaction commits, so listeners never observe uncommitted messages.
+     */
+    void publish(String queueName) {
+        if (!supported) return;
+        jdbc.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, instanceId + SEPARATOR + queueName);
+    }
+
+    /** The queue a notification is about, or null if this instance published it. */
+    static String queueOf(String payload, String instanceId) {
+        int sep = payload.indexOf(SEPARATOR);
+        if (sep < 0) return payload;
+        boolean own = sep == instanceId.length() && payload.startsWith(instanceId);
+        return own ? null : payload.substring(sep + 1);
+    }
+
+    /** Start the background LISTEN loop (idempotent). */
+    synchronized void start() {
+        if (!supported || running) return;
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "pg-queue-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+    }
+
+    private void listenLoop() {
+        long backoffMs = 500;
+        while (running) {
+            try (Connection c = dataSource.getConnection()) {
+                c.setAutoCommit(true);
+                try (Statement st = c.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pg = c.unwrap(PGConnection.class);
+                log.info("[PersistentQueue] listening for queue notifications on channel {}", CHANNEL);
+                backoffMs = 500;
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(1000);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) {
+                        String queueName = queueOf(n.getParameter(), instanceId);
+                        if (queueName != null) {
+                            listeners.fire(queueName);
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!running) break;
+                log.warn("[PersistentQueue] notification listener failed, retrying in {} ms: {}", backoffMs, ex.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+        }
+    }
+
+    private static boolean isPostgres(DataSource dataSource) {
+        try (Connection c = dataSource.getConnection()) {
+            String product = c.getMetaData().getDatabaseProductName();
+            return product != null && product.toLowerCase().contains("postgresql");
+        } catch (SQLException ex) {
+            log.debug("Could not determine database product, disabling queue notifications: {}", ex.getMessage());
+            return false;
+        }
+    }
+}
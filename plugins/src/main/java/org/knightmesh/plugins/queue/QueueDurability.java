@@ -0,0 +1,13 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * How hard {@link TieredQueuePlugin} works to keep a queue's messages across a crash.
+ */
+public enum QueueDurability {
+    /** Memory only; messages reach durable storage only when the in-memory tier overflows. */
+    NONE,
+    /** Messages not consumed within the flush interval are written to durable storage in batches. */
+    ASYNC,
+    /** Every message is written to durable storage before the enqueue returns. */
+    SYNC
+}
@@ -0,0 +1,18 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * Thrown by bounded queue plugins when a message cannot be accepted because the queue is full.
+ * Callers at the edge (e.g. IRP) should translate this into backpressure for the client.
+ */
+public class QueueFullException extends IllegalStateException {
+    private final String queueName;
+
+    public QueueFullException(String queueName, String message) {
+        super(message);
+        this.queueName = queueName;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+}
@@ -0,0 +1,14 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * Callback invoked when a message becomes available on a queue. Used by consumers (e.g. QPM)
+ * to wake up immediately instead of waiting for the next poll tick.
+ */
+@FunctionalInterface
+public interface QueueListener {
+    /**
+     * Called after a message has been enqueued on the named queue. Implementations must be cheap
+     * and non-blocking; they are invoked on the producer's thread.
+     */
+    void onEnqueue(String queueName);
+}
@@ -0,0 +1,36 @@
+package org.knightmesh.plugins.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Small helper holding the registered {@link QueueListener}s of a plugin and fanning out notifications.
+ */
+class QueueListeners {
+    private static final Logger log = LoggerFactory.getLogger(QueueListeners.class);
+
+    private final List<QueueListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(QueueListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    void fire(String queueName) {
+        for (QueueListener l : listeners) {
+            try {
+                l.onEnqueue(queueName);
+            } catch (RuntimeException ex) {
+                // a misbehaving listener must never fail the producer
+                log.debug("Queue listener failed for queue={}: {}", queueName, ex.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.knightmesh.plugins.queue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Naming and hashing for partitioned queues. Partition {@code p} of queue {@code q} is an ordinary
+ * queue named {@code q#p<p>}, so every {@link QueuePlugin} supports partitions without changes.
+ * The key hash only depends on {@link String#hashCode()}, so producers and consumers in different
+ * processes agree on the partition of a key.
+ */
+public final class QueuePartitions {
+    public static final String SEPARATOR = "#p";
+
+    private QueuePartitions() {}
+
+    public static String partitionName(String queueName, int partition) {
+        return queueName + SEPARATOR + partition;
+    }
+
+    /** Partition of the key; null keys are spread randomly since they carry no ordering requirement. */
+    public static int partitionOf(String key, int partitions) {
+        if (partitions <= 1) return 0;
+        if (key == null) return ThreadLocalRandom.current().nextInt(partitions);
+        return Math.floorMod(mix(key.hashCode()), partitions);
+    }
+
+    /** Concrete queue a message with the given options is stored on: partition, then priority lane, then tenant. */
+    public static String target(String queueName, EnqueueOptions options) {
+        if (options == null) return queueName;
+        String q = options.isPartitioned()
+                ? partitionName(queueName, partitionOf(options.getPartitionKey(), options.getPartitions()))
+                : queueName;
+        return QueueTenants.flowName(QueuePriorities.laneName(q, options.getPriority()), options.getTenant());
+    }
+
+    /** Strip tenant, priority lane and partition suffixes, returning the logical queue name. */
+    public static String baseName(String name) {
+        if (name == null) return null;
+        name = QueuePriorities.stripLane(QueueTenants.stripTenant(name));
+        int i = name.lastIndexOf(SEPARATOR);
+        if (i <= 0 || i + SEPARATOR.length() == name.length()) return name;
+        for (int j = i + SEPARATOR.length(); j < name.length(); j++) {
+            if (!Character.isDigit(name.charAt(j))) return name;
+        }
+        return name.substring(0, i);
+    }
+
+    // murmur3 finalizer: spreads similar keys (user-1, user-2, ...) across partitions
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -2,6 +2,12 @@ package org.knightmesh.plugins.queue;
 
 import org.knightmesh.core.model.ServiceRequest;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Queue plugin abstraction for enqueuing inbound ServiceRequests for async processing.
  */
@@ -11,13 +17,83 @@ public interface QueuePlugin {
      */
     void enqueue(String queueName, ServiceRequest request);
 
+    /**
+     * Enqueue with per-message options. By default a partitioned message is stored on the partition
+     * sub-queue chosen by {@link QueuePartitions#target(String, EnqueueOptions)}. Delayed delivery
+     * ({@link EnqueueOptions#getNotBefore()}) needs plugin support; plugins without it reject
+     * future timestamps with {@link UnsupportedOperationException}.
+     */
+    default void enqueue(String queueName, ServiceRequest request, EnqueueOptions options) {
+        if (options != null && options.isDelayed(Instant.now())) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support delayed delivery");
+        }
+        enqueue(QueuePartitions.target(queueName, options), request);
+    }
+
+    /**
+     * Enqueue several requests on the named queue, in order. Plugins that can store them in one
+     * round trip or transaction override this; by default each is enqueued on its own.
+     */
+    default void enqueueBatch(String queueName, List<ServiceRequest> requests) {
+        for (ServiceRequest r : requests) {
+            enqueue(queueName, r);
+        }
+    }
+
     /**
      * Dequeue the next available request from the named queue, or return null if none.
+     * Messages scheduled for later delivery are not available until they are due.
      */
     ServiceRequest dequeue(String queueName);
 
+    /**
+     * Dequeue the next request, waiting up to the given timeout for one to arrive.
+     * Plugins without blocking support return immediately with the result of {@link #dequeue(String)}.
+     */
+    default ServiceRequest dequeue(String queueName, long timeout, TimeUnit unit) throws InterruptedException {
+        return dequeue(queueName);
+    }
+
+    /**
+     * Dequeue up to {@code max} requests in FIFO order; empty if none are available. Plugins that can
+     * claim several messages in one round trip override this.
+     */
+    default List<ServiceRequest> dequeueBatch(String queueName, int max) {
+        List<ServiceRequest> batch = new ArrayList<>(Math.min(max, 64));
+        ServiceRequest r;
+        while (batch.size() < max && (r = dequeue(queueName)) != null) {
+            batch.add(r);
+        }
+        return batch;
+    }
+
     /**
      * Return the approximate size of the queue.
      */
     int size(String queueName);
+
+    /**
+     * Depth, age of the oldest due message and throughput of the named queue. Plugins that keep
+     * {@link QueueStats} answer without querying their store on every call; the default only knows
+     * the {@link #size(String)}.
+     */
+    default QueueStats.Snapshot stats(String queueName) {
+        return QueueStats.Snapshot.ofDepth(size(queueName));
+    }
+
+    /**
+     * Names of existing queues starting with {@code prefix}, e.g. the tenant sub-queues of a queue
+     * ({@link QueueTenants}). May include queues that are currently empty. Plugins that cannot list
+     * queues return an empty set; consumers then only find sub-queues through enqueue notifications.
+     */
+    default Set<String> queueNames(String prefix) {
+        return Set.of();
+    }
+
+    /**
+     * Register a listener notified whenever a message is enqueued. Plugins that cannot push
+     * notifications keep this default no-op and consumers fall back to polling.
+     */
+    default void addListener(QueueListener listener) {
+    }
 }
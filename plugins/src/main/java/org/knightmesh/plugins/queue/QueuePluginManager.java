@@ -0,0 +1,390 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.knightmesh.core.config.PluginConfig;
+import org.knightmesh.core.config.PluginConfigSource;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.core.model.ServiceRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * The QueuePlugin everything else is wired with: routes each logical queue to one of the queue plugin
+ * beans, so a latency-sensitive queue can stay in memory while another is stored durably. Backends are
+ * named by bean name or by the bean name without its {@code QueuePlugin} suffix ({@code inmemory},
+ * {@code persistent}, {@code tiered}, {@code segmentedlog}, {@code noop}). Routes come from the
+ * {@link PluginConfig} named by {@code queue.routing.plugin}:
+ * <pre>
+ * {"default": "inmemory", "queues": {"orders": "persistent", "audit-*": "segmentedlog"}}
+ * </pre>
+ * A queue is matched by its base name ({@link QueuePartitions#baseName}), so partitions, priority lanes and
+ * tenant sub-queues follow their queue; exact names win over the longest matching {@code *} prefix. Without
+ * a row every queue uses {@code queue.routing.default}.
+ * <p>
+ * The row is re-read every {@code queue.routing.refresh.ms}. When a queue moves, new messages go to the
+ * new backend at once while consumers keep draining the old one first, until it has been empty for two
+ * refresh periods (other processes may switch a little later). The drain is tracked in memory only. The
+ * settings are parsed again only when the row has changed.
+ * <p>
+ * Listeners are attached to a backend once a queue in use is routed to it, and hear only the queues that
+ * backend serves (or still drains), so idle backends start no listener threads and a message a tiered
+ * backend writes through to the persistent one wakes consumers once.
+ */
+@Primary
+@Component
+public class QueuePluginManager implements QueuePlugin {
+    private static final Logger log = LoggerFactory.getLogger(QueuePluginManager.class);
+    private static final String BEAN_SUFFIX = "QueuePlugin";
+
+    private final Map<String, QueuePlugin> backends = new HashMap<>();
+    private final Map<QueuePlugin, String> names = new IdentityHashMap<>();
+    private final QueuePlugin defaultBackend;
+    private final String pluginName;
+    private final long refreshMs;
+    private final LongSupplier clock;
+    private PluginConfigSource configSource;
+    private volatile Routes routes;
+    private volatile long nextRefreshAt = Long.MIN_VALUE;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // backend each base queue in use is routed to under the current routes
+    private final Map<String, QueuePlugin> resolved = new ConcurrentHashMap<>();
+    // backends a base queue moved away from, oldest first
+    private final Map<String, List<Drain>> draining = new ConcurrentHashMap<>();
+    private final QueueListeners listeners = new QueueListeners();
+    // backends relaying their enqueues to the listeners
+    private final Set<QueuePlugin> listenedTo = Collections.newSetFromMap(new IdentityHashMap<>());
+    // settings of the row the routes were parsed from, null for none or a disabled one
+    private String loadedSettings;
+
+    @Autowired
+    public QueuePluginManager(Map<String, QueuePlugin> backends,
+                              @Value("${queue.routing.default:inmemory}") String defaultBackend,
+                              @Value("${queue.routing.plugin:queue-routing}") String pluginName,
+                              @Value("${queue.routing.refresh.ms:5000}") long refreshMs) {
+        this(backends, defaultBackend, pluginName, refreshMs, System::currentTimeMillis);
+    }
+
+    QueuePluginManager(Map<String, QueuePlugin> backends, String defaultBackend, String pluginName,
+                       long refreshMs, LongSupplier clock) {
+        backends.forEach((beanName, plugin) -> {
+            String key = beanName.toLowerCase(Locale.ROOT);
+            this.backends.put(key, plugin);
+            if (key.endsWith(BEAN_SUFFIX.toLowerCase(Locale.ROOT)) && key.length() > BEAN_SUFFIX.length()) {
+                key = key.substring(0, key.length() - BEAN_SUFFIX.length());
+                this.backends.putIfAbsent(key, plugin);
+            }
+            names.putIfAbsent(plugin, key);
+        });
+        this.defaultBackend = this.backends.get(defaultBackend.toLowerCase(Locale.ROOT));
+        if (this.defaultBackend == null) {
+            throw new IllegalArgumentException("Unknown queue.routing.default '" + defaultBackend + "', known: " + new TreeSet<>(this.backends.keySet()));
+        }
+        this.pluginName = Objects.requireNonNull(pluginName, "pluginName");
+        this.refreshMs = refreshMs;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.routes = new Routes(this.defaultBackend, Map.of(), List.of());
+    }
+
+    @Autowired(required = false)
+    public void setPluginConfigSource(PluginConfigSource configSource) {
+        this.configSource = configSource;
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request) {
+        backend(queueName).enqueue(queueName, request);
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request, EnqueueOptions options) {
+        backend(queueName).enqueue(queueName, request, options);
+    }
+
+    @Override
+    public void enqueueBatch(String queueName, List<ServiceRequest> requests) {
+        backend(queueName).enqueueBatch(queueName, requests);
+    }
+
+    @Override
+    public ServiceRequest dequeue(String queueName) {
+        QueuePlugin current = backend(queueName);
+        for (Drain d : drains(queueName)) {
+            ServiceRequest r = d.backend.dequeue(queueName);
+            if (r != null) return r;
+        }
+        return current.dequeue(queueName);
+    }
+
+    @Override
+    public ServiceRequest dequeue(String queueName, long timeout, TimeUnit unit) throws InterruptedException {
+        QueuePlugin current = backend(queueName);
+        for (Drain d : drains(queueName)) {
+            ServiceRequest r = d.backend.dequeue(queueName);
+            if (r != null) return r;
+        }
+        return current.dequeue(queueName, timeout, unit);
+    }
+
+    @Override
+    public List<ServiceRequest> dequeueBatch(String queueName, int max) {
+        QueuePlugin current = backend(queueName);
+        for (Drain d : drains(queueName)) {
+            List<ServiceRequest> batch = d.backend.dequeueBatch(queueName, max);
+            if (!batch.isEmpty()) return batch;
+        }
+        return current.dequeueBatch(queueName, max);
+    }
+
+    @Override
+    public int size(String queueName) {
+        int size = backend(queueName).size(queueName);
+        for (Drain d : drains(queueName)) {
+            size += d.backend.size(queueName);
+        }
+        return size;
+    }
+
+    /** Stats of the current backend, with depth and oldest age of backends still being drained added. */
+    @Override
+    public QueueStats.Snapshot stats(String queueName) {
+        QueueStats.Snapshot s = backend(queueName).stats(queueName);
+        for (Drain d : drains(queueName)) {
+            QueueStats.Snapshot old = d.backend.stats(queueName);
+            if (old.depth() <= 0) continue;
+            s = new QueueStats.Snapshot(s.depth() + old.depth(), Math.max(s.oldestAgeMs(), old.oldestAgeMs()),
+                    s.enqueued(), s.dequeued(), s.enqueueRate(), s.dequeueRate());
+        }
+        return s;
+    }
+
+    @Override
+    public Set<String> queueNames(String prefix) {
+        Set<String> result = new HashSet<>(backend(prefix).queueNames(prefix));
+        for (Drain d : drains(prefix)) {
+            result.addAll(d.backend.queueNames(prefix));
+        }
+        return result;
+    }
+
+    /** Listens on the backends queues in use are routed to, so consumers wake up wherever their queue lives. */
+    @Override
+    public synchronized void addListener(QueueListener listener) {
+        listeners.add(listener);
+        for (QueuePlugin b : resolved.values()) {
+            listenTo(b);
+        }
+        for (List<Drain> drains : draining.values()) {
+            for (Drain d : drains) {
+                listenTo(d.backend);
+            }
+        }
+    }
+
+    /** Name of the backend the queue (or any of its sub-queues) is routed to. */
+    public String backendName(String queueName) {
+        return names.get(backend(queueName));
+    }
+
+    /** Names of the backends the queue still drains before its current one; empty normally. */
+    public List<String> drainingBackends(String queueName) {
+        List<String> result = new ArrayList<>();
+        for (Drain d : drains(queueName)) {
+            result.add(names.get(d.backend));
+        }
+        return result;
+    }
+
+    QueuePlugin backend(String queueName) {
+        if (clock.getAsLong() >= nextRefreshAt) {
+            refresh();
+        }
+        String base = QueuePartitions.baseName(queueName);
+        QueuePlugin b = resolved.get(base);
+        if (b == null) {
+            Routes r = routes;
+            b = resolved.computeIfAbsent(base, r::backendFor);
+            listenTo(b);
+        }
+        return b;
+    }
+
+    /** Re-read the routes now; concurrent callers keep the current routes instead of waiting. */
+    void refresh() {
+        if (!refreshing.compareAndSet(false, true)) return;
+        try {
+            long now = clock.getAsLong();
+            nextRefreshAt = now + refreshMs;
+            if (configSource != null) {
+                Routes loaded = load();
+                if (loaded != null) apply(loaded, now);
+            }
+            releaseDrained(now);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private List<Drain> drains(String queueName) {
+        List<Drain> d = draining.get(QueuePartitions.baseName(queueName));
+        return d == null ? List.of() : d;
+    }
+
+    /** Routes of the row if its settings changed since the last load, else null to keep the current ones. */
+    private Routes load() {
+        PluginConfig row;
+        try {
+            row = configSource.findPlugin(pluginName).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("[QueueRouting] could not read plugin config {}, keeping current routes: {}", pluginName, e.toString());
+            return null;
+        }
+        String settings = row == null || !row.isEnabled() ? null : row.getSettingsJson();
+        if (Objects.equals(settings, loadedSettings)) {
+            return null;
+        }
+        loadedSettings = settings;
+        return parse(settings);
+    }
+
+    /** Parse routing settings; unknown backends are skipped and malformed settings keep the current routes. */
+    Routes parse(String settingsJson) {
+        if (settingsJson == null || settingsJson.isBlank()) {
+            return new Routes(defaultBackend, Map.of(), List.of());
+        }
+        try {
+            JsonNode root = Json.treeReader().readTree(settingsJson);
+            QueuePlugin fallback = defaultBackend;
+            if (root.hasNonNull("default")) {
+                fallback = lookup(root.get("default").asText(), "default");
+                if (fallback == null) fallback = defaultBackend;
+            }
+            Map<String, QueuePlugin> exact = new HashMap<>();
+            Map<String, QueuePlugin> prefixes = new LinkedHashMap<>();
+            var it = root.path("queues").fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> e = it.next();
+                QueuePlugin b = lookup(e.getValue().asText(), e.getKey());
+                if (b == null) continue;
+                String pattern = e.getKey();
+                if (pattern.endsWith("*")) {
+                    prefixes.put(pattern.substring(0, pattern.length() - 1), b);
+                } else {
+                    exact.put(pattern, b);
+                }
+            }
+            List<Map.Entry<String, QueuePlugin>> ordered = new ArrayList<>(prefixes.entrySet());
+            ordered.sort(Comparator.comparingInt((Map.Entry<String, QueuePlugin> e) -> e.getKey().length()).reversed());
+            return new Routes(fallback, Map.copyOf(exact), List.copyOf(ordered));
+        } catch (Exception e) {
+            log.warn("[QueueRouting] ignoring malformed settings of plugin config {}: {}", pluginName, e.getMessage());
+            return null;
+        }
+    }
+
+    private QueuePlugin lookup(String backendName, String queuePattern) {
+        QueuePlugin b = backends.get(backendName.toLowerCase(Locale.ROOT));
+        if (b == null) {
+            log.warn("[QueueRouting] unknown queue backend '{}' for {}, known: {}", backendName, queuePattern,
+                    new TreeSet<>(backends.keySet()));
+        }
+        return b;
+    }
+
+    private synchronized void apply(Routes next, long now) {
+        routes = next;
+        for (Map.Entry<String, QueuePlugin> e : resolved.entrySet()) {
+            String base = e.getKey();
+            QueuePlugin from = e.getValue();
+            QueuePlugin to = next.backendFor(base);
+            if (from == to) continue;
+            e.setValue(to);
+            listenTo(to);
+            List<Drain> drains = draining.computeIfAbsent(base, b -> new CopyOnWriteArrayList<>());
+            drains.removeIf(d -> d.backend == to || d.backend == from);
+            drains.add(new Drain(from, now));
+            log.info("[QueueRouting] queue {} moved from {} to {}; draining {} first", base, names.get(from), names.get(to), names.get(from));
+        }
+    }
+
+    private synchronized void releaseDrained(long now) {
+        for (var it = draining.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, List<Drain>> e = it.next();
+            String base = e.getKey();
+            List<Drain> drains = e.getValue();
+            drains.removeIf(d -> {
+                if (now - d.since < 2 * refreshMs || !isEmpty(d.backend, base)) return false;
+                log.info("[QueueRouting] queue {} drained from {}", base, names.get(d.backend));
+                return true;
+            });
+            if (drains.isEmpty()) it.remove();
+        }
+    }
+
+    private synchronized void listenTo(QueuePlugin backend) {
+        if (listeners.isEmpty() || !listenedTo.add(backend)) return;
+        backend.addListener(queueName -> {
+            if (serves(backend, queueName)) listeners.fire(queueName);
+        });
+    }
+
+    /** Whether the queue is routed to the backend or still drains it; other enqueues it reports are relayed elsewhere. */
+    private boolean serves(QueuePlugin backend, String queueName) {
+        String base = QueuePartitions.baseName(queueName);
+        QueuePlugin current = resolved.get(base);
+        if ((current != null ? current : routes.backendFor(base)) == backend) return true;
+        for (Drain d : drains(queueName)) {
+            if (d.backend == backend) return true;
+        }
+        return false;
+    }
+
+    /** True if neither the queue nor any sub-queue the backend can list holds a message. */
+    private static boolean isEmpty(QueuePlugin backend, String base) {
+        try {
+            if (backend.size(base) > 0) return false;
+            for (String name : backend.queueNames(base + "#")) {
+                if (backend.size(name) > 0) return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private record Drain(QueuePlugin backend, long since) {}
+
+    /** Routing table: exact base names, then {@code *} prefixes longest first, then the default. */
+    record Routes(QueuePlugin fallback, Map<String, QueuePlugin> exact, List<Map.Entry<String, QueuePlugin>> prefixes) {
+        QueuePlugin backendFor(String base) {
+            QueuePlugin b = exact.get(base);
+            if (b != null) return b;
+            for (Map.Entry<String, QueuePlugin> p : prefixes) {
+                if (base.startsWith(p.getKey())) return p.getValue();
+            }
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.knightmesh.plugins.queue;
+
+import java.util.Locale;
+
+/**
+ * Naming and parsing for priority lanes. Level {@code 0} is the highest priority. Every lane except the
+ * queue's default one is an ordinary queue named {@code q#q<level>} (after any partition suffix, e.g.
+ * {@code orders#p3#q0}); the default lane keeps the plain name, so messages enqueued before priorities
+ * were enabled are still drained.
+ */
+public final class QueuePriorities {
+    public static final String SEPARATOR = "#q";
+    /** Upper bound on levels per queue; each level is a separate sub-queue to drain. */
+    public static final int MAX_LEVELS = 8;
+
+    private QueuePriorities() {}
+
+    /** Lane queue for a level; null = the default lane, i.e. {@code queueName} itself. */
+    public static String laneName(String queueName, Integer level) {
+        return level == null ? queueName : queueName + SEPARATOR + level;
+    }
+
+    /** Strip a lane suffix, returning the (possibly partitioned) queue name. */
+    public static String stripLane(String name) {
+        int i = name.lastIndexOf(SEPARATOR);
+        if (i <= 0 || i + SEPARATOR.length() == name.length()) return name;
+        for (int j = i + SEPARATOR.length(); j < name.length(); j++) {
+            if (!Character.isDigit(name.charAt(j))) return name;
+        }
+        return name.substring(0, i);
+    }
+
+    /**
+     * Parse a level given as a number or as {@code HIGH} / {@code NORMAL} / {@code LOW}; numbers are clamped
+     * to the available levels. Returns {@code defaultLevel} for null or unrecognised values.
+     */
+    public static int parse(String value, int levels, int defaultLevel) {
+        if (value == null || value.isBlank()) return defaultLevel;
+        String v = value.trim().toUpperCase(Locale.ROOT);
+        switch (v) {
+            case "HIGH": return 0;
+            case "NORMAL": return defaultLevel;
+            case "LOW": return levels - 1;
+            default:
+                try {
+                    return Math.max(0, Math.min(levels - 1, Integer.parseInt(v)));
+                } catch (NumberFormatException e) {
+                    return defaultLevel;
+                }
+        }
+    }
+}
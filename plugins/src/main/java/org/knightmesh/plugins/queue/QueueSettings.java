@@ -0,0 +1,227 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.knightmesh.core.json.ConfigJsonCache;
+import org.knightmesh.core.model.ServiceRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Queue behaviour configured on a module, read from the {@code "queue"} object of
+ * {@code ModuleConfig.extraJson}, e.g. {@code {"queue": {"partitions": 8, "partitionKey": "accountId"}}}.
+ * Priority lanes are enabled with {@code "priorities": 3}, optionally with {@code "defaultPriority"} (default:
+ * the middle level) and {@code "priorityWeights"} (default: halving per level, e.g. {@code [4, 2, 1]}).
+ * {@code "tenantFair": true} gives every tenant its own sub-queue ({@link QueueTenants}) so consumers can
+ * share throughput between tenants, weighted by {@code "tenantWeights"} (e.g. {@code {"gold": 4}}, default 1).
+ * {@code "durability"} ({@code NONE}, {@code ASYNC} or {@code SYNC}) applies to {@link TieredQueuePlugin}.
+ * Producers and consumers of a queue must see the same settings. Parsed settings are cached per JSON blob,
+ * as they are looked up for every enqueued request.
+ */
+public final class QueueSettings {
+    private static final Logger log = LoggerFactory.getLogger(QueueSettings.class);
+
+    /** Metadata entry carrying an explicit partition key (IRP fills it from {@code X-Partition-Key}). */
+    public static final String PARTITION_KEY_METADATA = "partitionKey";
+    /** Metadata entry carrying the priority level (IRP fills it from {@code X-Priority} or service config). */
+    public static final String PRIORITY_METADATA = "priority";
+
+    private static final int[] SINGLE_LANE = {1};
+    private static final QueueSettings DEFAULTS = new QueueSettings(1, null, 0, SINGLE_LANE, false, Map.of(), null);
+    private static final ConfigJsonCache<QueueSettings> PARSED = new ConfigJsonCache<>(256, QueueSettings::parse);
+    private static final ConfigJsonCache<Optional<String>> PRIORITIES = new ConfigJsonCache<>(1024, root -> {
+        JsonNode priority = root.path("priority");
+        return Optional.ofNullable(priority.isValueNode() && !priority.isNull() ? priority.asText() : null);
+    });
+
+    private final int partitions;
+    private final String partitionKeyField;
+    private final int defaultPriority;
+    private final int[] priorityWeights;
+    private final boolean tenantFair;
+    private final Map<String, Integer> tenantWeights; // keyed by encoded tenant
+    private final QueueDurability durability;
+
+    private QueueSettings(int partitions, String partitionKeyField, int defaultPriority, int[] priorityWeights,
+                          boolean tenantFair, Map<String, Integer> tenantWeights, QueueDurability durability) {
+        this.partitions = partitions;
+        this.partitionKeyField = partitionKeyField;
+        this.defaultPriority = defaultPriority;
+        this.priorityWeights = priorityWeights;
+        this.tenantFair = tenantFair;
+        this.tenantWeights = tenantWeights;
+        this.durability = durability;
+    }
+
+    public static QueueSettings defaults() {
+        return DEFAULTS;
+    }
+
+    public static QueueSettings of(int partitions, String partitionKeyField) {
+        return new QueueSettings(Math.max(1, partitions), partitionKeyField, 0, SINGLE_LANE, false, Map.of(), null);
+    }
+
+    /**
+     * Copy with {@code levels} priority lanes (capped at {@link QueuePriorities#MAX_LEVELS}).
+     * @param defaultLevel lane for messages without a priority; negative = the middle level
+     * @param weights relative share of each lane when all are busy; null or wrong length = halving per level
+     */
+    public QueueSettings withPriorities(int levels, int defaultLevel, int[] weights) {
+        int n = Math.max(1, Math.min(QueuePriorities.MAX_LEVELS, levels));
+        int[] w = new int[n];
+        for (int i = 0; i < n; i++) {
+            w[i] = weights != null && weights.length == n ? Math.max(1, weights[i]) : 1 << (n - 1 - i);
+        }
+        int def = defaultLevel < 0 ? (n - 1) / 2 : Math.min(defaultLevel, n - 1);
+        return new QueueSettings(partitions, partitionKeyField, def, w, tenantFair, tenantWeights, durability);
+    }
+
+    /** Copy with per-tenant sub-queues; {@code weights} maps tenant ids to their relative share (default 1). */
+    public QueueSettings withTenantFairness(Map<String, Integer> weights) {
+        Map<String, Integer> encoded = new HashMap<>();
+        if (weights != null) {
+            weights.forEach((tenant, weight) -> encoded.put(QueueTenants.encode(tenant), Math.max(1, weight)));
+        }
+        return new QueueSettings(partitions, partitionKeyField, defaultPriority, priorityWeights, true, Map.copyOf(encoded), durability);
+    }
+
+    /** Copy with the given durability for plugins that offer a choice (null = plugin default). */
+    public QueueSettings withDurability(QueueDurability durability) {
+        return new QueueSettings(partitions, partitionKeyField, defaultPriority, priorityWeights, tenantFair, tenantWeights, durability);
+    }
+
+    /** Parse settings from a module's extra JSON; missing or malformed settings yield defaults. */
+    public static QueueSettings fromExtraJson(String extraJson) {
+        if (extraJson == null || extraJson.isBlank()) return DEFAULTS;
+        try {
+            return PARSED.get(extraJson);
+        } catch (Exception e) {
+            log.warn("Ignoring malformed queue settings: {}", e.getMessage());
+            return DEFAULTS;
+        }
+    }
+
+    private static QueueSettings parse(JsonNode root) {
+        JsonNode queue = root.path("queue");
+        if (!queue.isObject()) return DEFAULTS;
+        int partitions = queue.path("partitions").asInt(1);
+        String keyField = queue.hasNonNull("partitionKey") ? queue.get("partitionKey").asText() : null;
+        QueueSettings settings = of(partitions, keyField);
+        int priorities = queue.path("priorities").asInt(1);
+        if (priorities > 1) {
+            JsonNode weights = queue.path("priorityWeights");
+            int[] w = null;
+            if (weights.isArray()) {
+                w = new int[weights.size()];
+                for (int i = 0; i < w.length; i++) w[i] = weights.get(i).asInt(1);
+            }
+            settings = settings.withPriorities(priorities, queue.path("defaultPriority").asInt(-1), w);
+        }
+        if (queue.path("tenantFair").asBoolean(false)) {
+            Map<String, Integer> weights = new HashMap<>();
+            queue.path("tenantWeights").fields().forEachRemaining(e -> weights.put(e.getKey(), e.getValue().asInt(1)));
+            settings = settings.withTenantFairness(weights);
+        }
+        if (queue.hasNonNull("durability")) {
+            settings = settings.withDurability(QueueDurability.valueOf(queue.get("durability").asText().toUpperCase()));
+        }
+        return settings;
+    }
+
+    public int getPartitions() { return partitions; }
+    public String getPartitionKeyField() { return partitionKeyField; }
+    public int getPriorities() { return priorityWeights.length; }
+    public int getDefaultPriority() { return defaultPriority; }
+
+    /** Relative share of lane {@code level} when several lanes have work. */
+    public int priorityWeight(int level) {
+        return priorityWeights[level];
+    }
+
+    public boolean hasPriorities() {
+        return priorityWeights.length > 1;
+    }
+
+    /** Null unless {@code "durability"} is configured. */
+    public QueueDurability getDurability() {
+        return durability;
+    }
+
+    public boolean isTenantFair() {
+        return tenantFair;
+    }
+
+    /** Relative share of the tenant owning a sub-queue (see {@link QueueTenants}); 1 unless configured. */
+    public int tenantWeightOf(String queueName) {
+        String tenant = QueueTenants.encodedTenantOf(queueName);
+        return tenant == null ? 1 : tenantWeights.getOrDefault(tenant, 1);
+    }
+
+    /** Lane queue of {@code level} within a concrete (possibly partitioned) queue. */
+    public String laneName(String queueName, int level) {
+        return QueuePriorities.laneName(queueName, level == defaultPriority ? null : level);
+    }
+
+    public boolean isPartitioned() {
+        return partitions > 1;
+    }
+
+    /**
+     * Partition key of a request: the explicit {@value #PARTITION_KEY_METADATA} metadata entry, else the
+     * configured field looked up in metadata and then in the payload. Null if none applies.
+     */
+    public String partitionKey(ServiceRequest request) {
+        String explicit = request.getMetadata().get(PARTITION_KEY_METADATA);
+        if (explicit != null && !explicit.isBlank()) return explicit;
+        if (partitionKeyField == null) return null;
+        String fromMetadata = request.getMetadata().get(partitionKeyField);
+        if (fromMetadata != null) return fromMetadata;
+        Object fromPayload = request.getPayload().get(partitionKeyField);
+        return fromPayload == null ? null : String.valueOf(fromPayload);
+    }
+
+    /**
+     * Priority level of a request: the {@value #PRIORITY_METADATA} metadata entry, else {@code servicePriority}
+     * (from the service's config), else the default level.
+     */
+    public int priority(ServiceRequest request, String servicePriority) {
+        if (!hasPriorities()) return 0;
+        String explicit = request.getMetadata().get(PRIORITY_METADATA);
+        return QueuePriorities.parse(explicit != null ? explicit : servicePriority, getPriorities(), defaultPriority);
+    }
+
+    /** Enqueue options for a request under these settings. */
+    public EnqueueOptions enqueueOptions(ServiceRequest request) {
+        return enqueueOptions(request, null);
+    }
+
+    /** Enqueue options for a request under these settings; {@code servicePriority} as for {@link #priority}. */
+    public EnqueueOptions enqueueOptions(ServiceRequest request, String servicePriority) {
+        EnqueueOptions options = isPartitioned() ? EnqueueOptions.partitioned(partitionKey(request), partitions) : EnqueueOptions.none();
+        if (hasPriorities()) {
+            int level = priority(request, servicePriority);
+            options = options.withPriority(level == defaultPriority ? null : level);
+        }
+        if (tenantFair) {
+            options = options.withTenant(request.getTenant());
+        }
+        if (durability != null) {
+            options = options.withDurability(durability);
+        }
+        return options;
+    }
+
+    /** The {@code "priority"} entry of a service's {@code ServiceConfig.configJson}, or null. */
+    public static String servicePriority(String configJson) {
+        if (configJson == null || configJson.isBlank()) return null;
+        try {
+            return PRIORITIES.get(configJson).orElse(null);
+        } catch (Exception e) {
+            log.warn("Ignoring malformed service config: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.knightmesh.plugins.queue;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-queue counters a plugin updates as it enqueues and dequeues, so depth, age of the oldest message
+ * and throughput can be read without asking the store. Depth is enqueued minus dequeued. The age of the
+ * oldest message comes from enqueue-time samples taken at most every {@link #SAMPLE_INTERVAL_MS}, assuming
+ * FIFO consumption. Rates are one-minute exponentially weighted averages, updated every {@link #RATE_TICK_MS}.
+ * <p>
+ * Stores shared with other processes call {@link #reconcile} now and then with the real depth. The
+ * difference from the local count is booked as enqueues (or dequeues) made elsewhere, so rates
+ * approximate the whole cluster's.
+ */
+public final class QueueStats {
+    static final long SAMPLE_INTERVAL_MS = 100;
+    static final int MAX_SAMPLES = 4096;
+    static final long RATE_TICK_MS = 5_000;
+    static final long RATE_WINDOW_MS = 60_000;
+
+    /**
+     * Point-in-time view of one queue. Negative values mean the plugin does not track that figure.
+     *
+     * @param oldestAgeMs time since the oldest waiting message was enqueued (or became due); 0 when empty
+     * @param enqueueRate messages per second
+     * @param dequeueRate messages per second
+     */
+    public record Snapshot(long depth, long oldestAgeMs, long enqueued, long dequeued,
+                           double enqueueRate, double dequeueRate) {
+
+        /** Only the depth is known, e.g. from {@link QueuePlugin#size(String)}. */
+        public static Snapshot ofDepth(long depth) {
+            return new Snapshot(depth, -1, -1, -1, -1, -1);
+        }
+    }
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public QueueStats() {
+        this(System::currentTimeMillis);
+    }
+
+    QueueStats(LongSupplier clock) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    public void enqueued(String queueName) {
+        tracker(queueName).enqueued(clock.getAsLong());
+    }
+
+    public void dequeued(String queueName, int count) {
+        if (count > 0) {
+            tracker(queueName).dequeued(count);
+        }
+    }
+
+    /**
+     * Replace the local view with the store's: {@code depth} due messages, the oldest due since
+     * {@code oldestSince} (null when empty or unknown).
+     */
+    public void reconcile(String queueName, long depth, Instant oldestSince) {
+        long now = clock.getAsLong();
+        tracker(queueName).reconcile(depth, oldestSince == null ? -1 : Math.min(now, oldestSince.toEpochMilli()), now);
+    }
+
+    /** True if the queue was reconciled less than {@code maxAgeMs} ago. */
+    public boolean reconciledWithin(String queueName, long maxAgeMs) {
+        Tracker t = trackers.get(queueName);
+        return t != null && t.reconciledAt >= 0 && clock.getAsLong() - t.reconciledAt < maxAgeMs;
+    }
+
+    /** Forget a queue that no longer exists. */
+    public void remove(String queueName) {
+        trackers.remove(queueName);
+    }
+
+    public Snapshot snapshot(String queueName) {
+        return tracker(queueName).snapshot(clock.getAsLong());
+    }
+
+    private Tracker tracker(String queueName) {
+        Objects.requireNonNull(queueName, "queueName");
+        Tracker t = trackers.get(queueName);
+        return t != null ? t : trackers.computeIfAbsent(queueName, q -> new Tracker(clock.getAsLong()));
+    }
+
+    private static final class Tracker {
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong dequeued = new AtomicLong();
+        // {sequence number of a message, its enqueue time}, ascending; guarded by this
+        private final ArrayDeque<long[]> samples = new ArrayDeque<>();
+        private volatile long nextSampleAt = Long.MIN_VALUE;
+        private volatile long reconciledAt = -1;
+        // rate state, guarded by this
+        private long rateTickAt;
+        private long tickEnqueued;
+        private long tickDequeued;
+        private double enqueueRate;
+        private double dequeueRate;
+
+        Tracker(long now) {
+            this.rateTickAt = now;
+        }
+
+        void enqueued(long now) {
+            long seq = enqueued.getAndIncrement();
+            if (now >= nextSampleAt) {
+                synchronized (this) {
+                    if (now < nextSampleAt) return;
+                    nextSampleAt = now + SAMPLE_INTERVAL_MS;
+                    long[] last = samples.peekLast();
+                    // while full, later messages are attributed to the newest sample and look older
+                    if (samples.size() < MAX_SAMPLES && (last == null || seq > last[0])) {
+                        samples.addLast(new long[]{seq, now});
+                    }
+                }
+            }
+        }
+
+        void dequeued(int count) {
+            dequeued.addAndGet(count);
+        }
+
+        synchronized void reconcile(long depth, long oldestSince, long now) {
+            long drift = depth - depth();
+            if (drift > 0) {
+                enqueued.addAndGet(drift);
+            } else if (drift < 0) {
+                dequeued.addAndGet(-drift);
+            }
+            samples.clear();
+            if (depth > 0 && oldestSince >= 0) {
+                samples.addLast(new long[]{dequeued.get(), oldestSince});
+            }
+            nextSampleAt = Long.MIN_VALUE;
+            reconciledAt = now;
+        }
+
+        synchronized Snapshot snapshot(long now) {
+            long in = enqueued.get();
+            long out = dequeued.get();
+            long ticks = (now - rateTickAt) / RATE_TICK_MS;
+            if (ticks > 0) {
+                double seconds = ticks * RATE_TICK_MS / 1000.0;
+                double decay = Math.exp(-(double) ticks * RATE_TICK_MS / RATE_WINDOW_MS);
+                enqueueRate = ewma(enqueueRate, (in - tickEnqueued) / seconds, decay);
+                dequeueRate = ewma(dequeueRate, (out - tickDequeued) / seconds, decay);
+                tickEnqueued = in;
+                tickDequeued = out;
+                rateTickAt += ticks * RATE_TICK_MS;
+            }
+            long depth = Math.max(0, in - out);
+            return new Snapshot(depth, depth == 0 ? 0 : oldestAge(out, now), in, out, enqueueRate, dequeueRate);
+        }
+
+        /** Age of message number {@code head}, the oldest not yet dequeued. */
+        private long oldestAge(long head, long now) {
+            // drop samples whose successor still covers the head
+            while (samples.size() > 1) {
+                long[] first = samples.pollFirst();
+                if (samples.peekFirst()[0] > head) {
+                    samples.addFirst(first);
+                    break;
+                }
+            }
+            long[] oldest = samples.peekFirst();
+            return oldest == null ? -1 : Math.max(0, now - oldest[1]);
+        }
+
+        private long depth() {
+            return Math.max(0, enqueued.get() - dequeued.get());
+        }
+
+        private static double ewma(double current, double sample, double decay) {
+            return sample + (current - sample) * decay;
+        }
+    }
+}
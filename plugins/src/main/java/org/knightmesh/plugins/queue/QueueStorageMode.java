@@ -0,0 +1,14 @@
+package org.knightmesh.plugins.queue;
+
+/**
+ * How {@link PersistentQueuePlugin} stores messages ({@code queue.persistent.storage}).
+ */
+public enum QueueStorageMode {
+    /** One row per message in {@code persistent_queue_message}, deleted on dequeue. */
+    DELETE,
+    /**
+     * PostgreSQL only: rows in the daily-partitioned {@code persistent_queue_log}, claimed in batches
+     * and marked DONE; retention drops whole partitions after {@code queue.persistent.retention-days}.
+     */
+    PARTITIONED
+}
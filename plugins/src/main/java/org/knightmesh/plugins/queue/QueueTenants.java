@@ -0,0 +1,47 @@
+package org.knightmesh.plugins.queue;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Naming for per-tenant sub-queues. Tenant {@code t} of a (partition / priority lane) queue {@code q} is
+ * an ordinary queue named {@code q#t:<t>}, with the tenant URL-encoded so the suffix never contains
+ * {@code #}. Very long tenant ids are replaced by a name-based UUID to keep queue names short. Messages
+ * without a tenant stay on {@code q} itself.
+ */
+public final class QueueTenants {
+    public static final String SEPARATOR = "#t:";
+    static final int MAX_ENCODED_LENGTH = 64;
+
+    private QueueTenants() {}
+
+    /** Sub-queue of the tenant within {@code queueName}; null tenant = {@code queueName} itself. */
+    public static String flowName(String queueName, String tenant) {
+        if (tenant == null || tenant.isEmpty()) return queueName;
+        return queueName + SEPARATOR + encode(tenant);
+    }
+
+    /** Prefix shared by all tenant sub-queues of {@code queueName}, for {@link QueuePlugin#queueNames}. */
+    public static String prefix(String queueName) {
+        return queueName + SEPARATOR;
+    }
+
+    /** Encoded tenant of a sub-queue name, or null for a shared queue. */
+    public static String encodedTenantOf(String name) {
+        int i = name.lastIndexOf(SEPARATOR);
+        return i <= 0 ? null : name.substring(i + SEPARATOR.length());
+    }
+
+    /** Strip a tenant suffix, returning the shared queue the sub-queue belongs to. */
+    public static String stripTenant(String name) {
+        int i = name.lastIndexOf(SEPARATOR);
+        return i <= 0 ? name : name.substring(0, i);
+    }
+
+    static String encode(String tenant) {
+        String encoded = URLEncoder.encode(tenant, StandardCharsets.UTF_8);
+        if (encoded.length() <= MAX_ENCODED_LENGTH) return encoded;
+        return "~" + UUID.nameUUIDFromBytes(tenant.getBytes(StandardCharsets.UTF_8));
+    }
+}
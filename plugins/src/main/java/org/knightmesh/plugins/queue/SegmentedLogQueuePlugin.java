@@ -0,0 +1,336 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.knightmesh.core.json.Json;
+import org.knightmesh.core.model.ServiceRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable local queue plugin: each queue is an append-only log of memory-mapped segment files with a
+ * checkpointed consumer position, so messages survive a process restart without a database round trip.
+ * Durability is governed by {@link FsyncPolicy}; with INTERVAL a background task forces dirty pages
+ * every {@code queue.log.fsync-interval.ms}. Segments are deleted once fully consumed.
+ * <p>
+ * Delayed messages ({@link EnqueueOptions#notBefore}) wait in an in-memory timing wheel and are appended
+ * to their log only when due. They are also written to a {@link DelayedMessageLog} in {@value #DELAYED_DIR},
+ * which is replayed on first use after a restart, so a delayed message survives the process stopping before
+ * it is due. A crash between appending a due message and recording its delivery delivers it again.
+ */
+@Component
+public class SegmentedLogQueuePlugin implements QueuePlugin {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedLogQueuePlugin.class);
+    static final String DELAYED_DIR = ".delayed";
+
+    private final ObjectReader requestReader;
+    private final ObjectWriter requestWriter;
+    private final Path baseDir;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final Map<String, SegmentedQueueLog> logs = new ConcurrentHashMap<>();
+    private final QueueListeners listeners = new QueueListeners();
+    private final DelayedDeliveries<Delayed> delayed = new DelayedDeliveries<>("queue-log-timer",
+            InMemoryQueuePlugin.TIMER_TICK_MS, InMemoryQueuePlugin.TIMER_WHEEL_SIZE, this::deliver);
+    private volatile ScheduledExecutorService flusher;
+    private volatile DelayedMessageLog delayedLog;
+    private volatile boolean delayedRecovered;
+
+    public SegmentedLogQueuePlugin(ObjectMapper objectMapper,
+                                   @Value("${queue.log.dir:${java.io.tmpdir}/knightmesh-queues}") String baseDir,
+                                   @Value("${queue.log.segment-bytes:67108864}") int segmentBytes,
+                                   @Value("${queue.log.fsync:INTERVAL}") FsyncPolicy fsyncPolicy,
+                                   @Value("${queue.log.fsync-interval.ms:200}") long fsyncIntervalMs) {
+        if (segmentBytes <= LogSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("segmentBytes must be greater than " + LogSegment.HEADER_BYTES);
+        }
+        ObjectMapper json = Json.derive(objectMapper);
+        this.requestReader = json.readerFor(ServiceRequest.class);
+        this.requestWriter = json.writerFor(ServiceRequest.class);
+        this.baseDir = Path.of(baseDir);
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = Objects.requireNonNull(fsyncPolicy, "fsyncPolicy");
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request) {
+        Objects.requireNonNull(queueName, "queueName");
+        Objects.requireNonNull(request, "request");
+        try {
+            logFor(queueName).append(serialize(request));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to queue " + queueName, e);
+        }
+        log.debug("[SegmentedLogQueue] enqueue queue={} corrId={}", queueName, request.getCorrelationId());
+        listeners.fire(queueName);
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request, EnqueueOptions options) {
+        Objects.requireNonNull(request, "request");
+        String target = QueuePartitions.target(queueName, options);
+        if (options != null && options.isDelayed(Instant.now())) {
+            long id;
+            try {
+                id = openDelayedLog(true).schedule(target, options.getNotBefore(), serialize(request));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to record delayed message for queue " + target, e);
+            }
+            delayed.schedule(new Delayed(id, target, request), options.getNotBefore());
+            log.debug("[SegmentedLogQueue] scheduled queue={} corrId={} notBefore={}", target, request.getCorrelationId(), options.getNotBefore());
+            return;
+        }
+        enqueue(target, request);
+    }
+
+    @Override
+    public ServiceRequest dequeue(String queueName) {
+        recoverDelayed();
+        SegmentedQueueLog queueLog = existingLog(queueName);
+        if (queueLog == null) return null;
+        byte[] record;
+        try {
+            record = queueLog.poll();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read from queue " + queueName, e);
+        }
+        if (record == null) return null;
+        ServiceRequest req = deserialize(record);
+        log.debug("[SegmentedLogQueue] dequeue queue={} corrId={}", queueName, req.getCorrelationId());
+        return req;
+    }
+
+    @Override
+    public int size(String queueName) {
+        recoverDelayed();
+        SegmentedQueueLog queueLog = existingLog(queueName);
+        return queueLog == null ? 0 : (int) Math.min(Integer.MAX_VALUE, queueLog.size());
+    }
+
+    /** Queues opened by this process plus those found on disk from earlier runs. */
+    @Override
+    public Set<String> queueNames(String prefix) {
+        recoverDelayed();
+        Set<String> names = new HashSet<>();
+        for (String name : logs.keySet()) {
+            if (name.startsWith(prefix)) names.add(name);
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(baseDir, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                if (dir.getFileName().toString().equals(DELAYED_DIR)) continue;
+                String name = queueNameOf(dir);
+                if (name.startsWith(prefix)) names.add(name);
+            }
+        } catch (NoSuchFileException e) {
+            // nothing enqueued yet
+        } catch (IOException e) {
+            log.warn("[SegmentedLogQueue] failed to list queues in {}: {}", baseDir, e.toString());
+        }
+        return names;
+    }
+
+    @Override
+    public void addListener(QueueListener listener) {
+        listeners.add(listener);
+    }
+
+    /** Number of messages waiting for their delivery time, across all queues. */
+    int delayedSize() {
+        return delayed.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        delayed.close();
+        int pending = delayed.size();
+        if (pending > 0) {
+            log.info("[SegmentedLogQueue] {} delayed messages were not yet due; they are scheduled again on the next start", pending);
+        }
+        ScheduledExecutorService f = flusher;
+        if (f != null) {
+            f.shutdownNow();
+        }
+        DelayedMessageLog d = delayedLog;
+        if (d != null) {
+            try {
+                d.close();
+            } catch (IOException e) {
+                log.warn("[SegmentedLogQueue] failed to close the delayed message log: {}", e.toString());
+            }
+        }
+        logs.forEach((name, queueLog) -> {
+            try {
+                queueLog.close();
+            } catch (IOException e) {
+                log.warn("[SegmentedLogQueue] failed to close queue {}: {}", name, e.toString());
+            }
+        });
+        logs.clear();
+    }
+
+    /** Directory holding the segments of a queue; names are encoded so any queue name is a safe path. */
+    Path queueDir(String queueName) {
+        String encoded = URLEncoder.encode(queueName, StandardCharsets.UTF_8);
+        if (encoded.startsWith(".")) {
+            encoded = "_" + encoded;
+        }
+        return baseDir.resolve(encoded);
+    }
+
+    /** Inverse of {@link #queueDir}. */
+    static String queueNameOf(Path dir) {
+        String encoded = dir.getFileName().toString();
+        if (encoded.startsWith("_.")) {
+            encoded = encoded.substring(1);
+        }
+        return URLDecoder.decode(encoded, StandardCharsets.UTF_8);
+    }
+
+    /** Append a due delayed message to its queue, then record that it no longer needs delivering. */
+    private void deliver(Delayed d) {
+        enqueue(d.queueName(), d.request());
+        try {
+            openDelayedLog(true).delivered(d.id());
+        } catch (IOException e) {
+            log.warn("[SegmentedLogQueue] could not record delivery of delayed corrId={}; it is delivered again after a restart: {}",
+                    d.request().getCorrelationId(), e.toString());
+        }
+    }
+
+    private void recoverDelayed() {
+        if (!delayedRecovered) {
+            openDelayedLog(false);
+        }
+    }
+
+    /**
+     * The delayed message log, opened on first use: messages an earlier run scheduled and did not deliver
+     * go back on the timing wheel, or straight to their queue if due. Without {@code create} a log that
+     * does not exist yet stays unopened.
+     */
+    private DelayedMessageLog openDelayedLog(boolean create) {
+        DelayedMessageLog d = delayedLog;
+        return d != null ? d : openDelayedLogOnce(create);
+    }
+
+    private synchronized DelayedMessageLog openDelayedLogOnce(boolean create) {
+        Path dir = baseDir.resolve(DELAYED_DIR);
+        if (delayedLog == null && (create || Files.isDirectory(dir))) {
+            List<DelayedMessageLog.Entry> recovered;
+            try {
+                DelayedMessageLog opened = new DelayedMessageLog(dir, segmentBytes, fsyncPolicy);
+                recovered = opened.recover();
+                delayedLog = opened;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open delayed message log in " + dir, e);
+            }
+            startFlusher();
+            if (!recovered.isEmpty()) {
+                log.info("[SegmentedLogQueue] scheduling {} delayed messages recovered from {}", recovered.size(), dir);
+            }
+            for (DelayedMessageLog.Entry e : recovered) {
+                delayed.schedule(new Delayed(e.id(), e.queueName(), deserialize(e.request())), e.deliverAt());
+            }
+        }
+        delayedRecovered = true;
+        return delayedLog;
+    }
+
+    private SegmentedQueueLog logFor(String queueName) {
+        return logs.computeIfAbsent(queueName, this::open);
+    }
+
+    /** Like {@link #logFor} but never creates a queue directory just to look at it. */
+    private SegmentedQueueLog existingLog(String queueName) {
+        SegmentedQueueLog queueLog = logs.get(queueName);
+        if (queueLog == null && Files.isDirectory(queueDir(queueName))) {
+            queueLog = logFor(queueName);
+        }
+        return queueLog;
+    }
+
+    private SegmentedQueueLog open(String queueName) {
+        try {
+            SegmentedQueueLog queueLog = new SegmentedQueueLog(queueDir(queueName), segmentBytes, fsyncPolicy);
+            startFlusher();
+            return queueLog;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open queue log for " + queueName, e);
+        }
+    }
+
+    private synchronized void startFlusher() {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL || flusher != null) return;
+        ScheduledExecutorService f = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "queue-log-fsync");
+            t.setDaemon(true);
+            return t;
+        });
+        f.scheduleWithFixedDelay(this::flushAll, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        flusher = f;
+    }
+
+    private void flushAll() {
+        for (SegmentedQueueLog queueLog : logs.values()) {
+            try {
+                queueLog.flush();
+            } catch (RuntimeException e) {
+                log.warn("[SegmentedLogQueue] fsync failed: {}", e.toString());
+            }
+        }
+        DelayedMessageLog d = delayedLog;
+        if (d != null) {
+            try {
+                d.flush();
+            } catch (RuntimeException e) {
+                log.warn("[SegmentedLogQueue] fsync of delayed messages failed: {}", e.toString());
+            }
+        }
+    }
+
+    private byte[] serialize(ServiceRequest req) {
+        try {
+            return requestWriter.writeValueAsBytes(req);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize ServiceRequest", e);
+        }
+    }
+
+    private ServiceRequest deserialize(byte[] json) {
+        try {
+            return requestReader.readValue(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to deserialize ServiceRequest", e);
+        }
+    }
+
+    private record Delayed(long id, String queueName, ServiceRequest request) {
+    }
+}
@@ -0,0 +1,208 @@
+package org.knightmesh.plugins.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of one queue: a directory of {@link LogSegment}s named by base offset plus a
+ * {@link ConsumerCheckpoint}. Segments roll when full and are deleted once the consumer has moved
+ * past them. On open the log recovers from whatever is on disk: segments before the checkpoint are
+ * dropped, every remaining segment is validated record by record, and a torn tail is truncated.
+ */
+final class SegmentedQueueLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedQueueLog.class);
+    static final String CHECKPOINT_FILE = "consumer.checkpoint";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final NavigableMap<Long, LogSegment> segments = new TreeMap<>();
+    private final ConsumerCheckpoint checkpoint;
+
+    private LogSegment active;
+    private LogSegment reading;
+    private int readPosition;
+    private long writeOffset;
+    private long readOffset;
+
+    SegmentedQueueLog(Path dir, int segmentBytes, FsyncPolicy fsyncPolicy) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(dir);
+        this.checkpoint = new ConsumerCheckpoint(dir.resolve(CHECKPOINT_FILE));
+        recover();
+    }
+
+    synchronized void append(byte[] payload) throws IOException {
+        if (!active.fits(payload.length)) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes exceeds segment size " + segmentBytes);
+        }
+        if (!active.append(payload)) {
+            roll();
+            active.append(payload);
+        }
+        writeOffset++;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            active.flush();
+        }
+    }
+
+    /** Remove and return the oldest record, or null if the log is fully consumed. */
+    synchronized byte[] poll() throws IOException {
+        while (true) {
+            byte[] record = reading.read(readPosition);
+            if (record != null) {
+                readPosition += LogSegment.HEADER_BYTES + record.length;
+                readOffset++;
+                checkpoint.save(reading.baseOffset(), readPosition);
+                if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                    checkpoint.flush();
+                }
+                return record;
+            }
+            Map.Entry<Long, LogSegment> next = segments.higherEntry(reading.baseOffset());
+            if (next == null) {
+                return null;
+            }
+            if (readPosition < reading.writePosition()) {
+                log.warn("[SegmentedLog] skipping unreadable tail of {} at position {}", dir.resolve(LogSegment.fileName(reading.baseOffset())), readPosition);
+            }
+            // consumer moved past this segment: checkpoint into the next one, then delete it
+            LogSegment consumed = reading;
+            reading = next.getValue();
+            readPosition = 0;
+            readOffset = reading.baseOffset();
+            checkpoint.save(reading.baseOffset(), 0);
+            checkpoint.flush();
+            segments.remove(consumed.baseOffset());
+            consumed.delete();
+        }
+    }
+
+    /** The oldest record without removing it, or null if the log is fully consumed. */
+    synchronized byte[] peek() {
+        byte[] record = reading.read(readPosition);
+        if (record != null) {
+            return record;
+        }
+        for (LogSegment s : segments.tailMap(reading.baseOffset(), false).values()) {
+            record = s.read(0);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /** Every record not yet consumed, oldest first, leaving the consumer position where it is. */
+    synchronized List<byte[]> pending() {
+        List<byte[]> records = new ArrayList<>();
+        int position = readPosition;
+        for (LogSegment s : segments.tailMap(reading.baseOffset(), true).values()) {
+            byte[] record;
+            while ((record = s.read(position)) != null) {
+                records.add(record);
+                position += LogSegment.HEADER_BYTES + record.length;
+            }
+            position = 0;
+        }
+        return records;
+    }
+
+    synchronized long size() {
+        return Math.max(0, writeOffset - readOffset);
+    }
+
+    /** Force outstanding segment data and the checkpoint to the device. */
+    synchronized void flush() {
+        active.flush();
+        checkpoint.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            flush();
+        }
+        for (LogSegment s : segments.values()) {
+            s.close();
+        }
+        segments.clear();
+        checkpoint.close();
+    }
+
+    private void roll() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            active.flush();
+        }
+        active = LogSegment.open(dir.resolve(LogSegment.fileName(writeOffset)), writeOffset, segmentBytes);
+        segments.put(writeOffset, active);
+        log.debug("[SegmentedLog] rolled {} to segment {}", dir, writeOffset);
+    }
+
+    private void recover() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".log"))
+                    .forEach(n -> {
+                        try {
+                            bases.add(Long.parseLong(n.substring(0, n.length() - 4)));
+                        } catch (NumberFormatException ignored) {
+                            // not a segment file
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        bases.sort(Long::compare);
+
+        long startBase = checkpoint.exists() ? checkpoint.segmentBase() : (bases.isEmpty() ? 0 : bases.get(0));
+        for (long base : bases) {
+            Path file = dir.resolve(LogSegment.fileName(base));
+            Long nextBase = bases.stream().filter(b -> b > base).findFirst().orElse(null);
+            if (nextBase != null && nextBase <= startBase) {
+                // wholly before the consumer position: a deletion that did not complete before a crash
+                Files.deleteIfExists(file);
+                continue;
+            }
+            LogSegment segment = LogSegment.open(file, base, segmentBytes);
+            segment.recover(nextBase == null);
+            segments.put(base, segment);
+        }
+
+        if (segments.isEmpty()) {
+            long base = Math.max(startBase, 0);
+            active = LogSegment.open(dir.resolve(LogSegment.fileName(base)), base, segmentBytes);
+            active.recover(true);
+            segments.put(base, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+
+        LogSegment first = segments.firstEntry().getValue();
+        if (checkpoint.exists() && first.baseOffset() == checkpoint.segmentBase()) {
+            reading = first;
+            readPosition = Math.min(checkpoint.position(), first.writePosition());
+        } else {
+            reading = first;
+            readPosition = 0;
+        }
+        readOffset = reading.baseOffset() + reading.recordsBefore(readPosition);
+        writeOffset = active.baseOffset() + active.recordCount();
+        log.info("[SegmentedLog] recovered {}: segments={} pending={}", dir, segments.size(), size());
+    }
+}
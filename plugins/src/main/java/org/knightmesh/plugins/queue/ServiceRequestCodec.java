@@ -0,0 +1,324 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.core.model.SmallMap;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of a {@link ServiceRequest} for queue storage.
+ * <pre>
+ * [byte version][byte flags] ([varint rawLength] if LZ4) body
+ * body = string serviceName, nullable string correlationId, string map metadata, value payload
+ * </pre>
+ * Values are tagged (null, booleans, zig-zag varint ints/longs, doubles, strings, lists, maps, big numbers),
+ * so payload types survive the round trip the same way they would through JSON. Bodies at or above the
+ * compression threshold are LZ4-compressed when that actually saves space. Thread-safe.
+ */
+public final class ServiceRequestCodec {
+    public static final byte VERSION = 1;
+    static final int FLAG_LZ4 = 1;
+
+    private static final byte T_NULL = 0, T_FALSE = 1, T_TRUE = 2, T_INT = 3, T_LONG = 4, T_DOUBLE = 5,
+            T_STRING = 6, T_LIST = 7, T_MAP = 8, T_BIG_INTEGER = 9, T_BIG_DECIMAL = 10;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final ObjectMapper objectMapper;
+    private final int compressThresholdBytes;
+    private final LZ4Compressor compressor = LZ4.fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+
+    /**
+     * @param objectMapper converts payload values the codec has no tag for (e.g. records) to maps and lists
+     * @param compressThresholdBytes minimum body size to attempt compression; negative disables it
+     */
+    public ServiceRequestCodec(ObjectMapper objectMapper, int compressThresholdBytes) {
+        this.objectMapper = objectMapper;
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    public byte[] encode(ServiceRequest req) {
+        Output body = new Output(256);
+        body.writeString(req.getServiceName());
+        writeNullableString(body, req.getCorrelationId());
+        Map<String, String> metadata = req.getMetadata();
+        body.writeVarInt(metadata.size());
+        for (Map.Entry<String, String> e : metadata.entrySet()) {
+            body.writeString(e.getKey());
+            writeNullableString(body, e.getValue());
+        }
+        writeValue(body, req.getPayload());
+
+        int rawLength = body.size();
+        if (compressThresholdBytes >= 0 && rawLength >= compressThresholdBytes) {
+            byte[] compressed = compressor.compress(body.buffer(), 0, rawLength);
+            if (compressed.length + 5 < rawLength) {
+                Output out = new Output(compressed.length + 7);
+                out.writeByte(VERSION);
+                out.writeByte(FLAG_LZ4);
+                out.writeVarInt(rawLength);
+                out.writeBytes(compressed, 0, compressed.length);
+                return out.toByteArray();
+            }
+        }
+        Output out = new Output(rawLength + 2);
+        out.writeByte(VERSION);
+        out.writeByte(0);
+        out.writeBytes(body.buffer(), 0, rawLength);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    public ServiceRequest decode(byte[] data) {
+        if (data == null || data.length < 2) {
+            throw new IllegalArgumentException("Truncated ServiceRequest encoding");
+        }
+        if (data[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported ServiceRequest encoding version " + data[0]);
+        }
+        Input in;
+        if ((data[1] & FLAG_LZ4) != 0) {
+            Input header = new Input(data, 2);
+            int rawLength = header.readVarInt();
+            in = new Input(decompressor.decompress(data, header.position(), rawLength), 0);
+        } else {
+            in = new Input(data, 2);
+        }
+        String serviceName = in.readString();
+        String correlationId = readNullableString(in);
+        int metadataSize = in.readVarInt();
+        SmallMap.Builder<String, String> metadata = SmallMap.builder(metadataSize);
+        for (int i = 0; i < metadataSize; i++) {
+            metadata.put(in.readString(), readNullableString(in));
+        }
+        Object payload = readValue(in);
+        if (payload != null && !(payload instanceof Map)) {
+            throw new IllegalArgumentException("ServiceRequest payload is not a map");
+        }
+        return new ServiceRequest(serviceName, (Map<String, Object>) payload, metadata.build(), correlationId);
+    }
+
+    private void writeValue(Output out, Object v) {
+        if (v == null) {
+            out.writeByte(T_NULL);
+        } else if (v instanceof String s) {
+            out.writeByte(T_STRING);
+            out.writeString(s);
+        } else if (v instanceof Boolean b) {
+            out.writeByte(b ? T_TRUE : T_FALSE);
+        } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            out.writeByte(T_INT);
+            out.writeVarLong(zigZag(((Number) v).intValue()));
+        } else if (v instanceof Long l) {
+            out.writeByte(T_LONG);
+            out.writeVarLong(zigZag(l));
+        } else if (v instanceof Double || v instanceof Float) {
+            out.writeByte(T_DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits(((Number) v).doubleValue()));
+        } else if (v instanceof Map<?, ?> m) {
+            out.writeByte(T_MAP);
+            out.writeVarInt(m.size());
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                out.writeString(String.valueOf(e.getKey()));
+                writeValue(out, e.getValue());
+            }
+        } else if (v instanceof List<?> list) {
+            out.writeByte(T_LIST);
+            out.writeVarInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (v instanceof BigInteger bi) {
+            out.writeByte(T_BIG_INTEGER);
+            out.writeString(bi.toString());
+        } else if (v instanceof BigDecimal bd) {
+            out.writeByte(T_BIG_DECIMAL);
+            out.writeString(bd.toString());
+        } else {
+            // arrays, sets, records, dates...: store what JSON serialization would have produced
+            writeValue(out, objectMapper.convertValue(v, Object.class));
+        }
+    }
+
+    private Object readValue(Input in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case T_NULL: return null;
+            case T_FALSE: return Boolean.FALSE;
+            case T_TRUE: return Boolean.TRUE;
+            case T_INT: return (int) unZigZag(in.readVarLong());
+            case T_LONG: return unZigZag(in.readVarLong());
+            case T_DOUBLE: return Double.longBitsToDouble(in.readLong());
+            case T_STRING: return in.readString();
+            case T_LIST: {
+                int n = in.readVarInt();
+                List<Object> list = new ArrayList<>(Math.min(n, 1024));
+                for (int i = 0; i < n; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case T_MAP: {
+                int n = in.readVarInt();
+                Map<String, Object> map = new LinkedHashMap<>(capacityFor(n));
+                for (int i = 0; i < n; i++) {
+                    String key = in.readString();
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            case T_BIG_INTEGER: return new BigInteger(in.readString());
+            case T_BIG_DECIMAL: return new BigDecimal(in.readString());
+            default: throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeNullableString(Output out, String s) {
+        if (s == null) {
+            out.writeByte(T_NULL);
+        } else {
+            out.writeByte(T_STRING);
+            out.writeString(s);
+        }
+    }
+
+    private static String readNullableString(Input in) {
+        byte tag = in.readByte();
+        if (tag == T_NULL) return null;
+        if (tag != T_STRING) throw new IllegalArgumentException("Expected string, got tag " + tag);
+        return in.readString();
+    }
+
+    private static int capacityFor(int size) {
+        return Math.min(size, 1024) * 4 / 3 + 1;
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Growable byte buffer; avoids the synchronization and exceptions of the java.io streams. */
+    private static final class Output {
+        private byte[] buf;
+        private int pos;
+
+        Output(int initialCapacity) {
+            this.buf = new byte[Math.max(16, initialCapacity)];
+        }
+
+        byte[] buffer() { return buf; }
+        int size() { return pos; }
+
+        byte[] toByteArray() {
+            return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeBytes(byte[] src, int off, int len) {
+            ensure(len);
+            System.arraycopy(src, off, buf, pos, len);
+            pos += len;
+        }
+
+        void writeLong(long v) {
+            ensure(8);
+            for (int i = 56; i >= 0; i -= 8) {
+                buf[pos++] = (byte) (v >>> i);
+            }
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        int position() { return pos; }
+
+        byte readByte() {
+            if (pos >= buf.length) throw new IllegalArgumentException("Truncated ServiceRequest encoding");
+            return buf[pos++];
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        int readVarInt() {
+            long v = readVarLong();
+            if (v < 0 || v > Integer.MAX_VALUE) throw new IllegalArgumentException("Length out of range: " + v);
+            return (int) v;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        String readString() {
+            int len = readVarInt();
+            if (len > buf.length - pos) throw new IllegalArgumentException("Truncated ServiceRequest encoding");
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
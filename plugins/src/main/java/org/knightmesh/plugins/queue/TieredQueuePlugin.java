@@ -0,0 +1,366 @@
+package org.knightmesh.plugins.queue;
+
+import jakarta.annotation.PreDestroy;
+import org.knightmesh.core.model.ServiceRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue plugin with a bounded in-memory tier in front of a durable one ({@link PersistentQueuePlugin}).
+ * Producers append to memory and consumers are served from memory, so the common case does no I/O.
+ * Each message has a {@link QueueDurability} (its options, else {@code queue.tiered.durability}):
+ * <ul>
+ *   <li>ASYNC: a background thread writes messages that have waited longer than {@code queue.tiered.flush.ms}
+ *   to the durable tier in batches, oldest first, and drops them from memory. Messages consumed within that
+ *   interval never touch storage; a crash loses at most the messages of the last interval.</li>
+ *   <li>SYNC: the message is written to the durable tier before the enqueue returns.</li>
+ *   <li>NONE: memory only.</li>
+ * </ul>
+ * Durability is tracked per message, so producers of one queue may differ (e.g. QPM re-enqueuing without the
+ * IRP module's options). To keep the queue FIFO, NONE messages ahead of an ASYNC one are written with it.
+ * Whatever the durability, a full memory tier spills its oldest messages to the durable tier instead of
+ * rejecting producers. Consumers take from the durable tier first while it holds messages, since those are
+ * older than anything in memory, so each queue stays FIFO. The durable tier is also checked every
+ * {@code queue.tiered.durable-poll.ms} for messages left by a previous run, written by other processes, or
+ * scheduled for later delivery (delayed messages always go straight to the durable tier). ASYNC messages,
+ * and NONE messages ahead of them, are flushed on shutdown. The flusher thread starts with the first ASYNC
+ * message, so a plugin no queue is routed to costs nothing.
+ */
+@Component
+public class TieredQueuePlugin implements QueuePlugin {
+    private static final Logger log = LoggerFactory.getLogger(TieredQueuePlugin.class);
+
+    private static final int SPILL_ATTEMPTS = 3;
+
+    private final QueuePlugin durable;
+    private final int capacity;
+    private final QueueDurability defaultDurability;
+    private final long flushMs;
+    private final long durablePollMs;
+    private final int batchSize;
+    private final Map<String, Tier> tiers = new ConcurrentHashMap<>();
+    private final QueueListeners listeners = new QueueListeners();
+    private final QueueStats stats = new QueueStats();
+    private final AtomicBoolean listeningToDurable = new AtomicBoolean();
+    private volatile ScheduledExecutorService flusher;
+
+    @Autowired
+    public TieredQueuePlugin(PersistentQueuePlugin durable,
+                             @Value("${queue.tiered.capacity:65536}") int capacity,
+                             @Value("${queue.tiered.durability:ASYNC}") QueueDurability durability,
+                             @Value("${queue.tiered.flush.ms:50}") long flushMs,
+                             @Value("${queue.tiered.durable-poll.ms:1000}") long durablePollMs,
+                             @Value("${queue.tiered.batch-size:500}") int batchSize) {
+        this((QueuePlugin) durable, capacity, durability, flushMs, durablePollMs, batchSize);
+    }
+
+    TieredQueuePlugin(QueuePlugin durable, int capacity, QueueDurability durability,
+                      long flushMs, long durablePollMs, int batchSize) {
+        if (capacity < 1 || flushMs <= 0 || durablePollMs <= 0 || batchSize < 1) {
+            throw new IllegalArgumentException("Require positive queue.tiered capacity, flush.ms, durable-poll.ms and batch-size");
+        }
+        this.durable = Objects.requireNonNull(durable, "durable");
+        this.capacity = capacity;
+        this.defaultDurability = Objects.requireNonNull(durability, "durability");
+        this.flushMs = flushMs;
+        this.durablePollMs = durablePollMs;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request) {
+        enqueue(queueName, request, null);
+    }
+
+    @Override
+    public void enqueue(String queueName, ServiceRequest request, EnqueueOptions options) {
+        Objects.requireNonNull(request, "request");
+        String target = QueuePartitions.target(queueName, options);
+        Tier tier = tier(target);
+        QueueDurability durability = options == null || options.getDurability() == null ? defaultDurability : options.getDurability();
+        if (options != null && options.isDelayed(Instant.now())) {
+            durable.enqueue(target, request, EnqueueOptions.notBefore(options.getNotBefore()));
+            log.debug("[TieredQueue] scheduled queue={} corrId={} notBefore={}", target, request.getCorrelationId(), options.getNotBefore());
+            return;
+        }
+        if (durability == QueueDurability.SYNC) {
+            writeThrough(tier, request);
+        } else {
+            long seq = tier.sequence.incrementAndGet();
+            offer(tier, new Entry(request, System.currentTimeMillis(), seq));
+            if (durability == QueueDurability.ASYNC) {
+                tier.lastAsyncSeq.accumulateAndGet(seq, Math::max);
+                if (flusher == null) startFlusher();
+            }
+        }
+        stats.enqueued(target);
+        log.debug("[TieredQueue] enqueue queue={} corrId={} durability={}", target, request.getCorrelationId(), durability);
+        listeners.fire(target);
+    }
+
+    @Override
+    public ServiceRequest dequeue(String queueName) {
+        List<ServiceRequest> one = dequeueBatch(queueName, 1);
+        return one.isEmpty() ? null : one.get(0);
+    }
+
+    @Override
+    public List<ServiceRequest> dequeueBatch(String queueName, int max) {
+        Tier tier = tier(queueName);
+        List<ServiceRequest> out = new ArrayList<>(Math.min(max, 64));
+        tier.takeLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (tier.durableNonEmpty || now >= tier.durableCheckAt) {
+                takeFromDurable(tier, max, now, out);
+            }
+            while (out.size() < max && !tier.head.isEmpty()) {
+                out.add(tier.head.pollFirst().request());
+            }
+            tier.headSize = tier.head.size();
+            Entry e;
+            while (out.size() < max && (e = tier.memory.poll()) != null) {
+                out.add(e.request());
+            }
+        } finally {
+            tier.takeLock.unlock();
+        }
+        stats.dequeued(queueName, out.size());
+        if (!out.isEmpty()) {
+            log.debug("[TieredQueue] dequeued {} message(s) queue={}", out.size(), queueName);
+        }
+        return out;
+    }
+
+    /** Messages in memory plus due messages in the durable tier. */
+    @Override
+    public int size(String queueName) {
+        Tier tier = tiers.get(queueName);
+        int inMemory = tier == null ? 0 : tier.memory.size() + tier.headSize;
+        return inMemory + durable.size(queueName);
+    }
+
+    /** Local counts, with depth and oldest age of the durable tier added from its own stats. */
+    @Override
+    public QueueStats.Snapshot stats(String queueName) {
+        QueueStats.Snapshot local = stats.snapshot(queueName);
+        QueueStats.Snapshot stored = durable.stats(queueName);
+        Tier tier = tiers.get(queueName);
+        long inMemory = tier == null ? 0 : tier.memory.size() + tier.headSize;
+        long oldest = stored.depth() > 0 ? Math.max(local.oldestAgeMs(), stored.oldestAgeMs()) : local.oldestAgeMs();
+        return new QueueStats.Snapshot(inMemory + stored.depth(), oldest, local.enqueued(), local.dequeued(),
+                local.enqueueRate(), local.dequeueRate());
+    }
+
+    @Override
+    public Set<String> queueNames(String prefix) {
+        Set<String> names = new HashSet<>(durable.queueNames(prefix));
+        for (String name : tiers.keySet()) {
+            if (name.startsWith(prefix)) names.add(name);
+        }
+        return names;
+    }
+
+    /** Also relays enqueues the durable tier reports, e.g. from producers in other processes. */
+    @Override
+    public void addListener(QueueListener listener) {
+        listeners.add(listener);
+        if (listeningToDurable.compareAndSet(false, true)) {
+            durable.addListener(queueName -> {
+                Tier tier = tiers.get(queueName);
+                if (tier != null) {
+                    tier.durableNonEmpty = true;
+                }
+                listeners.fire(queueName);
+            });
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ScheduledExecutorService f = flusher;
+        if (f != null) {
+            f.shutdownNow();
+        }
+        int written = 0;
+        for (Tier tier : tiers.values()) {
+            long last = tier.lastAsyncSeq.get();
+            if (last == 0 && tier.headSize == 0) continue;
+            tier.takeLock.lock();
+            try {
+                while (tier.memory.peek() != null || !tier.head.isEmpty()) {
+                    int n = flush(tier, Long.MAX_VALUE, last, batchSize);
+                    if (n == 0) break;
+                    written += n;
+                }
+            } finally {
+                tier.takeLock.unlock();
+            }
+        }
+        if (written > 0) {
+            log.info("[TieredQueue] flushed {} message(s) to durable storage on shutdown", written);
+        }
+    }
+
+    /**
+     * Write ASYNC messages older than the flush interval, with any NONE messages ahead of them, to the durable
+     * tier; runs on the flusher thread.
+     */
+    void flushDue() {
+        long due = System.currentTimeMillis() - flushMs;
+        for (Tier tier : tiers.values()) {
+            long last = tier.lastAsyncSeq.get();
+            try {
+                int n;
+                do {
+                    Entry oldest = tier.memory.peek();
+                    if (tier.headSize == 0 && (oldest == null || oldest.enqueuedAt() > due || oldest.seq() > last)) break;
+                    // a consumer holding the lock is draining the queue anyway
+                    if (!tier.takeLock.tryLock()) break;
+                    try {
+                        n = flush(tier, due, last, batchSize);
+                    } finally {
+                        tier.takeLock.unlock();
+                    }
+                } while (n == batchSize);
+            } catch (RuntimeException ex) {
+                log.warn("[TieredQueue] flush of queue {} failed: {}", tier.name, ex.toString());
+            }
+        }
+    }
+
+    private synchronized void startFlusher() {
+        if (flusher != null) return;
+        ScheduledExecutorService f = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tiered-queue-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        f.scheduleWithFixedDelay(this::flushDue, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        flusher = f;
+    }
+
+    private Tier tier(String queueName) {
+        Objects.requireNonNull(queueName, "queueName");
+        Tier t = tiers.get(queueName);
+        return t != null ? t : tiers.computeIfAbsent(queueName, q -> new Tier(q, capacity));
+    }
+
+    private void offer(Tier tier, Entry entry) {
+        for (int attempt = 0; attempt < SPILL_ATTEMPTS; attempt++) {
+            if (tier.memory.offer(entry)) return;
+            // full: move the oldest batch to durable storage to make room without reordering
+            tier.takeLock.lock();
+            try {
+                if (flush(tier, Long.MAX_VALUE, Long.MAX_VALUE, batchSize) > 0) {
+                    log.debug("[TieredQueue] queue {} full, spilled oldest messages to durable storage", tier.name);
+                }
+            } finally {
+                tier.takeLock.unlock();
+            }
+        }
+        if (!tier.memory.offer(entry)) {
+            throw new QueueFullException(tier.name, "Queue full and durable tier not accepting: " + tier.name);
+        }
+    }
+
+    private void writeThrough(Tier tier, ServiceRequest request) {
+        tier.takeLock.lock();
+        try {
+            // older messages still in memory go first so the queue stays FIFO
+            while (tier.memory.peek() != null || !tier.head.isEmpty()) {
+                if (flush(tier, Long.MAX_VALUE, Long.MAX_VALUE, batchSize) == 0) break;
+            }
+            durable.enqueue(tier.name, request);
+            tier.durableNonEmpty = true;
+        } finally {
+            tier.takeLock.unlock();
+        }
+    }
+
+    /**
+     * Move up to {@code max} messages enqueued at or before {@code cutoff}, and numbered at most
+     * {@code lastSeq}, from memory to the durable tier, in one {@link QueuePlugin#enqueueBatch} call. On failure they stay at the head of the memory tier and
+     * are retried on the next flush. Caller holds the tier's take lock. Returns the number written.
+     */
+    private int flush(Tier tier, long cutoff, long lastSeq, int max) {
+        Entry e;
+        while (tier.head.size() < max && (e = tier.memory.peek()) != null && e.enqueuedAt() <= cutoff && e.seq() <= lastSeq) {
+            tier.head.addLast(tier.memory.poll());
+        }
+        tier.headSize = tier.head.size();
+        if (tier.head.isEmpty()) return 0;
+        List<ServiceRequest> batch = new ArrayList<>(tier.head.size());
+        for (Entry h : tier.head) {
+            batch.add(h.request());
+        }
+        try {
+            durable.enqueueBatch(tier.name, batch);
+        } catch (RuntimeException ex) {
+            log.warn("[TieredQueue] could not write {} message(s) of queue {} to durable storage: {}", batch.size(), tier.name, ex.toString());
+            return 0;
+        }
+        tier.head.clear();
+        tier.headSize = 0;
+        tier.durableNonEmpty = true;
+        return batch.size();
+    }
+
+    private void takeFromDurable(Tier tier, int max, long now, List<ServiceRequest> out) {
+        try {
+            List<ServiceRequest> stored = durable.dequeueBatch(tier.name, max);
+            out.addAll(stored);
+            if (stored.size() < max) {
+                tier.durableNonEmpty = false;
+                tier.durableCheckAt = now + durablePollMs;
+            }
+        } catch (RuntimeException ex) {
+            log.warn("[TieredQueue] could not read queue {} from durable storage: {}", tier.name, ex.toString());
+            tier.durableNonEmpty = false;
+            tier.durableCheckAt = now + durablePollMs;
+        }
+    }
+
+    private record Entry(ServiceRequest request, long enqueuedAt, long seq) {}
+
+    /** State of one queue. Consumers and flushes hold {@code takeLock}; producers only touch {@code memory}. */
+    private static final class Tier {
+        final String name;
+        final LinkedBlockingQueue<Entry> memory;
+        final ReentrantLock takeLock = new ReentrantLock();
+        // taken from memory and not yet written to durable storage; older than anything in memory
+        final ArrayDeque<Entry> head = new ArrayDeque<>();
+        volatile int headSize;
+        final AtomicLong sequence = new AtomicLong();
+        // sequence of the newest ASYNC message offered; messages behind it need not be flushed
+        final AtomicLong lastAsyncSeq = new AtomicLong();
+        // may hold messages: set on every durable write, cleared when a read comes back short
+        volatile boolean durableNonEmpty = true;
+        long durableCheckAt; // guarded by takeLock
+
+        Tier(String name, int capacity) {
+            this.name = name;
+            this.memory = new LinkedBlockingQueue<>(capacity);
+        }
+    }
+}
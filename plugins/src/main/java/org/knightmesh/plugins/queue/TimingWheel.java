@@ -0,0 +1,163 @@
+package org.knightmesh.plugins.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for delayed items. The first level has {@code wheelSize} slots of
+ * {@code tickMs}; each overflow level covers {@code wheelSize} times the span of the one below and is
+ * created on demand, so adding is O(1) regardless of how far out the deadline is. Only non-empty
+ * buckets are tracked in a priority queue, so advancing never walks empty slots and the cost of a
+ * far-future item is one cascade per level.
+ * <p>
+ * Deadlines are rounded up to the tick: items are never released early, and at most one tick late.
+ * Not thread-safe; callers synchronize.
+ */
+final class TimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final PriorityQueue<Bucket<T>> pending = new PriorityQueue<>((a, b) -> Long.compare(a.expiration, b.expiration));
+    private final Level<T> root;
+    private int size;
+
+    TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs < 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("Require tickMs >= 1 and wheelSize >= 2");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.root = new Level<>(tickMs, wheelSize, startMs - startMs % tickMs);
+    }
+
+    /**
+     * Schedule an item.
+     * @return false if the deadline has already passed; the item is then not stored
+     */
+    boolean add(T item, long deadlineMs) {
+        long rounded = ceilToTick(deadlineMs);
+        if (!place(new Entry<>(item, rounded))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /** Release every item whose deadline is at or before {@code nowMs}, oldest bucket first. */
+    void advanceTo(long nowMs, Consumer<T> onDue) {
+        Bucket<T> head;
+        List<Entry<T>> cascade = new ArrayList<>();
+        while ((head = pending.peek()) != null && head.expiration <= nowMs) {
+            pending.poll();
+            root.advanceClock(head.expiration);
+            cascade.clear();
+            head.drainTo(cascade);
+            for (Entry<T> e : cascade) {
+                if (!place(e)) {
+                    size--;
+                    onDue.accept(e.item);
+                }
+            }
+        }
+        root.advanceClock(nowMs);
+    }
+
+    /** Time of the next bucket that needs attention, or {@link Long#MAX_VALUE} if nothing is scheduled. */
+    long nextExpiration() {
+        Bucket<T> head = pending.peek();
+        return head == null ? Long.MAX_VALUE : head.expiration;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private boolean place(Entry<T> e) {
+        Bucket<T> bucket = root.bucketFor(e.deadline, wheelSize);
+        if (bucket == null) {
+            return false;
+        }
+        boolean wasEmpty = bucket.isEmpty();
+        bucket.add(e);
+        if (wasEmpty) {
+            pending.add(bucket);
+        }
+        return true;
+    }
+
+    private long ceilToTick(long ms) {
+        long r = ms % tickMs;
+        return r == 0 ? ms : ms - r + tickMs;
+    }
+
+    private record Entry<T>(T item, long deadline) {}
+
+    private static final class Bucket<T> {
+        private final List<Entry<T>> entries = new ArrayList<>();
+        private long expiration;
+
+        boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        void add(Entry<T> e) {
+            entries.add(e);
+        }
+
+        void drainTo(List<Entry<T>> out) {
+            out.addAll(entries);
+            entries.clear();
+        }
+    }
+
+    private static final class Level<T> {
+        private final long tick;
+        private final long interval;
+        private final Bucket<T>[] buckets;
+        private long currentTime;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        Level(long tick, int wheelSize, long startMs) {
+            this.tick = tick;
+            this.interval = tick * wheelSize;
+            this.currentTime = startMs - startMs % tick;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+        }
+
+        /** Bucket that should hold the deadline, or null if it is already due at this level's time. */
+        Bucket<T> bucketFor(long deadline, int wheelSize) {
+            if (deadline < currentTime + tick) {
+                return null;
+            }
+            if (deadline < currentTime + interval) {
+                long virtualId = deadline / tick;
+                Bucket<T> b = buckets[(int) (virtualId % buckets.length)];
+                // an empty bucket is being reused for a later rotation
+                if (b.isEmpty()) {
+                    b.expiration = virtualId * tick;
+                }
+                return b;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(interval, wheelSize, currentTime);
+            }
+            // never null: the overflow level's current slot ends before this level's span does
+            return overflow.bucketFor(deadline, wheelSize);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tick) {
+                currentTime = timeMs - timeMs % tick;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.knightmesh.plugins.result;
+
+import org.knightmesh.core.model.ServiceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Results held in memory for {@code ttlMs}, at most {@code capacity} of them (oldest evicted first), with
+ * waiters completed as soon as their result is put. With a {@link ResultTable} every result is also
+ * written to the database: results evicted from memory stay readable until they expire, and results put
+ * by other processes (e.g. a separate QPM deployment) are found by polling the table every {@code pollMs}
+ * for the ids someone is waiting on, one query per poll however many waiters there are.
+ */
+public class InMemoryResultStore implements ResultStore, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryResultStore.class);
+
+    static final long TABLE_CLEANUP_MS = 60_000;
+
+    private final Map<String, Stored> results = new ConcurrentHashMap<>();
+    // insertion order, which is also expiry order; may still hold results since replaced or evicted
+    private final Queue<Stored> order = new ConcurrentLinkedQueue<>();
+    // guarded by the map: lists are only changed inside compute calls and iterated once removed
+    private final Map<String, List<CompletableFuture<Result>>> waiters = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long ttlMs;
+    private final ResultTable table;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService timer;
+    private long tableCleanedAt;
+
+    /**
+     * @param table durable copy of every result, or null to keep results in memory only
+     * @param pollMs how often expired results are dropped and the table is polled; 0 leaves it to {@link #tick()}
+     */
+    public InMemoryResultStore(int capacity, long ttlMs, ResultTable table, long pollMs) {
+        this(capacity, ttlMs, table, pollMs, System::currentTimeMillis);
+    }
+
+    InMemoryResultStore(int capacity, long ttlMs, ResultTable table, long pollMs, LongSupplier clock) {
+        if (capacity <= 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("Require queue.results.capacity > 0 and queue.results.ttl.ms > 0");
+        }
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+        this.table = table;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.tableCleanedAt = clock.getAsLong();
+        if (pollMs > 0) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "result-store");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(this::tick, pollMs, pollMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.timer = null;
+        }
+    }
+
+    @Override
+    public void put(String correlationId, String tenant, ServiceResponse response) {
+        Objects.requireNonNull(correlationId, "correlationId");
+        Objects.requireNonNull(response, "response");
+        long now = clock.getAsLong();
+        Result result = new Result(response, tenant);
+        remember(correlationId, result, now);
+        complete(correlationId, result);
+        if (table != null) {
+            try {
+                table.put(correlationId, result, Instant.ofEpochMilli(now), Instant.ofEpochMilli(now + ttlMs));
+            } catch (RuntimeException e) {
+                log.warn("[ResultStore] could not write result corrId={} to the database: {}", correlationId, e.toString());
+            }
+        }
+    }
+
+    @Override
+    public Result get(String correlationId) {
+        long now = clock.getAsLong();
+        Stored s = results.get(correlationId);
+        if (s != null && s.expiresAt > now) return s.result;
+        if (table == null) return null;
+        try {
+            return table.get(correlationId, Instant.ofEpochMilli(now));
+        } catch (RuntimeException e) {
+            log.debug("[ResultStore] could not read result corrId={}: {}", correlationId, e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Result> await(String correlationId) {
+        Objects.requireNonNull(correlationId, "correlationId");
+        CompletableFuture<Result> f = new CompletableFuture<>();
+        waiters.compute(correlationId, (id, list) -> {
+            if (list == null) list = new ArrayList<>(2);
+            list.add(f);
+            return list;
+        });
+        f.whenComplete((r, ex) -> forget(correlationId, f));
+        // registered first, so a concurrent put either completes f or is seen here
+        Result r = get(correlationId);
+        if (r != null) f.complete(r);
+        return f;
+    }
+
+    /** Number of results held in memory. */
+    public int size() {
+        return results.size();
+    }
+
+    /** Number of correlation ids someone is waiting on. */
+    public int waiting() {
+        return waiters.size();
+    }
+
+    /** Drop expired results and look for awaited results that were put elsewhere. */
+    void tick() {
+        long now = clock.getAsLong();
+        evict(now);
+        if (table == null) return;
+        try {
+            if (!waiters.isEmpty()) {
+                Map<String, Result> found = table.getAll(new ArrayList<>(waiters.keySet()), Instant.ofEpochMilli(now));
+                found.forEach((id, r) -> {
+                    remember(id, r, now);
+                    complete(id, r);
+                });
+            }
+            if (now - tableCleanedAt >= TABLE_CLEANUP_MS) {
+                tableCleanedAt = now;
+                int deleted = table.deleteExpired(Instant.ofEpochMilli(now));
+                if (deleted > 0) log.debug("[ResultStore] deleted {} expired result(s)", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("[ResultStore] polling results failed: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    private void remember(String correlationId, Result result, long now) {
+        Stored s = new Stored(correlationId, result, now + ttlMs);
+        results.put(correlationId, s);
+        order.add(s);
+        evict(now);
+    }
+
+    private void evict(long now) {
+        Stored head;
+        while ((head = order.peek()) != null && (head.expiresAt <= now || results.size() > capacity)) {
+            Stored s = order.poll();
+            if (s != null) results.remove(s.correlationId, s);
+        }
+    }
+
+    private void complete(String correlationId, Result result) {
+        List<CompletableFuture<Result>> list = waiters.remove(correlationId);
+        if (list == null) return;
+        for (CompletableFuture<Result> f : list) {
+            f.complete(result);
+        }
+    }
+
+    private void forget(String correlationId, CompletableFuture<Result> f) {
+        waiters.computeIfPresent(correlationId, (id, list) -> {
+            list.remove(f);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private record Stored(String correlationId, Result result, long expiresAt) {}
+}
@@ -0,0 +1,38 @@
+package org.knightmesh.plugins.result;
+
+import org.knightmesh.core.model.ServiceResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Responses of queued requests, keyed by correlation id, so the caller that got {@code 202 ACCEPTED}
+ * can collect the answer once a consumer has processed the message. Results expire after a TTL. Each
+ * result keeps the tenant of the request it answers, so readers can refuse it to other tenants.
+ */
+public interface ResultStore {
+
+    /**
+     * Store the response and complete everyone waiting for it. A later put for the same id replaces it.
+     *
+     * @param tenant tenant of the request, or null for anonymous requests
+     */
+    void put(String correlationId, String tenant, ServiceResponse response);
+
+    /** The stored result, or null if there is none yet or it has expired. */
+    Result get(String correlationId);
+
+    /**
+     * Future completed with the result once it is stored, at once if it already is. Each caller gets
+     * its own future, so completing or cancelling it (e.g. on timeout) does not affect other waiters.
+     */
+    CompletableFuture<Result> await(String correlationId);
+
+    /** A stored response and the tenant of the request it answers, null if that request was anonymous. */
+    record Result(ServiceResponse response, String tenant) {
+
+        /** Whether a caller acting for {@code caller} (null if anonymous) may read it; anonymous results are not owned. */
+        public boolean isVisibleTo(String caller) {
+            return tenant == null || tenant.equals(caller);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.knightmesh.plugins.result;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Selects where the {@link ResultStore} keeps results with {@code queue.results.store}: {@code memory}
+ * (default; the producer and consumer of a queue share the process) or {@code jdbc} (memory plus the
+ * {@code queue_result} table, for IRP and QPM running apart or several IRP replicas).
+ */
+@Configuration
+public class ResultStoreConfig {
+
+    @Bean
+    public ResultStore resultStore(@Value("${queue.results.store:memory}") String store,
+                                   @Value("${queue.results.capacity:100000}") int capacity,
+                                   @Value("${queue.results.ttl.ms:300000}") long ttlMs,
+                                   @Value("${queue.results.poll.ms:200}") long pollMs,
+                                   ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                   ObjectProvider<ObjectMapper> objectMapper) {
+        switch (store.toLowerCase()) {
+            case "memory":
+                return new InMemoryResultStore(capacity, ttlMs, null, pollMs);
+            case "jdbc":
+                ResultTable table = new ResultTable(jdbcTemplate.getObject(), objectMapper.getIfAvailable(ObjectMapper::new));
+                return new InMemoryResultStore(capacity, ttlMs, table, pollMs);
+            default:
+                throw new IllegalArgumentException("Unknown queue.results.store '" + store + "' (expected memory or jdbc)");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.knightmesh.plugins.result;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.knightmesh.core.model.ServiceResponse;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results in the {@code queue_result} table (V9, {@code tenant} from V11) as JSON, shared by every
+ * instance using the same database. Rows past {@code expires_at} are ignored by reads and removed by {@link #deleteExpired}.
+ */
+public class ResultTable {
+    static final int MAX_IDS_PER_QUERY = 500;
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+
+    public ResultTable(JdbcTemplate jdbc, ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+    }
+
+    public void put(String correlationId, ResultStore.Result result, Instant createdAt, Instant expiresAt) {
+        String json = encode(result.response());
+        String tenant = result.tenant();
+        Timestamp created = Timestamp.from(createdAt);
+        Timestamp expires = Timestamp.from(expiresAt);
+        if (update(correlationId, json, tenant, created, expires) > 0) return;
+        try {
+            jdbc.update("INSERT INTO queue_result (correlation_id, response, tenant, created_at, expires_at) VALUES (?, ?, ?, ?, ?)",
+                    correlationId, json, tenant, created, expires);
+        } catch (DuplicateKeyException e) {
+            // written concurrently by another instance; last writer wins as with the update
+            update(correlationId, json, tenant, created, expires);
+        }
+    }
+
+    public ResultStore.Result get(String correlationId, Instant now) {
+        List<ResultStore.Result> rows = jdbc.query("SELECT response, tenant FROM queue_result WHERE correlation_id = ? AND expires_at > ?",
+                (rs, i) -> new ResultStore.Result(decode(rs.getString(1)), rs.getString(2)), correlationId, Timestamp.from(now));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /** Unexpired results among the given ids; ids without one are absent from the map. */
+    public Map<String, ResultStore.Result> getAll(Collection<String> correlationIds, Instant now) {
+        Map<String, ResultStore.Result> found = new HashMap<>();
+        List<String> ids = new ArrayList<>(correlationIds);
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY));
+            Object[] args = new Object[chunk.size() + 1];
+            for (int i = 0; i < chunk.size(); i++) args[i] = chunk.get(i);
+            args[chunk.size()] = Timestamp.from(now);
+            String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbc.query("SELECT correlation_id, response, tenant FROM queue_result WHERE correlation_id IN (" + in + ") AND expires_at > ?",
+                    rs -> { found.put(rs.getString(1), new ResultStore.Result(decode(rs.getString(2)), rs.getString(3))); }, args);
+        }
+        return found;
+    }
+
+    /** @return number of rows deleted */
+    public int deleteExpired(Instant now) {
+        return jdbc.update("DELETE FROM queue_result WHERE expires_at <= ?", Timestamp.from(now));
+    }
+
+    private int update(String correlationId, String json, String tenant, Timestamp created, Timestamp expires) {
+        return jdbc.update("UPDATE queue_result SET response = ?, tenant = ?, created_at = ?, expires_at = ? WHERE correlation_id = ?",
+                json, tenant, created, expires, correlationId);
+    }
+
+    private String encode(ServiceResponse response) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("status", response.getStatus().name());
+        m.put("data", response.getData());
+        m.put("errorCode", response.getErrorCode());
+        m.put("errorMessage", response.getErrorMessage());
+        try {
+            return objectMapper.writeValueAsString(m);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServiceResponse decode(String json) {
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            Map<String, Object> data = node.hasNonNull("data") ? objectMapper.convertValue(node.get("data"), Map.class) : Map.of();
+            return new ServiceResponse(ServiceResponse.Status.valueOf(node.path("status").asText()), data,
+                    node.hasNonNull("errorCode") ? node.get("errorCode").asText() : null,
+                    node.hasNonNull("errorMessage") ? node.get("errorMessage").asText() : null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to deserialize stored response", e);
+        }
+    }
+}
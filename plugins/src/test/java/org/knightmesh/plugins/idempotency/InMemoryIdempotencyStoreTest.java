@@ -0,0 +1,141 @@
+package org.knightmesh.plugins.idempotency;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.plugins.idempotency.IdempotencyStore.Claim;
+import org.knightmesh.plugins.idempotency.IdempotencyStore.Kind;
+import org.knightmesh.plugins.idempotency.IdempotencyStore.StoredResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryIdempotencyStoreTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    @Test
+    void duplicates_wait_for_the_first_answer_and_replay_it_afterwards() throws Exception {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(10, 60_000, 5_000, null, 0, clock::get);
+        Claim first = store.claim("k1", "fp");
+        Claim concurrent = store.claim("k1", "fp");
+        assertThat(first.kind()).isEqualTo(Kind.NEW);
+        assertThat(concurrent.kind()).isEqualTo(Kind.DUPLICATE);
+        assertThat(concurrent.response()).isNotDone();
+
+        store.complete(first, new StoredResponse(200, Map.of("user", "alice")));
+        assertThat(concurrent.response().get().status()).isEqualTo(200);
+
+        Claim later = store.claim("k1", "fp");
+        assertThat(later.kind()).isEqualTo(Kind.DUPLICATE);
+        assertThat(later.response().getNow(null).body()).isEqualTo(Map.of("user", "alice"));
+        assertThat(store.claim("k1", "other").kind()).isEqualTo(Kind.MISMATCH);
+    }
+
+    @Test
+    void concurrent_callers_execute_once() throws Exception {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100, 60_000, 5_000, null, 0);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> answers = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                answers.add(pool.submit(() -> {
+                    start.await();
+                    Claim c = store.claim("k1", "fp");
+                    if (c.kind() == Kind.NEW) {
+                        Thread.sleep(50);
+                        StoredResponse r = new StoredResponse(202, Map.of("n", executions.incrementAndGet()));
+                        store.complete(c, r);
+                        return (Integer) ((Map<?, ?>) r.body()).get("n");
+                    }
+                    return (Integer) ((Map<?, ?>) c.response().get(5, TimeUnit.SECONDS).body()).get("n");
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> f : answers) assertThat(f.get(10, TimeUnit.SECONDS)).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void released_keys_wake_waiters_and_can_be_claimed_again() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(10, 60_000, 5_000, null, 0, clock::get);
+        Claim first = store.claim("k1", "fp");
+        Claim waiting = store.claim("k1", "fp");
+
+        store.release(first);
+
+        assertThat(waiting.response().getNow(new StoredResponse(0, null))).isNull();
+        assertThat(store.claim("k1", "fp").kind()).isEqualTo(Kind.NEW);
+    }
+
+    @Test
+    void answers_expire_after_the_ttl_and_abandoned_claims_after_the_lease() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(2, 1_000, 500, null, 0, clock::get);
+        store.complete(store.claim("k1", "fp"), new StoredResponse(200, "a"));
+        store.claim("k2", "fp");
+
+        clock.addAndGet(500);
+        assertThat(store.claim("k2", "fp").kind()).isEqualTo(Kind.NEW);
+        assertThat(store.claim("k1", "fp").kind()).isEqualTo(Kind.DUPLICATE);
+
+        clock.addAndGet(500);
+        assertThat(store.claim("k1", "fp").kind()).isEqualTo(Kind.NEW);
+        store.claim("k3", "fp");
+        store.claim("k4", "fp");
+        assertThat(store.size()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void table_catches_duplicates_sent_to_another_instance() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:idem-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+        jdbc.execute("CREATE TABLE irp_idempotency (idempotency_key VARCHAR(512) PRIMARY KEY, fingerprint VARCHAR(128), "
+                + "status VARCHAR(16) NOT NULL, http_status INTEGER, body CLOB, "
+                + "created_at TIMESTAMP WITH TIME ZONE NOT NULL, expires_at TIMESTAMP WITH TIME ZONE NOT NULL)");
+        IdempotencyTable table = new IdempotencyTable(jdbc, new ObjectMapper());
+        InMemoryIdempotencyStore a = new InMemoryIdempotencyStore(10, 60_000, 5_000, table, 0, clock::get);
+        InMemoryIdempotencyStore b = new InMemoryIdempotencyStore(10, 60_000, 5_000, table, 0, clock::get);
+
+        Claim owner = a.claim("k1", "fp");
+        Claim remote = b.claim("k1", "fp");
+        assertThat(owner.kind()).isEqualTo(Kind.NEW);
+        assertThat(remote.kind()).isEqualTo(Kind.DUPLICATE);
+        assertThat(b.claim("k1", "other").kind()).isEqualTo(Kind.MISMATCH);
+
+        a.complete(owner, new StoredResponse(202, Map.of("correlationId", "c1")));
+        assertThat(remote.response()).isNotDone();
+        b.tick();
+        StoredResponse replayed = remote.response().get(1, TimeUnit.SECONDS);
+        assertThat(replayed.status()).isEqualTo(202);
+        assertThat(((JsonNode) replayed.body()).get("correlationId").asText()).isEqualTo("c1");
+
+        // released elsewhere: the waiter is woken and the key is free again
+        Claim second = a.claim("k2", "fp");
+        Claim waiting = b.claim("k2", "fp");
+        a.release(second);
+        b.tick();
+        assertThat(waiting.response().get(1, TimeUnit.SECONDS)).isNull();
+        assertThat(b.claim("k2", "fp").kind()).isEqualTo(Kind.NEW);
+
+        clock.addAndGet(60_000 + InMemoryIdempotencyStore.TABLE_CLEANUP_MS);
+        a.tick();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM irp_idempotency", Integer.class)).isZero();
+    }
+}
@@ -0,0 +1,85 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.knightmesh.core.model.ServiceRequest;
+import org.knightmesh.plugins.blob.FileBlobStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClaimCheckTest {
+
+    @TempDir
+    Path dir;
+
+    private ClaimCheck claimCheck(long threshold) {
+        return new ClaimCheck(new FileBlobStore(dir), new ObjectMapper(), threshold, 60_000, 0);
+    }
+
+    @Test
+    void small_payloads_stay_inline() {
+        ClaimCheck cc = claimCheck(1024);
+        ServiceRequest req = new ServiceRequest("SVC", Map.of("k", "v"), Map.of(), "c1");
+        assertThat(cc.offload(req, -1)).isSameAs(req);
+        assertThat(cc.offload(req, 10)).isSameAs(req);
+    }
+
+    @Test
+    void large_payload_travels_by_reference_and_blob_is_released_after_processing() throws Exception {
+        ClaimCheck cc = claimCheck(1024);
+        ServiceRequest req = new ServiceRequest("SVC", Map.of("doc", "x".repeat(4096), "n", 7), Map.of("source", "IRP"), "c1");
+
+        ServiceRequest queued = cc.offload(req, -1);
+        assertThat(ClaimCheck.isClaimChecked(queued)).isTrue();
+        assertThat(queued.getPayload()).isEmpty();
+        assertThat(blobCount()).isEqualTo(1);
+
+        ServiceRequest resolved = cc.resolve(queued);
+        assertThat(resolved.getPayload()).isEqualTo(req.getPayload());
+        assertThat(resolved.getMetadata()).isEqualTo(req.getMetadata());
+        assertThat(resolved.getCorrelationId()).isEqualTo("c1");
+
+        cc.release(queued);
+        assertThat(blobCount()).isZero();
+        assertThatThrownBy(() -> cc.resolve(queued)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void sweep_deletes_only_expired_blobs() throws Exception {
+        ClaimCheck cc = claimCheck(16);
+        ServiceRequest old = cc.offload(new ServiceRequest("SVC", Map.of("doc", "y".repeat(64)), Map.of(), "old"), -1);
+        cc.offload(new ServiceRequest("SVC", Map.of("doc", "z".repeat(64)), Map.of(), "new"), -1);
+        Path oldBlob = dir.resolve(old.getMetadata().get(ClaimCheck.METADATA_KEY) + ".blob");
+        Files.setLastModifiedTime(oldBlob, FileTime.from(Instant.now().minusSeconds(3600)));
+
+        cc.sweepOrphans();
+
+        assertThat(Files.exists(oldBlob)).isFalse();
+        assertThat(blobCount()).isEqualTo(1);
+    }
+
+    @Test
+    void orphan_ttl_is_never_shorter_than_the_queue_retention() {
+        FileBlobStore store = new FileBlobStore(dir);
+        assertThat(new ClaimCheck(store, new ObjectMapper(), 16, 0, 7).orphanTtlMs()).isEqualTo(TimeUnit.DAYS.toMillis(7));
+        assertThat(new ClaimCheck(store, new ObjectMapper(), 16, 60_000, 7).orphanTtlMs()).isEqualTo(TimeUnit.DAYS.toMillis(7));
+        assertThat(new ClaimCheck(store, new ObjectMapper(), 16, TimeUnit.DAYS.toMillis(30), 7).orphanTtlMs())
+                .isEqualTo(TimeUnit.DAYS.toMillis(30));
+    }
+
+    private long blobCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
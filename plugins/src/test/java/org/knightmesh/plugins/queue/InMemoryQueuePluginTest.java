@@ -3,9 +3,15 @@ package org.knightmesh.plugins.queue;
 import org.junit.jupiter.api.Test;
 import org.knightmesh.core.model.ServiceRequest;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class InMemoryQueuePluginTest {
 
@@ -26,4 +32,178 @@ class InMemoryQueuePluginTest {
         assertThat(r3).isNull();
         assertThat(q.size(queue)).isEqualTo(0);
     }
+
+    @Test
+    void enqueue_notifies_listeners() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin();
+        List<String> notified = new CopyOnWriteArrayList<>();
+        q.addListener(notified::add);
+        q.addListener(name -> { throw new IllegalStateException("listener failures must not reach producers"); });
+
+        q.enqueue("q1", new ServiceRequest("SVC", Map.of(), Map.of(), "c1"));
+        q.enqueue("q2", new ServiceRequest("SVC", Map.of(), Map.of(), "c2"));
+
+        assertThat(notified).containsExactly("q1", "q2");
+        assertThat(q.size("q1")).isEqualTo(1);
+    }
+
+    @Test
+    void stats_track_depth_and_drops() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin(2, OverflowPolicy.DROP_OLDEST, 0);
+        q.enqueue("q", req("c1"));
+        q.enqueue("q", req("c2"));
+        q.enqueue("q", req("c3"));
+        q.dequeue("q");
+
+        QueueStats.Snapshot s = q.stats("q");
+        assertThat(s.depth()).isEqualTo(q.size("q")).isEqualTo(1);
+        assertThat(s.enqueued()).isEqualTo(3);
+        assertThat(s.dequeued()).isEqualTo(2); // one dropped, one consumed
+        assertThat(s.oldestAgeMs()).isNotNegative();
+    }
+
+    @Test
+    void reject_policy_fails_fast_when_full() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin(2, OverflowPolicy.REJECT, 0);
+        q.enqueue("q", req("c1"));
+        q.enqueue("q", req("c2"));
+        assertThatThrownBy(() -> q.enqueue("q", req("c3")))
+                .isInstanceOf(QueueFullException.class)
+                .hasMessageContaining("q");
+        assertThat(q.size("q")).isEqualTo(2);
+    }
+
+    @Test
+    void drop_oldest_policy_evicts_head() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin(2, OverflowPolicy.DROP_OLDEST, 0);
+        q.enqueue("q", req("c1"));
+        q.enqueue("q", req("c2"));
+        q.enqueue("q", req("c3"));
+        assertThat(q.size("q")).isEqualTo(2);
+        assertThat(q.dequeue("q").getCorrelationId()).isEqualTo("c2");
+        assertThat(q.dequeue("q").getCorrelationId()).isEqualTo("c3");
+    }
+
+    @Test
+    void block_policy_waits_for_space_then_times_out() throws Exception {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin(2, OverflowPolicy.BLOCK, 2_000);
+        q.enqueue("q", req("c1"));
+        q.enqueue("q", req("c2"));
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> q.enqueue("q", req("c3")));
+        Thread.sleep(100);
+        assertThat(blocked).isNotDone();
+        assertThat(q.dequeue("q").getCorrelationId()).isEqualTo("c1");
+        blocked.get(2, TimeUnit.SECONDS);
+        assertThat(q.size("q")).isEqualTo(2);
+
+        InMemoryQueuePlugin fast = new InMemoryQueuePlugin(2, OverflowPolicy.BLOCK, 50);
+        fast.enqueue("q", req("c1"));
+        fast.enqueue("q", req("c2"));
+        assertThatThrownBy(() -> fast.enqueue("q", req("c3"))).isInstanceOf(QueueFullException.class);
+    }
+
+    @Test
+    void timed_dequeue_waits_for_producer() throws Exception {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin();
+        assertThat(q.dequeue("q", 20, TimeUnit.MILLISECONDS)).isNull();
+
+        CompletableFuture<ServiceRequest> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return q.dequeue("q", 2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        q.enqueue("q", req("late"));
+        assertThat(waiting.get(2, TimeUnit.SECONDS).getCorrelationId()).isEqualTo("late");
+    }
+
+    @Test
+    void delayed_message_is_invisible_until_due() throws Exception {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin();
+        List<String> woken = new CopyOnWriteArrayList<>();
+        q.addListener(woken::add);
+        long start = System.currentTimeMillis();
+        q.enqueue("q", req("later"), EnqueueOptions.notBefore(Instant.ofEpochMilli(start + 150)));
+        q.enqueue("q", req("now"), EnqueueOptions.none());
+
+        assertThat(q.size("q")).isEqualTo(1);
+        assertThat(q.delayedSize()).isEqualTo(1);
+        assertThat(q.dequeue("q").getCorrelationId()).isEqualTo("now");
+        assertThat(q.dequeue("q")).isNull();
+
+        ServiceRequest later = q.dequeue("q", 2, TimeUnit.SECONDS);
+        assertThat(later.getCorrelationId()).isEqualTo("later");
+        assertThat(System.currentTimeMillis()).isGreaterThanOrEqualTo(start + 150);
+        assertThat(q.delayedSize()).isZero();
+        assertThat(woken).containsExactly("q", "q");
+        q.close();
+    }
+
+    @Test
+    void due_message_finding_its_queue_full_does_not_hold_up_other_deliveries() throws Exception {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin(2, OverflowPolicy.BLOCK, 2_000);
+        q.enqueue("full", req("f1"));
+        q.enqueue("full", req("f2"));
+        long start = System.currentTimeMillis();
+        q.enqueue("full", req("waits"), EnqueueOptions.notBefore(Instant.ofEpochMilli(start + 50)));
+        q.enqueue("other", req("on-time"), EnqueueOptions.notBefore(Instant.ofEpochMilli(start + 60)));
+
+        assertThat(q.dequeue("other", 1, TimeUnit.SECONDS).getCorrelationId()).isEqualTo("on-time");
+        assertThat(System.currentTimeMillis() - start).isLessThan(1_000);
+        assertThat(q.dequeue("full").getCorrelationId()).isEqualTo("f1");
+        assertThat(q.dequeue("full").getCorrelationId()).isEqualTo("f2");
+        assertThat(q.dequeue("full", 1, TimeUnit.SECONDS).getCorrelationId()).isEqualTo("waits");
+        q.close();
+    }
+
+    @Test
+    void past_not_before_is_delivered_immediately() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin();
+        q.enqueue("q", req("c1"), EnqueueOptions.notBefore(Instant.now().minusSeconds(1)));
+        assertThat(q.delayedSize()).isZero();
+        assertThat(q.dequeue("q").getCorrelationId()).isEqualTo("c1");
+    }
+
+    @Test
+    void plugins_without_delay_support_reject_future_deliveries() {
+        QueuePlugin plain = new QueuePlugin() {
+            @Override public void enqueue(String queueName, ServiceRequest request) { }
+            @Override public ServiceRequest dequeue(String queueName) { return null; }
+            @Override public int size(String queueName) { return 0; }
+        };
+        assertThatThrownBy(() -> plain.enqueue("q", req("c1"), EnqueueOptions.notBefore(Instant.now().plusSeconds(60))))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private static ServiceRequest req(String corrId) {
+        return new ServiceRequest("SVC", Map.of(), Map.of(), corrId);
+    }
+
+    @Test
+    void tenant_sub_queues_are_capped_and_dropped_once_idle() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin();
+        q.setTenantQueueLimits(16, 2, 0);
+        String t1 = QueueTenants.flowName("q", "t1");
+        String t2 = QueueTenants.flowName("q", "t2");
+        String t3 = QueueTenants.flowName("q", "t3");
+
+        q.enqueue(t1, new ServiceRequest("SVC", Map.of(), Map.of(), "c1"));
+        q.enqueue(t2, new ServiceRequest("SVC", Map.of(), Map.of(), "c2"));
+        q.enqueue(t3, new ServiceRequest("SVC", Map.of(), Map.of(), "c3"));
+
+        assertThat(q.capacity(t1)).isEqualTo(16);
+        assertThat(q.tenantQueueCount()).isEqualTo(2);
+        // no room for a third tenant while both hold messages: it shares the queue
+        assertThat(q.size("q")).isEqualTo(1);
+
+        assertThat(q.dequeue(t1).getCorrelationId()).isEqualTo("c1");
+        q.enqueue(t3, new ServiceRequest("SVC", Map.of(), Map.of(), "c4"));
+
+        assertThat(q.queueNames(QueueTenants.prefix("q"))).containsExactlyInAnyOrder(t2, t3);
+        assertThat(q.size(t3)).isEqualTo(1);
+        assertThat(q.tenantQueueCount()).isEqualTo(2);
+    }
 }
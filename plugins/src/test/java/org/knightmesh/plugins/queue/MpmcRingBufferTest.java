@@ -0,0 +1,87 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpmcRingBufferTest {
+
+    @Test
+    void capacity_is_rounded_to_power_of_two_and_enforced() {
+        MpmcRingBuffer<Integer> ring = new MpmcRingBuffer<>(5);
+        assertThat(ring.capacity()).isEqualTo(8);
+        for (int i = 0; i < 8; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+        assertThat(ring.offer(99)).isFalse();
+        assertThat(ring.size()).isEqualTo(8);
+        for (int i = 0; i < 8; i++) {
+            assertThat(ring.poll()).isEqualTo(i);
+        }
+        assertThat(ring.poll()).isNull();
+        assertThat(ring.size()).isZero();
+    }
+
+    @Test
+    void concurrent_producers_and_consumers_deliver_each_element_exactly_once() throws Exception {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 50_000;
+        int total = producers * perProducer;
+        MpmcRingBuffer<Integer> ring = new MpmcRingBuffer<>(1024);
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger consumed = new AtomicInteger();
+        BitSet seen = new BitSet(total);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                while (consumed.get() < total) {
+                    Integer v = ring.poll();
+                    if (v == null) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    synchronized (seen) {
+                        assertThat(seen.get(v)).as("duplicate %s", v).isFalse();
+                        seen.set(v);
+                    }
+                    consumed.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdownNow();
+
+        assertThat(seen.cardinality()).isEqualTo(total);
+        assertThat(ring.size()).isZero();
+    }
+}
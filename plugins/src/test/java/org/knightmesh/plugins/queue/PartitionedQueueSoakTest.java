@@ -0,0 +1,139 @@
+package org.knightmesh.plugins.queue;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Soak test for {@link QueueStorageMode#PARTITIONED}: simulates two weeks of traffic against the real
+ * migrations on PostgreSQL, advancing a clock one day at a time, and checks that every message is claimed
+ * once while retention drops old partitions, so the rows consumers work over stay bounded by the
+ * retention rather than growing with the days simulated.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PartitionedQueueSoakTest {
+
+    private static final int DAYS = 14;
+    private static final int MESSAGES_PER_DAY = 10_000;
+    private static final int BATCH = 100;
+    private static final int RETENTION_DAYS = 3;
+
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withDatabaseName("km")
+            .withUsername("km")
+            .withPassword("km");
+
+    static JdbcTemplate jdbc;
+
+    @BeforeAll
+    static void start() {
+        postgres.start();
+        DriverManagerDataSource ds = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure()
+                .dataSource(ds)
+                .locations("filesystem:../module-runtime/src/main/resources/db/migration")
+                .load()
+                .migrate();
+        jdbc = new JdbcTemplate(ds);
+    }
+
+    @AfterAll
+    static void stop() {
+        postgres.stop();
+    }
+
+    @Test
+    void every_message_is_claimed_once_and_retention_bounds_storage() {
+        SteppingClock clock = new SteppingClock(Instant.parse("2030-01-01T00:00:00Z"));
+        PartitionedQueueStore store = new PartitionedQueueStore(jdbc, clock);
+        byte[] payload = new byte[512];
+
+        for (int day = 0; day < DAYS; day++) {
+            store.ensurePartitions(1);
+            for (int i = 0; i < MESSAGES_PER_DAY; i++) {
+                clock.advance(Duration.ofMillis(86_400_000L / (2L * MESSAGES_PER_DAY)));
+                store.insert("soak", payload, null);
+            }
+            int claimed = 0;
+            int n;
+            while ((n = store.claim("soak", BATCH).size()) > 0) {
+                claimed += n;
+            }
+            assertThat(claimed).isEqualTo(MESSAGES_PER_DAY);
+            assertThat(store.countPending("soak")).isZero();
+
+            clock.advanceToNextDay();
+            store.dropExpiredPartitions(RETENTION_DAYS);
+            // DONE rows of dropped days are gone instead of piling up under the claim query
+            Long rows = jdbc.queryForObject("SELECT count(*) FROM persistent_queue_log", Long.class);
+            assertThat(rows).isLessThanOrEqualTo((long) (RETENTION_DAYS + 1) * MESSAGES_PER_DAY);
+        }
+
+        // today, tomorrow and the retained days; never one partition per simulated day
+        assertThat(store.listDayPartitions().size()).isLessThanOrEqualTo(RETENTION_DAYS + 2);
+        Long defaultRows = jdbc.queryForObject("SELECT count(*) FROM persistent_queue_log_default", Long.class);
+        assertThat(defaultRows).isZero();
+    }
+
+    @Test
+    void expired_partition_with_pending_messages_is_kept() {
+        SteppingClock clock = new SteppingClock(Instant.parse("2029-06-01T12:00:00Z"));
+        PartitionedQueueStore store = new PartitionedQueueStore(jdbc, clock);
+        store.ensurePartitions(0);
+        store.insert("stuck", new byte[]{1}, null);
+
+        clock.advance(Duration.ofDays(RETENTION_DAYS + 2));
+        store.ensurePartitions(0);
+        List<String> dropped = store.dropExpiredPartitions(RETENTION_DAYS);
+
+        assertThat(dropped).doesNotContain("persistent_queue_log_p20290601");
+        assertThat(store.countPending("stuck")).isEqualTo(1);
+        assertThat(store.claim("stuck", 10)).hasSize(1);
+    }
+
+    /** Test clock moved forward explicitly to simulate days of traffic in seconds. */
+    static final class SteppingClock extends Clock {
+        private Instant now;
+
+        SteppingClock(Instant start) {
+            this.now = start;
+        }
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        void advanceToNextDay() {
+            now = now.atZone(ZoneOffset.UTC).toLocalDate().plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
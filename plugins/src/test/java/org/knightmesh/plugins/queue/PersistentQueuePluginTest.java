@@ -8,8 +8,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -25,6 +32,9 @@ class PersistentQueuePluginTest {
     @Autowired
     private PersistentQueuePlugin plugin;
 
+    @Autowired
+    private PersistentQueueMessageRepository repo;
+
     @Test
     void enqueue_dequeue_fifo_and_size() {
         String queue = "pq";
@@ -41,4 +51,103 @@ class PersistentQueuePluginTest {
         assertThat(r3).isNull();
         assertThat(plugin.size(queue)).isEqualTo(0);
     }
+
+    @Test
+    void delayed_message_is_not_dequeued_before_deliver_at() {
+        String queue = "pq-delayed";
+        plugin.enqueue(queue, new ServiceRequest("SVC", Map.of(), Map.of(), "later"),
+                EnqueueOptions.notBefore(Instant.now().plusSeconds(60)));
+        plugin.enqueue(queue, new ServiceRequest("SVC", Map.of(), Map.of(), "now"));
+
+        assertThat(plugin.size(queue)).isEqualTo(1);
+        assertThat(plugin.dequeue(queue).getCorrelationId()).isEqualTo("now");
+        assertThat(plugin.dequeue(queue)).isNull();
+
+        PersistentQueueMessage scheduled = repo.findAll().get(0);
+        scheduled.setDeliverAt(OffsetDateTime.now().minusSeconds(1));
+        repo.save(scheduled);
+        assertThat(plugin.dequeue(queue).getCorrelationId()).isEqualTo("later");
+    }
+
+    @Test
+    void stores_binary_and_still_reads_legacy_json_rows() {
+        String queue = "pq-mixed";
+        PersistentQueueMessage legacy = new PersistentQueueMessage();
+        legacy.setQueueName(queue);
+        legacy.setPayloadJson("{\"serviceName\":\"SVC\",\"payload\":{\"i\":1},\"metadata\":{},\"correlationId\":\"old\"}");
+        legacy.setCreatedAt(OffsetDateTime.now().minusMinutes(1));
+        repo.save(legacy);
+
+        plugin.enqueue(queue, new ServiceRequest("SVC", Map.of("i", 2), Map.of("source", "IRP"), "new"));
+        PersistentQueueMessage stored = repo.findAll().stream()
+                .filter(m -> m.getPayloadBin() != null)
+                .findFirst().orElseThrow();
+        assertThat(stored.getPayloadJson()).isNull();
+
+        ServiceRequest r1 = plugin.dequeue(queue);
+        ServiceRequest r2 = plugin.dequeue(queue);
+        assertThat(r1.getCorrelationId()).isEqualTo("old");
+        assertThat(r1.getPayload()).containsEntry("i", 1);
+        assertThat(r2.getCorrelationId()).isEqualTo("new");
+        assertThat(r2.getMetadata()).containsEntry("source", "IRP");
+    }
+
+    @Test
+    void payloads_larger_than_the_default_column_length_round_trip() {
+        String queue = "pq-large";
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8_000; i++) {
+            text.append((char) ('!' + random.nextInt(90)));
+        }
+        plugin.enqueue(queue, new ServiceRequest("SVC", Map.of("text", text.toString()), Map.of(), "big"));
+        PersistentQueueMessage stored = repo.findAll().stream()
+                .filter(m -> queue.equals(m.getQueueName()))
+                .findFirst().orElseThrow();
+        assertThat(stored.getPayloadBin().length).isGreaterThan(255);
+
+        ServiceRequest r = plugin.dequeue(queue);
+        assertThat(r.getCorrelationId()).isEqualTo("big");
+        assertThat(r.getPayload()).containsEntry("text", text.toString());
+    }
+
+    @Test
+    void stats_pick_up_rows_written_elsewhere_and_count_local_dequeues() {
+        String queue = "pq-stats";
+        PersistentQueueMessage remote = new PersistentQueueMessage();
+        remote.setQueueName(queue);
+        remote.setStatus("PENDING");
+        remote.setPayloadJson("{\"serviceName\":\"SVC\",\"payload\":{},\"metadata\":{},\"correlationId\":\"r1\"}");
+        remote.setDeliverAt(OffsetDateTime.now().minusSeconds(30));
+        repo.save(remote);
+
+        QueueStats.Snapshot s = plugin.stats(queue);
+        assertThat(s.depth()).isEqualTo(1);
+        assertThat(s.oldestAgeMs()).isGreaterThanOrEqualTo(30_000);
+
+        assertThat(plugin.dequeue(queue).getCorrelationId()).isEqualTo("r1");
+        s = plugin.stats(queue); // within the refresh interval: local count, no query
+        assertThat(s.depth()).isZero();
+        assertThat(s.dequeued()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void only_due_messages_wake_listeners_once_committed() {
+        String queue = "pq-wakeups";
+        List<String> woken = new CopyOnWriteArrayList<>();
+        plugin.addListener(woken::add);
+        try {
+            plugin.enqueue(queue, new ServiceRequest("SVC", Map.of(), Map.of(), "later"),
+                    EnqueueOptions.notBefore(Instant.now().plusSeconds(60)));
+            assertThat(woken).isEmpty();
+
+            plugin.enqueueBatch(queue, List.of(new ServiceRequest("SVC", Map.of(), Map.of(), "a"),
+                    new ServiceRequest("SVC", Map.of(), Map.of(), "b")));
+            assertThat(woken).containsExactly(queue);
+            assertThat(plugin.stats(queue).enqueued()).isEqualTo(2);
+        } finally {
+            repo.deleteAll();
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostgresQueueNotifierTest {
+
+    private static final String SELF = "11111111-1111-1111-1111-111111111111";
+    private static final String OTHER = "22222222-2222-2222-2222-222222222222";
+
+    @Test
+    void own_notifications_are_ignored_and_others_name_their_queue() {
+        assertThat(PostgresQueueNotifier.queueOf(SELF + PostgresQueueNotifier.SEPARATOR + "orders", SELF)).isNull();
+        assertThat(PostgresQueueNotifier.queueOf(OTHER + PostgresQueueNotifier.SEPARATOR + "orders/eu#t:acme", SELF))
+                .isEqualTo("orders/eu#t:acme");
+    }
+
+    @Test
+    void bare_queue_name_from_an_older_publisher_is_still_understood() {
+        assertThat(PostgresQueueNotifier.queueOf("orders#p1", SELF)).isEqualTo("orders#p1");
+    }
+}
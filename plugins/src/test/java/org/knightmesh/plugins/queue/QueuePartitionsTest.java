@@ -0,0 +1,86 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceRequest;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueuePartitionsTest {
+
+    @Test
+    void same_key_always_maps_to_same_partition_and_keys_spread() {
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            int p = QueuePartitions.partitionOf("user-" + i, 8);
+            assertThat(p).isBetween(0, 7);
+            assertThat(QueuePartitions.partitionOf("user-" + i, 8)).isEqualTo(p);
+            seen.add(p);
+        }
+        assertThat(seen).hasSize(8);
+        assertThat(QueuePartitions.partitionOf("user-1", 1)).isZero();
+    }
+
+    @Test
+    void names_round_trip() {
+        assertThat(QueuePartitions.partitionName("orders", 3)).isEqualTo("orders#p3");
+        assertThat(QueuePartitions.baseName("orders#p3")).isEqualTo("orders");
+        assertThat(QueuePartitions.baseName("orders")).isEqualTo("orders");
+        assertThat(QueuePartitions.baseName("orders#pending")).isEqualTo("orders#pending");
+        assertThat(QueuePartitions.target("orders", EnqueueOptions.none())).isEqualTo("orders");
+        assertThat(QueuePartitions.target("orders", EnqueueOptions.partitioned("acct-9", 4)))
+                .isEqualTo("orders#p" + QueuePartitions.partitionOf("acct-9", 4));
+    }
+
+    @Test
+    void settings_resolve_partition_key_from_metadata_then_payload() {
+        QueueSettings s = QueueSettings.fromExtraJson("{\"instances\":[],\"queue\":{\"partitions\":4,\"partitionKey\":\"accountId\"}}");
+        assertThat(s.getPartitions()).isEqualTo(4);
+
+        ServiceRequest fromPayload = new ServiceRequest("SVC", Map.of("accountId", 42), Map.of(), "c1");
+        assertThat(s.partitionKey(fromPayload)).isEqualTo("42");
+        ServiceRequest explicit = new ServiceRequest("SVC", Map.of("accountId", 42), Map.of("partitionKey", "k"), "c2");
+        assertThat(s.partitionKey(explicit)).isEqualTo("k");
+        assertThat(s.enqueueOptions(fromPayload)).isEqualTo(EnqueueOptions.partitioned("42", 4));
+
+        assertThat(QueueSettings.fromExtraJson(null).isPartitioned()).isFalse();
+        assertThat(QueueSettings.fromExtraJson("not json").isPartitioned()).isFalse();
+    }
+
+    @Test
+    void tenant_sub_queues_are_named_listed_and_weighted() {
+        QueueSettings s = QueueSettings.fromExtraJson("{\"queue\":{\"tenantFair\":true,\"tenantWeights\":{\"gold co\":3}}}");
+        assertThat(s.isTenantFair()).isTrue();
+        ServiceRequest gold = new ServiceRequest("SVC", Map.of(), Map.of(ServiceRequest.TENANT_METADATA, "gold co"), "c1");
+        ServiceRequest anonymous = new ServiceRequest("SVC", Map.of(), Map.of(), "c2");
+        String goldQueue = QueuePartitions.target("irp", s.enqueueOptions(gold));
+        assertThat(goldQueue).isEqualTo("irp#t:gold+co");
+        assertThat(QueuePartitions.target("irp", s.enqueueOptions(anonymous))).isEqualTo("irp");
+        assertThat(QueuePartitions.baseName("irp#p2#q0#t:gold+co")).isEqualTo("irp");
+        assertThat(s.tenantWeightOf(goldQueue)).isEqualTo(3);
+        assertThat(s.tenantWeightOf("irp#t:other")).isEqualTo(1);
+        assertThat(QueueTenants.flowName("irp", "x".repeat(200))).startsWith("irp#t:~").hasSizeLessThan(50);
+
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin(16, OverflowPolicy.REJECT, 0);
+        q.enqueue("irp", gold, s.enqueueOptions(gold));
+        q.enqueue("irp", anonymous, s.enqueueOptions(anonymous));
+        assertThat(q.queueNames(QueueTenants.prefix("irp"))).containsExactly(goldQueue);
+    }
+
+    @Test
+    void default_enqueue_with_options_keeps_each_key_on_one_fifo() {
+        InMemoryQueuePlugin q = new InMemoryQueuePlugin();
+        for (int i = 0; i < 10; i++) {
+            q.enqueue("orders", new ServiceRequest("SVC", Map.of("seq", i), Map.of(), "a" + i), EnqueueOptions.partitioned("acct-a", 4));
+        }
+        String partition = QueuePartitions.partitionName("orders", QueuePartitions.partitionOf("acct-a", 4));
+        assertThat(q.size(partition)).isEqualTo(10);
+        assertThat(q.size("orders")).isZero();
+        for (int i = 0; i < 10; i++) {
+            assertThat(q.dequeue(partition).getCorrelationId()).isEqualTo("a" + i);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.config.PluginConfig;
+import org.knightmesh.core.model.ServiceRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueuePluginManagerTest {
+
+    private final InMemoryQueuePlugin fast = new InMemoryQueuePlugin();
+    // stands in for a durable plugin
+    private final InMemoryQueuePlugin durable = new InMemoryQueuePlugin();
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final AtomicReference<String> settings = new AtomicReference<>();
+    private final QueuePluginManager manager = new QueuePluginManager(
+            Map.of("inMemoryQueuePlugin", fast, "persistentQueuePlugin", durable), "inmemory", "queue-routing", 100, clock::get);
+
+    {
+        manager.setPluginConfigSource(name -> Optional.ofNullable(settings.get()).map(QueuePluginManagerTest::row));
+    }
+
+    private static PluginConfig row(String json) {
+        PluginConfig p = new PluginConfig();
+        p.setName("queue-routing");
+        p.setSettingsJson(json);
+        return p;
+    }
+
+    @AfterEach
+    void tearDown() {
+        fast.close();
+        durable.close();
+    }
+
+    @Test
+    void queues_without_a_route_use_the_default_backend() {
+        manager.enqueue("orders", req("c1"));
+        assertThat(fast.size("orders")).isEqualTo(1);
+        assertThat(manager.backendName("orders")).isEqualTo("inmemory");
+        assertThat(manager.dequeue("orders").getCorrelationId()).isEqualTo("c1");
+    }
+
+    @Test
+    void routes_match_exact_names_then_longest_prefix_and_cover_sub_queues() {
+        settings.set("{\"default\":\"inmemory\",\"queues\":{\"orders\":\"persistent\",\"audit-*\":\"persistent\",\"audit-debug*\":\"inmemory\"}}");
+
+        EnqueueOptions partitioned = EnqueueOptions.partitioned("customer-7", 4);
+        String partition = QueuePartitions.target("orders", partitioned);
+        manager.enqueue("orders", req("c1"), partitioned);
+        manager.enqueue("audit-login", req("c2"));
+        manager.enqueue("audit-debug", req("c3"));
+        manager.enqueue("clicks", req("c4"));
+
+        assertThat(durable.size(partition)).isEqualTo(1);
+        assertThat(durable.size("audit-login")).isEqualTo(1);
+        assertThat(fast.size("audit-debug")).isEqualTo(1);
+        assertThat(fast.size("clicks")).isEqualTo(1);
+        assertThat(manager.backendName(partition)).isEqualTo("persistent");
+        assertThat(manager.dequeue(partition).getCorrelationId()).isEqualTo("c1");
+    }
+
+    @Test
+    void moved_queue_drains_old_backend_before_new_one() {
+        manager.enqueue("orders", req("c1"));
+        manager.enqueue("orders", req("c2"));
+
+        settings.set("{\"queues\":{\"orders\":\"persistent\"}}");
+        clock.addAndGet(100);
+        manager.enqueue("orders", req("c3"));
+
+        assertThat(durable.size("orders")).isEqualTo(1);
+        assertThat(manager.drainingBackends("orders")).containsExactly("inmemory");
+        assertThat(manager.size("orders")).isEqualTo(3);
+        assertThat(manager.stats("orders").depth()).isEqualTo(3);
+        assertThat(ids(manager.dequeueBatch("orders", 10))).containsExactly("c1", "c2");
+        assertThat(ids(manager.dequeueBatch("orders", 10))).containsExactly("c3");
+
+        // released once empty for two refresh periods
+        clock.addAndGet(100);
+        manager.refresh();
+        assertThat(manager.drainingBackends("orders")).containsExactly("inmemory");
+        clock.addAndGet(100);
+        manager.refresh();
+        assertThat(manager.drainingBackends("orders")).isEmpty();
+    }
+
+    @Test
+    void unknown_backends_and_malformed_settings_are_ignored() {
+        settings.set("{\"queues\":{\"orders\":\"kafka\"}}");
+        manager.enqueue("orders", req("c1"));
+        assertThat(manager.backendName("orders")).isEqualTo("inmemory");
+
+        settings.set("{\"queues\":{\"orders\":\"persistent\"}}");
+        clock.addAndGet(100);
+        assertThat(manager.backendName("orders")).isEqualTo("persistent");
+
+        settings.set("{not json");
+        clock.addAndGet(100);
+        assertThat(manager.backendName("orders")).isEqualTo("persistent");
+    }
+
+    @Test
+    void listeners_hear_every_backend() {
+        settings.set("{\"queues\":{\"orders\":\"persistent\"}}");
+        List<String> heard = new CopyOnWriteArrayList<>();
+        manager.addListener(heard::add);
+        manager.enqueue("orders", req("c1"));
+        manager.enqueue("clicks", req("c2"));
+        assertThat(heard).containsExactly("orders", "clicks");
+    }
+
+    @Test
+    void listeners_attach_only_to_routed_backends_and_hear_each_queue_from_its_backend() {
+        List<String> idleListeners = new CopyOnWriteArrayList<>();
+        InMemoryQueuePlugin idle = new InMemoryQueuePlugin() {
+            @Override
+            public void addListener(QueueListener listener) {
+                idleListeners.add("added");
+                super.addListener(listener);
+            }
+        };
+        QueuePluginManager routed = new QueuePluginManager(
+                Map.of("inMemoryQueuePlugin", fast, "persistentQueuePlugin", durable, "segmentedLogQueuePlugin", idle),
+                "inmemory", "queue-routing", 100, clock::get);
+        routed.setPluginConfigSource(name -> Optional.of(row("{\"queues\":{\"orders\":\"persistent\"}}")));
+        List<String> heard = new CopyOnWriteArrayList<>();
+        routed.addListener(heard::add);
+
+        routed.enqueue("orders", req("c1"));
+        routed.enqueue("clicks", req("c2"));
+        // e.g. a tiered backend writing through to the persistent one: not where clicks lives
+        durable.enqueue("clicks", req("c3"));
+
+        assertThat(heard).containsExactly("orders", "clicks");
+        assertThat(idleListeners).isEmpty();
+        idle.close();
+    }
+
+    @Test
+    void unknown_default_backend_is_rejected() {
+        assertThatThrownBy(() -> new QueuePluginManager(Map.of("inMemoryQueuePlugin", fast), "kafka", "queue-routing", 100, clock::get))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ServiceRequest req(String corrId) {
+        return new ServiceRequest("SVC", Map.of(), Map.of(), corrId);
+    }
+
+    private static List<String> ids(List<ServiceRequest> batch) {
+        return batch.stream().map(ServiceRequest::getCorrelationId).toList();
+    }
+}
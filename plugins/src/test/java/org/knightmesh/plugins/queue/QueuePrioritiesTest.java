@@ -0,0 +1,66 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceRequest;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueuePrioritiesTest {
+
+    @Test
+    void lane_names_round_trip_with_partitions() {
+        assertThat(QueuePriorities.laneName("orders", null)).isEqualTo("orders");
+        assertThat(QueuePriorities.laneName("orders#p3", 0)).isEqualTo("orders#p3#q0");
+        assertThat(QueuePartitions.baseName("orders#p3#q0")).isEqualTo("orders");
+        assertThat(QueuePartitions.baseName("orders#q2")).isEqualTo("orders");
+        assertThat(QueuePartitions.baseName("orders#queue")).isEqualTo("orders#queue");
+        assertThat(QueuePartitions.target("orders", EnqueueOptions.none().withPriority(0))).isEqualTo("orders#q0");
+        assertThat(QueuePartitions.target("orders", EnqueueOptions.partitioned("acct-9", 4).withPriority(2)))
+                .isEqualTo("orders#p" + QueuePartitions.partitionOf("acct-9", 4) + "#q2");
+    }
+
+    @Test
+    void parses_names_and_numbers() {
+        assertThat(QueuePriorities.parse("high", 3, 1)).isZero();
+        assertThat(QueuePriorities.parse("LOW", 3, 1)).isEqualTo(2);
+        assertThat(QueuePriorities.parse("normal", 3, 1)).isEqualTo(1);
+        assertThat(QueuePriorities.parse("7", 3, 1)).isEqualTo(2);
+        assertThat(QueuePriorities.parse("-1", 3, 1)).isZero();
+        assertThat(QueuePriorities.parse("urgent", 3, 1)).isEqualTo(1);
+        assertThat(QueuePriorities.parse(null, 3, 1)).isEqualTo(1);
+    }
+
+    @Test
+    void settings_pick_lane_from_metadata_then_service_config() {
+        QueueSettings s = QueueSettings.fromExtraJson("{\"queue\":{\"priorities\":3}}");
+        assertThat(s.getPriorities()).isEqualTo(3);
+        assertThat(s.getDefaultPriority()).isEqualTo(1);
+        assertThat(s.priorityWeight(0)).isEqualTo(4);
+        assertThat(s.priorityWeight(2)).isEqualTo(1);
+        assertThat(s.laneName("irp-default", 1)).isEqualTo("irp-default");
+        assertThat(s.laneName("irp-default", 2)).isEqualTo("irp-default#q2");
+
+        ServiceRequest plain = new ServiceRequest("SVC", Map.of(), Map.of(), "c1");
+        ServiceRequest urgent = new ServiceRequest("SVC", Map.of(), Map.of(QueueSettings.PRIORITY_METADATA, "HIGH"), "c2");
+        assertThat(s.enqueueOptions(plain)).isEqualTo(EnqueueOptions.none());
+        assertThat(s.enqueueOptions(plain, "LOW")).isEqualTo(EnqueueOptions.none().withPriority(2));
+        assertThat(s.enqueueOptions(urgent, "LOW")).isEqualTo(EnqueueOptions.none().withPriority(0));
+
+        QueueSettings custom = QueueSettings.fromExtraJson(
+                "{\"queue\":{\"priorities\":2,\"defaultPriority\":0,\"priorityWeights\":[9,1]}}");
+        assertThat(custom.getDefaultPriority()).isZero();
+        assertThat(custom.priorityWeight(0)).isEqualTo(9);
+        assertThat(QueueSettings.fromExtraJson("{\"queue\":{}}").hasPriorities()).isFalse();
+    }
+
+    @Test
+    void service_priority_is_read_from_config_json() {
+        assertThat(QueueSettings.servicePriority("{\"priority\":\"LOW\"}")).isEqualTo("LOW");
+        assertThat(QueueSettings.servicePriority("{\"priority\":2}")).isEqualTo("2");
+        assertThat(QueueSettings.servicePriority("{\"other\":1}")).isNull();
+        assertThat(QueueSettings.servicePriority("nope")).isNull();
+        assertThat(QueueSettings.servicePriority(null)).isNull();
+    }
+}
@@ -0,0 +1,92 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class QueueStatsTest {
+
+    @Test
+    void depth_and_oldest_age_follow_fifo_consumption() {
+        AtomicLong now = new AtomicLong(1_000);
+        QueueStats stats = new QueueStats(now::get);
+
+        stats.enqueued("q");            // #0 at 1000
+        stats.enqueued("q");            // #1 at 1000, same sample
+        now.set(1_500);
+        stats.enqueued("q");            // #2 at 1500
+        now.set(2_000);
+
+        QueueStats.Snapshot s = stats.snapshot("q");
+        assertThat(s.depth()).isEqualTo(3);
+        assertThat(s.oldestAgeMs()).isEqualTo(1_000);
+
+        stats.dequeued("q", 2);
+        s = stats.snapshot("q");
+        assertThat(s.depth()).isEqualTo(1);
+        assertThat(s.oldestAgeMs()).isEqualTo(500);
+
+        stats.dequeued("q", 1);
+        s = stats.snapshot("q");
+        assertThat(s.depth()).isZero();
+        assertThat(s.oldestAgeMs()).isZero();
+        assertThat(s.enqueued()).isEqualTo(3);
+        assertThat(s.dequeued()).isEqualTo(3);
+    }
+
+    @Test
+    void reconcile_books_the_difference_as_remote_traffic() {
+        AtomicLong now = new AtomicLong(0);
+        QueueStats stats = new QueueStats(now::get);
+        assertThat(stats.reconciledWithin("q", 5_000)).isFalse();
+
+        stats.enqueued("q");
+        now.set(10_000);
+        // another process enqueued 9 more, the oldest due since t=2000
+        stats.reconcile("q", 10, Instant.ofEpochMilli(2_000));
+        assertThat(stats.reconciledWithin("q", 5_000)).isTrue();
+
+        QueueStats.Snapshot s = stats.snapshot("q");
+        assertThat(s.depth()).isEqualTo(10);
+        assertThat(s.enqueued()).isEqualTo(10);
+        assertThat(s.oldestAgeMs()).isEqualTo(8_000);
+
+        // and another process consumed 4
+        stats.reconcile("q", 6, Instant.ofEpochMilli(5_000));
+        s = stats.snapshot("q");
+        assertThat(s.depth()).isEqualTo(6);
+        assertThat(s.dequeued()).isEqualTo(4);
+        assertThat(s.oldestAgeMs()).isEqualTo(5_000);
+
+        now.set(15_000);
+        assertThat(stats.reconciledWithin("q", 5_000)).isFalse();
+    }
+
+    @Test
+    void rates_converge_to_steady_throughput() {
+        AtomicLong now = new AtomicLong(0);
+        QueueStats stats = new QueueStats(now::get);
+        // 20 enqueues and 10 dequeues per second for five minutes
+        for (int second = 0; second < 300; second++) {
+            for (int i = 0; i < 20; i++) stats.enqueued("q");
+            stats.dequeued("q", 10);
+            now.addAndGet(1_000);
+            if (second % 5 == 4) stats.snapshot("q");
+        }
+        QueueStats.Snapshot s = stats.snapshot("q");
+        assertThat(s.enqueueRate()).isCloseTo(20.0, within(0.5));
+        assertThat(s.dequeueRate()).isCloseTo(10.0, within(0.5));
+    }
+
+    @Test
+    void default_plugin_stats_only_know_the_size() {
+        QueueStats.Snapshot s = new NoopQueuePlugin().stats("q");
+        assertThat(s.depth()).isZero();
+        assertThat(s.oldestAgeMs()).isNegative();
+        assertThat(s.enqueueRate()).isNegative();
+    }
+}
@@ -0,0 +1,92 @@
+package org.knightmesh.plugins.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceRequest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ServiceRequestCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ServiceRequestCodec codec = new ServiceRequestCodec(mapper, 1024);
+
+    @Test
+    void round_trips_all_value_types() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("list", List.of(1, "two", 3.5, false));
+        nested.put("nothing", null);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("s", "héllo ✓");
+        payload.put("i", -42);
+        payload.put("l", Long.MAX_VALUE);
+        payload.put("d", 0.1);
+        payload.put("t", true);
+        payload.put("bi", new BigInteger("123456789012345678901234567890"));
+        payload.put("bd", new BigDecimal("1.2300"));
+        payload.put("nested", nested);
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("source", "IRP");
+        metadata.put("empty", null);
+
+        ServiceRequest out = codec.decode(codec.encode(new ServiceRequest("SVC", payload, metadata, "c1")));
+
+        assertThat(out.getServiceName()).isEqualTo("SVC");
+        assertThat(out.getCorrelationId()).isEqualTo("c1");
+        assertThat(out.getMetadata()).isEqualTo(metadata);
+        assertThat(out.getPayload()).isEqualTo(payload);
+        assertThat(out.getPayload().get("i")).isInstanceOf(Integer.class);
+        assertThat(out.getPayload().get("l")).isInstanceOf(Long.class);
+    }
+
+    @Test
+    void unknown_types_are_stored_as_their_json_form() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("array", new int[]{1, 2});
+        payload.put("set", Set.of("x"));
+        ServiceRequest out = codec.decode(codec.encode(new ServiceRequest("SVC", payload, Map.of(), null)));
+        assertThat(out.getPayload().get("array")).isEqualTo(List.of(1, 2));
+        assertThat(out.getPayload().get("set")).isEqualTo(List.of("x"));
+        assertThat(out.getCorrelationId()).isNull();
+    }
+
+    @Test
+    void large_payloads_are_compressed_and_smaller_than_json() throws Exception {
+        List<Object> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lines.add(Map.of("sku", "SKU-" + i, "description", "Replacement part", "quantity", i % 5));
+        }
+        ServiceRequest req = new ServiceRequest("ORDER", Map.of("lines", lines), Map.of(), "c1");
+
+        byte[] bin = codec.encode(req);
+        assertThat(bin[0]).isEqualTo(ServiceRequestCodec.VERSION);
+        assertThat(bin[1] & ServiceRequestCodec.FLAG_LZ4).isEqualTo(ServiceRequestCodec.FLAG_LZ4);
+        assertThat(bin.length).isLessThan(mapper.writeValueAsBytes(req.getPayload()).length / 4);
+        assertThat(codec.decode(bin).getPayload()).isEqualTo(req.getPayload());
+
+        byte[] uncompressed = new ServiceRequestCodec(mapper, -1).encode(req);
+        assertThat(uncompressed[1]).isZero();
+        assertThat(codec.decode(uncompressed).getPayload()).isEqualTo(req.getPayload());
+    }
+
+    @Test
+    void rejects_unknown_versions_and_truncated_input() {
+        byte[] bin = codec.encode(new ServiceRequest("SVC", Map.of("k", "v"), Map.of(), "c1"));
+        byte[] future = bin.clone();
+        future[0] = 99;
+        assertThatThrownBy(() -> codec.decode(future)).hasMessageContaining("version 99");
+        assertThatThrownBy(() -> codec.decode(Arrays.copyOf(bin, bin.length - 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,121 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredQueuePluginTest {
+
+    // stands in for the persistent plugin
+    private final InMemoryQueuePlugin durable = new InMemoryQueuePlugin();
+    private TieredQueuePlugin tiered;
+
+    @AfterEach
+    void tearDown() {
+        if (tiered != null) tiered.close();
+        durable.close();
+    }
+
+    @Test
+    void async_messages_consumed_in_time_never_reach_durable_storage() throws Exception {
+        tiered = new TieredQueuePlugin(durable, 16, QueueDurability.ASYNC, 50, 60_000, 100);
+        tiered.enqueue("q", req("c1"));
+        tiered.enqueue("q", req("c2"));
+        assertThat(tiered.dequeue("q").getCorrelationId()).isEqualTo("c1");
+        assertThat(durable.size("q")).isZero();
+
+        Thread.sleep(60);
+        tiered.flushDue();
+        assertThat(durable.size("q")).isEqualTo(1);
+        tiered.enqueue("q", req("c3"));
+        assertThat(tiered.size("q")).isEqualTo(2);
+        assertThat(ids(tiered.dequeueBatch("q", 10))).containsExactly("c2", "c3");
+    }
+
+    @Test
+    void none_durability_is_never_flushed() throws Exception {
+        tiered = new TieredQueuePlugin(durable, 16, QueueDurability.NONE, 50, 60_000, 100);
+        tiered.enqueue("q", req("c1"));
+        Thread.sleep(60);
+        tiered.flushDue();
+        assertThat(durable.size("q")).isZero();
+        assertThat(tiered.dequeue("q").getCorrelationId()).isEqualTo("c1");
+    }
+
+    @Test
+    void durability_is_kept_per_message_when_producers_of_a_queue_differ() throws Exception {
+        tiered = new TieredQueuePlugin(durable, 16, QueueDurability.ASYNC, 50, 60_000, 100);
+        EnqueueOptions memoryOnly = EnqueueOptions.none().withDurability(QueueDurability.NONE);
+        tiered.enqueue("q", req("c1"));
+        tiered.enqueue("q", req("c2"), memoryOnly);
+        tiered.enqueue("q", req("c3"));
+        tiered.enqueue("q", req("c4"), memoryOnly);
+        Thread.sleep(60);
+        tiered.flushDue();
+        // c2 goes along to keep the order; c4 stays in memory
+        assertThat(durable.size("q")).isEqualTo(3);
+        assertThat(ids(tiered.dequeueBatch("q", 10))).containsExactly("c1", "c2", "c3", "c4");
+    }
+
+    @Test
+    void sync_messages_are_written_through_after_older_ones() {
+        tiered = new TieredQueuePlugin(durable, 16, QueueDurability.NONE, 60_000, 60_000, 100);
+        tiered.enqueue("q", req("c1"));
+        tiered.enqueue("q", req("c2"), EnqueueOptions.none().withDurability(QueueDurability.SYNC));
+        assertThat(durable.size("q")).isEqualTo(2);
+        assertThat(ids(tiered.dequeueBatch("q", 10))).containsExactly("c1", "c2");
+    }
+
+    @Test
+    void full_memory_spills_oldest_to_durable_storage_keeping_order() {
+        tiered = new TieredQueuePlugin(durable, 2, QueueDurability.NONE, 60_000, 60_000, 2);
+        for (int i = 1; i <= 5; i++) {
+            tiered.enqueue("q", req("c" + i));
+        }
+        assertThat(durable.size("q")).isEqualTo(4);
+        assertThat(ids(tiered.dequeueBatch("q", 10))).containsExactly("c1", "c2", "c3", "c4", "c5");
+    }
+
+    @Test
+    void messages_left_in_durable_storage_are_recovered_first() {
+        durable.enqueue("q", req("old"));
+        tiered = new TieredQueuePlugin(durable, 16, QueueDurability.ASYNC, 60_000, 60_000, 100);
+        tiered.enqueue("q", req("new"));
+        assertThat(ids(tiered.dequeueBatch("q", 10))).containsExactly("old", "new");
+    }
+
+    @Test
+    void delayed_messages_wait_in_durable_storage_and_shutdown_flushes_async_queues() {
+        tiered = new TieredQueuePlugin(durable, 16, QueueDurability.ASYNC, 60_000, 60_000, 100);
+        tiered.enqueue("q", req("later"), EnqueueOptions.notBefore(Instant.now().plusSeconds(60)));
+        tiered.enqueue("q", req("now"));
+        assertThat(durable.delayedSize()).isEqualTo(1);
+
+        tiered.close();
+        assertThat(durable.size("q")).isEqualTo(1);
+        assertThat(durable.dequeue("q").getCorrelationId()).isEqualTo("now");
+        tiered = null;
+    }
+
+    @Test
+    void durability_is_configured_per_queue() {
+        QueueSettings settings = QueueSettings.fromExtraJson("{\"queue\": {\"durability\": \"sync\"}}");
+        assertThat(settings.getDurability()).isEqualTo(QueueDurability.SYNC);
+        assertThat(settings.enqueueOptions(req("c1")).getDurability()).isEqualTo(QueueDurability.SYNC);
+        assertThat(QueueSettings.defaults().enqueueOptions(req("c1")).getDurability()).isNull();
+    }
+
+    private static ServiceRequest req(String corrId) {
+        return new ServiceRequest("SVC", Map.of(), Map.of(), corrId);
+    }
+
+    private static List<String> ids(List<ServiceRequest> requests) {
+        return requests.stream().map(ServiceRequest::getCorrelationId).toList();
+    }
+}
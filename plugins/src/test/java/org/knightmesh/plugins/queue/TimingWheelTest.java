@@ -0,0 +1,67 @@
+package org.knightmesh.plugins.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    @Test
+    void releases_items_in_deadline_order_never_early() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        assertThat(wheel.add("b", 55)).isTrue();
+        assertThat(wheel.add("a", 21)).isTrue();
+        assertThat(wheel.add("c", 5_000)).isTrue(); // beyond the first level, lands in an overflow level
+        assertThat(wheel.size()).isEqualTo(3);
+        assertThat(wheel.nextExpiration()).isEqualTo(30);
+
+        List<String> due = new ArrayList<>();
+        wheel.advanceTo(29, due::add);
+        assertThat(due).isEmpty();
+        wheel.advanceTo(60, due::add);
+        assertThat(due).containsExactly("a", "b");
+        wheel.advanceTo(4_999, due::add);
+        assertThat(due).containsExactly("a", "b");
+        wheel.advanceTo(5_000, due::add);
+        assertThat(due).containsExactly("a", "b", "c");
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.nextExpiration()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void past_deadline_is_not_stored() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 1_000);
+        assertThat(wheel.add("x", 1_000)).isFalse();
+        assertThat(wheel.add("y", 500)).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void random_deadlines_are_released_within_one_tick() {
+        Random rnd = new Random(42);
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 16, 0);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            long deadline = 1 + rnd.nextInt(2_000_000);
+            deadlines.put(i, deadline);
+            wheel.add(i, deadline);
+        }
+        Map<Integer, Long> releasedAt = new HashMap<>();
+        for (long now = 0; now <= 2_000_010; now += 1 + rnd.nextInt(25)) {
+            long at = now;
+            wheel.advanceTo(now, i -> releasedAt.put(i, at));
+        }
+        assertThat(releasedAt).hasSize(deadlines.size());
+        deadlines.forEach((i, deadline) -> {
+            assertThat(releasedAt.get(i)).isGreaterThanOrEqualTo(deadline);
+            // rounded up to the 10 ms tick, plus at most one 25 ms step of the simulated clock
+            assertThat(releasedAt.get(i) - deadline).isLessThan(10 + 25);
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package org.knightmesh.plugins.result;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.knightmesh.core.model.ServiceResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryResultStoreTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    @Test
+    void waiters_complete_when_the_result_is_put_or_at_once_if_it_already_was() throws Exception {
+        InMemoryResultStore store = new InMemoryResultStore(10, 60_000, null, 0, clock::get);
+        CompletableFuture<ResultStore.Result> first = store.await("c1");
+        CompletableFuture<ResultStore.Result> second = store.await("c1");
+        assertThat(first).isNotDone();
+        assertThat(store.waiting()).isEqualTo(1);
+
+        store.put("c1", null, ServiceResponse.success(Map.of("n", 1)));
+        assertThat(first.get().response().getData()).containsEntry("n", 1);
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(store.waiting()).isZero();
+
+        assertThat(store.await("c1").getNow(null)).isSameAs(first.get());
+    }
+
+    @Test
+    void cancelled_waiters_are_forgotten_without_affecting_others() {
+        InMemoryResultStore store = new InMemoryResultStore(10, 60_000, null, 0, clock::get);
+        CompletableFuture<ResultStore.Result> gaveUp = store.await("c1");
+        CompletableFuture<ResultStore.Result> patient = store.await("c1");
+        gaveUp.cancel(false);
+        assertThat(store.waiting()).isEqualTo(1);
+
+        store.put("c1", null, ServiceResponse.failure("E", "boom", null));
+        assertThat(patient.getNow(null).response().getErrorCode()).isEqualTo("E");
+        store.await("c2").cancel(false);
+        assertThat(store.waiting()).isZero();
+    }
+
+    @Test
+    void results_expire_and_oldest_are_evicted_beyond_capacity() {
+        InMemoryResultStore store = new InMemoryResultStore(2, 1_000, null, 0, clock::get);
+        store.put("c1", null, ServiceResponse.success(Map.of()));
+        store.put("c2", null, ServiceResponse.success(Map.of()));
+        store.put("c3", null, ServiceResponse.success(Map.of()));
+        assertThat(store.get("c1")).isNull();
+        assertThat(store.get("c2")).isNotNull();
+        assertThat(store.size()).isEqualTo(2);
+
+        clock.addAndGet(1_000);
+        assertThat(store.get("c3")).isNull();
+        store.tick();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void table_keeps_evicted_results_and_delivers_results_put_by_another_process() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:results-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+        jdbc.execute("CREATE TABLE queue_result (correlation_id VARCHAR(128) PRIMARY KEY, response CLOB NOT NULL, tenant VARCHAR(64), "
+                + "created_at TIMESTAMP WITH TIME ZONE NOT NULL, expires_at TIMESTAMP WITH TIME ZONE NOT NULL)");
+        ResultTable table = new ResultTable(jdbc, new ObjectMapper());
+        InMemoryResultStore qpm = new InMemoryResultStore(1, 60_000, table, 0, clock::get);
+        InMemoryResultStore irp = new InMemoryResultStore(10, 60_000, table, 0, clock::get);
+
+        CompletableFuture<ResultStore.Result> waiting = irp.await("c1");
+        qpm.put("c1", "acme", ServiceResponse.success(Map.of("user", "alice")));
+        qpm.put("c2", null, ServiceResponse.failure("NOT_FOUND", "no such user", Map.of("id", 7)));
+        qpm.put("c2", null, ServiceResponse.failure("NOT_FOUND", "still no such user", Map.of("id", 7)));
+        assertThat(waiting).isNotDone();
+
+        irp.tick();
+        assertThat(waiting.get().response().getData()).containsEntry("user", "alice");
+        assertThat(waiting.get().tenant()).isEqualTo("acme");
+        // evicted from the producer's memory, still in the table
+        assertThat(qpm.size()).isEqualTo(1);
+        ServiceResponse c2 = qpm.get("c2").response();
+        assertThat(c2.getStatus()).isEqualTo(ServiceResponse.Status.FAILURE);
+        assertThat(c2.getErrorMessage()).isEqualTo("still no such user");
+        assertThat(qpm.get("c1").response().getData()).containsEntry("user", "alice");
+        assertThat(qpm.get("c1").tenant()).isEqualTo("acme");
+        assertThat(qpm.get("c2").tenant()).isNull();
+
+        clock.addAndGet(60_000);
+        assertThat(irp.get("c2")).isNull();
+        assertThat(table.deleteExpired(Instant.ofEpochMilli(clock.get()))).isEqualTo(2);
+    }
+
+    @Test
+    void results_are_visible_to_their_tenant_and_anonymous_results_to_everyone() {
+        InMemoryResultStore store = new InMemoryResultStore(10, 60_000, null, 0, clock::get);
+        store.put("c1", "acme", ServiceResponse.success(Map.of()));
+        store.put("c2", null, ServiceResponse.success(Map.of()));
+
+        assertThat(store.get("c1").isVisibleTo("acme")).isTrue();
+        assertThat(store.get("c1").isVisibleTo("globex")).isFalse();
+        assertThat(store.get("c1").isVisibleTo(null)).isFalse();
+        assertThat(store.get("c2").isVisibleTo("globex")).isTrue();
+        assertThat(store.get("c2").isVisibleTo(null)).isTrue();
+    }
+}